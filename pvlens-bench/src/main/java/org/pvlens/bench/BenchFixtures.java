@@ -0,0 +1,210 @@
+package org.pvlens.bench;
+
+/*
+ * This file is part of PVLens.
+ *
+ * Copyright (C) 2025 GlaxoSmithKline
+ *
+ * PVLens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PVLens is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PVLens.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Random;
+import java.util.stream.Stream;
+
+import org.pvlens.spl.conf.ConfigLoader;
+import org.pvlens.spl.om.SplDrug;
+import org.pvlens.spl.umls.Atom;
+import org.pvlens.spl.umls.UmlsLoader;
+
+import opennlp.tools.tokenize.TokenizerME;
+import opennlp.tools.tokenize.TokenizerModel;
+
+/**
+ * Offline inputs for the benchmarks: the sample SPLs bundled from the
+ * pvlens-db test resources, a small seeded MedDRA dictionary and synthetic
+ * product sets. Nothing here touches the UMLS database.
+ */
+final class BenchFixtures {
+
+	/** Sample SPL XML documents (src/test/resources/spl/xml in pvlens-db). */
+	static final List<String> SAMPLE_GUIDS = List.of(
+			"23e476df-6955-4c5d-92ae-2dc197ce4236",
+			"369f6e89-c1f9-4efe-e063-6394a90a920d",
+			"6f5c36d3-3f99-803c-5be6-66b2e1058946");
+
+	/** Sample SPL archives (src/test/resources/spl/zip in pvlens-db). */
+	static final List<String> SAMPLE_ZIPS = List.of(
+			"20171206_a4f917f4-2aa2-c3ed-071e-232fa0f125e8.zip",
+			"20250604_369f73b9-e032-4315-e063-6294a90a4ca1.zip",
+			"20250723_0280849d-5c78-4a9d-8941-4eab429f6bd8.zip");
+
+	/** Common label terms; enough for the matcher to do real work. */
+	static final List<String> MEDDRA_PTS = List.of(
+			"headache", "nausea", "vomiting", "diarrhoea", "diarrhea", "constipation", "dizziness", "fatigue",
+			"rash", "pruritus", "urticaria", "insomnia", "somnolence", "abdominal pain", "abdominal pain upper",
+			"dyspepsia", "dry mouth", "back pain", "arthralgia", "myalgia", "pain in extremity", "cough",
+			"dyspnoea", "dyspnea", "nasopharyngitis", "upper respiratory tract infection", "pyrexia", "chills",
+			"hypertension", "hypotension", "orthostatic hypotension", "tachycardia", "palpitations", "oedema",
+			"peripheral edema", "anaemia", "neutropenia", "thrombocytopenia", "hepatotoxicity", "jaundice",
+			"alanine aminotransferase increased", "aspartate aminotransferase increased", "blood creatinine increased",
+			"renal failure", "acute kidney injury", "anaphylactic reaction", "angioedema", "hypersensitivity",
+			"stevens-johnson syndrome", "toxic epidermal necrolysis", "seizure", "convulsion", "tremor",
+			"depression", "anxiety", "suicidal ideation", "confusional state", "hallucination", "syncope",
+			"decreased appetite", "weight increased", "weight decreased", "hyperglycaemia", "hypoglycaemia",
+			"hyperkalaemia", "hyponatraemia", "infection", "pneumonia", "sepsis", "urinary tract infection",
+			"myocardial infarction", "stroke", "cerebrovascular accident", "atrial fibrillation", "qt prolongation",
+			"electrocardiogram qt prolonged", "gastrointestinal haemorrhage", "pancreatitis", "blurred vision",
+			"vision blurred", "tinnitus", "alopecia", "photosensitivity reaction", "injection site reaction",
+			"major depressive disorder", "schizophrenia", "bipolar disorder", "heart failure",
+			"rheumatoid arthritis", "type 2 diabetes mellitus", "asthma", "chronic obstructive pulmonary disease");
+
+	/** Label-like paragraph (AE section style). */
+	static final String AE_TEXT = "The most common adverse reactions (incidence >= 5% and at least twice the rate of "
+			+ "placebo) were headache, nausea, dizziness, somnolence and dry mouth. Less common were abdominal pain "
+			+ "upper, back pain, pain in extremity and upper respiratory tract infection. Hepatotoxicity, including "
+			+ "alanine aminotransferase increased and jaundice, has been reported. There is no evidence of "
+			+ "Stevens-Johnson syndrome. Patients experienced decreased appetite and weight decreased; serious "
+			+ "cases of anaphylactic reaction and angioedema occurred in patients with a history of hypersensitivity. "
+			+ "Seizures, tremor and confusional state were observed in elderly patients with renal failure.";
+
+	private BenchFixtures() {
+	}
+
+	/**
+	 * Test-mode UMLS loader seeded with {@link #MEDDRA_PTS}, tokenized with the
+	 * bundled OpenNLP model as in production, transformed and stemmed maps rebuilt.
+	 */
+	static UmlsLoader seededUmls() {
+		UmlsLoader umls = UmlsLoader.newTestInstance();
+		TokenizerModel model = tokenizerModel();
+		ThreadLocal<TokenizerME> tokenizer = ThreadLocal.withInitial(() -> new TokenizerME(model));
+		umls._testSetTokenizer(s -> tokenizer.get().tokenize(s));
+		int i = 0;
+		for (String term : MEDDRA_PTS) {
+			String aui = "A" + (1000000 + i);
+			String code = String.valueOf(10000000 + i);
+			umls._testPutMeddraTerm("PT", term, aui);
+			umls.getMedDRA().put(aui, new Atom(aui, "C" + (1000000 + i), code, code, term, "PT"));
+			i++;
+		}
+		umls._testRebuildTransformedMaps();
+		return umls;
+	}
+
+	private static TokenizerModel tokenizerModel() {
+		try (InputStream in = BenchFixtures.class.getClassLoader().getResourceAsStream("models/en-token.bin")) {
+			if (in == null)
+				throw new IllegalStateException("Missing models/en-token.bin on the classpath");
+			return new TokenizerModel(in);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/** Copy a bundled resource ("spl/xml/..." or "spl/zip/...") to {@code target}. */
+	static Path copyResource(String resource, Path target) {
+		try (InputStream in = BenchFixtures.class.getClassLoader().getResourceAsStream(resource)) {
+			if (in == null)
+				throw new IllegalStateException("Missing benchmark resource: " + resource);
+			Files.createDirectories(target.getParent());
+			Files.copy(in, target, StandardCopyOption.REPLACE_EXISTING);
+			return target;
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Write a configuration based on the bundled spldb.properties with
+	 * {@code overrides} applied, and make it the one {@link ConfigLoader} reads.
+	 * Must run before UmlsLoader is first touched (it reads its config statically).
+	 */
+	static ConfigLoader installConfig(Path dir, Map<String, String> overrides) {
+		Properties props = new Properties();
+		try (InputStream in = ConfigLoader.class.getClassLoader()
+				.getResourceAsStream(ConfigLoader.DEFAULT_CLASSPATH_RESOURCE)) {
+			if (in != null)
+				props.load(in);
+			props.putAll(overrides);
+			Path file = dir.resolve("spldb.properties");
+			Files.createDirectories(dir);
+			try (OutputStream out = Files.newOutputStream(file)) {
+				props.store(out, "pvlens-bench");
+			}
+			System.setProperty(ConfigLoader.SYS_PROP_CONFIG_PATH, file.toString());
+			return new ConfigLoader(file);
+		} catch (IOException e) {
+			throw new UncheckedIOException(e);
+		}
+	}
+
+	/**
+	 * Synthetic, reproducible products for the merge passes: overlapping DP
+	 * CUIs, NDAs, SNOMED parents and RxNorm ingredients so every pass finds
+	 * candidates.
+	 */
+	static List<SplDrug> syntheticProducts(int n, long seed) {
+		Random rnd = new Random(seed);
+		int families = Math.max(4, n / 8);
+		List<SplDrug> out = new ArrayList<>(n);
+		for (int i = 0; i < n; i++) {
+			SplDrug d = new SplDrug();
+			String guid = String.format("00000000-0000-0000-0000-%012d", i);
+			d.setGuid(guid);
+			d.setSave(true);
+			d.addXmlFile("prescription/xml_files/" + guid + ".xml", true);
+			d.getMergedGuidXmlPairs().put(guid, new ArrayList<>(d.getXmlFilesAsList()));
+
+			int family = rnd.nextInt(families);
+			if (rnd.nextInt(4) == 0) {
+				d.addDrugProductCui(String.format("C%07d", family));
+				if (rnd.nextBoolean())
+					d.addDrugProductCui(String.format("C%07d", rnd.nextInt(families)));
+			}
+			if (rnd.nextInt(3) > 0)
+				d.setNda(100000 + rnd.nextInt(families * 2));
+			for (int k = rnd.nextInt(3); k > 0; k--)
+				d.addSnomedParent("SP" + rnd.nextInt(families));
+			for (int k = 1 + rnd.nextInt(2); k > 0; k--) {
+				String aui = "RXIN" + (family + k);
+				d.addRxNormPt(new Atom(aui, "C" + aui, null, aui, "ingredient " + aui, "IN"));
+			}
+			out.add(d);
+		}
+		return out;
+	}
+
+	/** Best-effort recursive delete of a scratch directory. */
+	static void deleteTree(Path dir) {
+		if (dir == null || !Files.exists(dir))
+			return;
+		try (Stream<Path> s = Files.walk(dir)) {
+			s.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+		} catch (IOException ignore) {
+			// scratch space only
+		}
+	}
+}
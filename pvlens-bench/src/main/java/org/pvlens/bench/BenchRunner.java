@@ -0,0 +1,60 @@
+package org.pvlens.bench;
+
+/*
+ * This file is part of PVLens.
+ *
+ * Copyright (C) 2025 GlaxoSmithKline
+ *
+ * PVLens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PVLens is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PVLens.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.io.File;
+import java.util.Locale;
+
+import org.openjdk.jmh.results.format.ResultFormatType;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.ChainedOptionsBuilder;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Entry point of benchmarks.jar. Takes the usual JMH command line (benchmark
+ * regex, -f, -wi, -i, -p ...) but writes JSON results by default, to
+ * {@code jmh-results/<tag>.json} where the tag is {@code -Dpvlens.bench.tag},
+ * else {@code $GIT_COMMIT}, else "latest". Keeping one file per commit lets
+ * runs be compared (e.g. with jmh.morethan.io or a small diff script).
+ */
+public final class BenchRunner {
+
+	private BenchRunner() {
+	}
+
+	public static void main(String[] args) throws Exception {
+		CommandLineOptions cli = new CommandLineOptions(args);
+		ChainedOptionsBuilder opts = new OptionsBuilder().parent(cli);
+
+		ResultFormatType format = cli.getResultFormat().orElse(ResultFormatType.JSON);
+		opts.resultFormat(format);
+		if (!cli.getResult().hasValue()) {
+			String tag = System.getProperty("pvlens.bench.tag", System.getenv("GIT_COMMIT"));
+			if (tag == null || tag.isBlank())
+				tag = "latest";
+			File dir = new File("jmh-results");
+			dir.mkdirs();
+			opts.result(new File(dir, tag.replaceAll("[^A-Za-z0-9._-]", "_") + "."
+					+ format.name().toLowerCase(Locale.ROOT)).getPath());
+		}
+		new Runner(opts.build()).run();
+	}
+}
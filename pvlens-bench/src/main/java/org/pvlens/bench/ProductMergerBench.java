@@ -0,0 +1,75 @@
+package org.pvlens.bench;
+
+/*
+ * This file is part of PVLens.
+ *
+ * Copyright (C) 2025 GlaxoSmithKline
+ *
+ * PVLens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PVLens is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PVLens.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.pvlens.spl.om.SplDrug;
+import org.pvlens.spl.processing.merge.ProductMerger;
+import org.pvlens.spl.umls.UmlsLoader;
+
+/**
+ * {@link ProductMerger#mergeAll} over synthetic product sets. Merging mutates
+ * the products, so each invocation gets a fresh set (built outside the
+ * measured region); one invocation is one measurement.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5)
+@Measurement(iterations = 10)
+@Fork(1)
+public class ProductMergerBench {
+
+	@Param({ "1000", "5000", "20000" })
+	public int products;
+
+	private ProductMerger merger;
+	private ConcurrentLinkedQueue<SplDrug> input;
+
+	@Setup(Level.Trial)
+	public void setUpMerger() {
+		merger = new ProductMerger(UmlsLoader.newTestInstance());
+	}
+
+	@Setup(Level.Iteration)
+	public void setUpProducts() {
+		input = new ConcurrentLinkedQueue<>(BenchFixtures.syntheticProducts(products, 42));
+	}
+
+	@Benchmark
+	public ConcurrentLinkedQueue<SplDrug> mergeAll() {
+		return merger.mergeAll(input, Map.of(), Map.of(), null, Map.of());
+	}
+}
@@ -0,0 +1,150 @@
+package org.pvlens.bench;
+
+/*
+ * This file is part of PVLens.
+ *
+ * Copyright (C) 2025 GlaxoSmithKline
+ *
+ * PVLens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PVLens is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PVLens.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.pvlens.spl.conf.ConfigLoader;
+import org.pvlens.spl.om.SplDrug;
+import org.pvlens.spl.processing.extract.SplXmlLabelExtractor;
+import org.pvlens.spl.processing.persist.SqlInsert;
+import org.pvlens.spl.processing.persist.SqlSink;
+import org.pvlens.spl.processing.persist.SqlWriters;
+import org.pvlens.spl.processing.support.NdcExtractor;
+
+/**
+ * Per-document SPL work on the three sample labels: full label extraction
+ * ({@link SplXmlLabelExtractor#processGuid}, both parsers) and NDC extraction
+ * ({@link NdcExtractor#getNdcCodes}). Section text rows are discarded.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SplExtractionBench {
+
+	private static final SqlSink DISCARD = new SqlSink() {
+		@Override
+		public void write(SqlInsert insert, Object[] values) {
+		}
+
+		@Override
+		public void execute(String sql) {
+		}
+
+		@Override
+		public void flush() {
+		}
+
+		@Override
+		public void close() {
+		}
+	};
+
+	/** One sample label copied into a scratch SPL_PATH (xml_files/prescription layout). */
+	@State(Scope.Benchmark)
+	public static class Document {
+
+		@Param({ "23e476df-6955-4c5d-92ae-2dc197ce4236", "369f6e89-c1f9-4efe-e063-6394a90a920d",
+				"6f5c36d3-3f99-803c-5be6-66b2e1058946" })
+		public String guid;
+
+		Path root;
+		String xmlRef;
+		final NdcExtractor ndc = new NdcExtractor();
+
+		@Setup
+		public void setUp() throws IOException {
+			root = Files.createTempDirectory("pvlens-bench-spl");
+			xmlRef = BenchFixtures.copyResource("spl/xml/" + guid + ".xml",
+					root.resolve("xml_files/prescription/" + guid + ".xml")).toString();
+		}
+
+		@TearDown
+		public void tearDown() {
+			BenchFixtures.deleteTree(root);
+		}
+	}
+
+	/** Label extractor over the seeded dictionary, with the given XML parser. */
+	@State(Scope.Benchmark)
+	public static class Extraction {
+
+		@Param({ "STAX", "DOM" })
+		public String parser;
+
+		SplXmlLabelExtractor extractor;
+		SqlWriters writers;
+
+		@Setup
+		public void setUp(Document doc) {
+			ConfigLoader cfg = BenchFixtures.installConfig(doc.root.resolve("conf"), Map.of(
+					"SPL_PATH", doc.root.toString(),
+					"SQL_OUTPUT_PATH", doc.root.resolve("out").toString(),
+					"SPL_XML_PARSER", parser));
+			extractor = new SplXmlLabelExtractor(BenchFixtures.seededUmls(), cfg);
+
+			Map<String, SqlSink> sinks = new TreeMap<>();
+			for (String key : List.of("IND_TEXT", "AE_TEXT", "BOX_TEXT"))
+				sinks.put(key, DISCARD);
+			writers = SqlWriters.forSinks(sinks, 500, 4);
+		}
+
+		@TearDown
+		public void tearDown() {
+			writers.close();
+		}
+	}
+
+	@Benchmark
+	public SplDrug processGuid(Document doc, Extraction ex) {
+		SplDrug spl = new SplDrug();
+		spl.setGuid(doc.guid);
+		spl.addXmlFile(doc.xmlRef, false);
+		ex.extractor.processGuid(spl, new ConcurrentHashMap<>(), new ConcurrentHashMap<>(),
+				new ConcurrentHashMap<>(), false, ex.writers);
+		return spl;
+	}
+
+	@Benchmark
+	public List<String> getNdcCodes(Document doc) {
+		return doc.ndc.getNdcCodes(doc.xmlRef);
+	}
+}
@@ -0,0 +1,81 @@
+package org.pvlens.bench;
+
+/*
+ * This file is part of PVLens.
+ *
+ * Copyright (C) 2025 GlaxoSmithKline
+ *
+ * PVLens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PVLens is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PVLens.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.pvlens.spl.util.MedDRAProcessor;
+import org.pvlens.spl.util.StopwordRemover;
+
+/**
+ * MedDRA term matching ({@link MedDRAProcessor#processText}) in the exact and
+ * the stemmed (stopwords removed) pass, and stopword removal on its own.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TextMatchingBench {
+
+	/** Matcher over the seeded dictionary; exact or stemmed pass. */
+	@State(Scope.Benchmark)
+	public static class Matching {
+
+		@Param({ "true", "false" })
+		public boolean exactMatch;
+
+		MedDRAProcessor processor;
+
+		@Setup
+		public void setUp() {
+			processor = new MedDRAProcessor(BenchFixtures.seededUmls());
+		}
+	}
+
+	@State(Scope.Benchmark)
+	public static class Stopwords {
+
+		final StopwordRemover remover = StopwordRemover.getInstance();
+	}
+
+	@Benchmark
+	public Map<String, List<String>> processText(Matching m) {
+		return m.processor.processText("AE", BenchFixtures.AE_TEXT, m.exactMatch);
+	}
+
+	@Benchmark
+	public String removeStopwords(Stopwords s) {
+		return s.remover.removeStopwords(BenchFixtures.AE_TEXT);
+	}
+}
@@ -0,0 +1,93 @@
+package org.pvlens.bench;
+
+/*
+ * This file is part of PVLens.
+ *
+ * Copyright (C) 2025 GlaxoSmithKline
+ *
+ * PVLens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PVLens is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PVLens.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.io.IOException;
+import java.io.Writer;
+import java.lang.reflect.Method;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.csv.CSVFormat;
+import org.apache.commons.csv.CSVPrinter;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.pvlens.spl.util.ZipFileExtractor;
+
+/**
+ * Classifying and extracting one SPL archive (ZipFileExtractor.processZipFile,
+ * reached the same way the pvlens-db tests do). Map rows go to a null writer.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ZipExtractionBench {
+
+	@Param({ "20171206_a4f917f4-2aa2-c3ed-071e-232fa0f125e8.zip", "20250604_369f73b9-e032-4315-e063-6294a90a4ca1.zip",
+			"20250723_0280849d-5c78-4a9d-8941-4eab429f6bd8.zip" })
+	public String zip;
+
+	private Path root;
+	private Path zipPath;
+	private Path outDir;
+	private ZipFileExtractor extractor;
+	private Method processZipFile;
+	private CSVPrinter xmlMap;
+	private CSVPrinter productMap;
+
+	@Setup
+	public void setUp() throws Exception {
+		root = Files.createTempDirectory("pvlens-bench-zip");
+		zipPath = BenchFixtures.copyResource("spl/zip/" + zip, root.resolve(zip));
+		outDir = Files.createDirectories(root.resolve("xml_files"));
+		extractor = new ZipFileExtractor(root);
+		processZipFile = ZipFileExtractor.class.getDeclaredMethod("processZipFile", Path.class, Path.class,
+				CSVPrinter.class, CSVPrinter.class);
+		processZipFile.setAccessible(true);
+		xmlMap = new CSVPrinter(Writer.nullWriter(), CSVFormat.DEFAULT);
+		productMap = new CSVPrinter(Writer.nullWriter(), CSVFormat.DEFAULT);
+	}
+
+	@TearDown
+	public void tearDown() throws IOException {
+		xmlMap.close();
+		productMap.close();
+		BenchFixtures.deleteTree(root);
+	}
+
+	@Benchmark
+	public void processZipFile() throws Exception {
+		processZipFile.invoke(extractor, zipPath, outDir, xmlMap, productMap);
+	}
+}
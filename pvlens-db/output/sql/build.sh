@@ -3,9 +3,11 @@ mysql -u ipsys -pip2002 pvlens < snomed.sql
 mysql -u ipsys -pip2002 pvlens < atc.sql
 mysql -u ipsys -pip2002 pvlens < rxnorm.sql
 mysql -u ipsys -pip2002 pvlens < substance.sql
+mysql -u ipsys -pip2002 pvlens < substance_name.sql
 mysql -u ipsys -pip2002 pvlens < product_related.sql
 mysql -u ipsys -pip2002 pvlens < listed_aes.sql
 mysql -u ipsys -pip2002 pvlens < listed_indications.sql
+mysql -u ipsys -pip2002 pvlens < meddra_usage.sql
 mysql -u ipsys -pip2002 pvlens < substance_to_ndc.sql
 mysql -u ipsys -pip2002 pvlens < substance_to_rxnorm.sql
 mysql -u ipsys -pip2002 pvlens < substance_to_snomed.sql
@@ -13,3 +15,4 @@ mysql -u ipsys -pip2002 pvlens < substance_to_atc.sql
 mysql -u ipsys -pip2002 pvlens < product_ae_text.sql
 mysql -u ipsys -pip2002 pvlens < product_box_text.sql
 mysql -u ipsys -pip2002 pvlens < product_ind_text.sql
+mysql -u ipsys -pip2002 pvlens < dashboard_stats.sql
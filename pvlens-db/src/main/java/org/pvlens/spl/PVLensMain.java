@@ -51,6 +51,12 @@ import org.pvlens.spl.conf.ConfigLoader;
 import org.pvlens.spl.om.SplDrug;
 import org.pvlens.spl.om.Srlc;
 import org.pvlens.spl.processing.SplProcessingPipeline;
+import org.pvlens.spl.processing.checkpoint.PipelineCheckpoints;
+import org.pvlens.spl.processing.checkpoint.PipelineCheckpoints.Resumed;
+import org.pvlens.spl.processing.checkpoint.PipelineCheckpoints.Stage;
+import org.pvlens.spl.processing.incremental.IncrementalRun;
+import org.pvlens.spl.processing.support.TaskGraph;
+import org.pvlens.spl.processing.support.TaskGraph.Node;
 import org.pvlens.spl.umls.UmlsLoader;
 import org.pvlens.spl.util.Logger;
 import org.pvlens.spl.util.SrlcProcessor;
@@ -82,34 +88,191 @@ public class PVLensMain {
 
 	/**
 	 * Application entry point.
+	 *
+	 * <p>{@code --resume-from merge|srlc|persist|latest} continues a failed run
+	 * from the checkpoints in CHECKPOINT_DIR instead of extracting again.</p>
 	 */
 	public static void main(String[] args) {
 		PVLensMain app = new PVLensMain();
-		app.run();
+		app.run(parseResumeFrom(args));
+	}
+
+	/** Stage named by {@code --resume-from}, or null for a full run. */
+	static Stage parseResumeFrom(String[] args) {
+		Stage stage = null;
+		for (int i = 0; i < args.length; i++) {
+			String arg = args[i];
+			if ("--resume-from".equals(arg) && i + 1 < args.length) {
+				stage = Stage.parse(args[++i]);
+			} else if (arg.startsWith("--resume-from=")) {
+				stage = Stage.parse(arg.substring("--resume-from=".length()));
+			} else {
+				throw new IllegalArgumentException(
+						"Unknown argument '" + arg + "'. Usage: PVLensMain [--resume-from merge|srlc|persist|latest]");
+			}
+		}
+		return stage;
 	}
 
 	/**
 	 * Orchestrates the SPL mapping pipeline: - Discover and extract SPL XMLs - Load
 	 * SRLC and approval date metadata - Map GUIDs to products via UMLS - Run
 	 * extraction, merge, reconciliation, and persistence
+	 *
+	 * <p>The stages form a {@link TaskGraph}: XML extraction, UMLS loading, the
+	 * FDA files and (once UMLS is loaded) SRLC processing run side by side;
+	 * stage timings and the critical path are logged at the end.</p>
+	 *
+	 * @param resumeFrom stage to resume from a checkpoint, or null for a full run
 	 */
-	private void run() {
+	private void run(Stage resumeFrom) {
 		String splDataPath = cfg.getSplPath();
 		String sqlOutputPath = cfg.getSqlOutputPath();
 
-		// Prior GUID→SUBSTANCE_ID map (optional; placeholder for evolving workflow)
-		// Note - this is not working and needs to be developed
-		String priorSubstanceMapPath = cfg.getCsvOutputPath() + "/prior_guid_substance_map_file.csv";
-		HashMap<String, Integer> priorGuidMap = loadPriorGuidMapFromFile(priorSubstanceMapPath);
+		// Stage checkpoints (null when CHECKPOINT_DIR is unset)
+		PipelineCheckpoints checkpoints = PipelineCheckpoints.fromConfig(cfg);
+		Resumed resumed = null;
+		if (resumeFrom != null) {
+			if (checkpoints == null)
+				throw new IllegalStateException("--resume-from needs CHECKPOINT_DIR to be set");
+			if (!cfg.getRunStateDir().isEmpty())
+				throw new IllegalStateException("--resume-from cannot be combined with RUN_STATE_DIR (incremental runs)");
+			resumed = checkpoints.load(resumeFrom);
+			if (resumed == null)
+				throw new IllegalStateException("No valid checkpoint to resume from in " + cfg.getCheckpointDir());
+			Logger.log("Resuming at stage [" + resumed.stage().id() + "] with " + resumed.products().size() + " products");
+		}
+
+		// Run state for incremental runs (null when RUN_STATE_DIR is unset)
+		IncrementalRun incremental = IncrementalRun.open(cfg);
+
+		// Prior GUID→SUBSTANCE_ID map: from the run state on an incremental run,
+		// else from the optional CSV
+		HashMap<String, Integer> priorGuidMap;
+		if (incremental != null && incremental.isDelta()) {
+			priorGuidMap = new HashMap<>(incremental.priorGuidMap());
+		} else {
+			String priorSubstanceMapPath = cfg.getCsvOutputPath() + "/prior_guid_substance_map_file.csv";
+			priorGuidMap = loadPriorGuidMapFromFile(priorSubstanceMapPath);
+		}
 		if (priorGuidMap.size() > 0) {
 			Logger.log("Loaded prior substance map: " + priorGuidMap.size());
 		}
 
+		// Independent stages overlap; each waits only for the stages it needs
+		final Resumed res = resumed;
+		final Map<String, Integer> priorIds = priorGuidMap;
+		TaskGraph graph = new TaskGraph("run", cfg.getStartupThreads());
+
+		// Extract XML files from downloaded SPL archives (incremental: only new/changed GUIDs)
+		Node<Map<String, List<String>>> guids = graph.add("xml-extract",
+				() -> res == null ? extractGuids(splDataPath, incremental) : null);
+
+		Node<UmlsLoader> umls = graph.add("umls", () -> {
+			UmlsLoader u = UmlsLoader.getInstance();
+			Logger.log("UMLS load completed");
+			return u;
+		});
+
+		// Safety-Related Label Change (SRLC) data; its MedDRA matching needs UMLS
+		Node<List<Srlc>> srlcEntries = graph.add("srlc", SrlcProcessor::loadSrlcData, umls);
+
+		// FDA approval dates and sponsors
+		Node<HashMap<Integer, Date>> approvalDates = graph.add("approval-dates", this::loadApprovalDates);
+		Node<HashMap<Integer, String>> approvalSponsors = graph.add("approval-sponsors", this::loadApprovalSponsors);
+
+		// Pipeline processor
+		Node<SplProcessingPipeline> pipeline = graph.add("pipeline-open",
+				() -> new SplProcessingPipeline(umls.get(), priorIds, sqlOutputPath, incremental, res != null), umls);
+
+		// Map GUIDs to products using UMLS (or take the checkpointed products)
+		Node<ConcurrentLinkedQueue<SplDrug>> mapped = graph.add("umls-map", () -> {
+			if (res != null)
+				return res.products();
+			ConcurrentLinkedQueue<SplDrug> q = umls.get().getMappedGuid(guids.get());
+			Logger.log("UMLS Mapped drugs: " + q.size());
+			return q;
+		}, guids, umls);
+
+		Node<ConcurrentLinkedQueue<SplDrug>> extracted = graph.add("label-extract", () -> {
+			ConcurrentLinkedQueue<SplDrug> allProducts = mapped.get();
+			if (res != null)
+				return allProducts;
+			pipeline.get().run(allProducts, srlcEntries.get());
+
+			// Keep the extracted products for the next run (before merging alters them),
+			// then add back the unchanged ones restored from the run state
+			if (incremental != null) {
+				incremental.captureExtracted(allProducts);
+				allProducts.addAll(incremental.restoredProducts());
+			}
+			Logger.log("All products prior to merge: " + allProducts.size());
+
+			if (checkpoints != null) {
+				pipeline.get().flushOutput();
+				checkpoints.save(Stage.MERGE, allProducts);
+			}
+			return allProducts;
+		}, mapped, pipeline, srlcEntries);
+
+		Node<ConcurrentLinkedQueue<SplDrug>> merged = graph.add("merge", () -> {
+			ConcurrentLinkedQueue<SplDrug> allProducts = extracted.get();
+			if (res != null && res.stage() != Stage.MERGE)
+				return allProducts;
+			allProducts = pipeline.get().runMerge(allProducts, approvalDates.get(), approvalSponsors.get(), priorIds);
+			Logger.log("All products post to merge: " + allProducts.size());
+			if (checkpoints != null)
+				checkpoints.save(Stage.SRLC, allProducts);
+			return allProducts;
+		}, extracted, approvalDates, approvalSponsors);
+
+		Node<ConcurrentLinkedQueue<SplDrug>> srlcUpdated = graph.add("srlc-update", () -> {
+			ConcurrentLinkedQueue<SplDrug> allProducts = merged.get();
+			if (res != null && res.stage() == Stage.PERSIST)
+				return allProducts;
+			Logger.log("Update label date information from SRLC data extract");
+			pipeline.get().updateSrlcData(allProducts, srlcEntries.get());
+			if (checkpoints != null)
+				checkpoints.save(Stage.PERSIST, allProducts);
+			return allProducts;
+		}, merged, srlcEntries);
+
+		graph.addStep("persist", () -> {
+			ConcurrentLinkedQueue<SplDrug> allProducts = srlcUpdated.get();
+			Logger.log("Reconcile first add date for AEs and indications");
+			pipeline.get().reviewFirstAddedDates(allProducts);
+
+			Logger.log("Products to save: " + allProducts.size());
+			pipeline.get().persist(allProducts, approvalDates.get(), priorIds);
+
+			if (checkpoints != null)
+				checkpoints.clear();
+			Logger.log("All products: " + allProducts.size());
+		}, srlcUpdated, approvalDates);
+
+		try {
+			graph.run();
+		} finally {
+			for (String line : graph.summary().split("\\R"))
+				Logger.log(line);
+		}
+		Logger.log("End");
+	}
+
+	/**
+	 * Extract the SPL archives (per year directory when present) and map GUIDs
+	 * to their XML files.
+	 *
+	 * @param splDataPath Root SPL path
+	 * @param incremental Run state, or null; on an incremental run only new or
+	 *                    changed GUIDs are returned
+	 * @return GUID → XML file paths to process
+	 */
+	private Map<String, List<String>> extractGuids(String splDataPath, IncrementalRun incremental) {
 		// Track GUID→XML mappings
 		Map<String, List<String>> guidToXml = new HashMap<>();
 		HashMap<String, String> guidSrcType = new HashMap<>();
 
-		// Extract XML files from downloaded SPL archives
 		Logger.log("Begin XML extraction...");
 
 		// If SPL data is organized by year subdirectories, process per-year
@@ -130,40 +293,8 @@ public class PVLensMain {
 
 		Logger.log("GUID count: " + guidToXml.size());
 
-		// Load Safety-Related Label Change (SRLC) data
-		List<Srlc> srlcEntries = SrlcProcessor.loadSrlcData();
-
-		// Load FDA approval dates and sponsors
-		HashMap<Integer, Date> approvalDates = loadApprovalDates();
-		HashMap<Integer, String> approvalSponsors = loadApprovalSponsors();
-
-		// Map GUIDs to products using UMLS
-		UmlsLoader umls = UmlsLoader.getInstance();
-		Logger.log("UMLS load completed");
-
-		ConcurrentLinkedQueue<SplDrug> allProducts = umls.getMappedGuid(guidToXml);
-		Logger.log("UMLS Mapped drugs: " + allProducts.size());
-
-		// Pipeline processor
-		SplProcessingPipeline splPipeline = new SplProcessingPipeline(umls, priorGuidMap, sqlOutputPath);
-
-		splPipeline.run(allProducts, srlcEntries);
-		Logger.log("All products prior to merge: " + allProducts.size());
-
-		allProducts = splPipeline.runMerge(allProducts, approvalDates, approvalSponsors, priorGuidMap);
-		Logger.log("All products post to merge: " + allProducts.size());
-
-		Logger.log("Update label date information from SRLC data extract");
-		splPipeline.updateSrlcData(allProducts, srlcEntries);
-
-		Logger.log("Reconcile first add date for AEs and indications");
-		splPipeline.reviewFirstAddedDates(allProducts);
-
-		Logger.log("Products to save: " + allProducts.size());
-		splPipeline.persist(allProducts, approvalDates, priorGuidMap);
-
-		Logger.log("All products: " + allProducts.size());
-		Logger.log("End");
+		// Incremental run: only new/changed GUIDs are mapped and extracted
+		return (incremental == null) ? guidToXml : incremental.plan(guidToXml);
 	}
 
 	/**
@@ -79,10 +79,52 @@ public final class ConfigLoader {
 	private static final String K_DB_PASS = "DB_PASS";
 	private static final String K_DB_NAME = "DB_NAME";
 	private static final String K_UMLS_DB_NAME = "UMLS_DB_NAME";
+	private static final String K_UMLS_VERSION = "UMLS_VERSION";
+	private static final String K_UMLS_SNAPSHOT_DIR = "UMLS_SNAPSHOT_DIR";
 
 	// Parallelism keys (new + deprecated)
 	private static final String K_PARALLEL_PRODUCT_LIMIT = "PARALLEL_PRODUCT_LIMIT";
 
+	// Run stages started side by side (XML extraction, UMLS, SRLC, FDA files)
+	private static final String K_STARTUP_THREADS = "STARTUP_THREADS";
+
+	// Label extraction stages (parse -> NLP -> merge -> write): threads and queue depth
+	private static final String K_STAGE_PARSE_THREADS = "STAGE_PARSE_THREADS";
+	private static final String K_STAGE_MERGE_THREADS = "STAGE_MERGE_THREADS";
+	private static final String K_STAGE_WRITE_THREADS = "STAGE_WRITE_THREADS";
+	private static final String K_STAGE_QUEUE = "STAGE_QUEUE";
+
+	// SPL XML parsing strategy (DOM | STAX)
+	private static final String K_SPL_XML_PARSER = "SPL_XML_PARSER";
+
+	// Where SPL XML is read from (FILES | ZIP)
+	private static final String K_SPL_XML_SOURCE = "SPL_XML_SOURCE";
+	private static final String K_SPL_SCAN_SPOOL_DIR = "SPL_SCAN_SPOOL_DIR";
+
+	// Batched SQL output (rows per multi-row INSERT; writer queue depth in chunks)
+	private static final String K_SQL_ROWS_PER_INSERT = "SQL_ROWS_PER_INSERT";
+	private static final String K_SQL_WRITER_QUEUE = "SQL_WRITER_QUEUE";
+
+	// Threads rendering product rows in the persist step
+	private static final String K_PERSIST_THREADS = "PERSIST_THREADS";
+
+	// Where product rows go (SQL | TSV | JDBC)
+	private static final String K_SQL_SINK = "SQL_SINK";
+
+	// Incremental runs (FULL | INCREMENTAL) and where their state is kept
+	private static final String K_RUN_MODE = "RUN_MODE";
+	private static final String K_RUN_STATE_DIR = "RUN_STATE_DIR";
+
+	// Stage checkpoints of the product set (resume with --resume-from)
+	private static final String K_CHECKPOINT_DIR = "CHECKPOINT_DIR";
+
+	// Section NLP result cache (entries kept in memory; directory it is saved to)
+	private static final String K_NLP_CACHE_ENTRIES = "NLP_CACHE_ENTRIES";
+	private static final String K_NLP_CACHE_DIR = "NLP_CACHE_DIR";
+
+	// UMLS warm-up: connections / concurrent queries against the UMLS database
+	private static final String K_UMLS_DB_THREADS = "UMLS_DB_THREADS";
+
 	/** System property to point to an external config file. */
 	public static final String SYS_PROP_CONFIG_PATH = "pvlens.config";
 
@@ -207,6 +249,179 @@ public final class ConfigLoader {
 		return defaultLimit;
 	}
 
+	/**
+	 * Run stages that may execute at the same time ({@code STARTUP_THREADS}):
+	 * XML extraction, UMLS loading, SRLC processing and the FDA files overlap
+	 * until the stages that need them. 1 runs every stage in turn. Defaults
+	 * to 4.
+	 */
+	public int getStartupThreads() {
+		return getPositiveInt(K_STARTUP_THREADS, 4);
+	}
+
+	/**
+	 * Threads reading and parsing SPL XML ({@code STAGE_PARSE_THREADS}). The NLP
+	 * stage is sized by {@link #getParallelProcessingProductLimit()}. Defaults
+	 * to half the NLP threads.
+	 */
+	public int getStageParseThreads() {
+		return getPositiveInt(K_STAGE_PARSE_THREADS, Math.max(1, getParallelProcessingProductLimit() / 2));
+	}
+
+	/** Threads folding label outcomes into their products ({@code STAGE_MERGE_THREADS}). Defaults to 1. */
+	public int getStageMergeThreads() {
+		return getPositiveInt(K_STAGE_MERGE_THREADS, 1);
+	}
+
+	/** Threads handing label text rows to the SQL writers ({@code STAGE_WRITE_THREADS}). Defaults to 1. */
+	public int getStageWriteThreads() {
+		return getPositiveInt(K_STAGE_WRITE_THREADS, 1);
+	}
+
+	/**
+	 * Items each extraction stage may have queued before the stage feeding it
+	 * blocks ({@code STAGE_QUEUE}). Bounds the parsed labels held in memory.
+	 * Defaults to 32.
+	 */
+	public int getStageQueue() {
+		return getPositiveInt(K_STAGE_QUEUE, 32);
+	}
+
+	/**
+	 * Threads rendering product rows in the persist step
+	 * ({@code PERSIST_THREADS}). IDs are planned before rendering, so the
+	 * output does not depend on this. Defaults to the NLP thread count.
+	 */
+	public int getPersistThreads() {
+		return getPositiveInt(K_PERSIST_THREADS, getParallelProcessingProductLimit());
+	}
+
+	/**
+	 * True when {@code SPL_XML_PARSER=STAX}: label sections are pulled with a
+	 * single streaming pass instead of a full DOM per XML. Defaults to DOM.
+	 */
+	public boolean isStreamingSplParser() {
+		return "STAX".equalsIgnoreCase(getOptional(K_SPL_XML_PARSER, "DOM").trim());
+	}
+
+	/**
+	 * True when {@code SPL_XML_SOURCE=ZIP}: XML is read straight from the SPL ZIP
+	 * archives instead of being unpacked under {@code xml_files/}. Defaults to
+	 * FILES.
+	 */
+	public boolean isZipXmlSource() {
+		return "ZIP".equalsIgnoreCase(getOptional(K_SPL_XML_SOURCE, "FILES").trim());
+	}
+
+	/**
+	 * Directory for the per-run spool of streamed label scans
+	 * ({@code SPL_SCAN_SPOOL_DIR}, used with {@code SPL_XML_PARSER=STAX}); empty
+	 * uses a temporary directory. The spool is deleted when extraction ends.
+	 */
+	public String getSplScanSpoolDir() {
+		return getOptional(K_SPL_SCAN_SPOOL_DIR, "").trim();
+	}
+
+	/**
+	 * Rows folded into one multi-row {@code INSERT} by the SQL writers
+	 * ({@code SQL_ROWS_PER_INSERT}). Defaults to 500; 1 keeps one statement per
+	 * row.
+	 */
+	public int getSqlRowsPerInsert() {
+		return getPositiveInt(K_SQL_ROWS_PER_INSERT, 500);
+	}
+
+	/**
+	 * Chunks each table's background SQL writer may have queued before producers
+	 * block ({@code SQL_WRITER_QUEUE}). Defaults to 64.
+	 */
+	public int getSqlWriterQueue() {
+		return getPositiveInt(K_SQL_WRITER_QUEUE, 64);
+	}
+
+	/**
+	 * Output sink for product rows ({@code SQL_SINK}): SQL (INSERT files, the
+	 * default), TSV (data files plus LOAD DATA LOCAL INFILE scripts) or JDBC
+	 * (batched inserts straight into the DB_* database).
+	 */
+	public String getSqlSink() {
+		String v = getOptional(K_SQL_SINK, "SQL").trim().toUpperCase(Locale.ROOT);
+		return switch (v) {
+			case "SQL", "TSV", "JDBC" -> v;
+			default -> {
+				log("WARN", "Unknown SQL_SINK '" + v + "'. Using SQL");
+				yield "SQL";
+			}
+		};
+	}
+
+	/**
+	 * True when {@code RUN_MODE=INCREMENTAL}: only labels that changed since the
+	 * run recorded in {@code RUN_STATE_DIR} are processed and the SQL output is a
+	 * delta. Defaults to FULL.
+	 */
+	public boolean isIncrementalRun() {
+		return "INCREMENTAL".equalsIgnoreCase(getOptional(K_RUN_MODE, "FULL").trim());
+	}
+
+	/**
+	 * Optional: directory holding the state an incremental run starts from
+	 * ({@code RUN_STATE_DIR}). Every run with this set records its state there;
+	 * empty disables it.
+	 */
+	public String getRunStateDir() {
+		return getOptional(K_RUN_STATE_DIR, "").trim();
+	}
+
+	/**
+	 * Directory for the product-set checkpoints written before merge, SRLC
+	 * update and persist ({@code CHECKPOINT_DIR}); empty disables them.
+	 */
+	public String getCheckpointDir() {
+		return getOptional(K_CHECKPOINT_DIR, "").trim();
+	}
+
+	/**
+	 * Label sections whose match results are cached in memory
+	 * ({@code NLP_CACHE_ENTRIES}, least recently used dropped first). 0 disables
+	 * the cache. Defaults to 20000.
+	 */
+	public int getNlpCacheEntries() {
+		String raw = getOptional(K_NLP_CACHE_ENTRIES, null);
+		if (raw != null && raw.trim().equals("0"))
+			return 0;
+		return getPositiveInt(K_NLP_CACHE_ENTRIES, 20000);
+	}
+
+	/**
+	 * Directory the section match cache is saved to between runs
+	 * ({@code NLP_CACHE_DIR}); empty keeps it in memory only.
+	 */
+	public String getNlpCacheDir() {
+		return getOptional(K_NLP_CACHE_DIR, "").trim();
+	}
+
+	/**
+	 * Connections the UMLS loader opens for concurrent dictionary loads and
+	 * IN-list batches ({@code UMLS_DB_THREADS}). Defaults to 4.
+	 */
+	public int getUmlsDbThreads() {
+		return getPositiveInt(K_UMLS_DB_THREADS, 4);
+	}
+
+	private int getPositiveInt(String key, int defaultValue) {
+		String raw = getOptional(key, null);
+		if (raw == null)
+			return defaultValue;
+		try {
+			int val = Integer.parseInt(raw.trim());
+			return (val > 0) ? val : defaultValue;
+		} catch (NumberFormatException nfe) {
+			log("WARN", "Invalid integer for " + key + ": '" + raw + "'. Using default " + defaultValue);
+			return defaultValue;
+		}
+	}
+
 	/** Path to the SPL root from the FDA archive. */
 	public String getSplPath() {
 		return normalizedDir(getRequired(K_SPL_PATH));
@@ -282,6 +497,19 @@ public final class ConfigLoader {
 		return getOptional(K_UMLS_DB_NAME, "");
 	}
 
+	/** Optional: UMLS release loaded in the UMLS database (e.g. 2025AA); keys the dictionary snapshot. */
+	public String getUmlsVersion() {
+		return getOptional(K_UMLS_VERSION, "").trim();
+	}
+
+	/**
+	 * Optional: directory for the UMLS dictionary snapshot. Empty disables it;
+	 * the snapshot is also skipped while {@code UMLS_VERSION} is unset.
+	 */
+	public String getUmlsSnapshotDir() {
+		return getOptional(K_UMLS_SNAPSHOT_DIR, "").trim();
+	}
+
 	/** Directory containing SRLC data files generated by preprocessing. */
 	public String getSrlcPath() {
 		return normalizedDir(getRequired(K_SRLC_PATH));
@@ -0,0 +1,229 @@
+package org.pvlens.spl.om;
+
+/*
+ * This file is part of PVLens.
+ *
+ * Copyright (C) 2025 GlaxoSmithKline
+ *
+ * PVLens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PVLens is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PVLens.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.ConcurrentModificationException;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+
+import org.pvlens.spl.umls.Atom;
+
+/**
+ * Compact set of atoms for {@link Outcome} codes.
+ *
+ * <p>The atoms sit in one array in insertion order; a separate open-addressing
+ * index of int positions (no entry objects) is slotted by the AUI's
+ * {@link org.pvlens.spl.umls.Symbols} id instead of the deep
+ * {@link Atom#hashCode()}. Membership still uses {@link Atom#equals}, so it
+ * behaves like the {@code HashSet} it replaces. Iteration follows insertion
+ * order, never the symbol ids: those are handed out in first-seen order, which
+ * the concurrent loaders and extraction threads decide, and rows rendered from
+ * the codes must not change from one run to the next. The arrays are only
+ * allocated on the first add (most outcomes of a label version are empty).
+ * Nulls are not permitted. Serialized as its atoms, since symbol ids are per
+ * JVM.</p>
+ */
+final class AtomSet extends AbstractSet<Atom> implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final int DELETED = -1;
+	private static final int MIN_CAPACITY = 4;
+
+	// atoms in insertion order, null where one was removed
+	private transient Atom[] entries;
+	// position + 1 in entries, 0 when empty; twice the length of entries
+	private transient int[] index;
+	private transient int count; // used length of entries, removed included
+	private transient int size;
+	private transient int modCount;
+
+	AtomSet() {
+	}
+
+	AtomSet(Collection<? extends Atom> atoms) {
+		if (atoms != null)
+			addAll(atoms);
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean contains(Object o) {
+		return o instanceof Atom a && find(a) >= 0;
+	}
+
+	@Override
+	public boolean add(Atom atom) {
+		Objects.requireNonNull(atom, "atom");
+		if (entries == null)
+			resize(MIN_CAPACITY);
+		else if (find(atom) >= 0)
+			return false;
+		else if (count == entries.length)
+			resize(size * 2 >= entries.length ? entries.length * 2 : entries.length);
+
+		entries[count] = atom;
+		index[freeSlot(atom)] = ++count;
+		size++;
+		modCount++;
+		return true;
+	}
+
+	@Override
+	public boolean remove(Object o) {
+		if (!(o instanceof Atom a))
+			return false;
+		int i = find(a);
+		if (i < 0)
+			return false;
+		entries[index[i] - 1] = null;
+		index[i] = DELETED;
+		size--;
+		modCount++;
+		return true;
+	}
+
+	@Override
+	public void clear() {
+		entries = null;
+		index = null;
+		size = count = 0;
+		modCount++;
+	}
+
+	@Override
+	public Iterator<Atom> iterator() {
+		return new Iterator<>() {
+			private int next = advance(0);
+			private int last = -1;
+			private int expected = modCount;
+
+			private int advance(int from) {
+				Atom[] e = entries;
+				if (e == null)
+					return -1;
+				for (int i = from; i < count; i++)
+					if (e[i] != null)
+						return i;
+				return -1;
+			}
+
+			@Override
+			public boolean hasNext() {
+				return next >= 0;
+			}
+
+			@Override
+			public Atom next() {
+				if (modCount != expected)
+					throw new ConcurrentModificationException();
+				if (next < 0)
+					throw new NoSuchElementException();
+				last = next;
+				next = advance(next + 1);
+				return entries[last];
+			}
+
+			@Override
+			public void remove() {
+				if (last < 0)
+					throw new IllegalStateException();
+				if (modCount != expected)
+					throw new ConcurrentModificationException();
+				AtomSet.this.remove(entries[last]);
+				expected = modCount;
+				last = -1;
+			}
+		};
+	}
+
+	/** Index slot holding {@code atom}, or -1. */
+	private int find(Atom atom) {
+		int[] t = index;
+		if (t == null || size == 0)
+			return -1;
+		int mask = t.length - 1;
+		for (int i = slot(atom, mask);; i = (i + 1) & mask) {
+			int p = t[i];
+			if (p == 0)
+				return -1;
+			if (p != DELETED) {
+				Atom e = entries[p - 1];
+				if (e == atom || e.equals(atom))
+					return i;
+			}
+		}
+	}
+
+	/** First empty or deleted slot on {@code atom}'s probe path (it is not in the set). */
+	private int freeSlot(Atom atom) {
+		int mask = index.length - 1;
+		int i = slot(atom, mask);
+		while (index[i] > 0)
+			i = (i + 1) & mask;
+		return i;
+	}
+
+	private static int slot(Atom atom, int mask) {
+		int h = atom.auiId() * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & mask;
+	}
+
+	/** Compact the live atoms, in order, into {@code capacity} entries and rebuild the index. */
+	private void resize(int capacity) {
+		Atom[] old = entries;
+		int n = count;
+		entries = new Atom[capacity];
+		index = new int[capacity * 2];
+		count = 0;
+		for (int i = 0; i < n; i++) {
+			Atom e = old[i];
+			if (e == null)
+				continue;
+			entries[count] = e;
+			index[freeSlot(e)] = ++count;
+		}
+	}
+
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		out.writeInt(size);
+		for (Atom a : this)
+			out.writeObject(a);
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		int n = in.readInt();
+		for (int i = 0; i < n; i++)
+			add((Atom) in.readObject());
+	}
+}
@@ -0,0 +1,277 @@
+package org.pvlens.spl.om;
+
+/*
+ * This file is part of PVLens.
+ *
+ * Copyright (C) 2025 GlaxoSmithKline
+ *
+ * PVLens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PVLens is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PVLens.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.Serializable;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ConcurrentModificationException;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Objects;
+import java.util.Set;
+
+import org.pvlens.spl.umls.Symbols;
+
+/**
+ * AUI → date map for {@link Outcome#getFirstAdded()}, stored as two primitive
+ * arrays: the AUI's {@link Symbols} id and the date in epoch milliseconds.
+ *
+ * <p>Replaces a {@code HashMap<String, Date>} (an entry object plus a
+ * {@code Date} per code) with 12 bytes per slot. It is a full {@link Map}:
+ * {@link #get} returns a new {@code Date} each time, null values are kept,
+ * null keys are not. Serialized as AUI strings, since symbol ids are per
+ * JVM.</p>
+ */
+final class AuiDateMap extends AbstractMap<String, Date> implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private static final int EMPTY = 0; // Symbols.NONE, never a key
+	private static final int DELETED = -1;
+	private static final long NO_DATE = Long.MIN_VALUE;
+	private static final int MIN_CAPACITY = 4;
+
+	private transient int[] keys;
+	private transient long[] dates;
+	private transient int size;
+	private transient int used; // live + deleted slots
+	private transient int modCount;
+
+	AuiDateMap() {
+	}
+
+	AuiDateMap(Map<String, Date> m) {
+		if (m != null)
+			putAll(m);
+	}
+
+	@Override
+	public int size() {
+		return size;
+	}
+
+	@Override
+	public boolean containsKey(Object key) {
+		return indexOf(key) >= 0;
+	}
+
+	@Override
+	public Date get(Object key) {
+		int i = indexOf(key);
+		return i < 0 ? null : toDate(dates[i]);
+	}
+
+	@Override
+	public Date put(String aui, Date date) {
+		Objects.requireNonNull(aui, "aui");
+		int id = Symbols.id(aui);
+		int i = slotOf(id);
+		if (i >= 0) {
+			Date prior = toDate(dates[i]);
+			dates[i] = toMillis(date);
+			return prior;
+		}
+
+		if (keys == null) {
+			keys = new int[MIN_CAPACITY];
+			dates = new long[MIN_CAPACITY];
+		} else if ((used + 1) * 4 > keys.length * 3) {
+			rehash(size * 2 >= keys.length ? keys.length * 2 : keys.length);
+		}
+		int mask = keys.length - 1;
+		i = slot(id, mask);
+		while (keys[i] > 0)
+			i = (i + 1) & mask;
+		if (keys[i] == EMPTY)
+			used++;
+		keys[i] = id;
+		dates[i] = toMillis(date);
+		size++;
+		modCount++;
+		return null;
+	}
+
+	@Override
+	public Date remove(Object key) {
+		int i = indexOf(key);
+		if (i < 0)
+			return null;
+		Date prior = toDate(dates[i]);
+		keys[i] = DELETED;
+		size--;
+		modCount++;
+		return prior;
+	}
+
+	@Override
+	public void clear() {
+		keys = null;
+		dates = null;
+		size = used = 0;
+		modCount++;
+	}
+
+	@Override
+	public Set<Map.Entry<String, Date>> entrySet() {
+		return new AbstractSet<>() {
+			@Override
+			public int size() {
+				return size;
+			}
+
+			@Override
+			public Iterator<Map.Entry<String, Date>> iterator() {
+				return new EntryIterator();
+			}
+		};
+	}
+
+	private final class EntryIterator implements Iterator<Map.Entry<String, Date>> {
+		private int next = advance(0);
+		private int last = -1;
+		private int expected = modCount;
+
+		private int advance(int from) {
+			int[] k = keys;
+			if (k == null)
+				return -1;
+			for (int i = from; i < k.length; i++)
+				if (k[i] > 0)
+					return i;
+			return -1;
+		}
+
+		@Override
+		public boolean hasNext() {
+			return next >= 0;
+		}
+
+		@Override
+		public Map.Entry<String, Date> next() {
+			if (modCount != expected)
+				throw new ConcurrentModificationException();
+			if (next < 0)
+				throw new NoSuchElementException();
+			last = next;
+			int i = next;
+			next = advance(next + 1);
+			return new AbstractMap.SimpleEntry<>(Symbols.name(keys[i]), toDate(dates[i])) {
+				private static final long serialVersionUID = 1L;
+
+				@Override
+				public Date setValue(Date value) {
+					put(getKey(), value); // replaces in place: no rehash
+					return super.setValue(value);
+				}
+			};
+		}
+
+		@Override
+		public void remove() {
+			if (last < 0)
+				throw new IllegalStateException();
+			if (modCount != expected)
+				throw new ConcurrentModificationException();
+			keys[last] = DELETED;
+			size--;
+			expected = ++modCount;
+			last = -1;
+		}
+	}
+
+	private int indexOf(Object key) {
+		return key instanceof String s ? slotOf(Symbols.find(s)) : -1;
+	}
+
+	private int slotOf(int id) {
+		if (id <= 0 || size == 0)
+			return -1;
+		int mask = keys.length - 1;
+		for (int i = slot(id, mask);; i = (i + 1) & mask) {
+			int k = keys[i];
+			if (k == id)
+				return i;
+			if (k == EMPTY)
+				return -1;
+		}
+	}
+
+	private static int slot(int id, int mask) {
+		int h = id * 0x9E3779B9;
+		return (h ^ (h >>> 16)) & mask;
+	}
+
+	private void rehash(int capacity) {
+		int[] oldKeys = keys;
+		long[] oldDates = dates;
+		keys = new int[capacity];
+		dates = new long[capacity];
+		size = used = 0;
+		int mask = capacity - 1;
+		for (int j = 0; j < oldKeys.length; j++) {
+			int id = oldKeys[j];
+			if (id <= 0)
+				continue;
+			int i = slot(id, mask);
+			while (keys[i] != EMPTY)
+				i = (i + 1) & mask;
+			keys[i] = id;
+			dates[i] = oldDates[j];
+			size++;
+			used++;
+		}
+	}
+
+	private static long toMillis(Date d) {
+		return d == null ? NO_DATE : d.getTime();
+	}
+
+	private static Date toDate(long millis) {
+		return millis == NO_DATE ? null : new Date(millis);
+	}
+
+	private void writeObject(ObjectOutputStream out) throws IOException {
+		out.defaultWriteObject();
+		out.writeInt(size);
+		if (keys == null)
+			return;
+		for (int i = 0; i < keys.length; i++) {
+			if (keys[i] > 0) {
+				out.writeUTF(Symbols.name(keys[i]));
+				out.writeLong(dates[i]);
+			}
+		}
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		int n = in.readInt();
+		for (int i = 0; i < n; i++) {
+			String aui = in.readUTF();
+			put(aui, toDate(in.readLong()));
+		}
+	}
+}
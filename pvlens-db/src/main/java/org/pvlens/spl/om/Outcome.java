@@ -20,28 +20,40 @@ package org.pvlens.spl.om;
  */
 
 
+import java.io.Serializable;
 import java.util.*;
 
 import org.pvlens.spl.umls.Atom;
 
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
 
 @Data
-public class Outcome {
+public class Outcome implements Serializable {
 
-    // An outcome contains the MedDRA codes associated
-    private Set<Atom> codes;
+    private static final long serialVersionUID = 3L;
 
-    // Date the event was first added to the label
-    private HashMap<String, Date> firstAdded;
+    // An outcome contains the MedDRA codes associated (compact set of shared atoms)
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private AtomSet codes;
+
+    // Date the event was first added to the label, by AUI (symbol id -> epoch ms)
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private AuiDateMap firstAdded;
 
     // Boolean flags for outcome classification
     private boolean blackbox;
     private boolean warning;
     private boolean indication;
 
-    // Track the outcome source
-    private HashMap<String, List<String>> outcomeSource;
+    // Track the outcome source: source <-> AUI index (set semantics both ways)
+    @Getter(AccessLevel.NONE)
+    @Setter(AccessLevel.NONE)
+    private SourceIndex outcomeSource;
 
     private boolean exactMatch;
     
@@ -50,8 +62,8 @@ public class Outcome {
      */
     public Outcome() {
 
-        this.codes = new HashSet<>();
-        this.firstAdded = new HashMap<>();
+        this.codes = new AtomSet();
+        this.firstAdded = new AuiDateMap();
 
         this.blackbox = false;
         this.warning = false;
@@ -61,7 +73,60 @@ public class Outcome {
         this.exactMatch = false;
         
         // Track where outcomes originate from
-        this.outcomeSource = new HashMap<>();
+        this.outcomeSource = new SourceIndex();
+    }
+
+    /**
+     * Source → AUIs found in it. Live view: its lists add and remove through
+     * the index and ignore duplicates.
+     */
+    public Map<String, List<String>> getOutcomeSource() {
+        return outcomeSource;
+    }
+
+    /** Replace the sources with a copy of {@code outcomeSource}. */
+    public void setOutcomeSource(Map<String, List<String>> outcomeSource) {
+        this.outcomeSource = new SourceIndex(outcomeSource);
+    }
+
+    /** Sources the AUI was found in (read-only, insertion order). */
+    public Set<String> sourcesOf(String aui) {
+        return outcomeSource.sourcesOf(aui);
+    }
+
+    /** AUIs found in the source (read-only, insertion order). */
+    public Set<String> auisOf(String src) {
+        return outcomeSource.auisOf(src);
+    }
+
+    /** The MedDRA codes of this outcome (live view; mutations apply). */
+    public Set<Atom> getCodes() {
+        return codes;
+    }
+
+    /** Replace the codes with a copy of {@code codes}. */
+    public void setCodes(Set<Atom> codes) {
+        this.codes = new AtomSet(codes);
+    }
+
+    /** AUI → date first added to the label (live view; mutations apply). */
+    public Map<String, Date> getFirstAdded() {
+        return firstAdded;
+    }
+
+    /** Replace the first-added dates with a copy of {@code firstAdded}. */
+    public void setFirstAdded(Map<String, Date> firstAdded) {
+        this.firstAdded = new AuiDateMap(firstAdded);
+    }
+
+    /** Drop first-added dates of AUIs that are no longer among the codes. */
+    public void retainFirstAddedOfCodes() {
+        if (firstAdded.isEmpty())
+            return;
+        Set<String> auis = new HashSet<>(codes.size() * 2);
+        for (Atom a : codes)
+            auis.add(a.getAui());
+        firstAdded.keySet().retainAll(auis);
     }
 
     /**
@@ -85,11 +150,7 @@ public class Outcome {
         }
 
         // Always track the source even if the date is unknown yet
-        this.outcomeSource.computeIfAbsent(src, k -> new ArrayList<>());
-        List<String> list = this.outcomeSource.get(src);
-        if (!list.contains(aui)) {
-            list.add(aui);
-        }
+        this.outcomeSource.link(src, aui);
     }
     
     
@@ -113,13 +174,7 @@ public class Outcome {
      * @return List of sources where the outcome was found
      */
     public List<String> getSources(String aui) {
-        List<String> sources = new ArrayList<>();
-        for (Map.Entry<String, List<String>> entry : this.outcomeSource.entrySet()) {
-            if (entry.getValue().contains(aui)) {
-                sources.add(entry.getKey());
-            }
-        }
-        return sources;
+        return new ArrayList<>(this.outcomeSource.sourcesOf(aui));
     }
 
     /**
@@ -135,6 +190,25 @@ public class Outcome {
         }
     }
 
+    /**
+     * Merge {@code other}'s codes into this outcome with their sources and first
+     * added dates (the earliest date wins). Same result as
+     * {@code addCode(other.getSources(aui), atom, date)} per code, without
+     * copying source lists: a code without sources is not taken over.
+     */
+    public void mergeFrom(Outcome other) {
+        for (Atom atom : other.codes) {
+            String aui = atom.getAui();
+            Set<String> sources = other.outcomeSource.sourcesOf(aui);
+            if (sources.isEmpty())
+                continue;
+            codes.add(atom);
+            Date date = other.firstAdded.get(aui);
+            for (String src : sources)
+                updateDateAdded(src, aui, date);
+        }
+    }
+
     // Overriding equals() to compare two Outcome objects
     @Override
     public boolean equals(Object o) {
@@ -0,0 +1,319 @@
+package org.pvlens.spl.om;
+
+/*
+ * This file is part of PVLens.
+ *
+ * Copyright (C) 2025 GlaxoSmithKline
+ *
+ * PVLens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PVLens is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PVLens.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
+import java.util.AbstractList;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+import org.pvlens.spl.umls.Symbols;
+
+/**
+ * Source ↔ AUI index behind {@link Outcome#getOutcomeSource()}.
+ *
+ * <p>Keeps both directions with set semantics: the AUIs found in each source
+ * (insertion order) and the sources of each AUI, so {@link #sourcesOf} is a
+ * lookup instead of a scan over every source list. The class is also the
+ * {@code source → AUI list} map that callers always saw; its lists are live
+ * views, and adding to or removing from them updates both directions.</p>
+ */
+final class SourceIndex extends AbstractMap<String, List<String>> implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	private final LinkedHashMap<String, LinkedHashSet<String>> auisBySource = new LinkedHashMap<>();
+
+	// Rebuilt from auisBySource on read
+	private transient HashMap<String, LinkedHashSet<String>> sourcesByAui = new HashMap<>();
+
+	SourceIndex() {
+	}
+
+	SourceIndex(Map<String, ? extends Collection<String>> m) {
+		if (m != null)
+			m.forEach(this::addAll);
+	}
+
+	/** Record that {@code aui} was found in {@code src}; false if already known. */
+	boolean link(String src, String aui) {
+		src = Symbols.intern(src);
+		aui = Symbols.intern(aui);
+		LinkedHashSet<String> auis = auisBySource.computeIfAbsent(src, k -> new LinkedHashSet<>());
+		if (!auis.add(aui))
+			return false;
+		sourcesByAui.computeIfAbsent(aui, k -> new LinkedHashSet<>(4)).add(src);
+		return true;
+	}
+
+	/** Sources of {@code aui} (read-only, insertion order; empty if none). */
+	Set<String> sourcesOf(String aui) {
+		LinkedHashSet<String> s = sourcesByAui.get(aui);
+		return s == null ? Collections.emptySet() : Collections.unmodifiableSet(s);
+	}
+
+	/** AUIs found in {@code src} (read-only, insertion order; empty if none). */
+	Set<String> auisOf(String src) {
+		LinkedHashSet<String> s = auisBySource.get(src);
+		return s == null ? Collections.emptySet() : Collections.unmodifiableSet(s);
+	}
+
+	private boolean unlink(String src, String aui) {
+		LinkedHashSet<String> auis = auisBySource.get(src);
+		if (auis == null || !auis.remove(aui))
+			return false;
+		LinkedHashSet<String> sources = sourcesByAui.get(aui);
+		if (sources != null && sources.remove(src) && sources.isEmpty())
+			sourcesByAui.remove(aui);
+		return true;
+	}
+
+	private List<String> unlinkSource(String src) {
+		LinkedHashSet<String> auis = auisBySource.remove(src);
+		if (auis == null)
+			return null;
+		for (String aui : auis) {
+			LinkedHashSet<String> sources = sourcesByAui.get(aui);
+			if (sources != null && sources.remove(src) && sources.isEmpty())
+				sourcesByAui.remove(aui);
+		}
+		return new ArrayList<>(auis);
+	}
+
+	private void addAll(String src, Collection<String> auis) {
+		auisBySource.computeIfAbsent(Symbols.intern(src), k -> new LinkedHashSet<>());
+		if (auis != null)
+			for (String aui : auis)
+				link(src, aui);
+	}
+
+	// -------------------------------------------------------------------------
+	// Map<String, List<String>> view
+	// -------------------------------------------------------------------------
+
+	@Override
+	public int size() {
+		return auisBySource.size();
+	}
+
+	@Override
+	public boolean containsKey(Object src) {
+		return auisBySource.containsKey(src);
+	}
+
+	@Override
+	public List<String> get(Object src) {
+		return auisBySource.containsKey(src) ? new AuiList((String) src) : null;
+	}
+
+	/** Replace the AUIs of {@code src}; returns a copy of the previous ones. */
+	@Override
+	public List<String> put(String src, List<String> auis) {
+		List<String> prior = unlinkSource(src);
+		addAll(src, auis);
+		return prior;
+	}
+
+	@Override
+	public List<String> remove(Object src) {
+		return (src instanceof String s) ? unlinkSource(s) : null;
+	}
+
+	@Override
+	public void clear() {
+		auisBySource.clear();
+		sourcesByAui.clear();
+	}
+
+	/** Returns the live list, not the function's value, so adds to it are indexed. */
+	@Override
+	public List<String> computeIfAbsent(String src, Function<? super String, ? extends List<String>> f) {
+		if (!auisBySource.containsKey(src)) {
+			List<String> v = f.apply(src);
+			if (v == null)
+				return null;
+			addAll(src, v);
+		}
+		return new AuiList(src);
+	}
+
+	@Override
+	public Set<Map.Entry<String, List<String>>> entrySet() {
+		return new AbstractSet<>() {
+			@Override
+			public int size() {
+				return auisBySource.size();
+			}
+
+			@Override
+			public Iterator<Map.Entry<String, List<String>>> iterator() {
+				Iterator<String> keys = new ArrayList<>(auisBySource.keySet()).iterator();
+				return new Iterator<>() {
+					private String last;
+
+					@Override
+					public boolean hasNext() {
+						return keys.hasNext();
+					}
+
+					@Override
+					public Map.Entry<String, List<String>> next() {
+						last = keys.next();
+						return new AbstractMap.SimpleImmutableEntry<>(last, new AuiList(last));
+					}
+
+					@Override
+					public void remove() {
+						if (last == null)
+							throw new IllegalStateException();
+						unlinkSource(last);
+						last = null;
+					}
+				};
+			}
+		};
+	}
+
+	/** Live, duplicate-free list of the AUIs of one source. */
+	private final class AuiList extends AbstractList<String> {
+		private final String src;
+
+		AuiList(String src) {
+			this.src = src;
+		}
+
+		private Set<String> auis() {
+			LinkedHashSet<String> s = auisBySource.get(src);
+			return s == null ? Collections.emptySet() : s;
+		}
+
+		@Override
+		public int size() {
+			return auis().size();
+		}
+
+		@Override
+		public boolean contains(Object aui) {
+			return auis().contains(aui);
+		}
+
+		@Override
+		public String get(int index) {
+			if (index < 0 || index >= size())
+				throw new IndexOutOfBoundsException(index);
+			Iterator<String> it = auis().iterator();
+			for (int i = 0; i < index; i++)
+				it.next();
+			return it.next();
+		}
+
+		/** Adds {@code aui} unless the source already has it (set semantics). */
+		@Override
+		public boolean add(String aui) {
+			return link(src, aui);
+		}
+
+		/** Position is ignored: AUIs keep insertion order. */
+		@Override
+		public void add(int index, String aui) {
+			link(src, aui);
+		}
+
+		@Override
+		public boolean remove(Object aui) {
+			return (aui instanceof String s) && unlink(src, s);
+		}
+
+		@Override
+		public String remove(int index) {
+			String aui = get(index);
+			unlink(src, aui);
+			return aui;
+		}
+
+		@Override
+		public Iterator<String> iterator() {
+			Iterator<String> it = new ArrayList<>(auis()).iterator();
+			return new Iterator<>() {
+				private String last;
+
+				@Override
+				public boolean hasNext() {
+					return it.hasNext();
+				}
+
+				@Override
+				public String next() {
+					return last = it.next();
+				}
+
+				@Override
+				public void remove() {
+					if (last == null)
+						throw new IllegalStateException();
+					unlink(src, last);
+					last = null;
+				}
+			};
+		}
+
+		@Override
+		public boolean equals(Object o) {
+			if (o == this)
+				return true;
+			if (!(o instanceof List<?> other) || other.size() != size())
+				return false;
+			Iterator<?> b = other.iterator();
+			for (String a : auis())
+				if (!a.equals(b.next()))
+					return false;
+			return true;
+		}
+
+		@Override
+		public int hashCode() {
+			int h = 1;
+			for (String a : auis())
+				h = 31 * h + a.hashCode();
+			return h;
+		}
+	}
+
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		sourcesByAui = new HashMap<>();
+		Map<String, LinkedHashSet<String>> read = new LinkedHashMap<>(auisBySource);
+		auisBySource.clear();
+		read.forEach(this::addAll); // re-interns and rebuilds the AUI -> sources side
+	}
+}
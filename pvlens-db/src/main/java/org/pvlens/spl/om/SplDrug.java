@@ -19,6 +19,9 @@ package org.pvlens.spl.om;
  * along with PVLens.  If not, see <https://www.gnu.org/licenses/>.
  */
 
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
@@ -30,12 +33,15 @@ import java.util.Set;
 
 import org.apache.commons.lang3.StringUtils;
 import org.pvlens.spl.umls.Atom;
+import org.pvlens.spl.umls.Symbols;
 import org.pvlens.spl.umls.UmlsLoader;
 
 import lombok.Data;
 
 @Data
-public class SplDrug {
+public class SplDrug implements Serializable {
+
+	private static final long serialVersionUID = 1L;
 
 	private int id;
 
@@ -126,6 +132,17 @@ public class SplDrug {
 		this.save = true;
 	}
 
+	/** GUIDs are interned: products, outcomes and sources share one instance. */
+	public void setGuid(String guid) {
+		this.guid = Symbols.intern(guid);
+	}
+
+	// Checkpoints and run state bypass setGuid
+	private void readObject(ObjectInputStream in) throws IOException, ClassNotFoundException {
+		in.defaultReadObject();
+		guid = Symbols.intern(guid);
+	}
+
 	/**
 	 * Get multi-cui keyset
 	 * 
@@ -229,19 +246,18 @@ public class SplDrug {
 
 		if (srlcUpdate == false) {
 			// Use SPL GUID to update sources
-			for (Atom atom : newOutcome.getCodes()) {
-				List<String> sources = newOutcome.getSources(atom.getAui());
-				currentOutcome.addCode(sources, atom, newOutcome.getFirstAdded().get(atom.getAui()));
-			}
+			currentOutcome.mergeFrom(newOutcome);
 		} else {
 			// Preserve the SPL GUID as the source if possible, and simply update the date
 			// added
+			Set<String> newAuis = new HashSet<>();
+			for (Atom atom2 : newOutcome.getCodes())
+				newAuis.add(atom2.getAui());
 			for (Atom atom1 : currentOutcome.getCodes()) {
-				for (Atom atom2 : newOutcome.getCodes()) {
-					if (atom1.getAui().contentEquals(atom2.getAui())) {
-						List<String> currentSource = currentOutcome.getSources(atom1.getAui());
-						currentOutcome.addCode(currentSource, atom1, newOutcome.getFirstAdded().get(atom1.getAui()));
-					}
+				if (newAuis.contains(atom1.getAui())) {
+					Date newDate = newOutcome.getFirstAdded().get(atom1.getAui());
+					for (String src : currentOutcome.sourcesOf(atom1.getAui()))
+						currentOutcome.updateDateAdded(src, atom1.getAui(), newDate);
 				}
 			}
 
@@ -363,19 +379,7 @@ public class SplDrug {
 				nlpMatchIndications, nlpMatchWarnings, nlpMatchBlackbox };
 
 		for (Outcome outcome : outcomes) {
-
-			HashMap<String, Date> priorFirstAdded = outcome.getFirstAdded();
-			HashMap<String, Date> updatedFirstAdded = new HashMap<>();
-
-			for (String aui : outcome.getFirstAdded().keySet()) {
-				for (Atom code : outcome.getCodes()) {
-					if (aui.contentEquals(code.getAui()))
-						updatedFirstAdded.put(aui, priorFirstAdded.get(aui));
-				}
-			}
-
-			// Update code add date
-			outcome.setFirstAdded(updatedFirstAdded);
+			outcome.retainFirstAddedOfCodes();
 		}
 		return;
 	}
@@ -1212,7 +1216,7 @@ public class SplDrug {
 		for (Outcome outcome : outcomes) {
 			if (outcome != null) {
 				if (outcome.getOutcomeSource().containsKey(guid)) {
-					for (String aui : outcome.getOutcomeSource().get(guid)) {
+					for (String aui : outcome.auisOf(guid)) {
 						// Get the MedDRA term
 						Atom mdr = umls.getMedDRA().get(aui);
 						String cui = mdr.getCui();
@@ -1242,7 +1246,7 @@ public class SplDrug {
 		for (Outcome outcome : outcomes) {
 			if (outcome != null) {
 				if (outcome.getOutcomeSource().containsKey(guid)) {
-					for (String aui : outcome.getOutcomeSource().get(guid)) {
+					for (String aui : outcome.auisOf(guid)) {
 						// Get the MedDRA term
 						Atom mdr = umls.getMedDRA().get(aui);
 						String cui = mdr.getCui();
@@ -19,8 +19,8 @@ package org.pvlens.spl.om;
  * along with PVLens.  If not, see <https://www.gnu.org/licenses/>.
  */
 
+import java.io.Serializable;
 import java.util.Date;
-import java.util.HashMap;
 import java.util.Set;
 
 import org.apache.commons.lang3.StringUtils;
@@ -29,7 +29,9 @@ import org.pvlens.spl.umls.Atom;
 import lombok.Data;
 
 @Data
-public class Srlc {
+public class Srlc implements Serializable {
+
+	private static final long serialVersionUID = 1L;
 
 	private String drugName;
 	private String activeIngredient;
@@ -117,18 +119,7 @@ public class Srlc {
 		Outcome[] outcomes = new Outcome[] { exactAeMatch, exactBlackboxMatch, nlpAeMatch, nlpBlackboxMatch };
 
 		for (Outcome outcome : outcomes) {
-			HashMap<String, Date> priorFirstAdded = outcome.getFirstAdded();
-			HashMap<String, Date> updatedFirstAdded = new HashMap<>();
-
-			for (String aui : priorFirstAdded.keySet()) {
-				for (Atom code : outcome.getCodes()) {
-					if (aui.equals(code.getAui())) {
-						updatedFirstAdded.put(aui, priorFirstAdded.get(aui));
-						break;
-					}
-				}
-			}
-			outcome.setFirstAdded(updatedFirstAdded);
+			outcome.retainFirstAddedOfCodes();
 		}
 	}
 }
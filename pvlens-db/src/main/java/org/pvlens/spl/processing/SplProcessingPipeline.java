@@ -19,26 +19,43 @@ package org.pvlens.spl.processing;
  * along with PVLens.  If not, see <https://www.gnu.org/licenses/>.
  */
 
+import java.io.IOException;
 import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.sql.Connection;
+import java.time.Duration;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
+import java.util.TreeMap;
 import java.util.concurrent.ConcurrentLinkedQueue;
 
+import org.pvlens.spl.conf.ConfigLoader;
 import org.pvlens.spl.om.SplDrug;
 import org.pvlens.spl.om.Srlc;
+import org.pvlens.spl.processing.extract.SectionMatchCache;
 import org.pvlens.spl.processing.extract.SplXmlLabelExtractor;
+import org.pvlens.spl.processing.extract.StagedLabelExtraction;
+import org.pvlens.spl.processing.incremental.IncrementalRun;
 import org.pvlens.spl.processing.merge.ProductMerger;
 import org.pvlens.spl.processing.merge.SrlcMerge;
+import org.pvlens.spl.processing.persist.DashboardStatsScript;
 import org.pvlens.spl.processing.persist.IdAllocators;
+import org.pvlens.spl.processing.persist.JdbcSqlSink;
+import org.pvlens.spl.processing.persist.ProductDelta;
 import org.pvlens.spl.processing.persist.ProductPersister;
+import org.pvlens.spl.processing.persist.SqlSink;
 import org.pvlens.spl.processing.persist.SqlWriters;
+import org.pvlens.spl.processing.persist.TsvSqlSink;
 import org.pvlens.spl.processing.support.GlobalTrackers;
 import org.pvlens.spl.umls.UmlsLoader;
+import org.pvlens.spl.util.Db;
 import org.pvlens.spl.util.Logger;
 import org.pvlens.spl.util.UmlsTerms;
 
@@ -48,7 +65,6 @@ public class SplProcessingPipeline {
 
 	// Output writers
 	HashMap<String, PrintWriter> OUTPUT_WRITERS = new HashMap<>();
-	private int START_SUBSTANCE_ID = 100;
 
 	// Data paths
 	private static String OUTPUT_DIR;
@@ -60,6 +76,8 @@ public class SplProcessingPipeline {
 	private static String OUTPUT_SNOMED_FILE;
 	private static String OUTPUT_ATC_FILE;
 	private static String OUTPUT_PRD_RELATED_FILE;
+	private static String OUTPUT_USAGE_FILE;
+	private static String OUTPUT_NAME_FILE;
 
 	private static String OUTPUT_AE_TEXT_FILE;
 	private static String OUTPUT_IND_TEXT_FILE;
@@ -72,6 +90,10 @@ public class SplProcessingPipeline {
 	UmlsTerms umlsTerms = new UmlsTerms();
 	ProductMerger merger;
 
+	// Incremental runs (null when RUN_STATE_DIR is unset)
+	private final IncrementalRun incremental;
+	private ProductDelta delta;
+
 	/**
 	 * Create SplProcessing Pipeline
 	 * 
@@ -81,7 +103,27 @@ public class SplProcessingPipeline {
 	 * @param sqlOutputPath
 	 */
 	public SplProcessingPipeline(UmlsLoader umls, Map<String, Integer> priorGuidMap, String sqlOutputPath) {
+		this(umls, priorGuidMap, sqlOutputPath, null);
+	}
+
+	/**
+	 * Create SplProcessing Pipeline that records (and, on an incremental run,
+	 * continues from) the run state of {@code incremental}.
+	 */
+	public SplProcessingPipeline(UmlsLoader umls, Map<String, Integer> priorGuidMap, String sqlOutputPath,
+			IncrementalRun incremental) {
+		this(umls, priorGuidMap, sqlOutputPath, incremental, false);
+	}
+
+	/**
+	 * Create SplProcessing Pipeline; with {@code resumed} the run continues from
+	 * a checkpoint taken after extraction, so the label text written by the
+	 * earlier run (product_*_text.sql) is left in place rather than truncated.
+	 */
+	public SplProcessingPipeline(UmlsLoader umls, Map<String, Integer> priorGuidMap, String sqlOutputPath,
+			IncrementalRun incremental, boolean resumed) {
 		this.umls = umls;
+		this.incremental = incremental;
 
 		OUTPUT_DIR = requireDirPath("OUTPUT_DIR", sqlOutputPath);
 		// XML_ROOT = requireDirPath("SPL_XML_ROOT", xmlPath);
@@ -94,6 +136,8 @@ public class SplProcessingPipeline {
 		OUTPUT_AE_FILE = OUTPUT_DIR + "listed_aes.sql";
 		OUTPUT_IND_FILE = OUTPUT_DIR + "listed_indications.sql";
 		OUTPUT_PRD_RELATED_FILE = OUTPUT_DIR + "product_related.sql";
+		OUTPUT_USAGE_FILE = OUTPUT_DIR + "meddra_usage.sql";
+		OUTPUT_NAME_FILE = OUTPUT_DIR + "substance_name.sql";
 
 		// Raw text
 		OUTPUT_AE_TEXT_FILE = OUTPUT_DIR + "product_ae_text.sql";
@@ -101,25 +145,28 @@ public class SplProcessingPipeline {
 		OUTPUT_BOX_TEXT_FILE = OUTPUT_DIR + "product_box_text.sql";
 
 		// Setup the output writers
-		this.setupOutputWriters();
-
-		// This code is not yet working
-		// Determine the starting substance ID to use
-//		if (priorGuidMap != null) {
-//			if (priorGuidMap.size() > 0) {
-//				for (int pid : priorGuidMap.values()) {
-//					if (pid > START_SUBSTANCE_ID)
-//						START_SUBSTANCE_ID = pid + 1;
-//				}
-//			}
-//		}
-
-		// debug
-		// Logger.log("Starting Substance ID: " + START_SUBSTANCE_ID);
-
-		sqlWriters = new SqlWriters(OUTPUT_WRITERS);
+		this.setupOutputWriters(resumed);
+
+		sqlWriters = createSqlWriters();
+		// MEDDRA_USAGE is rewritten in full every run, incremental ones included
+		sqlWriters.get("USAGE").execute("DELETE FROM MEDDRA_USAGE");
 		ids = IdAllocators.getInstance();
 
+		// New SUBSTANCE IDs start above any prior assignment
+		if (priorGuidMap != null && !priorGuidMap.isEmpty()) {
+			IdAllocators.bumpToAtLeast(Collections.max(priorGuidMap.values()) + 1, null, null, null, null);
+		}
+
+		// Continue the prior run's IDs, and start the delete script, before anything is written
+		if (incremental != null) {
+			incremental.prepare(ids, umlsTerms);
+			try {
+				delta = incremental.openDelta(Paths.get(OUTPUT_DIR, "delta_delete.sql"));
+			} catch (IOException e) {
+				throw new IllegalStateException("Could not open delta_delete.sql: " + e, e);
+			}
+		}
+
 		// Create the MedDRA table once at startup
 		umlsTerms.createMeddraTable();
 
@@ -133,7 +180,7 @@ public class SplProcessingPipeline {
 	 * 
 	 * @return
 	 */
-	private void setupOutputWriters() {
+	private void setupOutputWriters(boolean resumed) {
 
 		if (OUTPUT_WRITERS != null && OUTPUT_WRITERS.size() == 0) {
 			try {
@@ -145,9 +192,13 @@ public class SplProcessingPipeline {
 				OUTPUT_WRITERS.put("AE", new PrintWriter(OUTPUT_AE_FILE));
 				OUTPUT_WRITERS.put("IND", new PrintWriter(OUTPUT_IND_FILE));
 				OUTPUT_WRITERS.put("PROD_RELATED", new PrintWriter(OUTPUT_PRD_RELATED_FILE));
-				OUTPUT_WRITERS.put("AE_TEXT", new PrintWriter(OUTPUT_AE_TEXT_FILE));
-				OUTPUT_WRITERS.put("IND_TEXT", new PrintWriter(OUTPUT_IND_TEXT_FILE));
-				OUTPUT_WRITERS.put("BOX_TEXT", new PrintWriter(OUTPUT_BOX_TEXT_FILE));
+				OUTPUT_WRITERS.put("NAME", new PrintWriter(OUTPUT_NAME_FILE));
+				OUTPUT_WRITERS.put("USAGE", new PrintWriter(OUTPUT_USAGE_FILE));
+				if (!resumed) {
+					OUTPUT_WRITERS.put("AE_TEXT", new PrintWriter(OUTPUT_AE_TEXT_FILE));
+					OUTPUT_WRITERS.put("IND_TEXT", new PrintWriter(OUTPUT_IND_TEXT_FILE));
+					OUTPUT_WRITERS.put("BOX_TEXT", new PrintWriter(OUTPUT_BOX_TEXT_FILE));
+				}
 
 			} catch (Exception e) {
 				Logger.warn("Error creating output streams: " + e.toString());
@@ -156,6 +207,49 @@ public class SplProcessingPipeline {
 		return;
 	}
 
+	/**
+	 * Wrap the output streams in the sink selected by SQL_SINK: INSERT text
+	 * (default), TSV files loaded by the .sql scripts, or direct JDBC batches.
+	 * With JDBC the MedDRA, RxNorm, SNOMED and ATC tables are loaded over JDBC
+	 * too, so the product rows find the rows they reference.
+	 */
+	private SqlWriters createSqlWriters() {
+		ConfigLoader cfg = new ConfigLoader();
+		String mode = cfg.getSqlSink();
+		int rows = cfg.getSqlRowsPerInsert();
+		int queue = cfg.getSqlWriterQueue();
+		if ("SQL".equals(mode))
+			return new SqlWriters(OUTPUT_WRITERS, rows, queue);
+
+		Logger.log("SQL sink: " + mode);
+		if ("JDBC".equals(mode))
+			umlsTerms.setDirectSink(() -> openJdbcSink(cfg, rows));
+		Map<String, SqlSink> sinks = new TreeMap<>();
+		try {
+			for (Map.Entry<String, PrintWriter> e : OUTPUT_WRITERS.entrySet()) {
+				String key = e.getKey();
+				if ("TSV".equals(mode)) {
+					sinks.put(key, new TsvSqlSink(Paths.get(OUTPUT_DIR, "tsv"), key.toLowerCase(Locale.ROOT), e.getValue()));
+				} else {
+					e.getValue().println("-- rows loaded directly over JDBC (SQL_SINK=JDBC)");
+					e.getValue().close();
+					sinks.put(key, openJdbcSink(cfg, rows));
+				}
+			}
+		} catch (Exception ex) {
+			throw new IllegalStateException("Could not open " + mode + " output sinks: " + ex, ex);
+		}
+		return SqlWriters.forSinks(sinks, rows, queue);
+	}
+
+	/** A JDBC sink on its own connection to the DB_* database. */
+	private static JdbcSqlSink openJdbcSink(ConfigLoader cfg, int batchSize) throws Exception {
+		String url = "jdbc:mysql://" + cfg.getDbHost() + ":" + cfg.getDbPort() + "/" + cfg.getDbName();
+		Connection conn = Db.getConnection(url, cfg.getDbUser(), cfg.getDbPass(), cfg.getDbDriver(), 3,
+				Duration.ofMillis(250));
+		return new JdbcSqlSink(conn, batchSize);
+	}
+
 	public void run(ConcurrentLinkedQueue<SplDrug> all, List<Srlc> srlcs) {
 
 		// If running in multi-year mode, we need to know what prior GUIDs have been
@@ -165,16 +259,43 @@ public class SplProcessingPipeline {
 			priorGuids.put(spl.getGuid(), true);
 		}
 
-		var extractor = new SplXmlLabelExtractor();
-		Logger.log("Passing to the extractor: " + all.size());
+		releasingLabelScans(umls, () -> {
+			ConfigLoader cfg = new ConfigLoader();
+			SectionMatchCache nlpCache = SectionMatchCache.fromConfig(cfg, SplXmlLabelExtractor.matchingVersion());
+			var extractor = new SplXmlLabelExtractor(umls, cfg, nlpCache);
+			Logger.log("Passing to the extractor: " + all.size());
 
-		// Process
-		all.parallelStream().forEach(spl -> extractor.processGuid(spl, trackers.xmlIndPass, trackers.xmlAePass,
-				trackers.xmlBoxPass, false, sqlWriters));
+			// Process: parse, NLP, merge and write stages with their own pools (PARALLEL_PRODUCT_LIMIT, STAGE_*)
+			new StagedLabelExtraction(extractor, cfg).run(all, trackers, sqlWriters);
+
+			Logger.log(nlpCache.summary());
+			nlpCache.save();
+		});
 
 		return;
 	}
 
+	/**
+	 * Run {@code extraction}, then delete the label scan spool of the NDC step
+	 * (segment files and, by default, a temporary directory), also when
+	 * extraction fails.
+	 */
+	static void releasingLabelScans(UmlsLoader umls, Runnable extraction) {
+		try {
+			extraction.run();
+		} finally {
+			umls.closeLabelScans();
+		}
+	}
+
+	/**
+	 * Drain the queued rows to the output files, so everything extraction wrote
+	 * is on disk before its products are checkpointed.
+	 */
+	public void flushOutput() {
+		sqlWriters.flushAll();
+	}
+
 	public ConcurrentLinkedQueue<SplDrug> runMerge(ConcurrentLinkedQueue<SplDrug> all, Map<Integer, Date> approvalDates, Map<Integer, String> approvalSponsors,
 			Map<String, Integer> priorGuidMap) {
 		all = merger.mergeAll(all, approvalDates, approvalSponsors, umlsTerms, priorGuidMap);
@@ -192,10 +313,44 @@ public class SplProcessingPipeline {
 		merger.saveSupportTables(all, umlsTerms);
 
 		ProductPersister persist = new ProductPersister(umls);
-		persist.saveAll(all, sqlWriters, ids, trackers.splSrc, priorGuidMap);
+		persist.saveAll(all, sqlWriters, ids, trackers.splSrc, priorGuidMap, delta);
+		writeDashboardStatsScript();
+
+		if (incremental != null) {
+			delta.close();
+			incremental.save(all, ids, delta, umlsTerms);
+		}
 		return all;
 	}
 
+	/**
+	 * Put dashboard_stats.sql, with a new build stamp, next to the data files.
+	 * build.sh runs it last, so DATA_BUILD and DASHBOARD_STATS describe the data
+	 * just loaded (full or incremental). With SQL_SINK=JDBC the rows are already
+	 * committed, so it is run here.
+	 */
+	private static void writeDashboardStatsScript() {
+		String buildId = DashboardStatsScript.newBuildId();
+		String script;
+		try {
+			script = DashboardStatsScript.render(buildId);
+			Files.writeString(Paths.get(OUTPUT_DIR, "dashboard_stats.sql"), script, StandardCharsets.UTF_8);
+		} catch (IOException e) {
+			Logger.warn("Could not write dashboard_stats.sql: " + e);
+			return;
+		}
+		Logger.log("Build stamp: " + buildId);
+
+		ConfigLoader cfg = new ConfigLoader();
+		if (!"JDBC".equals(cfg.getSqlSink()))
+			return;
+		try {
+			DashboardStatsScript.load(script, openJdbcSink(cfg, cfg.getSqlRowsPerInsert()));
+		} catch (Exception e) {
+			Logger.warn("Could not load dashboard_stats.sql over JDBC: " + e);
+		}
+	}
+
 	// In SplXmlLabelExtractor.java (top-level helpers)
 	private static Path requirePath(String name, String val) {
 		if (val == null || val.isBlank()) {
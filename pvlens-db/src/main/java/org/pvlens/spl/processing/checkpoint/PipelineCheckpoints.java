@@ -0,0 +1,350 @@
+package org.pvlens.spl.processing.checkpoint;
+
+/*
+ * This file is part of PVLens.
+ *
+ * Copyright (C) 2025 GlaxoSmithKline
+ *
+ * PVLens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PVLens is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PVLens.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.zip.CRC32;
+import java.util.zip.CheckedInputStream;
+import java.util.zip.CheckedOutputStream;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import org.pvlens.spl.conf.ConfigLoader;
+import org.pvlens.spl.om.SplDrug;
+import org.pvlens.spl.util.Logger;
+
+/**
+ * Checkpoints of the product set between the long pipeline stages, so a run
+ * that dies in merge or persist (OOM, disk full) restarts from the last
+ * finished stage instead of extracting every label again.
+ *
+ * <p>A checkpoint is named after the stage that consumes it and lives in
+ * {@code CHECKPOINT_DIR/<stage>/}: the products are split into contiguous
+ * shards, each serialized and deflated by its own thread into a part file,
+ * and a manifest (format, configuration key, per-part count, size and CRC) is
+ * written last. The directory is built under a temporary name and renamed into
+ * place, so a checkpoint is either complete or absent; a part whose size or CRC
+ * does not match makes the checkpoint invalid and {@link #load} falls back to
+ * the previous stage.</p>
+ */
+public final class PipelineCheckpoints {
+
+	/** Bump when the layout changes; older checkpoints are ignored. */
+	static final int FORMAT = 3;
+
+	private static final int MAGIC = 0x5056434B; // "PVCK"
+	private static final String MANIFEST = "manifest";
+
+	// Only our model classes and JDK types are read back
+	private static final ObjectInputFilter FILTER = ObjectInputFilter.Config
+			.createFilter("java.base/*;org.pvlens.spl.**;!*");
+
+	/** The stage a checkpoint resumes, in pipeline order. */
+	public enum Stage {
+		/** Products as extracted (before merge). */
+		MERGE,
+		/** Merged products (before the SRLC update). */
+		SRLC,
+		/** Products after the SRLC update (before first-added reconciliation and persist). */
+		PERSIST;
+
+		public String id() {
+			return name().toLowerCase(Locale.ROOT);
+		}
+
+		/** Stage for a {@code --resume-from} value; "latest" maps to the last stage. */
+		public static Stage parse(String value) {
+			String v = value == null ? "" : value.trim().toUpperCase(Locale.ROOT);
+			if ("LATEST".equals(v))
+				return PERSIST;
+			try {
+				return valueOf(v);
+			} catch (IllegalArgumentException e) {
+				throw new IllegalArgumentException("Unknown stage '" + value + "' (expected merge, srlc, persist or latest)");
+			}
+		}
+	}
+
+	/** A loaded checkpoint: the stage to continue with and its products. */
+	public record Resumed(Stage stage, ConcurrentLinkedQueue<SplDrug> products) {
+	}
+
+	private final Path dir;
+	private final String configKey;
+	private final int threads;
+
+	PipelineCheckpoints(Path dir, String configKey, int threads) {
+		this.dir = dir;
+		this.configKey = configKey;
+		this.threads = Math.max(1, threads);
+	}
+
+	/** Checkpoints under {@code CHECKPOINT_DIR}, or null when it is unset. */
+	public static PipelineCheckpoints fromConfig(ConfigLoader cfg) {
+		String d = cfg.getCheckpointDir();
+		if (d.isEmpty())
+			return null;
+		String key = "UMLS_VERSION=" + cfg.getUmlsVersion() + ";SPL_PATH=" + cfg.getSplPath() + ";SPL_XML_PARSER="
+				+ (cfg.isStreamingSplParser() ? "STAX" : "DOM") + ";SPL_XML_SOURCE="
+				+ (cfg.isZipXmlSource() ? "ZIP" : "FILES");
+		return new PipelineCheckpoints(Paths.get(d), key, Math.min(8, Runtime.getRuntime().availableProcessors()));
+	}
+
+	/**
+	 * Write the checkpoint {@code stage} resumes from. Failures are logged and
+	 * only cost the ability to resume at that stage.
+	 */
+	public void save(Stage stage, Collection<SplDrug> products) {
+		long started = System.nanoTime();
+		List<SplDrug> all = new ArrayList<>(products);
+		Path target = dir.resolve(stage.id());
+		Path tmp = dir.resolve(stage.id() + ".tmp");
+		try {
+			deleteTree(tmp);
+			Files.createDirectories(tmp);
+
+			int parts = Math.max(1, Math.min(threads, all.size() / 1000));
+			List<Callable<Part>> writes = new ArrayList<>(parts);
+			for (int i = 0; i < parts; i++) {
+				List<SplDrug> shard = all.subList(i * all.size() / parts, (i + 1) * all.size() / parts);
+				Path file = tmp.resolve(partName(i));
+				writes.add(() -> writePart(file, shard));
+			}
+			List<Part> written = runAll(writes);
+
+			try (DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(Files.newOutputStream(tmp.resolve(MANIFEST))))) {
+				out.writeInt(MAGIC);
+				out.writeInt(FORMAT);
+				out.writeUTF(configKey);
+				out.writeUTF(stage.id());
+				out.writeInt(written.size());
+				for (Part p : written) {
+					out.writeInt(p.count);
+					out.writeLong(p.bytes);
+					out.writeLong(p.crc);
+				}
+			}
+
+			deleteTree(target);
+			Files.move(tmp, target, StandardCopyOption.ATOMIC_MOVE);
+			long bytes = written.stream().mapToLong(p -> p.bytes).sum();
+			Logger.log(throughput("Checkpoint [" + stage.id() + "] written", all.size(), bytes, started));
+		} catch (IOException | RuntimeException e) {
+			Logger.warn("Could not write checkpoint [" + stage.id() + "] in " + dir + ": " + e);
+			try {
+				deleteTree(tmp);
+			} catch (IOException ignore) {
+				// best effort
+			}
+		}
+	}
+
+	/**
+	 * The newest valid checkpoint at or before {@code requested}, or null when
+	 * there is none.
+	 */
+	public Resumed load(Stage requested) {
+		for (int i = requested.ordinal(); i >= 0; i--) {
+			Stage stage = Stage.values()[i];
+			ConcurrentLinkedQueue<SplDrug> products = read(stage);
+			if (products != null) {
+				if (stage != requested)
+					Logger.warn("No valid checkpoint for [" + requested.id() + "]; resuming at [" + stage.id() + "]");
+				return new Resumed(stage, products);
+			}
+		}
+		return null;
+	}
+
+	/** Remove all checkpoints (after a successful run). */
+	public void clear() {
+		for (Stage stage : Stage.values()) {
+			try {
+				deleteTree(dir.resolve(stage.id()));
+			} catch (IOException e) {
+				Logger.warn("Could not remove checkpoint [" + stage.id() + "]: " + e.getMessage());
+			}
+		}
+	}
+
+	// -------------------------------------------------------------------------
+	// Parts
+	// -------------------------------------------------------------------------
+
+	private record Part(int count, long bytes, long crc) {
+	}
+
+	private static String partName(int i) {
+		return String.format(Locale.ROOT, "part-%03d.bin", i);
+	}
+
+	// CRC over the serialized (uncompressed) bytes: checked while the part is read back
+	private static Part writePart(Path file, List<SplDrug> shard) throws IOException {
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		CRC32 crc = new CRC32();
+		try (ObjectOutputStream out = new ObjectOutputStream(new CheckedOutputStream(new DeflaterOutputStream(
+				new BufferedOutputStream(Files.newOutputStream(file), 1 << 16), deflater, 1 << 16), crc))) {
+			out.writeInt(shard.size());
+			for (SplDrug drug : shard)
+				out.writeObject(drug);
+		} finally {
+			deflater.end();
+		}
+		return new Part(shard.size(), Files.size(file), crc.getValue());
+	}
+
+	private ConcurrentLinkedQueue<SplDrug> read(Stage stage) {
+		Path stageDir = dir.resolve(stage.id());
+		Path manifest = stageDir.resolve(MANIFEST);
+		if (!Files.isRegularFile(manifest))
+			return null;
+		long started = System.nanoTime();
+		try {
+			List<Part> parts = new ArrayList<>();
+			try (DataInputStream in = new DataInputStream(new BufferedInputStream(Files.newInputStream(manifest)))) {
+				if (in.readInt() != MAGIC || in.readInt() != FORMAT) {
+					Logger.warn("Ignoring checkpoint [" + stage.id() + "]: unknown format");
+					return null;
+				}
+				String key = in.readUTF();
+				if (!configKey.equals(key) || !stage.id().equals(in.readUTF())) {
+					Logger.warn("Ignoring checkpoint [" + stage.id() + "]: written with " + key + ", now " + configKey);
+					return null;
+				}
+				int n = in.readInt();
+				for (int i = 0; i < n; i++)
+					parts.add(new Part(in.readInt(), in.readLong(), in.readLong()));
+			}
+
+			List<Callable<List<SplDrug>>> reads = new ArrayList<>(parts.size());
+			long bytes = 0;
+			for (int i = 0; i < parts.size(); i++) {
+				Part expected = parts.get(i);
+				Path file = stageDir.resolve(partName(i));
+				if (!Files.isRegularFile(file) || Files.size(file) != expected.bytes) {
+					Logger.warn("Ignoring checkpoint [" + stage.id() + "]: " + file.getFileName() + " is missing or truncated");
+					return null;
+				}
+				bytes += expected.bytes;
+				reads.add(() -> readPart(file, expected));
+			}
+
+			ConcurrentLinkedQueue<SplDrug> products = new ConcurrentLinkedQueue<>();
+			for (List<SplDrug> shard : runAll(reads))
+				products.addAll(shard);
+			Logger.log(throughput("Checkpoint [" + stage.id() + "] loaded", products.size(), bytes, started));
+			return products;
+		} catch (IOException | RuntimeException e) {
+			Logger.warn("Ignoring checkpoint [" + stage.id() + "]: " + e);
+			return null;
+		}
+	}
+
+	private static List<SplDrug> readPart(Path file, Part expected) throws IOException, ClassNotFoundException {
+		CRC32 crc = new CRC32();
+		try (CheckedInputStream checked = new CheckedInputStream(
+				new InflaterInputStream(new BufferedInputStream(Files.newInputStream(file), 1 << 16)), crc);
+				ObjectInputStream in = new ObjectInputStream(checked)) {
+			in.setObjectInputFilter(FILTER);
+			int n = in.readInt();
+			if (n != expected.count)
+				throw new IOException(file.getFileName() + ": " + n + " products, manifest says " + expected.count);
+			List<SplDrug> out = new ArrayList<>(n);
+			for (int i = 0; i < n; i++) {
+				if (!(in.readObject() instanceof SplDrug d))
+					throw new IOException(file.getFileName() + ": unexpected object");
+				out.add(d);
+			}
+			checked.transferTo(OutputStream.nullOutputStream()); // CRC covers the whole stream
+			if (crc.getValue() != expected.crc)
+				throw new IOException(file.getFileName() + ": CRC mismatch");
+			return out;
+		}
+	}
+
+	private <T> List<T> runAll(List<Callable<T>> tasks) throws IOException {
+		ExecutorService pool = Executors.newFixedThreadPool(Math.min(threads, Math.max(1, tasks.size())), r -> {
+			Thread t = new Thread(r, "checkpoint-io");
+			t.setDaemon(true);
+			return t;
+		});
+		try {
+			List<Future<T>> futures = new ArrayList<>(tasks.size());
+			for (Callable<T> task : tasks)
+				futures.add(pool.submit(task));
+			List<T> out = new ArrayList<>(tasks.size());
+			for (Future<T> f : futures)
+				out.add(f.get());
+			return out;
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IOException("interrupted", e);
+		} catch (ExecutionException e) {
+			Throwable cause = e.getCause();
+			throw (cause instanceof IOException io) ? io : new IOException(cause);
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	private static String throughput(String what, int products, long bytes, long startedNanos) {
+		double secs = Math.max(1e-3, (System.nanoTime() - startedNanos) / 1e9);
+		double mb = bytes / (1024.0 * 1024.0);
+		return String.format(Locale.ROOT, "%s: %,d products, %.1f MB in %.1f s (%.1f MB/s)", what, products, mb, secs,
+				mb / secs);
+	}
+
+	private static void deleteTree(Path p) throws IOException {
+		if (!Files.exists(p))
+			return;
+		if (Files.isDirectory(p)) {
+			try (DirectoryStream<Path> ds = Files.newDirectoryStream(p)) {
+				for (Path c : ds)
+					deleteTree(c);
+			}
+		}
+		Files.deleteIfExists(p);
+	}
+}
@@ -0,0 +1,291 @@
+package org.pvlens.spl.processing.extract;
+
+/*
+ * This file is part of PVLens.
+ *
+ * Copyright (C) 2025 GlaxoSmithKline
+ *
+ * PVLens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PVLens is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PVLens.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.InflaterInputStream;
+
+import javax.xml.stream.XMLStreamException;
+
+import org.pvlens.spl.conf.ConfigLoader;
+import org.pvlens.spl.processing.support.NdcExtractor;
+import org.pvlens.spl.processing.support.SplXmlRef;
+import org.pvlens.spl.util.Logger;
+
+/**
+ * One read and one parse per SPL XML for the whole run.
+ *
+ * <p>The NDC mapping step calls {@link #scan} for every label: the file is read
+ * once, its NDC codes are taken from the raw-text sweep and the streaming
+ * parse, and the parse result (document LOINC, dates, NDA, section markup) is
+ * spooled to disk. {@link SplXmlLabelExtractor#parse} later {@link #take}s the
+ * spooled scan instead of opening the file again. A label that was never
+ * spooled (malformed, oversized, added later) is simply read from its file.</p>
+ *
+ * <p>Each scanning thread appends deflated records to its own segment file;
+ * an in-memory index maps the XML reference to segment and offset. Call
+ * {@link #seal} once scanning is done and {@link #close} after extraction,
+ * which deletes the spool.</p>
+ */
+public final class LabelScanSpool implements AutoCloseable {
+
+	private static final int OFFSET_BITS = 40; // index entry: segment << 40 | offset
+
+	private final Path dir;
+	private final boolean ownsDir;
+	private final ConcurrentHashMap<String, Long> index = new ConcurrentHashMap<>();
+	private final List<Segment> segments = new ArrayList<>();
+	private final ThreadLocal<Segment> local = ThreadLocal.withInitial(this::newSegment);
+	private volatile boolean sealed;
+
+	private final AtomicLong scanned = new AtomicLong();
+	private final AtomicLong spooled = new AtomicLong();
+	private final AtomicLong taken = new AtomicLong();
+	private final AtomicLong storedBytes = new AtomicLong();
+
+	/**
+	 * @param dir     directory for the segment files
+	 * @param ownsDir delete {@code dir} itself on {@link #close}
+	 */
+	LabelScanSpool(Path dir, boolean ownsDir) throws IOException {
+		this.dir = Files.createDirectories(dir);
+		this.ownsDir = ownsDir;
+	}
+
+	/** Spool under {@code SPL_SCAN_SPOOL_DIR}, or a temporary directory when unset. */
+	public static LabelScanSpool fromConfig(ConfigLoader cfg) throws IOException {
+		String dir = cfg.getSplScanSpoolDir();
+		if (dir.isEmpty())
+			return new LabelScanSpool(Files.createTempDirectory("pvlens-scan"), true);
+		return new LabelScanSpool(Paths.get(dir).resolve("run-" + ProcessHandle.current().pid()), true);
+	}
+
+	/**
+	 * Read and scan one label, spool the result and return its NDC codes
+	 * (de-duplicated, first-seen order; same contract as
+	 * {@link NdcExtractor#getNdcCodes}). Never throws.
+	 */
+	public List<String> scan(String xmlFile) {
+		scanned.incrementAndGet();
+		if (!SplXmlRef.exists(xmlFile)) {
+			Logger.error("XML file not found: " + xmlFile);
+			return List.of();
+		}
+		byte[] bytes;
+		try {
+			bytes = SplXmlRef.readAllBytes(xmlFile);
+		} catch (IOException | RuntimeException e) {
+			Logger.error("Error extracting NDC codes from '" + xmlFile + "': " + e.getMessage());
+			return List.of();
+		}
+
+		// Raw sweep first: kept even when the XML does not parse
+		LinkedHashSet<String> codes = new LinkedHashSet<>(NdcExtractor.regexCodes(bytes));
+		try {
+			StreamingSplLabelSource src = StreamingSplLabelSource.scan(new ByteArrayInputStream(bytes),
+					SplXmlLabelExtractor.SECTION_IDS);
+			codes.addAll(src.ndcCodes());
+			if (bytes.length <= SplXmlLabelExtractor.MAX_XML_BYTES)
+				put(xmlFile, src);
+		} catch (XMLStreamException e) {
+			Logger.warn("Malformed SPL XML (skipping parse): " + xmlFile + " — " + e.getMessage());
+		} catch (IOException | RuntimeException e) {
+			Logger.warn("Could not spool label scan for '" + xmlFile + "': " + e);
+		}
+		return new ArrayList<>(codes);
+	}
+
+	/** Append one scan to the calling thread's segment. */
+	void put(String xmlFile, StreamingSplLabelSource src) throws IOException {
+		if (sealed)
+			throw new IllegalStateException("spool is sealed");
+		ByteArrayOutputStream buf = new ByteArrayOutputStream(8192);
+		Deflater deflater = new Deflater(Deflater.BEST_SPEED);
+		try (DataOutputStream out = new DataOutputStream(new DeflaterOutputStream(buf, deflater))) {
+			src.writeTo(out);
+		} finally {
+			deflater.end();
+		}
+		byte[] record = buf.toByteArray();
+		Segment seg = local.get();
+		long offset = seg.append(record);
+		index.put(xmlFile, ((long) seg.id << OFFSET_BITS) | offset);
+		spooled.incrementAndGet();
+		storedBytes.addAndGet(record.length + 4L);
+	}
+
+	/** Flush every segment; {@link #take} works from here on and {@link #scan} no longer spools. */
+	public synchronized void seal() throws IOException {
+		if (sealed)
+			return;
+		sealed = true;
+		for (Segment s : segments)
+			s.seal();
+	}
+
+	/**
+	 * The spooled scan of {@code xmlFile}, removed from the spool, or null when
+	 * it was not spooled (or cannot be read back; the caller reads the file).
+	 */
+	SplLabelSource take(String xmlFile) {
+		if (!sealed)
+			return null;
+		Long ref = index.remove(xmlFile);
+		if (ref == null)
+			return null;
+		Segment seg;
+		synchronized (this) {
+			seg = segments.get((int) (ref >>> OFFSET_BITS));
+		}
+		try {
+			byte[] record = seg.read(ref & ((1L << OFFSET_BITS) - 1));
+			try (DataInputStream in = new DataInputStream(
+					new BufferedInputStream(new InflaterInputStream(new ByteArrayInputStream(record))))) {
+				StreamingSplLabelSource src = StreamingSplLabelSource.readFrom(in);
+				taken.incrementAndGet();
+				return src;
+			}
+		} catch (IOException | RuntimeException e) {
+			Logger.warn("Could not read spooled scan of '" + xmlFile + "', re-reading the file: " + e);
+			return null;
+		}
+	}
+
+	public long spooled() {
+		return spooled.get();
+	}
+
+	public long taken() {
+		return taken.get();
+	}
+
+	/** One-line report. */
+	public String summary() {
+		return String.format(Locale.ROOT, "Label scan spool: scanned=%d, spooled=%d (%.1f MB), reused=%d", scanned.get(),
+				spooled.get(), storedBytes.get() / (1024.0 * 1024.0), taken.get());
+	}
+
+	/** Delete the spool. */
+	@Override
+	public synchronized void close() {
+		sealed = true;
+		index.clear();
+		for (Segment s : segments)
+			s.delete();
+		segments.clear();
+		if (ownsDir) {
+			try {
+				Files.deleteIfExists(dir);
+			} catch (IOException e) {
+				Logger.warn("Could not remove label scan spool " + dir + ": " + e.getMessage());
+			}
+		}
+	}
+
+	private synchronized Segment newSegment() {
+		Segment s = new Segment(segments.size(), dir.resolve("scan-" + segments.size() + ".seg"));
+		segments.add(s);
+		return s;
+	}
+
+	/** Append-only record file written by one thread; positional reads once sealed. */
+	private static final class Segment {
+		final int id;
+		final Path file;
+		private OutputStream out;
+		private long size;
+		private FileChannel reader;
+
+		Segment(int id, Path file) {
+			this.id = id;
+			this.file = file;
+		}
+
+		synchronized long append(byte[] record) throws IOException {
+			if (out == null)
+				out = new BufferedOutputStream(Files.newOutputStream(file), 1 << 16);
+			long offset = size;
+			DataOutputStream d = new DataOutputStream(out);
+			d.writeInt(record.length);
+			d.write(record);
+			size += 4L + record.length;
+			return offset;
+		}
+
+		synchronized void seal() throws IOException {
+			if (out != null) {
+				out.close();
+				out = null;
+			}
+			if (Files.exists(file))
+				reader = FileChannel.open(file, StandardOpenOption.READ);
+		}
+
+		byte[] read(long offset) throws IOException {
+			ByteBuffer len = ByteBuffer.allocate(4);
+			readFully(len, offset);
+			ByteBuffer record = ByteBuffer.allocate(len.flip().getInt());
+			readFully(record, offset + 4);
+			return record.array();
+		}
+
+		private void readFully(ByteBuffer buf, long pos) throws IOException {
+			while (buf.hasRemaining()) {
+				int n = reader.read(buf, pos);
+				if (n < 0)
+					throw new IOException("truncated spool segment " + file);
+				pos += n;
+			}
+		}
+
+		synchronized void delete() {
+			try {
+				if (out != null)
+					out.close();
+				if (reader != null)
+					reader.close();
+				Files.deleteIfExists(file);
+			} catch (IOException e) {
+				Logger.warn("Could not remove spool segment " + file + ": " + e.getMessage());
+			}
+		}
+	}
+}
@@ -0,0 +1,247 @@
+package org.pvlens.spl.processing.extract;
+
+/*
+ * This file is part of PVLens.
+ *
+ * Copyright (C) 2025 GlaxoSmithKline
+ *
+ * PVLens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PVLens is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PVLens.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.pvlens.spl.conf.ConfigLoader;
+import org.pvlens.spl.util.Logger;
+
+/**
+ * Section match results keyed by a hash of the section text and section type.
+ *
+ * <p>Consecutive versions of a label usually repeat the Indications / Adverse
+ * Reactions / Boxed Warning text byte for byte; a hit replays the stored AUIs
+ * instead of running sentence detection and dictionary matching again. The
+ * cache holds at most {@code NLP_CACHE_ENTRIES} sections (least recently used
+ * dropped first) and, with {@code NLP_CACHE_DIR} set, is saved at the end of a
+ * run and reloaded by the next one.</p>
+ *
+ * <p>The file records the matching version (dictionaries, models, this
+ * format); a file written under another version is ignored.</p>
+ */
+public final class SectionMatchCache {
+
+	/** Bump when the stored layout or what a section match means changes. */
+	static final int FORMAT = 1;
+
+	private static final int MAGIC = 0x50564E43; // "PVNC"
+	private static final String FILE_NAME = "nlp-sections.bin";
+
+	/** AUIs matched in one section, in the order they were added to the outcome. */
+	public record Matches(List<String> exact, List<String> nlp) {
+		public Matches {
+			exact = List.copyOf(exact);
+			nlp = List.copyOf(nlp);
+		}
+	}
+
+	private final int maxEntries;
+	private final String version;
+	private final Path file;
+	private final LinkedHashMap<String, Matches> entries;
+	private final AtomicLong hits = new AtomicLong();
+	private final AtomicLong misses = new AtomicLong();
+
+	/**
+	 * @param maxEntries sections kept in memory; 0 disables the cache
+	 * @param version    matching version the stored results belong to
+	 * @param file       where the cache is loaded from / saved to, or null
+	 */
+	public SectionMatchCache(int maxEntries, String version, Path file) {
+		this.maxEntries = Math.max(0, maxEntries);
+		this.version = version;
+		this.file = file;
+		this.entries = new LinkedHashMap<>(16, 0.75f, true) {
+			private static final long serialVersionUID = 1L;
+
+			@Override
+			protected boolean removeEldestEntry(Map.Entry<String, Matches> eldest) {
+				return size() > SectionMatchCache.this.maxEntries;
+			}
+		};
+		if (file != null && this.maxEntries > 0)
+			load();
+	}
+
+	/** A cache that never stores anything. */
+	public static SectionMatchCache disabled() {
+		return new SectionMatchCache(0, "", null);
+	}
+
+	/** Cache sized by {@code NLP_CACHE_ENTRIES}, persisted under {@code NLP_CACHE_DIR} when set. */
+	public static SectionMatchCache fromConfig(ConfigLoader cfg, String version) {
+		String dir = cfg.getNlpCacheDir();
+		Path file = dir.isEmpty() ? null : Paths.get(dir).resolve(FILE_NAME);
+		return new SectionMatchCache(cfg.getNlpCacheEntries(), version, file);
+	}
+
+	public boolean isEnabled() {
+		return maxEntries > 0;
+	}
+
+	/** SHA-256 (hex) of the section type and text. */
+	public static String key(String aeType, String text) {
+		try {
+			MessageDigest md = MessageDigest.getInstance("SHA-256");
+			md.update(aeType.getBytes(StandardCharsets.UTF_8));
+			md.update((byte) 0);
+			md.update(text.getBytes(StandardCharsets.UTF_8));
+			StringBuilder hex = new StringBuilder(64);
+			for (byte b : md.digest())
+				hex.append(Character.forDigit((b >>> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+			return hex.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/** Stored matches for {@code key}, or null (counted as a miss). */
+	public Matches get(String key) {
+		Matches m;
+		synchronized (entries) {
+			m = entries.get(key);
+		}
+		(m == null ? misses : hits).incrementAndGet();
+		return m;
+	}
+
+	public void put(String key, Matches matches) {
+		if (!isEnabled())
+			return;
+		synchronized (entries) {
+			entries.put(key, matches);
+		}
+	}
+
+	public long hits() {
+		return hits.get();
+	}
+
+	public long misses() {
+		return misses.get();
+	}
+
+	public int size() {
+		synchronized (entries) {
+			return entries.size();
+		}
+	}
+
+	/** One-line hit/miss report. */
+	public String summary() {
+		long h = hits(), m = misses();
+		double rate = (h + m == 0) ? 0 : 100.0 * h / (h + m);
+		return String.format(Locale.ROOT, "NLP section cache: hits=%d, misses=%d (%.1f%% hit rate), entries=%d", h, m,
+				rate, size());
+	}
+
+	/** Write the cache to its file (no-op without one); failures only cost the next run its hits. */
+	public void save() {
+		if (file == null || !isEnabled())
+			return;
+		List<Map.Entry<String, Matches>> snapshot;
+		synchronized (entries) {
+			snapshot = new ArrayList<>(entries.entrySet());
+		}
+		Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+		try {
+			Files.createDirectories(file.toAbsolutePath().getParent());
+			try (DataOutputStream out = new DataOutputStream(
+					new BufferedOutputStream(new GZIPOutputStream(Files.newOutputStream(tmp))))) {
+				out.writeInt(MAGIC);
+				out.writeInt(FORMAT);
+				out.writeUTF(version);
+				out.writeInt(snapshot.size());
+				// least recently used first, so a reload keeps the same eviction order
+				for (Map.Entry<String, Matches> e : snapshot) {
+					out.writeUTF(e.getKey());
+					writeList(out, e.getValue().exact());
+					writeList(out, e.getValue().nlp());
+				}
+			}
+			Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			Logger.log("Saved " + snapshot.size() + " NLP section results to " + file);
+		} catch (IOException | RuntimeException e) {
+			Logger.warn("Could not save NLP section cache " + file + ": " + e);
+			try {
+				Files.deleteIfExists(tmp);
+			} catch (IOException ignore) {
+				// best effort
+			}
+		}
+	}
+
+	private void load() {
+		if (!Files.isRegularFile(file))
+			return;
+		try (DataInputStream in = new DataInputStream(
+				new BufferedInputStream(new GZIPInputStream(Files.newInputStream(file))))) {
+			if (in.readInt() != MAGIC || in.readInt() != FORMAT || !version.equals(in.readUTF())) {
+				Logger.log("NLP section cache " + file + " is from another dictionary/model version; starting empty");
+				return;
+			}
+			int n = in.readInt();
+			for (int i = 0; i < n; i++) {
+				String key = in.readUTF();
+				List<String> exact = readList(in);
+				List<String> nlp = readList(in);
+				entries.put(key, new Matches(exact, nlp));
+			}
+			Logger.log("Loaded " + entries.size() + " NLP section results from " + file);
+		} catch (IOException | RuntimeException e) {
+			entries.clear();
+			Logger.warn("Could not read NLP section cache " + file + "; starting empty: " + e);
+		}
+	}
+
+	private static void writeList(DataOutputStream out, List<String> values) throws IOException {
+		out.writeInt(values.size());
+		for (String v : values)
+			out.writeUTF(v);
+	}
+
+	private static List<String> readList(DataInputStream in) throws IOException {
+		int n = in.readInt();
+		List<String> values = new ArrayList<>(n);
+		for (int i = 0; i < n; i++)
+			values.add(in.readUTF());
+		return values;
+	}
+}
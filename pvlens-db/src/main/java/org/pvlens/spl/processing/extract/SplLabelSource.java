@@ -0,0 +1,62 @@
+package org.pvlens.spl.processing.extract;
+
+/*
+ * This file is part of PVLens.
+ *
+ * Copyright (C) 2025 GlaxoSmithKline
+ *
+ * PVLens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PVLens is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PVLens.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.util.Date;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * The parts of one SPL XML that {@link SplXmlLabelExtractor#processGuid} consumes:
+ * document LOINC code, title approval year, effective dates, NDA/BLA id and the
+ * text of the IND / AE / BLACKBOX sections.
+ *
+ * Implemented over a full DOM (reference path) and by a single-pass StAX scan
+ * ({@link StreamingSplLabelSource}); the {@code SPL_XML_PARSER} config key
+ * selects which one is used so outputs can be diffed.
+ */
+interface SplLabelSource {
+
+	/** First document-level LOINC code (codeSystem 2.16.840.1.113883.6.1), or null. */
+	String documentLoincCode();
+
+	/** Year from "Initial U.S. Approval: yyyy" in the first title, or -1. */
+	int approvalYear();
+
+	/** Earliest sane effectiveTime (value or low/value) anywhere in the document. */
+	Date earliestEffectiveDate();
+
+	/** NDA/BLA number from id[@root='2.16.840.1.113883.3.150'], or -1. */
+	int nda();
+
+	/**
+	 * Document-level label date (first effectiveTime/@value), or null. Throws
+	 * on an 8-digit value that is not a calendar date (the XML is then skipped).
+	 */
+	Date labelDate() throws Exception;
+
+	/** Effective date of the first section whose code matches, or null. */
+	Date sectionEffectiveDate(String sectionCode);
+
+	/**
+	 * Section text via the primary (code + ID) / secondary (code only) passes.
+	 * The result is cached; {@code passTracker} is only bumped on first resolution.
+	 */
+	String sectionText(String sectionCode, String sectionId, ConcurrentMap<String, Integer> passTracker);
+}
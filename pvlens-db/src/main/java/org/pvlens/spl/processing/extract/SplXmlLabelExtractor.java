@@ -21,7 +21,6 @@ package org.pvlens.spl.processing.extract;
 
 import java.io.FileInputStream;
 import java.io.InputStream;
-import java.io.PrintWriter;
 import java.io.StringWriter;
 import java.nio.file.Files;
 import java.nio.file.Path;
@@ -30,6 +29,7 @@ import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
 import java.util.ArrayList;
+import java.util.Comparator;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
@@ -57,8 +57,10 @@ import org.jsoup.select.Elements;
 import org.pvlens.spl.conf.ConfigLoader;
 import org.pvlens.spl.om.Outcome;
 import org.pvlens.spl.om.SplDrug;
+import org.pvlens.spl.processing.persist.SqlInsert;
 import org.pvlens.spl.processing.persist.SqlWriters;
 import org.pvlens.spl.processing.support.Dates;
+import org.pvlens.spl.processing.support.SplXmlRef;
 import org.pvlens.spl.umls.Atom;
 import org.pvlens.spl.umls.UmlsLoader;
 import org.pvlens.spl.util.Logger;
@@ -84,6 +86,19 @@ public class SplXmlLabelExtractor {
 	private static final String AE_CODE  = "34084-4";
 	private static final String BOX_CODE = "34066-1";
 
+	// Section code -> expected section ID (primary extraction pass)
+	static final Map<String, String> SECTION_IDS = Map.of(
+			IND_CODE, "Indications",
+			AE_CODE,  "Adverse_Reactions",
+			BOX_CODE, "Box");
+
+	// Raw section text rows
+	private static final SqlInsert SPL_AE_TEXT  = SqlInsert.of("SPL_AE_TEXT", "GUID", "LABEL_DATE", "SPL_TEXT");
+	private static final SqlInsert SPL_BOX_TEXT = SqlInsert.of("SPL_BOX_TEXT", "GUID", "LABEL_DATE", "SPL_TEXT");
+	private static final SqlInsert SPL_IND_TEXT = SqlInsert.of("SPL_IND_TEXT", "GUID", "LABEL_DATE", "SPL_TEXT");
+
+	private static final Pattern APPROVAL_YEAR = Pattern.compile("Initial U\\.S\\. Approval: (\\d{4})");
+
 	// ANSI-portable control char filter (keep LF/CR/TAB only)
 	private static final Pattern NON_PORTABLE_CTRLS =
 			Pattern.compile("[\\p{Cntrl}&&[^\\n\\r\\t]]");
@@ -95,11 +110,17 @@ public class SplXmlLabelExtractor {
 	private static final int VALID_START_YEAR = 1910;
 	private static final int VALID_END_YEAR   = ZonedDateTime.now(ZoneOffset.UTC).getYear() + 1;
 
+	// Labels larger than this are skipped (15 MB)
+	static final long MAX_XML_BYTES = 15L * 1024 * 1024;
+
 	// Truncation guard for SQL text columns
 	private static final int MAX_TEXT_FIELD_LENGTH = 15800;
 
 	private final UmlsLoader umls;
 	private final ConfigLoader cfg;
+	private final boolean streaming;
+	private final SectionMatchCache cache;
+	private final LabelScanSpool scans; // labels already scanned by the NDC step, or null
 
 	// Model resources
 	private static final String SENT_MODEL_PATH = "models/en-sent.bin";
@@ -113,8 +134,30 @@ public class SplXmlLabelExtractor {
 	private static final Pattern PCT_PAREN  = Pattern.compile("\\(\\d+(?:\\.\\d+)?%\\)");
 
 	public SplXmlLabelExtractor() {
-		this.umls = UmlsLoader.getInstance();
-		this.cfg  = new ConfigLoader();
+		this(UmlsLoader.getInstance(), new ConfigLoader());
+	}
+
+	/** Use the given dictionaries and configuration (offline runs, benchmarks). */
+	public SplXmlLabelExtractor(UmlsLoader umls, ConfigLoader cfg) {
+		this(umls, cfg, SectionMatchCache.disabled());
+	}
+
+	/** As above, answering repeated section text from {@code cache}. */
+	public SplXmlLabelExtractor(UmlsLoader umls, ConfigLoader cfg, SectionMatchCache cache) {
+		this.umls = umls;
+		this.cfg  = cfg;
+		this.streaming = cfg.isStreamingSplParser();
+		this.cache = cache;
+		this.scans = (umls == null) ? null : umls.getLabelScans();
+	}
+
+	/**
+	 * Everything besides the section text that match results depend on: the
+	 * dictionaries, the sentence model and the cache format. Key for
+	 * {@link SectionMatchCache}.
+	 */
+	public static String matchingVersion() {
+		return UmlsLoader.dictionaryVersion() + "|sent=" + (SENTENCE_MODEL != null) + "|" + SectionMatchCache.FORMAT;
 	}
 
 	/** Row holder for offline SQL text artifacts. */
@@ -182,6 +225,7 @@ public class SplXmlLabelExtractor {
 
 	/**
 	 * Process all XML files for a GUID: extract, run exact and NLP matches, and persist text.
+	 * Runs the same steps as {@link StagedLabelExtraction}, one label after the other.
 	 */
 	public void processGuid(
 			SplDrug spl,
@@ -191,142 +235,298 @@ public class SplXmlLabelExtractor {
 			boolean debug,
 			SqlWriters writers) {
 
+		List<LabelResult> results = new ArrayList<>();
+		for (String rel : pendingXml(spl)) {
+			ParsedLabel label = parse(spl, rel);
+			if (label == null) continue;
+			LabelResult result = analyze(spl, label, xmlIndPass, xmlAePass, xmlBoxPass);
+			if (result == null) continue;
+			write(result, writers);
+			results.add(result);
+		}
+		mergeAll(spl, results);
+	}
+
+	/** One SPL XML read and parsed by {@link #parse}, ready for {@link #analyze}. */
+	public static final class ParsedLabel {
+		final String rel;
+		final SplLabelSource doc;
+
+		ParsedLabel(String rel, SplLabelSource doc) {
+			this.rel = rel;
+			this.doc = doc;
+		}
+	}
+
+	/**
+	 * Dates, resolved outcomes and section text of one label version; folded into
+	 * its product by {@link #mergeAll}, written by {@link #write}. Not modified
+	 * after {@link #analyze} returns it.
+	 */
+	public static final class LabelResult {
+		final String rel;
+		final Date labelDate;
+		final Date approval;
+		final int nda;
+		final Outcome exactInd, nlpInd, exactAe, nlpAe, exactBox, nlpBox;
+		final List<TextRow> rows;
+
+		LabelResult(String rel, Date labelDate, Date approval, int nda, SplDrug resolved, List<TextRow> rows) {
+			this.rel = rel;
+			this.labelDate = labelDate;
+			this.approval = approval;
+			this.nda = nda;
+			this.exactInd = resolved.getExactMatchIndications();
+			this.nlpInd = resolved.getNlpMatchIndications();
+			this.exactAe = resolved.getExactMatchWarnings();
+			this.nlpAe = resolved.getNlpMatchWarnings();
+			this.exactBox = resolved.getExactMatchBlackbox();
+			this.nlpBox = resolved.getNlpMatchBlackbox();
+			this.rows = List.copyOf(rows);
+		}
+
+		/** XML reference this result was extracted from. */
+		public String rel() {
+			return rel;
+		}
+
+		/** Label effective date (null when the label has none). */
+		public Date labelDate() {
+			return labelDate;
+		}
+	}
+
+	/** Reduction order of a product's label versions: label date, undated last, then XML reference. */
+	static final Comparator<LabelResult> LABEL_ORDER = Comparator
+			.comparing(LabelResult::labelDate, Comparator.nullsLast(Comparator.naturalOrder()))
+			.thenComparing(LabelResult::rel);
+
+	/** Section text row for the {@link SqlWriters} output {@code writer}. */
+	private record TextRow(String writer, SqlInsert table, Object[] values) {
+	}
+
+	/**
+	 * XML references of {@code spl} still to be processed, in label order. Empty
+	 * (and the product marked not to be saved) when it has no GUID or no XML.
+	 */
+	public List<String> pendingXml(SplDrug spl) {
 		if (spl.getGuid() == null) {
 			Logger.log("No GUID found!");
 			spl.setSave(false);
-			return;
+			return List.of();
 		}
 		if (spl.getXmlFiles().isEmpty()) {
 			Logger.log("Error - no XML files defined for GUID: " + spl.getGuid());
 			spl.setSave(false);
-			return;
+			return List.of();
 		}
 
+		List<String> pending = new ArrayList<>(spl.getXmlFiles().size());
 		for (String rel : spl.getXmlFiles().keySet()) {
 			if (Boolean.TRUE.equals(spl.getXmlFiles().get(rel))) {
 				Logger.debug("Skipping XML already processed...");
 				continue;
 			}
+			pending.add(rel);
+		}
+		return pending;
+	}
+
+	/**
+	 * Read and parse one XML of {@code spl} after the path and size guards.
+	 * Returns null when the file is skipped or cannot be parsed.
+	 */
+	public ParsedLabel parse(SplDrug spl, String rel) {
+		String xmlFile = rel;
+		// Plain XML, or an entry read in place from its SPL archive (SPL_XML_SOURCE=ZIP)
+		boolean inZip = SplXmlRef.isZipEntry(xmlFile);
+		Path target = SplXmlRef.container(xmlFile).toAbsolutePath().normalize();
+		if (!Files.exists(target)) return null;
+
+		// Derive source type (path cue)
+		String srcType = rel.contains("prescription") ? "prescription"
+				: rel.contains("otc") ? "otc"
+				: rel.contains("other") ? "other"
+				: "";
+
+		// Canonical root guard (supports year subfolders under SPL root)
+		Path cfgRoot = Paths.get(cfg.getSplPath()).toAbsolutePath().normalize();     // e.g., /home/painter/spl_archive
+		String src   = String.valueOf(srcType);                                      // ensure non-null
+
+		// 1) Must live under the configured SPL archive root
+		if (!target.startsWith(cfgRoot)) {
+		    Logger.error("Blocked XML outside archive root: " + target);
+		    return null;
+		}
 
-			String xmlFile = rel;
-			Path target = Paths.get(xmlFile).toAbsolutePath().normalize();
-			if (!Files.exists(target)) continue;
+		// 2) Must contain .../xml_files/<srcType>/... somewhere after the root
+		//    (archive entries: a .zip under the root with a relative entry name)
+		Path relative = cfgRoot.relativize(target);  // e.g., 2016/xml_files/prescription/a8edb191-....xml
+		boolean ok = false;
+		if (inZip) {
+		    String entry = SplXmlRef.entryName(xmlFile);
+		    ok = target.getFileName().toString().toLowerCase(Locale.ROOT).endsWith(".zip")
+		            && !entry.startsWith("/")
+		            && !Paths.get(entry).normalize().startsWith("..");
+		} else {
+		    for (int i = 0; i <= relative.getNameCount() - 3; i++) { // need at least xml_files + srcType + filename
+		        if ("xml_files".equals(relative.getName(i).toString())
+		                && relative.getName(i + 1).toString().equalsIgnoreCase(src)) {
+		            ok = true;
+		            break;
+		        }
+		    }
+		}
 
-			// Derive source type (path cue)
-			String srcType = rel.contains("prescription") ? "prescription"
-					: rel.contains("otc") ? "otc"
-					: rel.contains("other") ? "other"
-					: "";
+		if (!ok) {
+		    Logger.error("Blocked XML outside expected " + (inZip ? "archive layout" : "xml_files/" + src + " subtree")
+		            + ": " + xmlFile);
+		    return null;
+		}
 
-			// Canonical root guard (supports year subfolders under SPL root)
-			Path cfgRoot = Paths.get(cfg.getSplPath()).toAbsolutePath().normalize();     // e.g., /home/painter/spl_archive
-			String src   = String.valueOf(srcType);                                      // ensure non-null
+		// Scanned together with its NDC codes earlier in the run (only labels within the size guard are spooled)
+		SplLabelSource spooled = (scans == null) ? null : scans.take(xmlFile);
 
-			// 1) Must live under the configured SPL archive root
-			if (!target.startsWith(cfgRoot)) {
-			    Logger.error("Blocked XML outside archive root: " + target);
-			    continue;
+		// Size guard (15 MB default), checked on open: one archive read, and enforced while reading when the size is not recorded
+		InputStream opened = null;
+		if (spooled == null) {
+			try {
+				opened = SplXmlRef.open(xmlFile, MAX_XML_BYTES);
+			} catch (SplXmlRef.TooLargeException big) {
+				Logger.warn("Skipping oversized SPL XML (" + (big.size() < 0 ? "over " + MAX_XML_BYTES : big.size())
+						+ " bytes): " + target);
+				return null;
+			} catch (Exception openEx) {
+				Logger.warn("Could not open, skipping: " + target + " — " + openEx.getMessage());
+				return null;
 			}
+		}
 
-			// 2) Must contain .../xml_files/<srcType>/... somewhere after the root
-			Path relative = cfgRoot.relativize(target);  // e.g., 2016/xml_files/prescription/a8edb191-....xml
-			boolean ok = false;
-			for (int i = 0; i <= relative.getNameCount() - 3; i++) { // need at least xml_files + srcType + filename
-			    if ("xml_files".equals(relative.getName(i).toString())
-			            && relative.getName(i + 1).toString().equalsIgnoreCase(src)) {
-			        ok = true;
-			        break;
-			    }
+		try (InputStream xmlContentStream = opened) {
+			SplLabelSource doc;
+			if (spooled != null) {
+				doc = spooled;
+			} else if (streaming) {
+				doc = StreamingSplLabelSource.scan(xmlContentStream, SECTION_IDS);
+			} else {
+				Document dom = TL_DOM.get().parse(xmlContentStream);
+				dom.getDocumentElement().normalize();
+				doc = new DomLabelSource(dom);
 			}
 
-			if (!ok) {
-			    Logger.error("Blocked XML outside expected xml_files/" + src + " subtree: " + target);
-			    continue;
-			}			
-
-			// Size guard (15 MB default)
-			try {
-				long size = Files.size(target);
-				long maxBytes = 15L * 1024 * 1024;
-				if (size > maxBytes) {
-					Logger.warn("Skipping oversized SPL XML (" + size + " bytes): " + target);
-					continue;
+			if ("other".equals(srcType)) {
+				String loinc = doc.documentLoincCode();
+				if (!cfg.getOtherLoincFilter().allow(loinc)) {
+					return null;
 				}
-			} catch (Exception sizeEx) {
-				Logger.warn("Size check failed, skipping: " + target + " — " + sizeEx.getMessage());
-				continue;
 			}
+			return new ParsedLabel(rel, doc);
 
-			try (FileInputStream xmlContentStream = new FileInputStream(xmlFile)) {
-				SplDrug tmpSpl = spl.copySplDrug();
+		} catch (Exception e) {
+			Logger.log("Error parsing XML file [" + rel + "]: " + e);
+			return null;
+		}
+	}
 
-				DocumentBuilder b = TL_DOM.get();
-				Document doc = b.parse(xmlContentStream);
-				doc.getDocumentElement().normalize();
+	/**
+	 * Dates, exact and NLP matches for IND / AE / BLACKBOX and the section text
+	 * of one parsed label. Reads only the GUID of {@code spl}, so labels of the
+	 * same product may be analyzed concurrently. Returns null on failure.
+	 */
+	public LabelResult analyze(SplDrug spl,
+	                           ParsedLabel label,
+	                           ConcurrentMap<String, Integer> xmlIndPass,
+	                           ConcurrentMap<String, Integer> xmlAePass,
+	                           ConcurrentMap<String, Integer> xmlBoxPass) {
+		SplLabelSource doc = label.doc;
+		List<TextRow> rows = new ArrayList<>(3);
+		try {
+			Date approval = computeApprovalDate(doc);
+			int nda = doc.nda();
+
+			Date labelDate    = firstNonNull(doc.labelDate());
+			Date indDate      = defaultIfNull(doc.sectionEffectiveDate(IND_CODE), labelDate);
+			Date aeDate       = defaultIfNull(doc.sectionEffectiveDate(AE_CODE), labelDate);
+			Date blackBoxDate = defaultIfNull(doc.sectionEffectiveDate(BOX_CODE), labelDate);
+
+			Outcome[] ind = matchSection(spl.getGuid(), doc, IND_CODE, "IND", indDate, xmlIndPass, rows);
+			Outcome[] ae  = matchSection(spl.getGuid(), doc, AE_CODE, "AE", aeDate, xmlAePass, rows);
+			Outcome[] box = matchSection(spl.getGuid(), doc, BOX_CODE, "BLACKBOX", blackBoxDate, xmlBoxPass, rows);
+			Outcome exactInd = ind[0], nlpInd = ind[1];
+			Outcome exactAe  = ae[0],  nlpAe  = ae[1];
+			Outcome exactBox = box[0], nlpBox = box[1];
+
+			// Flags, then resolve this version's events on their own (depends on nothing else)
+			SplDrug resolved = new SplDrug();
+			exactInd.setExactMatch(true);
+			resolved.setExactMatchIndications(exactInd);
+			nlpInd.setExactMatch(false);
+			resolved.setNlpMatchIndications(nlpInd);
+
+			exactAe.setExactMatch(true);
+			resolved.setExactMatchWarnings(exactAe);
+			nlpAe.setExactMatch(false);
+			resolved.setNlpMatchWarnings(nlpAe);
+
+			exactBox.setExactMatch(true);
+			resolved.setExactMatchBlackbox(exactBox);
+			nlpBox.setExactMatch(false);
+			resolved.setNlpMatchBlackbox(nlpBox);
+
+			resolved.resolveLabeledEvents();
+			return new LabelResult(label.rel, labelDate, approval, nda, resolved, rows);
 
-				if ("other".equals(srcType)) {
-					String loinc = firstDocumentLoincCode(doc);
-					if (!cfg.getOtherLoincFilter().allow(loinc)) {
-						continue;
-					}
-				}
+		} catch (Exception e) {
+			Logger.log("Error parsing XML file [" + label.rel + "]: " + e);
+			return null;
+		}
+	}
 
-				Date finalApproval = computeApprovalDate(doc);
-				if (finalApproval != null) {
-					spl.getGuidApprovalDate().put(spl.getGuid(), finalApproval);
-				}
+	/** Emit the section text rows of one analyzed label. */
+	public void write(LabelResult r, SqlWriters writers) {
+		for (TextRow row : r.rows)
+			w(writers.get(row.writer()), row.table(), row.values());
+	}
 
-				int ndaId = extractNda(doc);
-				if (ndaId > 0) spl.setNda(ndaId);
-
-				Date labelDate    = firstNonNull(extractLabelDate(doc));
-				Date indDate      = defaultIfNull(extractIndicationDate(doc), labelDate);
-				Date aeDate       = defaultIfNull(extractAdverseReactionsDate(doc), labelDate);
-				Date blackBoxDate = defaultIfNull(extractBlackBoxDate(doc), labelDate);
-
-				Outcome exactInd = extractAeBlock(spl.getGuid(), doc, IND_CODE, "IND", indDate, true,  xmlIndPass, writers.get("IND_TEXT"));
-				String  indText  = removeExact(doc, IND_CODE, "Indications",        exactInd);
-				Outcome nlpInd   = nlpOnText(spl.getGuid(), indText, "IND", indDate, false);
-				removeDeath(exactInd);
-				removeDeath(nlpInd);
-
-				Outcome exactAe  = extractAeBlock(spl.getGuid(), doc, AE_CODE,  "AE", aeDate, true,   xmlAePass,  writers.get("AE_TEXT"));
-				String  aeText   = removeExact(doc, AE_CODE,  "Adverse_Reactions", exactAe);
-				Outcome nlpAe    = nlpOnText(spl.getGuid(), aeText,  "AE", aeDate,  false);
-
-				Outcome exactBox = extractAeBlock(spl.getGuid(), doc, BOX_CODE, "BLACKBOX", blackBoxDate, true, xmlBoxPass, writers.get("BOX_TEXT"));
-				String  boxText  = removeExact(doc, BOX_CODE, "Box", exactBox);
-				Outcome nlpBox   = nlpOnText(spl.getGuid(), boxText, "BLACKBOX", blackBoxDate, false);
-
-				// Flags
-				exactInd.setExactMatch(true);
-				tmpSpl.setExactMatchIndications(exactInd);
-				nlpInd.setExactMatch(false);
-				tmpSpl.setNlpMatchIndications(nlpInd);
-
-				exactAe.setExactMatch(true);
-				tmpSpl.setExactMatchWarnings(exactAe);
-				nlpAe.setExactMatch(false);
-				tmpSpl.setNlpMatchWarnings(nlpAe);
-
-				exactBox.setExactMatch(true);
-				tmpSpl.setExactMatchBlackbox(exactBox);
-				nlpBox.setExactMatch(false);
-				tmpSpl.setNlpMatchBlackbox(nlpBox);
-
-				tmpSpl.resolveLabeledEvents();
-
-				boolean merged = spl.mergeProductGroup(tmpSpl);
-				if (!merged) {
-					Logger.error("Failed to merge!");
-				}
+	/**
+	 * Fold the analyzed label versions of {@code spl} into it, oldest label first
+	 * ({@link #LABEL_ORDER}), and mark their XML processed. The result depends
+	 * only on the set of versions, not on the order they were analyzed in. Not
+	 * thread-safe per product.
+	 */
+	public void mergeAll(SplDrug spl, List<LabelResult> results) {
+		List<LabelResult> ordered = new ArrayList<>(results);
+		ordered.sort(LABEL_ORDER);
+		for (LabelResult r : ordered)
+			merge(spl, r);
+	}
 
-				// Mark file as processed
-				spl.getXmlFiles().put(rel, true);
+	private void merge(SplDrug spl, LabelResult r) {
+		try {
+			SplDrug tmpSpl = spl.copySplDrug();
 
-			} catch (Exception e) {
-				Logger.log("Error parsing XML file [" + rel + "]: " + e);
+			if (r.approval != null) {
+				spl.getGuidApprovalDate().put(spl.getGuid(), r.approval);
+			}
+			if (r.nda > 0) spl.setNda(r.nda);
+
+			tmpSpl.setExactMatchIndications(r.exactInd);
+			tmpSpl.setNlpMatchIndications(r.nlpInd);
+			tmpSpl.setExactMatchWarnings(r.exactAe);
+			tmpSpl.setNlpMatchWarnings(r.nlpAe);
+			tmpSpl.setExactMatchBlackbox(r.exactBox);
+			tmpSpl.setNlpMatchBlackbox(r.nlpBox);
+
+			boolean merged = spl.mergeProductGroup(tmpSpl);
+			if (!merged) {
+				Logger.error("Failed to merge!");
 			}
+
+			// Mark file as processed
+			spl.getXmlFiles().put(r.rel, true);
+
+		} catch (Exception e) {
+			Logger.log("Error parsing XML file [" + r.rel + "]: " + e);
 		}
 	}
 
@@ -336,100 +536,151 @@ public class SplXmlLabelExtractor {
 	private static Date firstNonNull(Date d)                 { return d; }
 
 	/** Returns approval date (title year if present; else earliest effectiveTime). */
-	private Date computeApprovalDate(Document doc) throws Exception {
-		int year = extractApprovalYear(doc);
+	private Date computeApprovalDate(SplLabelSource doc) throws Exception {
+		int year = doc.approvalYear();
 		Date titleY = (year >= 1910 && year <= 2100) ? Dates.parseYyyyMMdd(year + "0101") : null;
 		if (titleY != null) return titleY;
-		Date eff = extractEarliestEffectiveDate(doc);
+		Date eff = doc.earliestEffectiveDate();
 		return eff;
 	}
 
-	private Outcome extractAeBlock(String guid,
-	                               Document document,
+	/**
+	 * Exact, then NLP matches on what the exact terms leave of one section:
+	 * {@code [exact, nlp]} (IND also drops "death" terms). Adds the section text
+	 * row; text already matched for this section type is answered from the cache.
+	 */
+	private Outcome[] matchSection(String guid,
+	                               SplLabelSource document,
 	                               String sectionCode,
 	                               String aeType,
 	                               Date labelDate,
-	                               boolean exact,
 	                               ConcurrentMap<String, Integer> passCounter,
-	                               PrintWriter output) {
+	                               List<TextRow> rows) {
 		Outcome outcome = new Outcome();
 		String sectionId;
-		String table;
+		SqlInsert table;
+		String output;
 
 		switch (aeType) {
 			case "AE" -> {
 				outcome.setWarning(true);
 				sectionId = "Adverse_Reactions";
-				table = "SPL_AE_TEXT";
+				table = SPL_AE_TEXT;
+				output = "AE_TEXT";
 			}
 			case "BLACKBOX" -> {
 				outcome.setBlackbox(true);
 				sectionId = "Box";
-				table = "SPL_BOX_TEXT";
+				table = SPL_BOX_TEXT;
+				output = "BOX_TEXT";
 			}
 			case "IND" -> {
 				outcome.setIndication(true);
 				sectionId = "Indications";
-				table = "SPL_IND_TEXT";
+				table = SPL_IND_TEXT;
+				output = "IND_TEXT";
 			}
 			default -> {
 				sectionId = "Indications";
-				table = "SPL_IND_TEXT";
+				table = SPL_IND_TEXT;
+				output = "IND_TEXT";
 			}
 		}
 
+		String cacheKey = null;
 		try {
 			MedDRAProcessor mdp = new MedDRAProcessor(this.umls);
-			String extractedText = getSectionText(document, sectionCode, sectionId, passCounter);
+			String extractedText = document.sectionText(sectionCode, sectionId, passCounter);
 			if (StringUtils.isNotEmpty(extractedText)) {
-				String sqlSafe = sanitizeForSQLPlainLiteral(extractedText);
-
-				StringBuilder sql = new StringBuilder(256);
-				sql.append("INSERT INTO ").append(table).append(" (GUID, LABEL_DATE, SPL_TEXT) VALUES ('")
-						.append(sqlQuote(guid)).append("',");
-				sql.append((labelDate == null) ? "NULL" : ("'" + sqlQuote(fmt(labelDate)) + "'"));
-				sql.append(",'").append(sqlSafe).append("');");
-
-				w(output, sql.toString());
-				processExtractedTextForAeMatch(guid, aeType, labelDate, exact, outcome, mdp, extractedText);
+				// Sinks quote values themselves: keep the sanitizer's cleanup, undo its quote escaping
+				String sqlSafe = sanitizeForSQLPlainLiteral(extractedText).replace("''", "'");
+				rows.add(new TextRow(output, table, new Object[] { guid, fmt(labelDate), sqlSafe }));
+
+				if (cache.isEnabled()) {
+					cacheKey = SectionMatchCache.key(aeType, extractedText);
+					SectionMatchCache.Matches hit = cache.get(cacheKey);
+					if (hit != null) {
+						Outcome nlp = new Outcome();
+						nlp.setWarning(true);
+						replay(guid, hit.exact(), labelDate, outcome);
+						replay(guid, hit.nlp(), labelDate, nlp);
+						return withoutDeath(aeType, outcome, nlp);
+					}
+				}
+				processExtractedTextForAeMatch(guid, aeType, labelDate, true, outcome, mdp, extractedText);
 			}
 		} catch (Exception e) {
 			Logger.error("Error processing document (here): [" + aeType + "] " + e.toString());
+			cacheKey = null; // partial result
+		}
+
+		String cleanedText = removeExact(document, sectionCode, sectionId, outcome);
+		Outcome nlp = new Outcome();
+		nlp.setWarning(true);
+		try {
+			nlpOnText(guid, cleanedText, aeType, labelDate, false, nlp);
+		} catch (Exception e) {
+			Logger.error("Error processing cleaned text: " + e.toString());
+			cacheKey = null; // partial result
 		}
-		return outcome;
+		if (cacheKey != null)
+			cache.put(cacheKey, new SectionMatchCache.Matches(addedAuis(outcome, guid), addedAuis(nlp, guid)));
+		return withoutDeath(aeType, outcome, nlp);
 	}
 
-	/** Run NLP matching on cleaned text after exact matches were removed. */
-	private Outcome nlpOnText(String guid, String cleanedText, String aeType, Date labelDate, boolean exactMatch) {
-		Outcome outcome = new Outcome();
-		outcome.setWarning(true);
+	private Outcome[] withoutDeath(String aeType, Outcome exact, Outcome nlp) {
+		if ("IND".equals(aeType)) {
+			removeDeath(exact);
+			removeDeath(nlp);
+		}
+		return new Outcome[] { exact, nlp };
+	}
 
-		try {
-			MedDRAProcessor mdp = new MedDRAProcessor(umls);
-			if (StringUtils.isNotEmpty(cleanedText)) {
-				List<String> sentences = getSentences(cleanedText);
-				HashMap<String, List<String>> uniqueAEs = new HashMap<>();
-				for (String sentence : sentences) {
-					sentence = splitOnSpecialCharacters(sentence);
-					Map<String, List<String>> aeTerms = mdp.processText(aeType, sentence, exactMatch);
-					uniqueAEs.putAll(aeTerms);
-				}
+	/** AUIs added to {@code outcome} for {@code guid}, in the order they were added. */
+	private static List<String> addedAuis(Outcome outcome, String guid) {
+		return List.copyOf(outcome.auisOf(guid));
+	}
 
-				for (Map.Entry<String, List<String>> entry : uniqueAEs.entrySet()) {
-					for (String aui : entry.getValue()) {
-						if (umls.getMedDRA().containsKey(aui)) {
-							Atom mdr = umls.getMedDRA().get(aui);
-							outcome.addCode(guid, mdr, labelDate);
-						} else {
-							Logger.log("Missing AUI: " + aui);
-						}
+	/** Re-add cached AUIs in their original order (same codes, dates and sources as matching). */
+	private void replay(String guid, List<String> auis, Date labelDate, Outcome outcome) {
+		for (String aui : auis) {
+			Atom mdr = umls.getMedDRA().get(aui);
+			if (mdr != null) {
+				outcome.addCode(guid, mdr, labelDate);
+			} else {
+				Logger.log("Missing AUI: " + aui);
+			}
+		}
+	}
+
+	/**
+	 * Run NLP matching on cleaned text after exact matches were removed, adding
+	 * the codes to {@code outcome}. Errors propagate so the caller knows the
+	 * outcome is partial (package-private for tests).
+	 */
+	void nlpOnText(String guid, String cleanedText, String aeType, Date labelDate, boolean exactMatch,
+			Outcome outcome) {
+		MedDRAProcessor mdp = new MedDRAProcessor(umls);
+		if (StringUtils.isNotEmpty(cleanedText)) {
+			List<String> sentences = getSentences(cleanedText);
+			HashMap<String, List<String>> uniqueAEs = new HashMap<>();
+			for (String sentence : sentences) {
+				sentence = splitOnSpecialCharacters(sentence);
+				Map<String, List<String>> aeTerms = mdp.processText(aeType, sentence, exactMatch);
+				uniqueAEs.putAll(aeTerms);
+			}
+
+			for (Map.Entry<String, List<String>> entry : uniqueAEs.entrySet()) {
+				for (String aui : entry.getValue()) {
+					if (umls.getMedDRA().containsKey(aui)) {
+						Atom mdr = umls.getMedDRA().get(aui);
+						outcome.addCode(guid, mdr, labelDate);
+					} else {
+						Logger.log("Missing AUI: " + aui);
 					}
 				}
 			}
-		} catch (Exception e) {
-			Logger.error("Error processing cleaned text: " + e.toString());
 		}
-		return outcome;
 	}
 
 	/**
@@ -576,14 +827,8 @@ public class SplXmlLabelExtractor {
 	/**
 	 * Remove exact-match terms from the section text to avoid duplicates in NLP pass.
 	 */
-	private String removeExact(Document document, String sectionCode, String sectionId, Outcome outcome) {
-		String extractedText = extractTextFromSection(document, sectionCode, sectionId);
-		if (StringUtils.isEmpty(extractedText)) {
-			extractedText = secondaryExtractTextFromSection(document, sectionCode);
-			if (StringUtils.isEmpty(extractedText)) {
-				extractedText = tertiaryExtractTextFromSection(document, sectionCode);
-			}
-		}
+	private String removeExact(SplLabelSource document, String sectionCode, String sectionId, Outcome outcome) {
+		String extractedText = document.sectionText(sectionCode, sectionId, null);
 
 		if (StringUtils.isNotEmpty(extractedText)) {
 			for (Atom exactMatchAtom : outcome.getCodes()) {
@@ -595,7 +840,7 @@ public class SplXmlLabelExtractor {
 	}
 
 	/** Parse approval year from document title (e.g., "Initial U.S. Approval: 2012"). */
-	private int extractApprovalYear(Document document) {
+	private static int extractApprovalYear(Document document) {
 		int year = -1;
 		NodeList documentTitle = document.getElementsByTagName("title");
 		if (documentTitle.getLength() > 0) {
@@ -608,10 +853,9 @@ public class SplXmlLabelExtractor {
 		return year;
 	}
 
-	private int getApprovalYear(String inputText) {
+	static int getApprovalYear(String inputText) {
 		inputText = inputText.replaceAll("\\s+", " ");
-		Pattern r = Pattern.compile("Initial U\\.S\\. Approval: (\\d{4})");
-		Matcher m = r.matcher(inputText);
+		Matcher m = APPROVAL_YEAR.matcher(inputText);
 		return m.find() ? Integer.parseInt(m.group(1)) : -1;
 	}
 
@@ -631,7 +875,7 @@ public class SplXmlLabelExtractor {
 	}
 
 	/** Scan for earliest valid effective date anywhere in the document. */
-	private Date extractEarliestEffectiveDate(Document document) {
+	private static Date extractEarliestEffectiveDate(Document document) {
 		try {
 			List<String> candidates = new ArrayList<>();
 			NodeList effs = document.getElementsByTagName("effectiveTime");
@@ -664,25 +908,29 @@ public class SplXmlLabelExtractor {
 				}
 			}
 
-			Date earliest = null;
-			for (String c : candidates) {
-				try {
-					int year = Integer.parseInt(c.substring(0, 4));
-					if (year < VALID_START_YEAR || year > VALID_END_YEAR) continue;
-					Date d = Dates.parseYyyyMMdd(c);
-					if (earliest == null || d.before(earliest)) earliest = d;
-				} catch (Exception ignore) {}
-			}
-			return earliest;
+			return earliestValidDate(candidates);
 		} catch (Exception e) {
 			Logger.log("Error scanning earliest effective date: " + e.getMessage());
 			return null;
 		}
 	}
 
+	/** Earliest sane date among normalized yyyyMMdd candidates, or null. */
+	static Date earliestValidDate(List<String> candidates) {
+		Date earliest = null;
+		for (String c : candidates) {
+			try {
+				int year = Integer.parseInt(c.substring(0, 4));
+				if (year < VALID_START_YEAR || year > VALID_END_YEAR) continue;
+				Date d = Dates.parseYyyyMMdd(c);
+				if (earliest == null || d.before(earliest)) earliest = d;
+			} catch (Exception ignore) {}
+		}
+		return earliest;
+	}
+
 	/** Extract NDA/BLA tracking number from id[@root='2.16.840.1.113883.3.150'] */
-	private int extractNda(Document document) {
-		int ndaId = -1;
+	private static int extractNda(Document document) {
 		String ndaValue = "";
 		String rootValue = "2.16.840.1.113883.3.150";
 
@@ -694,6 +942,12 @@ public class SplXmlLabelExtractor {
 				break;
 			}
 		}
+		return parseNda(ndaValue);
+	}
+
+	/** NDA/BLA number from an id extension such as "NDA021436", or -1. */
+	static int parseNda(String ndaValue) {
+		int ndaId = -1;
 		if (ndaValue.contains("NDA") || ndaValue.contains("BLA")) {
 			try {
 				if (ndaValue.contains("NDA")) ndaId = Integer.parseInt(ndaValue.replace("NDA", "").trim());
@@ -704,7 +958,7 @@ public class SplXmlLabelExtractor {
 	}
 
 	/** Label date from top-level effectiveTime/@value in yyyyMMdd if present and sane. */
-	private Date extractLabelDate(Document document) throws Exception {
+	private static Date extractLabelDate(Document document) throws Exception {
 		NodeList list = document.getElementsByTagName("effectiveTime");
 		if (list.getLength() == 0) {
 			Logger.log("No date found in effectiveTime element.");
@@ -714,9 +968,14 @@ public class SplXmlLabelExtractor {
 		Node dateNode = list.item(0);
 		NamedNodeMap attributes = dateNode.getAttributes();
 		Node codeAttr = attributes.getNamedItem("value");
-		if (codeAttr == null) return null;
+		return parseLabelDate(codeAttr == null ? null : codeAttr.getNodeValue());
+	}
+
+	/** Parse a label effectiveTime value (yyyyMMdd with a sane year), or null. */
+	static Date parseLabelDate(String value) throws Exception {
+		if (value == null) return null;
 
-		String dateString = codeAttr.getNodeValue().trim();
+		String dateString = value.trim();
 		if (StringUtils.isEmpty(dateString)) return null;
 
 		try {
@@ -732,14 +991,10 @@ public class SplXmlLabelExtractor {
 		return null;
 	}
 
-	private Date extractIndicationDate(Document document)       { return extractEffectiveDate(document, IND_CODE); }
-	private Date extractBlackBoxDate(Document document)         { return extractEffectiveDate(document, BOX_CODE); }
-	private Date extractAdverseReactionsDate(Document document) { return extractEffectiveDate(document, AE_CODE); }
-
 	/**
 	 * Extract the effective date from a specific section code (if present).
 	 */
-	private Date extractEffectiveDate(Document document, String sectionCode) {
+	private static Date extractEffectiveDate(Document document, String sectionCode) {
 		try {
 			NodeList sectionList = document.getElementsByTagName("section");
 			for (int i = 0; i < sectionList.getLength(); i++) {
@@ -909,45 +1164,51 @@ public class SplXmlLabelExtractor {
 	 * paragraphs and tables.
 	 */
 	private static String extractHtmlText(Element sectionElement) {
-		String innerXml = getInnerXml(sectionElement);
+		try {
+			return htmlTextFromMarkup(getInnerXml(sectionElement));
+		} catch (Exception e) {
+			return extractPlainText(sectionElement);
+		}
+	}
+
+	/**
+	 * Jsoup text extraction over serialized section markup; shared by the DOM and
+	 * streaming sources so both yield the same text for the same section.
+	 */
+	static String htmlTextFromMarkup(String innerXml) {
 		if (innerXml == null || innerXml.isEmpty()) return "";
 
-		try {
-			org.jsoup.nodes.Document jsoupDoc = Jsoup.parse(innerXml);
+		org.jsoup.nodes.Document jsoupDoc = Jsoup.parse(innerXml);
 
-			StringBuilder extractedText = new StringBuilder();
+		StringBuilder extractedText = new StringBuilder();
 
-			// Paragraphs
-			Elements paragraphs = jsoupDoc.select("paragraph");
-			for (org.jsoup.nodes.Element p : paragraphs) {
-				extractedText.append(p.text()).append("\n");
-			}
+		// Paragraphs
+		Elements paragraphs = jsoupDoc.select("paragraph");
+		for (org.jsoup.nodes.Element p : paragraphs) {
+			extractedText.append(p.text()).append("\n");
+		}
 
-			// Tables
-			Elements tables = jsoupDoc.select("table");
-			for (org.jsoup.nodes.Element table : tables) {
-				Elements rows = table.select("tr");
-				for (org.jsoup.nodes.Element row : rows) {
-					Elements cells = row.select("td");
-					for (org.jsoup.nodes.Element cell : cells) {
-						extractedText.append(cell.text()).append(' ');
-					}
-					extractedText.append("\n");
+		// Tables
+		Elements tables = jsoupDoc.select("table");
+		for (org.jsoup.nodes.Element table : tables) {
+			Elements rows = table.select("tr");
+			for (org.jsoup.nodes.Element row : rows) {
+				Elements cells = row.select("td");
+				for (org.jsoup.nodes.Element cell : cells) {
+					extractedText.append(cell.text()).append(' ');
 				}
+				extractedText.append("\n");
 			}
+		}
 
-			// Remove elements we've already serialized, then add any residual text once
-			jsoupDoc.select("paragraph,table").remove();
-			String residual = jsoupDoc.body() != null ? jsoupDoc.body().text() : "";
-			if (StringUtils.isNotBlank(residual)) {
-				extractedText.append(residual);
-			}
-
-			return extractedText.toString().trim();
-
-		} catch (Exception e) {
-			return extractPlainText(sectionElement);
+		// Remove elements we've already serialized, then add any residual text once
+		jsoupDoc.select("paragraph,table").remove();
+		String residual = jsoupDoc.body() != null ? jsoupDoc.body().text() : "";
+		if (StringUtils.isNotBlank(residual)) {
+			extractedText.append(residual);
 		}
+
+		return extractedText.toString().trim();
 	}
 
 	/**
@@ -1030,11 +1291,6 @@ public class SplXmlLabelExtractor {
 		return b.toString();
 	}
 
-	/** Double single quotes for SQL string literals (identifiers like GUID). */
-	private static String sqlQuote(String s) {
-		return (s == null) ? "" : s.replace("'", "''");
-	}
-
 	/** First document-level LOINC code (codeSystem 2.16.840.1.113883.6.1), if any. */
 	private static String firstDocumentLoincCode(Document doc) {
 		NodeList codes = doc.getElementsByTagName("code");
@@ -1050,16 +1306,41 @@ public class SplXmlLabelExtractor {
 		return null;
 	}
 
+	/** Reference {@link SplLabelSource} over a parsed DOM; section text is cached per code. */
+	static final class DomLabelSource implements SplLabelSource {
+		private final Document doc;
+		private final Map<String, String> text = new HashMap<>();
+
+		DomLabelSource(Document doc) {
+			this.doc = doc;
+		}
+
+		@Override public String documentLoincCode()             { return firstDocumentLoincCode(doc); }
+		@Override public int approvalYear()                     { return extractApprovalYear(doc); }
+		@Override public Date earliestEffectiveDate()           { return extractEarliestEffectiveDate(doc); }
+		@Override public int nda()                              { return extractNda(doc); }
+		@Override public Date labelDate() throws Exception      { return extractLabelDate(doc); }
+		@Override public Date sectionEffectiveDate(String code) { return extractEffectiveDate(doc, code); }
+
+		@Override
+		public String sectionText(String sectionCode, String sectionId, ConcurrentMap<String, Integer> passTracker) {
+			String cached = text.get(sectionCode);
+			if (cached == null) {
+				cached = getSectionText(doc, sectionCode, sectionId, passTracker);
+				text.put(sectionCode, cached);
+			}
+			return cached;
+		}
+	}
+
 	private static String fmt(Date d) {
 		if (d == null) return null;
 		ZonedDateTime zdt = d.toInstant().atZone(ZoneOffset.UTC);
 		return DB_FMT.format(zdt);
 	}
 
-	/** Thread-safe writer helper (per-writer lock). */
-	private void w(PrintWriter pw, String s) {
-		synchronized (pw) {
-			pw.println(s);
-		}
+	/** Thread-safe writer helper (rows are buffered per thread by {@link SqlWriters}). */
+	private void w(SqlWriters.Table out, SqlInsert table, Object... values) {
+		out.insert(table, values);
 	}
 }
@@ -0,0 +1,170 @@
+package org.pvlens.spl.processing.extract;
+
+/*
+ * This file is part of PVLens.
+ *
+ * Copyright (C) 2025 GlaxoSmithKline
+ *
+ * PVLens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PVLens is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PVLens.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+import org.pvlens.spl.conf.ConfigLoader;
+import org.pvlens.spl.om.SplDrug;
+import org.pvlens.spl.processing.persist.SqlWriters;
+import org.pvlens.spl.processing.support.BoundedStage;
+import org.pvlens.spl.processing.support.GlobalTrackers;
+import org.pvlens.spl.util.Logger;
+
+/**
+ * Runs {@link SplXmlLabelExtractor} over many products as four stages, each
+ * with its own thread pool and bounded input queue:
+ *
+ * <ol>
+ * <li><b>parse</b> – path/size guards, read and parse one XML (I/O bound)</li>
+ * <li><b>nlp</b> – dates, exact and NLP section matching (CPU bound; sized by
+ * PARALLEL_PRODUCT_LIMIT)</li>
+ * <li><b>merge</b> – once every XML of a product is analyzed, fold the results
+ * into the product oldest label first</li>
+ * <li><b>write</b> – hand the product's section text rows to the SQL writers</li>
+ * </ol>
+ *
+ * <p>Work is scheduled per XML version, so the versions of a GUID with a long
+ * label history spread over all parse/NLP threads instead of keeping one busy;
+ * products are fed largest first so their merge does not trail the run. Each
+ * version yields an immutable {@link SplXmlLabelExtractor.LabelResult}, and
+ * {@link SplXmlLabelExtractor#mergeAll} reduces them in label-date order, the
+ * same reduction {@link SplXmlLabelExtractor#processGuid} uses, so products come
+ * out as from a sequential run.</p>
+ */
+public final class StagedLabelExtraction {
+
+	private final SplXmlLabelExtractor extractor;
+	private final int parseThreads, nlpThreads, mergeThreads, writeThreads, queue;
+
+	public StagedLabelExtraction(SplXmlLabelExtractor extractor, ConfigLoader cfg) {
+		this(extractor, cfg.getStageParseThreads(), cfg.getParallelProcessingProductLimit(),
+				cfg.getStageMergeThreads(), cfg.getStageWriteThreads(), cfg.getStageQueue());
+	}
+
+	StagedLabelExtraction(SplXmlLabelExtractor extractor, int parseThreads, int nlpThreads, int mergeThreads,
+			int writeThreads, int queue) {
+		this.extractor = extractor;
+		this.parseThreads = parseThreads;
+		this.nlpThreads = nlpThreads;
+		this.mergeThreads = mergeThreads;
+		this.writeThreads = writeThreads;
+		this.queue = queue;
+	}
+
+	/** A product whose labels are in flight. */
+	private static final class Product {
+		final SplDrug spl;
+		final AtomicReferenceArray<SplXmlLabelExtractor.LabelResult> results;
+		final AtomicInteger remaining;
+
+		Product(SplDrug spl, int labels) {
+			this.spl = spl;
+			this.results = new AtomicReferenceArray<>(labels);
+			this.remaining = new AtomicInteger(labels);
+		}
+	}
+
+	/** One XML of a product, as it moves through parse and nlp. */
+	private record Label(Product product, int index, String rel, SplXmlLabelExtractor.ParsedLabel parsed) {
+	}
+
+	/** Outcome of one XML for the merge stage (null result: skipped or failed). */
+	private record Analyzed(Product product, int index, SplXmlLabelExtractor.LabelResult result) {
+	}
+
+	/**
+	 * Extract every pending XML of {@code products}; returns when all products
+	 * are merged and their text rows handed to {@code writers}.
+	 */
+	public void run(Iterable<SplDrug> products, GlobalTrackers trackers, SqlWriters writers) {
+		BoundedStage<Product> write = new BoundedStage<>("write", writeThreads, queue, p -> {
+			for (int i = 0; i < p.results.length(); i++) {
+				SplXmlLabelExtractor.LabelResult r = p.results.get(i);
+				if (r != null)
+					extractor.write(r, writers);
+			}
+		});
+		BoundedStage<Analyzed> merge = new BoundedStage<>("merge", mergeThreads, queue, a -> {
+			Product p = a.product();
+			p.results.set(a.index(), a.result());
+			if (p.remaining.decrementAndGet() > 0)
+				return;
+			List<SplXmlLabelExtractor.LabelResult> done = new ArrayList<>(p.results.length());
+			for (int i = 0; i < p.results.length(); i++) {
+				if (p.results.get(i) != null)
+					done.add(p.results.get(i));
+			}
+			extractor.mergeAll(p.spl, done);
+			write.submit(p);
+		});
+		BoundedStage<Label> nlp = new BoundedStage<>("nlp", nlpThreads, queue, l -> {
+			SplXmlLabelExtractor.LabelResult r = null;
+			try {
+				r = extractor.analyze(l.product().spl, l.parsed(), trackers.xmlIndPass, trackers.xmlAePass,
+						trackers.xmlBoxPass);
+			} finally {
+				merge.submit(new Analyzed(l.product(), l.index(), r));
+			}
+		});
+		BoundedStage<Label> parse = new BoundedStage<>("parse", parseThreads, queue, l -> {
+			SplXmlLabelExtractor.ParsedLabel parsed = null;
+			try {
+				parsed = extractor.parse(l.product().spl, l.rel());
+			} finally {
+				if (parsed != null)
+					nlp.submit(new Label(l.product(), l.index(), l.rel(), parsed));
+				else
+					merge.submit(new Analyzed(l.product(), l.index(), null));
+			}
+		});
+
+		// Largest label histories first (longest-processing-time order)
+		List<Map.Entry<SplDrug, List<String>>> work = new ArrayList<>();
+		for (SplDrug spl : products) {
+			List<String> pending = extractor.pendingXml(spl);
+			if (!pending.isEmpty())
+				work.add(Map.entry(spl, pending));
+		}
+		work.sort(Comparator.comparingInt((Map.Entry<SplDrug, List<String>> e) -> e.getValue().size()).reversed());
+
+		for (Map.Entry<SplDrug, List<String>> e : work) {
+			List<String> pending = e.getValue();
+			Product p = new Product(e.getKey(), pending.size());
+			for (int i = 0; i < pending.size(); i++)
+				parse.submit(new Label(p, i, pending.get(i), null));
+		}
+		int count = work.size();
+
+		parse.finish();
+		nlp.finish();
+		merge.finish();
+		write.finish();
+
+		Logger.log("Label extraction stages (" + count + " products):");
+		for (BoundedStage<?> s : List.of(parse, nlp, merge, write))
+			Logger.log("  " + s.summary());
+	}
+}
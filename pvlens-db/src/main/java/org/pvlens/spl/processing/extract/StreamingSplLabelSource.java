@@ -0,0 +1,607 @@
+package org.pvlens.spl.processing.extract;
+
+/*
+ * This file is part of PVLens.
+ *
+ * Copyright (C) 2025 GlaxoSmithKline
+ *
+ * PVLens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PVLens is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PVLens.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentMap;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.commons.lang3.StringUtils;
+import org.pvlens.spl.processing.support.Dates;
+import org.pvlens.spl.util.Logger;
+
+/**
+ * Single-pass StAX scan of an SPL XML producing a {@link SplLabelSource}.
+ *
+ * Mirrors the DOM lookups in {@link SplXmlLabelExtractor} without building a
+ * tree: document LOINC code, first title, every effectiveTime (and nested
+ * low/@value), the NDA id, per-section first code/effectiveTime, and the markup
+ * of candidate sections for the requested LOINC codes. Only the section
+ * currently open under a component is buffered; candidate markup is kept for
+ * the earliest (document-order) section that satisfies the primary (code + ID)
+ * or secondary (code only) rule, then run through the same Jsoup text
+ * extraction as the DOM path.
+ *
+ * The scan also collects NDC product codes (for {@link LabelScanSpool}) and can
+ * be written to / read back from a compact binary record, so a label scanned
+ * early in the run does not have to be parsed again when it is extracted.
+ */
+final class StreamingSplLabelSource implements SplLabelSource {
+
+	private static final String LOINC_SYSTEM = "2.16.840.1.113883.6.1";
+	private static final String NDA_ROOT = "2.16.840.1.113883.3.150";
+	private static final String NDC_SYSTEM = "2.16.840.1.113883.6.69";
+
+	/** Hardened factory (no DTDs, no external entities); thread-safe once configured. */
+	private static final XMLInputFactory XIF = newFactory();
+
+	private static XMLInputFactory newFactory() {
+		XMLInputFactory f = XMLInputFactory.newInstance();
+		f.setProperty(XMLInputFactory.SUPPORT_DTD, false);
+		f.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, false);
+		f.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, true);
+		f.setProperty(XMLInputFactory.IS_COALESCING, true);
+		return f;
+	}
+
+	// ---- scan results ----
+	private String documentLoinc;
+	private String titleText;
+	private String ndaExtension;
+	private boolean effectiveTimeSeen;
+	private String firstEffectiveValue;
+	private final List<String> effectiveCandidates = new ArrayList<>();
+
+	/** Section code -> first qualifying (seq, effectiveTime/@value). */
+	private final Map<String, Candidate> sectionDates = new HashMap<>();
+	/** Section code -> earliest section with matching code and ID. */
+	private final Map<String, Candidate> primary = new HashMap<>();
+	/** Section code -> earliest section containing the code. */
+	private final Map<String, Candidate> secondary = new HashMap<>();
+
+	/** {@code <code codeSystem="NDC">} values in document order (may repeat). */
+	private final List<String> ndcCodes = new ArrayList<>();
+
+	private final Map<String, String> resolvedText = new HashMap<>();
+
+	private StreamingSplLabelSource() {
+	}
+
+	private static final class Candidate {
+		final long seq;
+		final String value;
+
+		Candidate(long seq, String value) {
+			this.seq = seq;
+			this.value = value;
+		}
+	}
+
+	/** Open section state while scanning. */
+	private static final class Frame {
+		final long seq;
+		final String id;
+		final boolean underComponent;
+		final int bufStart;
+		String firstCode;
+		boolean codeSeen;
+		String firstEffValue;
+		boolean effSeen;
+		Set<String> targetCodes;
+
+		Frame(long seq, String id, boolean underComponent, int bufStart) {
+			this.seq = seq;
+			this.id = id;
+			this.underComponent = underComponent;
+			this.bufStart = bufStart;
+		}
+	}
+
+	/**
+	 * Scan one SPL document.
+	 *
+	 * @param in                 XML stream (not closed here)
+	 * @param sectionIdsByCode   LOINC section code -> expected section ID (primary pass)
+	 */
+	static StreamingSplLabelSource scan(InputStream in, Map<String, String> sectionIdsByCode)
+			throws XMLStreamException {
+		StreamingSplLabelSource out = new StreamingSplLabelSource();
+		XMLStreamReader r = XIF.createXMLStreamReader(in);
+		try {
+			out.read(r, sectionIdsByCode);
+		} finally {
+			r.close();
+		}
+		return out;
+	}
+
+	private void read(XMLStreamReader r, Map<String, String> sectionIdsByCode) throws XMLStreamException {
+		final Deque<Frame> sections = new ArrayDeque<>();
+		final Markup out = new Markup();
+		int capturing = 0; // open sections under a component (markup is buffered while > 0)
+		int componentDepth = 0;
+		int effectiveDepth = 0;
+		long seq = 0;
+
+		StringBuilder title = null;
+		int titleDepth = 0;
+
+		while (r.hasNext()) {
+			int ev = r.next();
+			switch (ev) {
+			case XMLStreamConstants.START_ELEMENT: {
+				seq++;
+				String name = r.getLocalName();
+
+				if (title != null)
+					titleDepth++;
+
+				switch (name) {
+				case "component" -> componentDepth++;
+				case "title" -> {
+					if (titleText == null && title == null) {
+						title = new StringBuilder();
+						titleDepth = 1;
+					}
+				}
+				case "code" -> onCode(r, sections, sectionIdsByCode);
+				case "effectiveTime" -> {
+					effectiveDepth++;
+					String v = r.getAttributeValue(null, "value");
+					if (!effectiveTimeSeen) {
+						effectiveTimeSeen = true;
+						firstEffectiveValue = v;
+					}
+					addEffectiveCandidate(v);
+					for (Frame f : sections) {
+						if (!f.effSeen) {
+							f.effSeen = true;
+							f.firstEffValue = v;
+						}
+					}
+				}
+				case "low" -> {
+					if (effectiveDepth > 0)
+						addEffectiveCandidate(r.getAttributeValue(null, "value"));
+				}
+				case "id" -> {
+					if (ndaExtension == null && NDA_ROOT.equals(r.getAttributeValue(null, "root"))) {
+						String ext = r.getAttributeValue(null, "extension");
+						ndaExtension = (ext == null) ? "" : ext;
+					}
+				}
+				default -> {
+				}
+				}
+
+				if ("section".equals(name)) {
+					boolean under = componentDepth > 0;
+					if (under && capturing++ == 0)
+						out.reset();
+					sections.push(new Frame(seq, r.getAttributeValue(null, "ID"), under, out.mark()));
+				}
+				if (capturing > 0)
+					out.start(r);
+				break;
+			}
+			case XMLStreamConstants.END_ELEMENT: {
+				String name = r.getLocalName();
+				if (capturing > 0)
+					out.end(r);
+
+				if (title != null && --titleDepth == 0) {
+					titleText = title.toString();
+					title = null;
+				}
+
+				switch (name) {
+				case "component" -> componentDepth--;
+				case "effectiveTime" -> effectiveDepth--;
+				case "section" -> {
+					Frame f = sections.pop();
+					onSectionEnd(f, out.buf, sectionIdsByCode);
+					if (f.underComponent)
+						capturing--;
+				}
+				default -> {
+				}
+				}
+				break;
+			}
+			case XMLStreamConstants.CHARACTERS:
+			case XMLStreamConstants.CDATA:
+			case XMLStreamConstants.SPACE: {
+				if (title != null)
+					title.append(r.getTextCharacters(), r.getTextStart(), r.getTextLength());
+				if (capturing > 0)
+					out.text(r.getTextCharacters(), r.getTextStart(), r.getTextLength());
+				break;
+			}
+			default:
+				break;
+			}
+		}
+	}
+
+	private void onCode(XMLStreamReader r, Deque<Frame> sections, Map<String, String> sectionIdsByCode) {
+		String code = r.getAttributeValue(null, "code");
+		String system = r.getAttributeValue(null, "codeSystem");
+
+		if (documentLoinc == null && LOINC_SYSTEM.equals(system) && code != null && !code.isBlank()) {
+			documentLoinc = code.trim();
+		}
+		if (NDC_SYSTEM.equals(system) && code != null && !code.isBlank()) {
+			ndcCodes.add(code.trim());
+		}
+
+		String attr = (code == null) ? "" : code;
+		boolean target = sectionIdsByCode.containsKey(attr);
+		for (Frame f : sections) {
+			if (!f.codeSeen) {
+				f.codeSeen = true;
+				f.firstCode = attr;
+			}
+			if (target) {
+				if (f.targetCodes == null)
+					f.targetCodes = new HashSet<>(4);
+				f.targetCodes.add(attr);
+			}
+		}
+	}
+
+	private void onSectionEnd(Frame f, StringBuilder buf, Map<String, String> sectionIdsByCode) {
+		// Section effective date: first code matches, first effectiveTime has a non-empty value
+		if (f.codeSeen && sectionIdsByCode.containsKey(f.firstCode) && f.effSeen
+				&& StringUtils.isNotEmpty(f.firstEffValue)) {
+			keepEarliest(sectionDates, f.firstCode, f.seq, f.firstEffValue);
+		}
+
+		if (!f.underComponent || f.targetCodes == null)
+			return;
+
+		String markup = null;
+		for (String code : f.targetCodes) {
+			boolean improvesSecondary = isEarlier(secondary, code, f.seq);
+			String wantedId = sectionIdsByCode.get(code);
+			boolean improvesPrimary = wantedId != null && wantedId.equalsIgnoreCase(f.id)
+					&& isEarlier(primary, code, f.seq);
+			if (!improvesSecondary && !improvesPrimary)
+				continue;
+			if (markup == null)
+				markup = buf.substring(f.bufStart);
+			if (improvesSecondary)
+				secondary.put(code, new Candidate(f.seq, markup));
+			if (improvesPrimary)
+				primary.put(code, new Candidate(f.seq, markup));
+		}
+	}
+
+	private static boolean isEarlier(Map<String, Candidate> m, String code, long seq) {
+		Candidate c = m.get(code);
+		return c == null || seq < c.seq;
+	}
+
+	private static void keepEarliest(Map<String, Candidate> m, String code, long seq, String value) {
+		if (isEarlier(m, code, seq))
+			m.put(code, new Candidate(seq, value));
+	}
+
+	private void addEffectiveCandidate(String raw) {
+		if (raw == null)
+			return;
+		String norm = Dates.normalizeToYyyyMMdd(raw);
+		if (norm != null)
+			effectiveCandidates.add(norm);
+	}
+
+	// ---------------------------------------------------------------------
+	// Re-serialization of buffered section markup
+	// ---------------------------------------------------------------------
+
+	/**
+	 * Writes section markup the way the indenting Transformer on the DOM path does
+	 * (indent-amount 2): start tags and text following an end tag begin on a new,
+	 * indented line; elements holding only text stay on one line; empty elements
+	 * are self-closed (Jsoup reads {@code <br></br>} as two breaks). Jsoup keeps
+	 * whitespace verbatim inside raw-text elements such as {@code title}, so the
+	 * layout has to match for the extracted text to be identical.
+	 */
+	private static final class Markup {
+		final StringBuilder buf = new StringBuilder(64 * 1024);
+		/** Per open element: has it had a child element? */
+		private boolean[] hasChild = new boolean[32];
+		private int depth;
+		/** Start tag written without its closing '>' (may still become "/>"). */
+		private boolean pending;
+		private boolean afterEnd;
+
+		void reset() {
+			buf.setLength(0);
+			depth = 0;
+			pending = false;
+			afterEnd = false;
+		}
+
+		private void newline(int level) {
+			buf.append('\n');
+			for (int i = 0; i < level; i++)
+				buf.append("  ");
+		}
+
+		/** Buffer position where the next node will start. */
+		int mark() {
+			flush();
+			return buf.length();
+		}
+
+		private void flush() {
+			if (pending) {
+				buf.append('>');
+				pending = false;
+			}
+		}
+
+		void start(XMLStreamReader r) {
+			flush();
+			if (depth > 0)
+				hasChild[depth - 1] = true;
+			if (depth == hasChild.length)
+				hasChild = java.util.Arrays.copyOf(hasChild, depth * 2);
+			newline(depth);
+			hasChild[depth++] = false;
+			afterEnd = false;
+
+			buf.append('<');
+			appendQName(r.getPrefix(), r.getLocalName(), buf);
+			for (int i = 0; i < r.getAttributeCount(); i++) {
+				buf.append(' ');
+				appendQName(r.getAttributePrefix(i), r.getAttributeLocalName(i), buf);
+				buf.append("=\"");
+				escape(r.getAttributeValue(i), buf);
+				buf.append('"');
+			}
+			pending = true;
+		}
+
+		void end(XMLStreamReader r) {
+			boolean children = depth > 0 && hasChild[--depth];
+			if (pending) {
+				buf.append("/>");
+				pending = false;
+			} else {
+				if (children)
+					newline(depth);
+				buf.append("</");
+				appendQName(r.getPrefix(), r.getLocalName(), buf);
+				buf.append('>');
+			}
+			afterEnd = true;
+		}
+
+		void text(char[] ch, int start, int len) {
+			if (len == 0)
+				return;
+			flush();
+			if (afterEnd) {
+				if (!Character.isWhitespace(ch[start]))
+					newline(depth);
+				afterEnd = false;
+			}
+			for (int i = start, end = start + len; i < end; i++) {
+				char c = ch[i];
+				switch (c) {
+				case '&' -> buf.append("&amp;");
+				case '<' -> buf.append("&lt;");
+				case '>' -> buf.append("&gt;");
+				case '\n' -> newline(depth);
+				default -> buf.append(c);
+				}
+			}
+		}
+
+		private static void appendQName(String prefix, String local, StringBuilder b) {
+			if (prefix != null && !prefix.isEmpty())
+				b.append(prefix).append(':');
+			b.append(local);
+		}
+
+		private static void escape(String v, StringBuilder b) {
+			if (v == null)
+				return;
+			for (int i = 0; i < v.length(); i++) {
+				char c = v.charAt(i);
+				switch (c) {
+				case '&' -> b.append("&amp;");
+				case '<' -> b.append("&lt;");
+				case '"' -> b.append("&quot;");
+				default -> b.append(c);
+				}
+			}
+		}
+	}
+
+	// ---------------------------------------------------------------------
+	// Binary record (LabelScanSpool)
+	// ---------------------------------------------------------------------
+
+	/** NDC codes found in {@code <code codeSystem="2.16.840.1.113883.6.69">} elements. */
+	List<String> ndcCodes() {
+		return ndcCodes;
+	}
+
+	/** Write the scan results (not the NDC codes or resolved text). */
+	void writeTo(DataOutputStream out) throws IOException {
+		writeString(out, documentLoinc);
+		writeString(out, titleText);
+		writeString(out, ndaExtension);
+		out.writeBoolean(effectiveTimeSeen);
+		writeString(out, firstEffectiveValue);
+		out.writeInt(effectiveCandidates.size());
+		for (String v : effectiveCandidates)
+			writeString(out, v);
+		writeCandidates(out, sectionDates);
+		writeCandidates(out, primary);
+		writeCandidates(out, secondary);
+	}
+
+	/** Inverse of {@link #writeTo}. */
+	static StreamingSplLabelSource readFrom(DataInputStream in) throws IOException {
+		StreamingSplLabelSource s = new StreamingSplLabelSource();
+		s.documentLoinc = readString(in);
+		s.titleText = readString(in);
+		s.ndaExtension = readString(in);
+		s.effectiveTimeSeen = in.readBoolean();
+		s.firstEffectiveValue = readString(in);
+		int n = in.readInt();
+		for (int i = 0; i < n; i++)
+			s.effectiveCandidates.add(readString(in));
+		readCandidates(in, s.sectionDates);
+		readCandidates(in, s.primary);
+		readCandidates(in, s.secondary);
+		return s;
+	}
+
+	private static void writeCandidates(DataOutputStream out, Map<String, Candidate> m) throws IOException {
+		out.writeInt(m.size());
+		for (Map.Entry<String, Candidate> e : m.entrySet()) {
+			writeString(out, e.getKey());
+			out.writeLong(e.getValue().seq);
+			writeString(out, e.getValue().value);
+		}
+	}
+
+	private static void readCandidates(DataInputStream in, Map<String, Candidate> m) throws IOException {
+		int n = in.readInt();
+		for (int i = 0; i < n; i++) {
+			String code = readString(in);
+			long seq = in.readLong();
+			m.put(code, new Candidate(seq, readString(in)));
+		}
+	}
+
+	// Section markup can exceed writeUTF's 64 KB limit: length-prefixed UTF-8, -1 for null
+	private static void writeString(DataOutputStream out, String v) throws IOException {
+		if (v == null) {
+			out.writeInt(-1);
+			return;
+		}
+		byte[] b = v.getBytes(StandardCharsets.UTF_8);
+		out.writeInt(b.length);
+		out.write(b);
+	}
+
+	private static String readString(DataInputStream in) throws IOException {
+		int len = in.readInt();
+		if (len < 0)
+			return null;
+		byte[] b = new byte[len];
+		in.readFully(b);
+		return new String(b, StandardCharsets.UTF_8);
+	}
+
+	// ---------------------------------------------------------------------
+	// SplLabelSource
+	// ---------------------------------------------------------------------
+
+	@Override
+	public String documentLoincCode() {
+		return documentLoinc;
+	}
+
+	@Override
+	public int approvalYear() {
+		return StringUtils.isNotEmpty(titleText) ? SplXmlLabelExtractor.getApprovalYear(titleText) : -1;
+	}
+
+	@Override
+	public Date earliestEffectiveDate() {
+		return SplXmlLabelExtractor.earliestValidDate(effectiveCandidates);
+	}
+
+	@Override
+	public int nda() {
+		return SplXmlLabelExtractor.parseNda(ndaExtension == null ? "" : ndaExtension);
+	}
+
+	@Override
+	public Date labelDate() throws Exception {
+		if (!effectiveTimeSeen) {
+			Logger.log("No date found in effectiveTime element.");
+			return null;
+		}
+		return SplXmlLabelExtractor.parseLabelDate(firstEffectiveValue);
+	}
+
+	@Override
+	public Date sectionEffectiveDate(String sectionCode) {
+		Candidate c = sectionDates.get(sectionCode);
+		if (c == null)
+			return null;
+		try {
+			return Dates.parseYyyyMMdd(c.value);
+		} catch (Exception e) {
+			Logger.log("Error extracting date for section code: " + sectionCode + " - " + e.getMessage());
+			return null;
+		}
+	}
+
+	@Override
+	public String sectionText(String sectionCode, String sectionId, ConcurrentMap<String, Integer> passTracker) {
+		String cached = resolvedText.get(sectionCode);
+		if (cached != null)
+			return cached;
+
+		String text = "";
+		String pass = null;
+		Candidate p = primary.get(sectionCode);
+		if (p != null)
+			text = SplXmlLabelExtractor.htmlTextFromMarkup(p.value);
+		if (StringUtils.isNotEmpty(text)) {
+			pass = "1";
+		} else {
+			Candidate s = secondary.get(sectionCode);
+			text = (s == null) ? "" : SplXmlLabelExtractor.htmlTextFromMarkup(s.value);
+			if (StringUtils.isNotEmpty(text))
+				pass = "2";
+		}
+
+		if (pass != null && passTracker != null)
+			passTracker.merge(pass, 1, Integer::sum);
+		resolvedText.put(sectionCode, text);
+		return text;
+	}
+}
@@ -0,0 +1,426 @@
+package org.pvlens.spl.processing.incremental;
+
+/*
+ * This file is part of PVLens.
+ *
+ * Copyright (C) 2025 GlaxoSmithKline
+ *
+ * PVLens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PVLens is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PVLens.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputFilter;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.HexFormat;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.pvlens.spl.conf.ConfigLoader;
+import org.pvlens.spl.om.SplDrug;
+import org.pvlens.spl.processing.persist.IdAllocators;
+import org.pvlens.spl.processing.persist.ProductDelta;
+import org.pvlens.spl.processing.support.SplXmlRef;
+import org.pvlens.spl.util.Logger;
+import org.pvlens.spl.util.UmlsTerms;
+
+/**
+ * Incremental pipeline runs (RUN_MODE=INCREMENTAL, state in RUN_STATE_DIR).
+ *
+ * <p>Every run with a state directory records a manifest of its SPL inputs
+ * (GUID → XML reference → content hash), the extracted products before merging,
+ * and what was written to the database: GUID → SUBSTANCE_ID, per-product row
+ * fingerprints, the surrogate ID counters and the reference table IDs. The next
+ * incremental run then:</p>
+ * <ol>
+ *   <li>hashes the current inputs ({@link #plan}); GUIDs whose XML set or
+ *       content changed, and products that absorbed them, are mapped and
+ *       extracted again, all others are restored from the state;</li>
+ *   <li>merges the full product set as usual (merging is cheap next to
+ *       extraction and group membership can move);</li>
+ *   <li>writes only new and changed products, with DELETE statements for the
+ *       rows they replace and for products that are gone
+ *       ({@link ProductDelta}), keeping SUBSTANCE and reference IDs stable.</li>
+ * </ol>
+ *
+ * <p>The state is tied to the UMLS release and the XML parser; when either
+ * changes, or no state exists yet, the run falls back to a full rebuild whose
+ * output must be loaded into an empty database.</p>
+ */
+public final class IncrementalRun {
+
+	private static final String STATE_FILE = "state.bin";
+	private static final String DRUG_DIR = "drugs";
+
+	// Only our model classes and JDK types are read back
+	private static final ObjectInputFilter FILTER = ObjectInputFilter.Config
+			.createFilter("java.base/*;org.pvlens.spl.**;!*");
+
+	private final Path dir;
+	private final String configKey;
+	private final RunState prior;
+	private final boolean delta;
+
+	// Filled by plan()
+	private Map<String, Map<String, String>> inputs = new TreeMap<>();
+	private Map<String, String> stamps = new HashMap<>();
+	private Map<String, String> refGuid = new HashMap<>();
+	private final Map<String, RunState.DrugEntry> drugs = new ConcurrentHashMap<>();
+	private final List<SplDrug> restored = new ArrayList<>();
+	private final Set<String> relabel = new TreeSet<>();
+
+	IncrementalRun(Path dir, String configKey, boolean incremental) {
+		this.dir = dir;
+		this.configKey = configKey;
+		RunState loaded = incremental ? readState(dir.resolve(STATE_FILE), configKey) : null;
+		this.delta = loaded != null;
+		this.prior = delta ? loaded : new RunState();
+	}
+
+	/**
+	 * Open the run state configured by RUN_STATE_DIR / RUN_MODE, or null when no
+	 * state directory is set (plain full run, nothing recorded).
+	 */
+	public static IncrementalRun open(ConfigLoader cfg) {
+		String stateDir = cfg.getRunStateDir();
+		if (stateDir.isEmpty())
+			return null;
+
+		String key = "UMLS_VERSION=" + cfg.getUmlsVersion() + ";SPL_XML_PARSER="
+				+ (cfg.isStreamingSplParser() ? "STAX" : "DOM");
+		IncrementalRun run = new IncrementalRun(Paths.get(stateDir), key, cfg.isIncrementalRun());
+		if (cfg.isIncrementalRun() && !run.isDelta())
+			Logger.warn("RUN_MODE=INCREMENTAL but no usable run state in " + stateDir
+					+ "; running a full rebuild (load its output into an empty database)");
+		if (run.isDelta() && "JDBC".equals(cfg.getSqlSink()))
+			throw new IllegalStateException("Incremental runs write delta_delete.sql, which has to be applied"
+					+ " before the inserts; use SQL_SINK=SQL or TSV");
+		return run;
+	}
+
+	/** True when a prior state was loaded and this run writes a delta. */
+	public boolean isDelta() {
+		return delta;
+	}
+
+	/**
+	 * Hash the current inputs and decide what has to be extracted again.
+	 *
+	 * @param guidToXml every GUID found under SPL_PATH with its XML references
+	 * @return the GUIDs to map and extract in this run (all of them on a full run)
+	 */
+	public Map<String, List<String>> plan(Map<String, List<String>> guidToXml) {
+		long t0 = System.currentTimeMillis();
+		Map<String, String> priorHash = new HashMap<>();
+		prior.inputs.values().forEach(priorHash::putAll);
+
+		ConcurrentMap<Path, String> containerStamps = new ConcurrentHashMap<>();
+		ConcurrentMap<String, String> newStamps = new ConcurrentHashMap<>();
+		Map<String, String> hashes = guidToXml.values().stream().flatMap(List::stream).distinct()
+				.collect(Collectors.toList()).parallelStream()
+				.collect(Collectors.toConcurrentMap(ref -> ref, ref -> {
+					String stamp = containerStamps.computeIfAbsent(SplXmlRef.container(ref), IncrementalRun::stamp);
+					newStamps.put(ref, stamp);
+					String known = priorHash.get(ref);
+					if (known != null && !stamp.isEmpty() && stamp.equals(prior.stamps.get(ref)))
+						return known;
+					return contentHash(ref);
+				}));
+
+		Map<String, Map<String, String>> current = new TreeMap<>();
+		Map<String, String> refGuid = new HashMap<>();
+		guidToXml.forEach((guid, refs) -> {
+			Map<String, String> m = current.computeIfAbsent(guid, k -> new TreeMap<>());
+			for (String ref : refs) {
+				m.put(ref, hashes.get(ref));
+				refGuid.putIfAbsent(ref, guid);
+			}
+		});
+		this.inputs = current;
+		this.stamps = new HashMap<>(newStamps);
+		this.refGuid = refGuid;
+
+		Set<String> changed = new TreeSet<>();
+		for (Map.Entry<String, Map<String, String>> e : current.entrySet())
+			if (!e.getValue().equals(prior.inputs.get(e.getKey())))
+				changed.add(e.getKey());
+		Set<String> removed = new TreeSet<>(prior.inputs.keySet());
+		removed.removeAll(current.keySet());
+
+		// Reuse products built only from unchanged GUIDs; everything else is rebuilt
+		Map<String, SplDrug> reuse = new ConcurrentHashMap<>();
+		prior.drugs.entrySet().parallelStream().forEach(e -> {
+			RunState.DrugEntry entry = e.getValue();
+			if (current.keySet().containsAll(entry.sources) && entry.sources.stream().noneMatch(changed::contains)) {
+				SplDrug drug = readDrug(dir.resolve(DRUG_DIR).resolve(entry.file));
+				if (drug != null)
+					reuse.put(e.getKey(), drug);
+			}
+		});
+		Set<String> remap = new TreeSet<>(changed);
+		boolean again = true;
+		while (again) {
+			// A product rebuilt from a GUID also rebuilds every product sharing that GUID
+			again = false;
+			for (Map.Entry<String, RunState.DrugEntry> e : prior.drugs.entrySet()) {
+				String key = e.getKey();
+				if (relabel.contains(key))
+					continue;
+				if (reuse.containsKey(key) && e.getValue().sources.stream().noneMatch(remap::contains))
+					continue;
+				reuse.remove(key);
+				relabel.add(key);
+				for (String g : e.getValue().sources)
+					if (current.containsKey(g))
+						again |= remap.add(g);
+			}
+		}
+		reuse.forEach((key, drug) -> {
+			restored.add(drug);
+			drugs.put(key, prior.drugs.get(key));
+		});
+		relabel.addAll(remap);
+		relabel.addAll(removed);
+
+		Map<String, List<String>> todo = new LinkedHashMap<>();
+		guidToXml.forEach((guid, refs) -> {
+			if (remap.contains(guid))
+				todo.put(guid, refs);
+		});
+		if (delta) {
+			Logger.log("Incremental plan: GUIDs=" + current.size() + ", changed=" + changed.size() + ", removed="
+					+ removed.size() + ", products reused=" + restored.size() + ", GUIDs to extract=" + todo.size()
+					+ " (" + (System.currentTimeMillis() - t0) + " ms)");
+		}
+		return todo;
+	}
+
+	/** Products restored by {@link #plan} (already extracted, not yet merged). */
+	public List<SplDrug> restoredProducts() {
+		return restored;
+	}
+
+	/** GUID → SUBSTANCE_ID recorded by the prior run (empty on a full run). */
+	public Map<String, Integer> priorGuidMap() {
+		return delta ? prior.guidToSubstance : Map.of();
+	}
+
+	/** Continue the prior run's ID sequences and reference table IDs. */
+	public void prepare(IdAllocators ids, UmlsTerms terms) {
+		if (!delta)
+			return;
+		int[] n = prior.nextIds;
+		IdAllocators.bumpToAtLeast(n[0], n[1], n[2], n[3], n[4]);
+		ids.ndcByCode.putAll(prior.ndcByCode);
+		ids.ndcIds.putAll(prior.ndcIds);
+		terms.setKnownIds(prior.referenceIds);
+	}
+
+	/**
+	 * Start the product delta. On an incremental run the delete script first
+	 * clears the label text of every GUID extracted again.
+	 *
+	 * @param deleteScript where DELETE statements go (removed on a full run)
+	 */
+	public ProductDelta openDelta(Path deleteScript) throws IOException {
+		if (!delta) {
+			Files.deleteIfExists(deleteScript);
+			return new ProductDelta(Map.of(), Set.of(), null);
+		}
+		PrintWriter out = new PrintWriter(Files.newBufferedWriter(deleteScript, StandardCharsets.UTF_8));
+		ProductDelta d = new ProductDelta(prior.fingerprints, prior.srlcIds, out);
+		relabel.forEach(d::deleteLabelText);
+		return d;
+	}
+
+	/**
+	 * Keep the freshly extracted products for the next run. Must be called
+	 * before merging, which folds products into each other.
+	 */
+	public void captureExtracted(Collection<SplDrug> extracted) {
+		Path drugDir = dir.resolve(DRUG_DIR);
+		try {
+			Files.createDirectories(drugDir);
+		} catch (IOException e) {
+			Logger.warn("Cannot create " + drugDir + "; extracted products are not kept: " + e);
+			return;
+		}
+		long run = prior.runId + 1;
+		extracted.parallelStream().forEach(drug -> {
+			if (drug.getGuid() == null)
+				return;
+			String file = drug.getGuid().replaceAll("[^A-Za-z0-9._-]", "_") + "." + run + ".bin";
+			try {
+				writeObject(drugDir.resolve(file), drug);
+				drugs.put(drug.getGuid(), new RunState.DrugEntry(file, sourcesOf(drug)));
+			} catch (IOException | RuntimeException e) {
+				Logger.warn("Extracted product " + drug.getGuid() + " not kept (extracted again next run): " + e);
+			}
+		});
+	}
+
+	/**
+	 * Record this run for the next one. Called after the output has been
+	 * written; until then the prior state stays in place.
+	 */
+	public void save(Collection<SplDrug> products, IdAllocators ids, ProductDelta productDelta, UmlsTerms terms) {
+		RunState next = new RunState();
+		next.configKey = configKey;
+		next.runId = prior.runId + 1;
+		next.inputs = inputs;
+		next.stamps = stamps;
+		next.drugs = new TreeMap<>(drugs);
+
+		next.guidToSubstance = new HashMap<>(priorGuidMap());
+		for (SplDrug p : products) {
+			if (p == null || !p.isSave() || p.getId() <= 0)
+				continue;
+			if (p.getGuid() != null)
+				next.guidToSubstance.put(p.getGuid(), p.getId());
+			if (p.getMergedGuidXmlPairs() != null)
+				p.getMergedGuidXmlPairs().keySet().forEach(g -> next.guidToSubstance.put(g, p.getId()));
+		}
+		next.fingerprints = new HashMap<>(productDelta.fingerprints());
+		next.nextIds = new int[] { ids.productId.get(), ids.ndcId.get(), ids.splSrcId.get(), ids.productAeId.get(),
+				ids.productIndId.get() };
+		next.ndcByCode = new HashMap<>(ids.ndcByCode);
+		next.ndcIds = new HashMap<>(ids.ndcIds);
+		next.srlcIds = new HashSet<>(productDelta.srlcIds());
+		terms.getAssignedIds().forEach((table, m) -> next.referenceIds.put(table, new HashMap<>(m)));
+
+		Path target = dir.resolve(STATE_FILE);
+		try {
+			Files.createDirectories(dir);
+			Path tmp = dir.resolve(STATE_FILE + ".tmp");
+			writeObject(tmp, next);
+			Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			pruneDrugFiles(next);
+			Logger.log("Run state saved: " + target + " (products kept=" + next.drugs.size() + ")");
+		} catch (IOException | RuntimeException e) {
+			Logger.warn("Could not save run state " + target + "; the next incremental run rebuilds in full: " + e);
+		}
+	}
+
+	// -------------------------------------------------------------------------
+	// Helpers
+	// -------------------------------------------------------------------------
+
+	/** GUIDs whose XML the product holds (its own plus any merged in by NDC). */
+	private Set<String> sourcesOf(SplDrug drug) {
+		Set<String> sources = new TreeSet<>();
+		sources.add(drug.getGuid());
+		if (drug.getXmlFiles() != null) {
+			for (String ref : drug.getXmlFiles().keySet()) {
+				String g = refGuid.get(ref);
+				if (g != null)
+					sources.add(g);
+			}
+		}
+		return sources;
+	}
+
+	private void pruneDrugFiles(RunState state) {
+		Set<String> keep = new HashSet<>();
+		state.drugs.values().forEach(e -> keep.add(e.file));
+		try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir.resolve(DRUG_DIR), "*.bin")) {
+			for (Path p : ds)
+				if (!keep.contains(p.getFileName().toString()))
+					Files.deleteIfExists(p);
+		} catch (IOException ignore) {
+			// best effort; stale files are retried next run
+		}
+	}
+
+	/** Size and mtime of the file backing a reference ("" when missing). */
+	private static String stamp(Path container) {
+		try {
+			return Files.size(container) + ":" + Files.getLastModifiedTime(container).toMillis();
+		} catch (IOException e) {
+			return "";
+		}
+	}
+
+	static String contentHash(String ref) {
+		try {
+			MessageDigest md = MessageDigest.getInstance("SHA-256");
+			return HexFormat.of().formatHex(md.digest(SplXmlRef.readAllBytes(ref)));
+		} catch (IOException e) {
+			return "missing";
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	private static RunState readState(Path file, String configKey) {
+		if (!Files.isRegularFile(file))
+			return null;
+		Object o = readObject(file);
+		if (!(o instanceof RunState s) || s.format != RunState.FORMAT) {
+			Logger.warn("Ignoring unreadable run state " + file);
+			return null;
+		}
+		if (!configKey.equals(s.configKey)) {
+			Logger.warn("Run state " + file + " was built with " + s.configKey + ", now " + configKey);
+			return null;
+		}
+		return s;
+	}
+
+	private static SplDrug readDrug(Path file) {
+		return (readObject(file) instanceof SplDrug d) ? d : null;
+	}
+
+	private static Object readObject(Path file) {
+		try (InputStream in = new GZIPInputStream(new BufferedInputStream(Files.newInputStream(file)));
+				ObjectInputStream ois = new ObjectInputStream(in)) {
+			ois.setObjectInputFilter(FILTER);
+			return ois.readObject();
+		} catch (IOException | ClassNotFoundException | RuntimeException e) {
+			return null;
+		}
+	}
+
+	private static void writeObject(Path file, Object o) throws IOException {
+		try (OutputStream out = new GZIPOutputStream(new BufferedOutputStream(Files.newOutputStream(file)));
+				ObjectOutputStream oos = new ObjectOutputStream(out)) {
+			oos.writeObject(o);
+		}
+	}
+}
@@ -0,0 +1,90 @@
+package org.pvlens.spl.processing.incremental;
+
+/*
+ * This file is part of PVLens.
+ *
+ * Copyright (C) 2025 GlaxoSmithKline
+ *
+ * PVLens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PVLens is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PVLens.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.io.Serializable;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * What a run leaves behind for the next incremental run (RUN_STATE_DIR/state.bin).
+ * Extracted products themselves live in separate files under {@code drugs/};
+ * this object only points at them.
+ */
+final class RunState implements Serializable {
+
+	private static final long serialVersionUID = 1L;
+
+	/** Bump when the layout or the meaning of a field changes; older states are ignored. */
+	static final int FORMAT = 3;
+
+	int format = FORMAT;
+
+	/** Inputs the extraction results depend on besides the XML (UMLS release, parser). */
+	String configKey;
+
+	/** Incremented per saved run; names the drug files written by the run. */
+	long runId;
+
+	/** SPL manifest: GUID → (XML reference → SHA-256 of its content). */
+	Map<String, Map<String, String>> inputs = new TreeMap<>();
+
+	/** XML reference → size/mtime of its backing file when hashed (skips re-hashing). */
+	Map<String, String> stamps = new HashMap<>();
+
+	/** Extracted (pre-merge) products by product GUID. */
+	Map<String, DrugEntry> drugs = new TreeMap<>();
+
+	/** GUID → SUBSTANCE_ID of every product written so far. */
+	Map<String, Integer> guidToSubstance = new HashMap<>();
+
+	/** SUBSTANCE_ID → fingerprint of the rows written for it (see ProductPersister). */
+	Map<Integer, String> fingerprints = new HashMap<>();
+
+	/** Next surrogate IDs: product, NDC, SPL source, PRODUCT_AE, PRODUCT_IND. */
+	int[] nextIds = new int[5];
+
+	/** NDC_CODE rows already written (IdAllocators.ndcByCode / ndcIds). */
+	Map<String, Integer> ndcByCode = new HashMap<>();
+	Map<String, Integer> ndcIds = new HashMap<>();
+
+	/** SRLC DRUG_IDs already written. */
+	Set<Integer> srlcIds = new HashSet<>();
+
+	/** Reference table IDs (MEDDRA, RXNORM, SNOMED, ATC) by table then AUI. */
+	Map<String, Map<String, Integer>> referenceIds = new HashMap<>();
+
+	/** One extracted product: its file under {@code drugs/} and the GUIDs whose XML it holds. */
+	static final class DrugEntry implements Serializable {
+
+		private static final long serialVersionUID = 1L;
+
+		final String file;
+		final Set<String> sources;
+
+		DrugEntry(String file, Set<String> sources) {
+			this.file = file;
+			this.sources = sources;
+		}
+	}
+}
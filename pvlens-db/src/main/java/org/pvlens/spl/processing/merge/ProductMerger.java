@@ -20,6 +20,7 @@ package org.pvlens.spl.processing.merge;
  */
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Collection;
 import java.util.Collections;
 import java.util.Date;
@@ -30,7 +31,10 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.function.BiPredicate;
+import java.util.function.Function;
 
 import org.apache.commons.lang3.StringUtils;
 import org.pvlens.spl.om.SplDrug;
@@ -206,21 +210,26 @@ public class ProductMerger {
 		Logger.log(" >> Merged on multi-DP CUI: " + productsToRemove);
 
 		// Merge single-CUI products into multi-CUI groups when covered by the group
+		Map<String, List<String>> multiCuiKeysByCui = new HashMap<>();
+		for (String cuiKey : multiCuiDrugs.keySet()) {
+			for (String cui : new LinkedHashSet<>(Arrays.asList(cuiKey.split("\\|")))) {
+				if (!cui.isEmpty())
+					multiCuiKeysByCui.computeIfAbsent(cui, k -> new ArrayList<>()).add(cuiKey);
+			}
+		}
 		productsToRemove = 0;
 		for (String cui : drugFamilyByCui.keySet()) {
 			List<SplDrug> singleCuiSet = drugFamilyByCui.get(cui);
-			for (String cuiKey : multiCuiDrugs.keySet()) {
-				if (cuiKey.contains(cui)) {
-					List<SplDrug> multiCuiSet = multiCuiDrugs.get(cuiKey);
-					for (SplDrug prd1 : singleCuiSet) {
-						if ( StringUtils.isNoneBlank(prd1.getGuid()) && prd1.isSave() ) {
-							for (SplDrug prd2 : multiCuiSet) {
-								if (!prd1.getGuid().contentEquals(prd2.getGuid()) && prd1.isSave() && prd2.isSave()) {
-                                    // Prefer saving multi-CUI over single-CUI
-									if (prd2.mergeProductGroup(prd1)) {
-										prd1.setSave(false);
-										productsToRemove++;
-									}
+			for (String cuiKey : multiCuiKeysByCui.getOrDefault(cui, List.of())) {
+				List<SplDrug> multiCuiSet = multiCuiDrugs.get(cuiKey);
+				for (SplDrug prd1 : singleCuiSet) {
+					if ( StringUtils.isNoneBlank(prd1.getGuid()) && prd1.isSave() ) {
+						for (SplDrug prd2 : multiCuiSet) {
+							if (!prd1.getGuid().contentEquals(prd2.getGuid()) && prd1.isSave() && prd2.isSave()) {
+								// Prefer saving multi-CUI over single-CUI
+								if (prd2.mergeProductGroup(prd1)) {
+									prd1.setSave(false);
+									productsToRemove++;
 								}
 							}
 						}
@@ -230,60 +239,22 @@ public class ProductMerger {
 		}
 		Logger.log(" >> Merged single DP CUI onto multi-DP CUI: " + productsToRemove);
 
+		// The remaining passes compare every product with every other one; inverted
+		// indexes supply the candidates instead (see mergeOnSharedKey)
+		List<SplDrug> products = new ArrayList<>(allProducts);
+
 		// Merge on FDA tracker number (NDA/BLA)
-		productsToRemove = 0;
-		for (SplDrug prd1 : allProducts) {
-			if ( StringUtils.isNoneBlank(prd1.getGuid()) && prd1.isSave() ) {
-				for (SplDrug prd2 : allProducts) {
-					if (prd2.isSave() && !prd1.getGuid().contentEquals(prd2.getGuid())) {
-						int ndaId1 = prd1.getPrimaryNda();
-						int ndaId2 = prd2.getPrimaryNda();
-						if (ndaId1 != -1 && ndaId1 == ndaId2) {
-							if (prd1.mergeProductGroup(prd2)) {
-								prd2.setSave(false);
-								productsToRemove++;
-							}
-						}
-					}
-				}
-			}
-		}
+		productsToRemove = mergeOnSharedKey(products, ProductMerger::ndaKeys,
+				(prd1, prd2) -> prd1.getPrimaryNda() != -1 && prd1.getPrimaryNda() == prd2.getPrimaryNda());
 		Logger.log(" >> Merged on NDA tracker ID: " + productsToRemove);
 
 		// Merge where a single SNOMED parent is shared
-		productsToRemove = 0;
-		for (SplDrug prd1 : allProducts) {
-			if ( StringUtils.isNoneBlank(prd1.getGuid()) && prd1.isSave() ) {
-				for (SplDrug prd2 : allProducts) {
-					if (prd1 != prd2 && prd2.isSave() && !prd1.getGuid().contentEquals(prd2.getGuid())) {
-						if (prd1.hasSnomedParents(prd2)) {
-							if (prd1.mergeProductGroup(prd2)) {
-								prd2.setSave(false);
-								productsToRemove++;
-							}
-						}
-					}
-				}
-			}
-		}
+		productsToRemove = mergeOnSharedKey(products, SplDrug::getSnomedParentAuis, SplDrug::hasSnomedParents);
 		Logger.log(" >> Merged on SNOMED Parent: " + productsToRemove);
 
 		// Final pass: exact RxNorm ingredient match
-		productsToRemove = 0;
-		for (SplDrug prd1 : allProducts) {
-			if ( StringUtils.isNoneBlank(prd1.getGuid()) && prd1.isSave() ) {
-				for (SplDrug prd2 : allProducts) {
-					if (prd1 != prd2 && prd2.isSave() && !prd1.getGuid().contentEquals(prd2.getGuid())) {
-						if (prd1.hasExactRxNormIngredients(prd2)) {
-							if (prd1.mergeProductGroup(prd2)) {
-								prd2.setSave(false);
-								productsToRemove++;
-							}
-						}
-					}
-				}
-			}
-		}
+		productsToRemove = mergeOnSharedKey(products, ProductMerger::ingredientKeys,
+				SplDrug::hasExactRxNormIngredients);
 		Logger.log(" >> Merged on RxNorm Ingredients: " + productsToRemove);
 
 		// Collect final products (re-resolve merged events)
@@ -497,20 +468,8 @@ public class ProductMerger {
 	 */
 	private ConcurrentLinkedQueue<SplDrug> mergeProductsOnAtcCode(ConcurrentLinkedQueue<SplDrug> allProducts) {
 
-		int productsToRemove = 0;
-		for (SplDrug prd1 : allProducts) {
-			for (SplDrug prd2 : allProducts) {
-				if (!prd1.getGuid().contentEquals(prd2.getGuid()) && prd1.isSave() && prd2.isSave()) {
-					if (prd1.hasExactAtcClass(prd2)) {
-						if (prd1.mergeProductGroup(prd2)) {
-							// Logger.log("Merged SPL GUID: " + prd2.getGuid() + " with " + prd1.getGuid());
-							prd2.setSave(false);
-							productsToRemove++;
-						}
-					}
-				}
-			}
-		}
+		int productsToRemove = mergeOnSharedKey(new ArrayList<>(allProducts), ProductMerger::atcKeys,
+				SplDrug::hasExactAtcClass);
 		Logger.log(" >> Merged on ATC classification: " + productsToRemove);
 
 		ConcurrentLinkedQueue<SplDrug> finalProducts = new ConcurrentLinkedQueue<>();
@@ -538,6 +497,95 @@ public class ProductMerger {
 		return finalProducts;
 	}
 
+	/**
+	 * One greedy merge pass: every saved product, in list order, absorbs the
+	 * other products that satisfy {@code match} and that
+	 * {@link SplDrug#mergeProductGroup} accepts — the same outcome as the
+	 * nested loop over all pairs, without visiting pairs that cannot match.
+	 *
+	 * <p>{@code keys} must be such that two products can only match when they
+	 * share at least one key. Candidates are taken from a key → position index
+	 * and visited in list order; when a merge gives the absorbing product new
+	 * keys, the positions not yet passed are added, which is what the full scan
+	 * would have reached. {@code match} is still evaluated on the live objects.</p>
+	 *
+	 * @return number of products merged away
+	 */
+	static <K> int mergeOnSharedKey(List<SplDrug> products,
+	                                Function<SplDrug, Collection<K>> keys,
+	                                BiPredicate<SplDrug, SplDrug> match) {
+		Map<K, List<Integer>> positions = new HashMap<>();
+		for (int i = 0; i < products.size(); i++) {
+			for (K key : new LinkedHashSet<>(keys.apply(products.get(i))))
+				positions.computeIfAbsent(key, k -> new ArrayList<>()).add(i);
+		}
+
+		int merged = 0;
+		for (SplDrug prd1 : products) {
+			if (!StringUtils.isNoneBlank(prd1.getGuid()) || !prd1.isSave())
+				continue;
+
+			Set<K> seen = new HashSet<>();
+			TreeSet<Integer> candidates = new TreeSet<>();
+			addCandidates(keys.apply(prd1), seen, positions, candidates, -1);
+
+			Integer j = candidates.pollFirst();
+			while (j != null) {
+				SplDrug prd2 = products.get(j);
+				if (prd1 != prd2 && prd2.isSave() && !prd1.getGuid().contentEquals(prd2.getGuid())
+						&& match.test(prd1, prd2) && prd1.mergeProductGroup(prd2)) {
+					prd2.setSave(false);
+					merged++;
+					addCandidates(keys.apply(prd1), seen, positions, candidates, j);
+				}
+				j = candidates.pollFirst();
+			}
+		}
+		return merged;
+	}
+
+	private static <K> void addCandidates(Collection<K> keys, Set<K> seen, Map<K, List<Integer>> positions,
+	                                      TreeSet<Integer> candidates, int after) {
+		for (K key : new ArrayList<>(keys)) {
+			if (!seen.add(key))
+				continue;
+			for (int pos : positions.getOrDefault(key, List.of()))
+				if (pos > after)
+					candidates.add(pos);
+		}
+	}
+
+	/** Primary NDA/BLA of the product, if it has one. */
+	static Collection<Integer> ndaKeys(SplDrug p) {
+		int nda = p.getPrimaryNda();
+		return (nda == -1) ? List.of() : List.of(nda);
+	}
+
+	/**
+	 * Sorted IN/PIN AUIs of the product's RxNorm atoms (an AUI has a single TTY,
+	 * so products with exactly the same ingredients share this signature).
+	 * Products without RxNorm atoms never match.
+	 */
+	static Collection<String> ingredientKeys(SplDrug p) {
+		if (p.getRxNormPts().isEmpty())
+			return List.of();
+		TreeSet<String> ingredients = new TreeSet<>();
+		p.getRxNormPts().forEach((aui, rx) -> {
+			if (rx != null && ("IN".equals(rx.getTty()) || "PIN".equals(rx.getTty())))
+				ingredients.add(aui);
+		});
+		return List.of(String.join("|", ingredients));
+	}
+
+	/** AUIs of the product's ATC classes (equal classes have equal AUIs). */
+	static Collection<String> atcKeys(SplDrug p) {
+		List<String> auis = new ArrayList<>();
+		for (Atom atc : p.getAtcClasses())
+			if (atc != null)
+				auis.add(atc.getAui());
+		return auis;
+	}
+
 	/**
 	 * Merge products that map (via {@code priorGuidMap}) to the same historical
 	 * SUBSTANCE_ID. Logs conflicts where a single product maps to multiple IDs.
@@ -0,0 +1,92 @@
+package org.pvlens.spl.processing.persist;
+
+/*
+ * This file is part of PVLens.
+ *
+ * Copyright (C) 2025 GlaxoSmithKline
+ *
+ * PVLens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PVLens is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PVLens.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+/**
+ * The script run after every load (sql/dashboard_stats.sql): it records the
+ * run's build stamp in DATA_BUILD and the Overview statistics, tagged with the
+ * same stamp, in DASHBOARD_STATS.
+ *
+ * <p>Every pipeline run, full or incremental, gets a new stamp, so the webapp
+ * sees new data even when the rows keep their IDs (deterministic product IDs)
+ * or a delta only updates or removes rows. The stamp is written after all other
+ * rows are loaded; until then the webapp keeps the previous statistics.</p>
+ */
+public final class DashboardStatsScript {
+
+	static final String RESOURCE = "sql/dashboard_stats.sql";
+	static final String BUILD_ID = "${BUILD_ID}";
+
+	private static final DateTimeFormatter STAMP = DateTimeFormatter.ofPattern("yyyyMMdd-HHmmss");
+
+	private DashboardStatsScript() {
+	}
+
+	/** A stamp for one run: its start time and a random suffix. */
+	public static String newBuildId() {
+		return LocalDateTime.now().format(STAMP) + "-" + UUID.randomUUID().toString().substring(0, 8);
+	}
+
+	/** The script with {@code buildId} filled in. */
+	public static String render(String buildId) throws IOException {
+		if (!buildId.matches("[A-Za-z0-9_.:-]+"))
+			throw new IllegalArgumentException("Invalid build id: " + buildId);
+		try (InputStream in = DashboardStatsScript.class.getClassLoader().getResourceAsStream(RESOURCE)) {
+			if (in == null)
+				throw new IOException(RESOURCE + " is not on the classpath");
+			return new String(in.readAllBytes(), StandardCharsets.UTF_8).replace(BUILD_ID, buildId);
+		}
+	}
+
+	/** The statements of {@code script}, without comment lines, for running over JDBC. */
+	public static List<String> statements(String script) {
+		StringBuilder sb = new StringBuilder();
+		for (String line : script.split("\\R")) {
+			String t = line.trim();
+			if (!t.startsWith("#") && !t.startsWith("--"))
+				sb.append(line).append('\n');
+		}
+		List<String> out = new ArrayList<>();
+		for (String sql : sb.toString().split(";")) {
+			if (!sql.isBlank())
+				out.add(sql.trim());
+		}
+		return out;
+	}
+
+	/** Run the script through {@code sink} (SQL_SINK=JDBC), then close it. */
+	public static void load(String script, SqlSink sink) throws Exception {
+		try {
+			for (String sql : statements(script))
+				sink.execute(sql);
+		} finally {
+			sink.close();
+		}
+	}
+}
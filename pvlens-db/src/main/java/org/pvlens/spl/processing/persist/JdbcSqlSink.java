@@ -0,0 +1,128 @@
+package org.pvlens.spl.processing.persist;
+
+/*
+ * This file is part of PVLens.
+ *
+ * Copyright (C) 2025 GlaxoSmithKline
+ *
+ * PVLens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PVLens is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PVLens.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.sql.Types;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Loads rows straight into the PVLens schema with batched prepared statements.
+ * Connections from {@link org.pvlens.spl.util.Db#getConnection} already set
+ * {@code rewriteBatchedStatements=true}, so MySQL receives each batch as
+ * multi-row INSERTs.
+ *
+ * <p>Row order is kept: a pending batch is executed before rows of a different
+ * {@link SqlInsert} are added. Autocommit is turned off; {@link #flush()} and
+ * {@link #close()} commit. The connection is owned (and closed) by the sink.</p>
+ *
+ * <p>A load uses one sink, and so one connection and transaction, per table
+ * writer, and the writers commit independently: a child row (e.g.
+ * SUBSTANCE_RXNORM) can arrive before the SUBSTANCE or RXNORM row it references
+ * is committed on another connection. With foreign key checks on, that insert
+ * would wait on the other transaction's lock or fail the check, so the session
+ * runs with {@code FOREIGN_KEY_CHECKS = 0}. The referenced rows are loaded by
+ * the same run (support tables included), so the keys hold once every sink is
+ * closed.</p>
+ */
+public class JdbcSqlSink implements SqlSink {
+
+    private final Connection conn;
+    private final int batchSize;
+    private final Map<SqlInsert, PreparedStatement> statements = new HashMap<>();
+
+    private PreparedStatement pending;
+    private int pendingRows;
+
+    public JdbcSqlSink(Connection conn, int batchSize) throws SQLException {
+        this.conn = Objects.requireNonNull(conn, "conn");
+        if (batchSize < 1)
+            throw new IllegalArgumentException("batchSize must be positive");
+        this.batchSize = batchSize;
+        try (Statement st = conn.createStatement()) {
+            st.execute("SET FOREIGN_KEY_CHECKS = 0");
+        }
+        conn.setAutoCommit(false);
+    }
+
+    @Override
+    public void write(SqlInsert insert, Object[] values) throws SQLException {
+        PreparedStatement ps = statements.get(insert);
+        if (ps == null) {
+            ps = conn.prepareStatement(insert.preparedSql());
+            statements.put(insert, ps);
+        }
+        if (ps != pending)
+            executePending();
+
+        for (int i = 0; i < values.length; i++) {
+            Object v = values[i];
+            if (v == null) ps.setNull(i + 1, Types.NULL);
+            else if (v instanceof Boolean b) ps.setInt(i + 1, b ? 1 : 0);
+            else ps.setObject(i + 1, v);
+        }
+        ps.addBatch();
+        pending = ps;
+        if (++pendingRows >= batchSize)
+            executePending();
+    }
+
+    @Override
+    public void execute(String sql) throws SQLException {
+        executePending();
+        try (Statement st = conn.createStatement()) {
+            st.execute(sql);
+        }
+    }
+
+    @Override
+    public void flush() throws SQLException {
+        executePending();
+        conn.commit();
+    }
+
+    @Override
+    public void close() throws SQLException {
+        try {
+            flush();
+        } finally {
+            for (PreparedStatement ps : statements.values()) {
+                try {
+                    ps.close();
+                } catch (SQLException ignore) {
+                    // closing anyway
+                }
+            }
+            conn.close();
+        }
+    }
+
+    private void executePending() throws SQLException {
+        if (pending == null) return;
+        pending.executeBatch();
+        pending = null;
+        pendingRows = 0;
+    }
+}
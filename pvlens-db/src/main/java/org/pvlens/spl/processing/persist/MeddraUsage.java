@@ -0,0 +1,97 @@
+package org.pvlens.spl.processing.persist;
+
+/*
+ * This file is part of PVLens.
+ *
+ * Copyright (C) 2025 GlaxoSmithKline
+ *
+ * PVLens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PVLens is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PVLens.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Per-term usage summary written to MEDDRA_USAGE: for each MEDDRA_ID the
+ * number of PRODUCT_AE rows, the blackbox rows among them, the PRODUCT_IND
+ * rows and the products (substances) listing the term in either table.
+ *
+ * <p>{@link ProductPersister} tallies the rows it renders for every product of
+ * the run, unchanged products of an incremental run included (their rows are
+ * still in the database), so the table always describes the whole database
+ * and is rewritten in full. The webapp ranks term suggestions from it instead
+ * of counting PRODUCT_AE per candidate.</p>
+ */
+final class MeddraUsage {
+
+	private static final int AE = 0, BLACKBOX = 1, IND = 2;
+
+	private final TreeMap<Integer, int[]> counts = new TreeMap<>();
+
+	// (MEDDRA_ID, PRODUCT_ID) pairs, counted distinct in rows()
+	private long[] pairs = new long[1024];
+	private int pairCount;
+
+	/** One PRODUCT_AE row. */
+	void ae(int productId, int meddraId, boolean blackbox) {
+		int[] c = counts.computeIfAbsent(meddraId, k -> new int[3]);
+		c[AE]++;
+		if (blackbox)
+			c[BLACKBOX]++;
+		pair(productId, meddraId);
+	}
+
+	/** One PRODUCT_IND row. */
+	void ind(int productId, int meddraId) {
+		counts.computeIfAbsent(meddraId, k -> new int[3])[IND]++;
+		pair(productId, meddraId);
+	}
+
+	private void pair(int productId, int meddraId) {
+		long p = ((long) meddraId << 32) | (productId & 0xFFFFFFFFL);
+		if (pairCount > 0 && pairs[pairCount - 1] == p)
+			return; // rows of one product come together
+		if (pairCount == pairs.length)
+			pairs = Arrays.copyOf(pairs, pairCount * 2);
+		pairs[pairCount++] = p;
+	}
+
+	/** Terms tallied so far. */
+	int size() {
+		return counts.size();
+	}
+
+	/**
+	 * MEDDRA_USAGE values in MEDDRA_ID order: MEDDRA_ID, AE_COUNT,
+	 * BLACKBOX_COUNT, IND_COUNT, SUBSTANCE_COUNT.
+	 */
+	List<Object[]> rows() {
+		long[] sorted = Arrays.copyOf(pairs, pairCount);
+		Arrays.sort(sorted);
+		Map<Integer, Integer> substances = new HashMap<>();
+		for (int i = 0; i < sorted.length; i++) {
+			if (i == 0 || sorted[i] != sorted[i - 1])
+				substances.merge((int) (sorted[i] >> 32), 1, Integer::sum);
+		}
+
+		List<Object[]> rows = new ArrayList<>(counts.size());
+		counts.forEach((meddraId, c) -> rows.add(new Object[] { meddraId, c[AE], c[BLACKBOX], c[IND],
+				substances.getOrDefault(meddraId, 0) }));
+		return rows;
+	}
+}
@@ -0,0 +1,149 @@
+package org.pvlens.spl.processing.persist;
+
+/*
+ * This file is part of PVLens.
+ *
+ * Copyright (C) 2025 GlaxoSmithKline
+ *
+ * PVLens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PVLens is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PVLens.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.io.PrintWriter;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.pvlens.spl.util.Logger;
+
+/**
+ * Per-product change tracking for incremental runs.
+ *
+ * <p>{@link ProductPersister} renders each product's rows, reduces them to a
+ * fingerprint (surrogate IDs left out) and asks {@link #classify} whether the
+ * product is new, changed or unchanged since the run that produced
+ * {@code priorFingerprints}. Changed products get DELETE statements for their
+ * old rows in the delete script, which must be applied before the INSERT files;
+ * products that disappeared are deleted in {@link #close()}.</p>
+ *
+ * <p>With no delete script (first run into an empty database) every product is
+ * new and the class only collects the fingerprints for the next run.</p>
+ */
+public final class ProductDelta implements AutoCloseable {
+
+	/** How a product compares with the prior run. */
+	public enum Change {
+		NEW, CHANGED, UNCHANGED
+	}
+
+	// Child tables keyed by PRODUCT_ID, in delete order (links before their targets)
+	private static final String[] PRODUCT_TABLES = { "PRODUCT_AE", "PRODUCT_IND", "SPL_SRCFILE", "PRODUCT_NDC",
+			"SUBSTANCE_ATC", "SUBSTANCE_RXNORM", "SUBSTANCE_INGREDIENT", "SUBSTANCE_SNOMED_PT",
+			"SUBSTANCE_SNOMED_PARENT", "SUBSTANCE_SRLC", "SUBSTANCE_NAME" };
+
+	private static final String[] LABEL_TEXT_TABLES = { "SPL_AE_TEXT", "SPL_IND_TEXT", "SPL_BOX_TEXT" };
+
+	private final Map<Integer, String> prior;
+	private final Map<Integer, String> fingerprints = new TreeMap<>();
+	private final Set<Integer> srlcIds = ConcurrentHashMap.newKeySet();
+	private final PrintWriter deletes;
+
+	private int added, changed, unchanged, removed;
+
+	/**
+	 * @param priorFingerprints PRODUCT_ID → fingerprint from the prior run (empty on a first run)
+	 * @param priorSrlcIds      SRLC DRUG_IDs already loaded
+	 * @param deletes           delete script, or null when loading into an empty database
+	 */
+	public ProductDelta(Map<Integer, String> priorFingerprints, Set<Integer> priorSrlcIds, PrintWriter deletes) {
+		this.prior = (priorFingerprints == null) ? Map.of() : priorFingerprints;
+		if (priorSrlcIds != null)
+			this.srlcIds.addAll(priorSrlcIds);
+		this.deletes = deletes;
+		if (deletes != null)
+			deletes.println("SET autocommit = OFF;");
+	}
+
+	/** Record {@code fingerprint} for the product and compare it with the prior run. */
+	public Change classify(int productId, String fingerprint) {
+		fingerprints.put(productId, fingerprint);
+		String before = prior.get(productId);
+		if (before == null) {
+			added++;
+			return Change.NEW;
+		}
+		if (before.equals(fingerprint)) {
+			unchanged++;
+			return Change.UNCHANGED;
+		}
+		changed++;
+		deleteProductRows(productId, false);
+		return Change.CHANGED;
+	}
+
+	/** Clear the raw label text written for {@code guid} (it is extracted again). */
+	public void deleteLabelText(String guid) {
+		if (deletes == null || guid == null)
+			return;
+		StringBuilder lit = new StringBuilder(guid.length() + 2);
+		SqlTextSink.appendLiteral(lit, guid);
+		for (String t : LABEL_TEXT_TABLES)
+			deletes.println("DELETE FROM " + t + " WHERE GUID = " + lit + ";");
+	}
+
+	/** SRLC DRUG_IDs written so far (prior runs included). */
+	public Set<Integer> srlcIds() {
+		return srlcIds;
+	}
+
+	/** PRODUCT_ID → fingerprint of every product seen in this run. */
+	public Map<Integer, String> fingerprints() {
+		return fingerprints;
+	}
+
+	/** True when the run writes a delete script (i.e. it is a delta on top of a loaded database). */
+	public boolean isDelta() {
+		return deletes != null;
+	}
+
+	/** Delete products of the prior run that are gone, then finish the delete script. */
+	@Override
+	public void close() {
+		for (Integer id : prior.keySet()) {
+			if (!fingerprints.containsKey(id)) {
+				deleteProductRows(id, true);
+				removed++;
+			}
+		}
+		Logger.log("Product delta: new=" + added + ", changed=" + changed + ", unchanged=" + unchanged
+				+ ", removed=" + removed);
+		if (deletes != null) {
+			deletes.println("COMMIT;");
+			deletes.close();
+		}
+	}
+
+	private void deleteProductRows(int productId, boolean substance) {
+		if (deletes == null)
+			return;
+		deletes.println("DELETE FROM PRODUCT_AE_SRC WHERE AE_ID IN (SELECT ID FROM PRODUCT_AE WHERE PRODUCT_ID = "
+				+ productId + ");");
+		deletes.println("DELETE FROM PRODUCT_IND_SRC WHERE IND_ID IN (SELECT ID FROM PRODUCT_IND WHERE PRODUCT_ID = "
+				+ productId + ");");
+		for (String t : PRODUCT_TABLES)
+			deletes.println("DELETE FROM " + t + " WHERE PRODUCT_ID = " + productId + ";");
+		if (substance)
+			deletes.println("DELETE FROM SUBSTANCE WHERE ID = " + productId + ";");
+	}
+}
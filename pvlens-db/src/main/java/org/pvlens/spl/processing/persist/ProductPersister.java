@@ -19,14 +19,18 @@ package org.pvlens.spl.processing.persist;
  * along with PVLens.  If not, see <https://www.gnu.org/licenses/>.
  */
 
-import java.io.PrintWriter;
 import java.nio.charset.StandardCharsets;
 import java.security.MessageDigest;
 import java.time.ZoneOffset;
 import java.time.ZonedDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.Comparator;
 import java.util.Date;
+import java.util.Deque;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -34,9 +38,15 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.TreeMap;
 import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Predicate;
 
 import org.apache.commons.lang3.StringUtils;
 import org.pvlens.spl.conf.ConfigLoader;
@@ -49,14 +59,28 @@ import org.pvlens.spl.util.Logger;
 /**
  * Emits SQL artifacts for the merged {@link SplDrug} products and their related
  * entities (SRLC, SPL source files, NDC/ATC, RxNorm, SNOMED, IND/AEs).
+ * Products are written in representative-GUID order, so IDs and output do not
+ * depend on the order products arrive in.
  *
- * <p>Behavior matches the existing implementation; changes are limited to
- * comment formalization, very small clarity fixes, and a corrected log line.</p>
+ * <p>A full run ({@link #saveFull}) has two phases: a sequential plan that
+ * assigns each product its PRODUCT_ID and surrogate ID ranges and writes the
+ * shared rows (SUBSTANCE, SRLC, NDC_CODE), then a parallel render of each
+ * product's own rows from its plan, handed to the writers in plan order. The
+ * output is the same for any thread count, and from one run to the next:
+ * outcome codes are rendered in insertion order, never in the order of their
+ * per-JVM {@link org.pvlens.spl.umls.Symbols} ids.</p>
+ *
+ * <p>An incremental run ({@link #saveDelta}) renders each PRODUCT_ID group
+ * and compares its fingerprint with the prior run's: NEW groups are written
+ * in full, CHANGED groups have their old rows deleted by the
+ * {@link ProductDelta} script and are rewritten under the same PRODUCT_ID,
+ * and UNCHANGED groups only contribute SHARED rows not written before.</p>
  */
 public class ProductPersister {
 
 	private final UmlsLoader umls;
 	private final ConfigLoader cfg;
+	private final int threads;
 
 	// Thread-safe (java.time)
 	private static final DateTimeFormatter DB_FMT =
@@ -72,80 +96,356 @@ public class ProductPersister {
 		return DB_FMT.format(zdt);
 	}
 
+	// Row shapes (see SqlInsert)
+	private static final SqlInsert SUBSTANCE = SqlInsert.of("SUBSTANCE", "ID");
+	private static final SqlInsert SRLC = SqlInsert.of("SRLC", "DRUG_ID", "APPLICATION_NUMBER", "DRUG_NAME",
+			"ACTIVE_INGREDIENT", "SUPPLEMENT_DATE", "DATABASE_UPDATED", "URL");
+	private static final SqlInsert SUBSTANCE_SRLC = SqlInsert.of("SUBSTANCE_SRLC", "PRODUCT_ID", "DRUG_ID");
+	private static final SqlInsert SPL_SRCFILE = SqlInsert.of("SPL_SRCFILE", "ID", "PRODUCT_ID", "GUID",
+			"XMLFILE_NAME", "SOURCE_TYPE_ID", "APPLICATION_NUMBER", "NDA_SPONSOR", "APPROVAL_DATE");
+	private static final SqlInsert NDC_CODE = SqlInsert.of("NDC_CODE", "ID", "NDC_CODE", "PRODUCT_NAME",
+			"PRODUCT_NAME_HASH");
+	private static final SqlInsert PRODUCT_NDC = SqlInsert.of("PRODUCT_NDC", "PRODUCT_ID", "NDC_ID");
+	private static final SqlInsert SUBSTANCE_ATC = SqlInsert.of("SUBSTANCE_ATC", "PRODUCT_ID", "NDC_ID", "ATC_ID");
+	private static final SqlInsert SUBSTANCE_RXNORM = SqlInsert.of("SUBSTANCE_RXNORM", "PRODUCT_ID", "RXNORM_ID");
+	private static final SqlInsert SUBSTANCE_INGREDIENT = SqlInsert.of("SUBSTANCE_INGREDIENT", "PRODUCT_ID", "SNOMED_ID");
+	private static final SqlInsert SUBSTANCE_SNOMED_PT = SqlInsert.of("SUBSTANCE_SNOMED_PT", "PRODUCT_ID", "SNOMED_ID");
+	private static final SqlInsert SUBSTANCE_SNOMED_PARENT = SqlInsert.of("SUBSTANCE_SNOMED_PARENT", "PRODUCT_ID",
+			"SNOMED_ID");
+	private static final SqlInsert PRODUCT_AE = SqlInsert.of("PRODUCT_AE", "ID", "PRODUCT_ID", "MEDDRA_ID",
+			"LABEL_DATE", "WARNING", "BLACKBOX", "EXACT_MATCH");
+	private static final SqlInsert PRODUCT_AE_SRC = SqlInsert.of("PRODUCT_AE_SRC", "AE_ID", "SRC_ID");
+	private static final SqlInsert PRODUCT_IND = SqlInsert.of("PRODUCT_IND", "ID", "PRODUCT_ID", "MEDDRA_ID",
+			"LABEL_DATE", "EXACT_MATCH");
+	private static final SqlInsert PRODUCT_IND_SRC = SqlInsert.of("PRODUCT_IND_SRC", "IND_ID", "SRC_ID");
+	private static final SqlInsert MEDDRA_USAGE = SqlInsert.of("MEDDRA_USAGE", "MEDDRA_ID", "AE_COUNT",
+			"BLACKBOX_COUNT", "IND_COUNT", "SUBSTANCE_COUNT");
+	private static final SqlInsert SUBSTANCE_NAME = SqlInsert.of("SUBSTANCE_NAME", "PRODUCT_ID", "NAME", "NAME_SOURCE");
+
 	public ProductPersister(UmlsLoader umls) {
+		this(umls, new ConfigLoader());
+	}
+
+	private ProductPersister(UmlsLoader umls, ConfigLoader cfg) {
+		this(umls, cfg, cfg.getPersistThreads());
+	}
+
+	/** With an explicit render thread count (tests). */
+	ProductPersister(UmlsLoader umls, int threads) {
+		this(umls, new ConfigLoader(), threads);
+	}
+
+	private ProductPersister(UmlsLoader umls, ConfigLoader cfg, int threads) {
 		this.umls = Objects.requireNonNull(umls);
-		this.cfg = new ConfigLoader();
+		this.cfg = cfg;
+		this.threads = Math.max(1, threads);
 	}
 
+	/** NDC_CODE and SRLC rows are shared across products: written once, never deleted per product. */
+	private static final Set<SqlInsert> SHARED = Set.of(NDC_CODE, SRLC);
+
 	/**
-	 * Persist the full product set to SQL writers. Runs sequentially to avoid
-	 * interleaving output across files.
+	 * Persist the full product set to SQL writers. The output is the same for
+	 * any number of render threads (see {@link #saveFull}).
 	 */
 	public void saveAll(Collection<SplDrug> products,
 	                    SqlWriters writers,
 	                    IdAllocators ids,
 	                    ConcurrentMap<String, Integer> splSrcTracker,
 	                    Map<String, Integer> priorGuidMap) {
+		saveAll(products, writers, ids, splSrcTracker, priorGuidMap, null);
+	}
+
+	/**
+	 * Persist the product set; with a {@link ProductDelta}, only rows of new or
+	 * changed products are written (see {@link #saveDelta}). The delta itself is
+	 * closed by the caller. When the writers have a "USAGE" table, the
+	 * MEDDRA_USAGE summary of all products follows (see {@link MeddraUsage});
+	 * with a "NAME" table, the SUBSTANCE_NAME display names of the products
+	 * written (see {@link SubstanceNames}).
+	 */
+	public void saveAll(Collection<SplDrug> products,
+	                    SqlWriters writers,
+	                    IdAllocators ids,
+	                    ConcurrentMap<String, Integer> splSrcTracker,
+	                    Map<String, Integer> priorGuidMap,
+	                    ProductDelta delta) {
+
+		MeddraUsage usage = new MeddraUsage();
+		SubstanceNames names = new SubstanceNames(inPlanOrder(products), umls, cfg.getSplPath());
+		if (delta != null) {
+			saveDelta(products, writers, ids, splSrcTracker, priorGuidMap, delta, usage, names);
+		} else {
+			saveFull(products, writers, ids, splSrcTracker, priorGuidMap, usage, names);
+			writeNames(names.rows(), writers);
+		}
+		writeUsage(usage, writers);
+		writers.flushAll();
+		writers.close();
+	}
+
+	/**
+	 * Full persistence in two passes.
+	 * <ol>
+	 *   <li>Plan (sequential): products are taken in representative-GUID order;
+	 *       each gets its PRODUCT_ID and contiguous SPL_SRCFILE / PRODUCT_AE /
+	 *       PRODUCT_IND ID ranges sized from its row counts, canonical SRC_IDs
+	 *       are recorded, and the shared rows (SUBSTANCE, SRLC, NDC_CODE) are
+	 *       written.</li>
+	 *   <li>Render (parallel): each product's remaining rows are built from its
+	 *       plan on {@code threads} workers and handed to the writers in plan
+	 *       order.</li>
+	 * </ol>
+	 * Nothing in the render pass allocates an ID or claims a shared row, so the
+	 * files are byte-identical whatever the thread count or the Symbols ids of
+	 * this JVM.
+	 */
+	private void saveFull(Collection<SplDrug> products,
+	                      SqlWriters writers,
+	                      IdAllocators ids,
+	                      ConcurrentMap<String, Integer> splSrcTracker,
+	                      Map<String, Integer> priorGuidMap,
+	                      MeddraUsage usage,
+	                      SubstanceNames names) {
 
 		ConcurrentMap<String, Integer> newAssignments = new ConcurrentHashMap<>();
 		ConcurrentMap<Integer, Set<String>> pidToGuids = new ConcurrentHashMap<>();
+		Set<Integer> srlcSeen = ConcurrentHashMap.newKeySet();
+		Out out = key -> writers.get(key)::insert;
+		Out shared = key -> {
+			Emit w = out.get(key);
+			return (insert, values) -> {
+				if (insert == SUBSTANCE || SHARED.contains(insert)) w.insert(insert, values);
+			};
+		};
+
+		List<Planned> plan = new ArrayList<>();
+		for (SplDrug p : inPlanOrder(products)) {
+			int productId = getOrAssignProductId(p, priorGuidMap, newAssignments, ids);
+			p.setId(productId);
+
+			int src = ids.splSrcId.get();
+			Surrogates counted = Surrogates.planned(src, 0, 0);
+			linkSrcFiles(productId, p, (insert, values) -> { }, splSrcTracker, counted);
+			ids.splSrcId.set(counted.src);
+			int ae = ids.productAeId.getAndAdd(codeCount(p.getExactMatchWarnings()) + codeCount(p.getNlpMatchWarnings())
+					+ codeCount(p.getExactMatchBlackbox()) + codeCount(p.getNlpMatchBlackbox()));
+			int ind = ids.productIndId.getAndAdd(codeCount(p.getExactMatchIndications())
+					+ codeCount(p.getNlpMatchIndications()));
+
+			saveShared(productId, p, shared, ids, srlcSeen, pidToGuids);
+			names.add(productId, p);
+			plan.add(new Planned(p, productId, src, ae, ind));
+		}
 
-		for (SplDrug p : products) {
-			if (p != null && p.isSave()) {
-				saveOne(p, writers, ids, splSrcTracker, priorGuidMap, newAssignments, pidToGuids);
+		if (threads == 1 || plan.size() < 2) {
+			for (Planned pl : plan)
+				render(pl, ids, splSrcTracker, srlcSeen, pidToGuids).tally(usage).replay(writers, ins -> true);
+			return;
+		}
+
+		ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+			Thread t = new Thread(r, "persist-render");
+			t.setDaemon(true);
+			return t;
+		});
+		try {
+			// Bounded look-ahead: rendered products wait here until their turn to be written
+			Deque<Future<ProductRows>> window = new ArrayDeque<>();
+			for (Planned pl : plan) {
+				window.add(pool.submit(() -> render(pl, ids, splSrcTracker, srlcSeen, pidToGuids)));
+				if (window.size() >= threads * 4)
+					window.poll().get().tally(usage).replay(writers, ins -> true);
 			}
+			while (!window.isEmpty())
+				window.poll().get().tally(usage).replay(writers, ins -> true);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted persisting products", e);
+		} catch (ExecutionException e) {
+			throw new IllegalStateException("Persisting products failed", e.getCause());
+		} finally {
+			pool.shutdownNow();
 		}
-		writers.flushAll();
-		writers.close();
 	}
 
-	private void saveOne(SplDrug prd,
-	                     SqlWriters w,
+	/** Per-product rows of a full run, from its plan. */
+	private ProductRows render(Planned pl,
+	                           IdAllocators ids,
+	                           ConcurrentMap<String, Integer> splSrcTracker,
+	                           Set<Integer> srlcSeen,
+	                           ConcurrentMap<Integer, Set<String>> pidToGuids) {
+		ProductRows rows = new ProductRows();
+		Surrogates s = Surrogates.planned(pl.srcBase(), pl.aeBase(), pl.indBase());
+		saveOne(pl.productId(), pl.product(), rows, ids, s, splSrcTracker, srlcSeen, pidToGuids);
+		return rows;
+	}
+
+	/** A saved product with its PRODUCT_ID and the first IDs of its surrogate ranges. */
+	private record Planned(SplDrug product, int productId, int srcBase, int aeBase, int indBase) {
+	}
+
+	/**
+	 * Saved products sorted by representative (smallest) GUID, then by SPL GUID;
+	 * products without either keep their relative order at the end.
+	 */
+	private static List<SplDrug> inPlanOrder(Collection<SplDrug> products) {
+		List<SplDrug> saved = new ArrayList<>();
+		for (SplDrug p : products)
+			if (p != null && p.isSave()) saved.add(p);
+		saved.sort(Comparator.comparing(ProductPersister::representativeGuid,
+						Comparator.nullsLast(Comparator.<String>naturalOrder()))
+				.thenComparing(SplDrug::getGuid, Comparator.nullsLast(Comparator.<String>naturalOrder())));
+		return saved;
+	}
+
+	private static String representativeGuid(SplDrug prd) {
+		if (prd.getMergedGuidXmlPairs() == null) return null;
+		String rep = null;
+		for (String g : prd.getMergedGuidXmlPairs().keySet())
+			if (g != null && !g.isBlank() && (rep == null || g.compareTo(rep) < 0)) rep = g;
+		return rep;
+	}
+
+	/** PRODUCT_AE / PRODUCT_IND rows {@link #writeAe} / {@link #writeInd} emit for an outcome. */
+	private static int codeCount(Outcome o) {
+		if (o == null || o.getCodes() == null) return 0;
+		int n = 0;
+		for (Atom code : o.getCodes())
+			if (code != null) n++;
+		return n;
+	}
+
+	/**
+	 * Delta persistence. Products are grouped by PRODUCT_ID; each group's rows
+	 * are rendered into a buffer and fingerprinted. Unchanged groups contribute
+	 * only rows of shared tables that were not written before (none, normally);
+	 * changed groups are deleted and rewritten under the same PRODUCT_ID; new
+	 * groups are written as in a full run.
+	 */
+	private void saveDelta(Collection<SplDrug> products,
+	                       SqlWriters writers,
+	                       IdAllocators ids,
+	                       ConcurrentMap<String, Integer> splSrcTracker,
+	                       Map<String, Integer> priorGuidMap,
+	                       ProductDelta delta,
+	                       MeddraUsage usage,
+	                       SubstanceNames names) {
+
+		ConcurrentMap<String, Integer> newAssignments = new ConcurrentHashMap<>();
+		ConcurrentMap<Integer, Set<String>> pidToGuids = new ConcurrentHashMap<>();
+
+		Map<Integer, List<SplDrug>> byId = new TreeMap<>();
+		for (SplDrug p : inPlanOrder(products)) {
+			int productId = getOrAssignProductId(p, priorGuidMap, newAssignments, ids);
+			p.setId(productId);
+			byId.computeIfAbsent(productId, k -> new ArrayList<>()).add(p);
+		}
+		Surrogates live = Surrogates.live(ids);
+
+		for (Map.Entry<Integer, List<SplDrug>> e : byId.entrySet()) {
+			int productId = e.getKey();
+
+			// Persisting is sequential, so surrogate IDs drawn for an unchanged group can be handed back
+			int srcMark = ids.splSrcId.get();
+			int aeMark = ids.productAeId.get();
+			int indMark = ids.productIndId.get();
+			List<String> untracked = new ArrayList<>();
+			for (SplDrug p : e.getValue()) {
+				if (p.getGuidXmlMaps() == null) continue;
+				for (String g : p.getGuidXmlMaps().keySet())
+					if (!splSrcTracker.containsKey(g)) untracked.add(g);
+			}
+
+			ProductRows rows = new ProductRows();
+			for (SplDrug p : e.getValue()) {
+				saveOne(productId, p, rows, ids, live, splSrcTracker, delta.srlcIds(), pidToGuids);
+				names.add(productId, p);
+			}
+			rows.tally(usage);
+
+			switch (delta.classify(productId, fingerprint(rows.rows))) {
+				case UNCHANGED -> {
+					ids.splSrcId.set(srcMark);
+					ids.productAeId.set(aeMark);
+					ids.productIndId.set(indMark);
+					untracked.forEach(splSrcTracker::remove);
+					rows.replay(writers, SHARED::contains);
+				}
+				case CHANGED -> {
+					rows.replay(writers, ins -> ins != SUBSTANCE);
+					writeNames(List.<Object[]>of(names.row(productId)), writers);
+				}
+				case NEW -> {
+					rows.replay(writers, ins -> true);
+					writeNames(List.<Object[]>of(names.row(productId)), writers);
+				}
+			}
+		}
+	}
+
+	private void saveOne(int productId,
+	                     SplDrug prd,
+	                     Out w,
 	                     IdAllocators ids,
+	                     Surrogates s,
 	                     ConcurrentMap<String, Integer> splSrcTracker,
-	                     Map<String, Integer> priorGuidMap,
-	                     ConcurrentMap<String, Integer> newAssignments,
+	                     Set<Integer> srlcSeen,
 	                     ConcurrentMap<Integer, Set<String>> pidToGuids) {
 
-		if (!prd.isSave()) return;
+		// SUBSTANCE + SRLC + NDC + ATC (shared rows only the first time they are seen), SRC files
+		saveShared(productId, prd, w, ids, srlcSeen, pidToGuids);
+		linkSrcFiles(productId, prd, w.get("PROD_RELATED"), splSrcTracker, s);
+
+		// RxNorm & SNOMED
+		saveRxnorm(productId, prd, w.get("RXNORM"));
+		saveSnomed(productId, prd, w.get("SNOMED"));
+
+		// Outcomes (AE / BlackBox / IND), exact+NLP
+		writeAe(w.get("AE"), prd.getExactMatchWarnings(), productId, true, false, s, splSrcTracker);
+		writeAe(w.get("AE"), prd.getNlpMatchWarnings(),    productId, true, false, s, splSrcTracker);
+		writeAe(w.get("AE"), prd.getExactMatchBlackbox(),  productId, false, true, s, splSrcTracker);
+		writeAe(w.get("AE"), prd.getNlpMatchBlackbox(),    productId, false, true, s, splSrcTracker);
 
-		// Assign (or reuse) PRODUCT_ID
-		int productId = getOrAssignProductId(prd, priorGuidMap, newAssignments, ids);
-		prd.setId(productId);
+		writeInd(w.get("IND"), prd.getExactMatchIndications(), productId, s, splSrcTracker);
+		writeInd(w.get("IND"), prd.getNlpMatchIndications(),   productId, s, splSrcTracker);
+	}
+
+	/** SUBSTANCE (first time the PRODUCT_ID is seen), SRLC and NDC/ATC rows. */
+	private void saveShared(int productId,
+	                        SplDrug prd,
+	                        Out w,
+	                        IdAllocators ids,
+	                        Set<Integer> srlcSeen,
+	                        ConcurrentMap<Integer, Set<String>> pidToGuids) {
 
-		// First time we see this PRODUCT_ID? Add SUBSTANCE record.
 		Set<String> guids = prd.getMergedGuidXmlPairs() == null ? Set.of()
 				: new TreeSet<>(prd.getMergedGuidXmlPairs().keySet());
 		Set<String> first = pidToGuids.putIfAbsent(productId, guids);
 		if (first == null) {
-			println(w.get("PRODUCT"), "INSERT INTO SUBSTANCE (ID) VALUES (" + productId + ");");
+			w.get("PRODUCT").insert(SUBSTANCE, productId);
 		}
 
-		// SRLC + SRC files + NDC + ATC
-		saveSrlc(productId, prd, w.get("PROD_RELATED"), splSrcTracker);
-		linkSrcFiles(productId, prd, w.get("PROD_RELATED"), splSrcTracker, ids);
+		saveSrlc(productId, prd, w.get("PROD_RELATED"), srlcSeen);
 		saveNdc(productId, prd, w.get("NDC"), ids);
 		saveAtc(productId, prd, w.get("ATC"), ids);
+	}
 
-		// RxNorm & SNOMED
-		saveRxnorm(productId, prd, w.get("RXNORM"));
-		saveSnomed(productId, prd, w.get("SNOMED"));
-
-		// Outcomes (AE / BlackBox / IND), exact+NLP
-		writeAe(w.get("AE"), prd.getExactMatchWarnings(), productId, true, false, ids, splSrcTracker);
-		writeAe(w.get("AE"), prd.getNlpMatchWarnings(),    productId, true, false, ids, splSrcTracker);
-		writeAe(w.get("AE"), prd.getExactMatchBlackbox(),  productId, false, true, ids, splSrcTracker);
-		writeAe(w.get("AE"), prd.getNlpMatchBlackbox(),    productId, false, true, ids, splSrcTracker);
-
-		writeInd(w.get("IND"), prd.getExactMatchIndications(), productId, ids, splSrcTracker);
-		writeInd(w.get("IND"), prd.getNlpMatchIndications(),   productId, ids, splSrcTracker);
+	/** Write the MEDDRA_USAGE rows, when the run has a "USAGE" output. */
+	private static void writeUsage(MeddraUsage usage, SqlWriters writers) {
+		SqlWriters.Table out = writers.get("USAGE");
+		if (out == null) return;
+		for (Object[] row : usage.rows())
+			out.insert(MEDDRA_USAGE, row);
+		Logger.log("MEDDRA_USAGE rows: " + usage.size());
 	}
 
-	/** Thread-safe println for writer streams. */
-	private static void println(PrintWriter pw, String s) {
-		synchronized (pw) {
-			pw.println(s);
-		}
+	/** Write SUBSTANCE_NAME rows, when the run has a "NAME" output. */
+	private static void writeNames(List<Object[]> rows, SqlWriters writers) {
+		SqlWriters.Table out = writers.get("NAME");
+		if (out == null) return;
+		for (Object[] row : rows)
+			out.insert(SUBSTANCE_NAME, row);
 	}
 
 	/** Pick a prior SUBSTANCE_ID if available; otherwise allocate a new one, stably by representative GUID. */
@@ -180,37 +480,26 @@ public class ProductPersister {
 		return min;
 	}
 
-	/** Insert SRLC rows and link them to the product. */
+	/** Insert SRLC rows (once per DRUG_ID) and link them to the product. */
 	private void saveSrlc(int productId,
 	                      SplDrug prd,
-	                      PrintWriter out,
-	                      ConcurrentMap<String, Integer> srlcMap) {
+	                      Emit out,
+	                      Set<Integer> srlcSeen) {
 		try {
 			if (prd.getSrlcs() == null || prd.getSrlcs().isEmpty()) return;
 
-			final String sql = "INSERT INTO SRLC ( DRUG_ID, APPLICATION_NUMBER, DRUG_NAME, ACTIVE_INGREDIENT, SUPPLEMENT_DATE, DATABASE_UPDATED, URL ) values (";
 			for (int drugId : prd.getSrlcs().keySet()) {
 				if (drugId <= 0) continue;
 
 				var srlc = prd.getSrlcs().get(drugId);
 				if (srlc == null) continue;
 
-				String sup = fmt(srlc.getSupplementDate());
-				String upd = fmt(srlc.getDatabaseUpdated());
-				String unique = Integer.toString(srlc.getDrugId());
-
-				if (!srlcMap.containsKey(unique)) {
-					println(out, sql
-							+ srlc.getDrugId() + ", "
-							+ srlc.getApplicationNumber() + ",\""
-							+ escSql(srlc.getDrugName()) + "\", \""
-							+ escSql(srlc.getActiveIngredient()) + "\", '"
-							+ sup + "', '" + upd + "', \""
-							+ escSql(srlc.getUrl()) + "\");");
-					srlcMap.put(unique, srlc.getDrugId());
+				if (srlcSeen.add(srlc.getDrugId())) {
+					out.insert(SRLC, srlc.getDrugId(), srlc.getApplicationNumber(),
+							nz(srlc.getDrugName()), nz(srlc.getActiveIngredient()),
+							fmt(srlc.getSupplementDate()), fmt(srlc.getDatabaseUpdated()), nz(srlc.getUrl()));
 				}
-				println(out, "INSERT INTO SUBSTANCE_SRLC ( PRODUCT_ID, DRUG_ID ) values ( "
-						+ productId + ", " + srlc.getDrugId() + " );");
+				out.insert(SUBSTANCE_SRLC, productId, srlc.getDrugId());
 			}
 		} catch (Exception e) {
 			Logger.log("Error adding SRLC data for product: " + productId);
@@ -220,11 +509,9 @@ public class ProductPersister {
 	/** Insert SPL source-file links for each GUID/XML relpath; track canonical SRC_ID per GUID. */
 	private void linkSrcFiles(int productId,
 	                          SplDrug prd,
-	                          PrintWriter out,
+	                          Emit out,
 	                          ConcurrentMap<String, Integer> splTracker,
-	                          IdAllocators ids) {
-
-		final String prefix = "INSERT INTO SPL_SRCFILE (ID, PRODUCT_ID, GUID, XMLFILE_NAME, SOURCE_TYPE_ID, APPLICATION_NUMBER, NDA_SPONSOR, APPROVAL_DATE) VALUES (";
+	                          Surrogates ids) {
 
 		if (prd.getGuidXmlMaps() == null || prd.getGuidXmlMaps().isEmpty()) return;
 
@@ -245,26 +532,20 @@ public class ProductPersister {
 				// store relpath
 				xml = xml.replace(splDataPath, "");
 
-				int srcId = ids.splSrcId.getAndIncrement();
+				int srcId = ids.nextSrc();
 				if (!haveCanonical) {
 					splTracker.put(guid, srcId);
 					haveCanonical = true;
 				}
 				Integer srcTypeId = resolveSourceTypeIdFromXmlRelPath(xml);
 
-				String row = prefix + srcId + ", " + productId + ", '" + guid + "', '"
-						+ xml + "', "
-						+ (srcTypeId == null ? "NULL" : srcTypeId) + ", "
-						+ appNo + ", "
-						+ (prd.getDrugSponsor() == null ? "NULL" : "'" + escSql(prd.getDrugSponsor()) + "', ")
-						+ (date == null ? "NULL" : "'" + date + "'") + ");";
-				println(out, row);
+				out.insert(SPL_SRCFILE, srcId, productId, guid, xml, srcTypeId, appNo, prd.getDrugSponsor(), date);
 			}
 		}
 	}
 
 	/** Insert NDC codes and PRODUCT↔NDC links, deduping by code where possible. */
-	private void saveNdc(int productId, SplDrug prd, PrintWriter out, IdAllocators ids) {
+	private void saveNdc(int productId, SplDrug prd, Emit out, IdAllocators ids) {
 		if (prd.getDrugProduct() == null || prd.getDrugProduct().isEmpty()) return;
 
 		for (String aui : prd.getDrugProduct().keySet()) {
@@ -276,8 +557,7 @@ public class ProductPersister {
 			int ndcId = ensureNdcId(aui, ndcCode, ndcName, out, ids); // fills ndcIds & ndcByCode
 
 			if (ndcId > 0) {
-				println(out, "INSERT INTO PRODUCT_NDC (PRODUCT_ID, NDC_ID) VALUES ("
-						+ productId + ", " + ndcId + ");");
+				out.insert(PRODUCT_NDC, productId, ndcId);
 			}
 		}
 	}
@@ -286,7 +566,7 @@ public class ProductPersister {
 	 * Ensure an NDC record exists and return its ID. Prefers global de-duplication
 	 * by NDC code. When code is missing, falls back to de-dup by (AUI + name).
 	 */
-	private int ensureNdcId(String aui, String ndcCode, String ndcName, PrintWriter out, IdAllocators ids) {
+	private int ensureNdcId(String aui, String ndcCode, String ndcName, Emit out, IdAllocators ids) {
 		final String code = ndcCode == null ? "" : ndcCode.trim();
 		final String name = ndcName == null ? "" : ndcName.trim();
 
@@ -296,8 +576,7 @@ public class ProductPersister {
 				int newId = ids.nextNdcId();
 				// Stable hash for the code row: based on (code + name), not AUI.
 				String hash = sha256Hex((c + "|" + name).toLowerCase(Locale.ROOT));
-				println(out, "INSERT INTO NDC_CODE (ID, NDC_CODE, PRODUCT_NAME, PRODUCT_NAME_HASH) VALUES ("
-						+ newId + ", '" + escSql(c) + "', \"" + escSql(name) + "\", '" + hash + "');");
+				out.insert(NDC_CODE, newId, c, name, hash);
 				// Also pre-fill ndcIds to prevent duplicate inserts via the fallback path
 				ids.ndcIds.putIfAbsent(aui + "|" + c + "|" + hash, newId);
 				return newId;
@@ -310,17 +589,14 @@ public class ProductPersister {
 
 		return ids.ndcIds.computeIfAbsent(mapKey, k -> {
 			int newId = ids.nextNdcId();
-			println(out, "INSERT INTO NDC_CODE (ID, NDC_CODE, PRODUCT_NAME, PRODUCT_NAME_HASH) VALUES ("
-					+ newId + ", '" + escSql(code) + "', \"" + escSql(name) + "\", '" + hash + "');");
+			out.insert(NDC_CODE, newId, code, name, hash);
 			return newId;
 		});
 	}
 
-	/** Simple SQL string escaper for both single & double quotes used in emitted SQL. */
-	private static String escSql(String s) {
-		if (s == null) return "";
-		// Double single-quotes for string literals; escape double-quotes for our emitted SQL strings.
-		return s.replace("'", "''").replace("\"", "\\\"");
+	/** Null-safe text value (these columns were always written as '' rather than NULL). */
+	private static String nz(String s) {
+		return (s == null) ? "" : s;
 	}
 
 	/** 64-char hex SHA-256 for PRODUCT_NAME_HASH. */
@@ -341,7 +617,7 @@ public class ProductPersister {
 	}
 
 	/** Insert ATC links; ensure there is an NDC row for each referenced code. */
-	private void saveAtc(int productId, SplDrug prd, PrintWriter out, IdAllocators ids) {
+	private void saveAtc(int productId, SplDrug prd, Emit out, IdAllocators ids) {
 		if (prd.getAtcCodes() == null || prd.getAtcCodes().isEmpty()) return;
 
 		for (Map.Entry<String, Atom> e : prd.getAtcCodes().entrySet()) {
@@ -355,13 +631,12 @@ public class ProductPersister {
 				ndcId = ensureNdcId("", ndcCode, "", out, ids);
 			}
 
-			println(out, "INSERT INTO SUBSTANCE_ATC (PRODUCT_ID, NDC_ID, ATC_ID) VALUES ("
-					+ productId + ", " + ndcId + ", " + atc.getDatabaseId() + ");");
+			out.insert(SUBSTANCE_ATC, productId, ndcId, atc.getDatabaseId());
 		}
 	}
 
 	/** Insert RxNorm links (unique by database ID). */
-	private void saveRxnorm(int productId, SplDrug prd, PrintWriter out) {
+	private void saveRxnorm(int productId, SplDrug prd, Emit out) {
 		if (prd.getRxNormPts() == null || prd.getRxNormPts().isEmpty()) return;
 
 		Set<Integer> seen = new HashSet<>();
@@ -375,20 +650,18 @@ public class ProductPersister {
 			if (rxDbId <= 0) continue;
 
 			if (seen.add(rxDbId)) {
-				println(out, "INSERT INTO SUBSTANCE_RXNORM (PRODUCT_ID, RXNORM_ID) VALUES ("
-						+ productId + ", " + rxDbId + ");");
+				out.insert(SUBSTANCE_RXNORM, productId, rxDbId);
 			}
 		}
 	}
 
 	/** Insert SNOMED ingredient/PT/parent links for the product. */
-	private void saveSnomed(int productId, SplDrug prd, PrintWriter out) {
+	private void saveSnomed(int productId, SplDrug prd, Emit out) {
 		if (prd.getIngredients() != null) {
 			for (String aui : prd.getIngredients().keySet()) {
 				Atom e = umls.getSnomed().get(aui);
 				if (e != null) {
-					println(out, "INSERT INTO SUBSTANCE_INGREDIENT (PRODUCT_ID, SNOMED_ID) VALUES ("
-							+ productId + ", " + e.getDatabaseId() + ");");
+					out.insert(SUBSTANCE_INGREDIENT, productId, e.getDatabaseId());
 				}
 			}
 		}
@@ -396,8 +669,7 @@ public class ProductPersister {
 			for (String aui : prd.getSnomedPts().keySet()) {
 				Atom e = umls.getSnomed().get(aui);
 				if (e != null) {
-					println(out, "INSERT INTO SUBSTANCE_SNOMED_PT (PRODUCT_ID, SNOMED_ID) VALUES ("
-							+ productId + ", " + e.getDatabaseId() + ");");
+					out.insert(SUBSTANCE_SNOMED_PT, productId, e.getDatabaseId());
 				}
 			}
 		}
@@ -405,20 +677,19 @@ public class ProductPersister {
 			for (String aui : prd.getSnomedParentAuis()) {
 				Atom e = umls.getSnomed().get(aui);
 				if (e != null) {
-					println(out, "INSERT INTO SUBSTANCE_SNOMED_PARENT (PRODUCT_ID, SNOMED_ID) VALUES ("
-							+ productId + ", " + e.getDatabaseId() + ");");
+					out.insert(SUBSTANCE_SNOMED_PARENT, productId, e.getDatabaseId());
 				}
 			}
 		}
 	}
 
 	/** Emit PRODUCT_AE rows (exact or NLP) and their SRC links. */
-	private void writeAe(PrintWriter out,
+	private void writeAe(Emit out,
 	                     Outcome o,
 	                     int productId,
 	                     boolean isWarn,
 	                     boolean isBox,
-	                     IdAllocators ids,
+	                     Surrogates ids,
 	                     ConcurrentMap<String, Integer> srcFiles) {
 
 		if (o == null || o.getCodes() == null || o.getCodes().isEmpty()) return;
@@ -430,35 +701,27 @@ public class ProductPersister {
 			Date d = o.getFirstAdded().get(code.getAui());
 			String ds = (d == null) ? null : fmt(d);
 
-			int aeId = ids.productAeId.getAndIncrement();
-			String sql = "INSERT INTO PRODUCT_AE (ID, PRODUCT_ID, MEDDRA_ID, LABEL_DATE, WARNING, BLACKBOX, EXACT_MATCH) VALUES ("
-					+ aeId + ", " + productId + ", " + code.getDatabaseId() + ", "
-					+ (ds == null ? "NULL" : "'" + ds + "'") + ", "
-					+ (isWarn ? 1 : 0) + ", " + (isBox ? 1 : 0) + ", " + exact + ");";
-			println(out, sql);
+			int aeId = ids.nextAe();
+			out.insert(PRODUCT_AE, aeId, productId, code.getDatabaseId(), ds, isWarn ? 1 : 0, isBox ? 1 : 0, exact);
 
 			// Link to the SPL source files from which this AUI was derived
-			HashMap<String, List<String>> splSrcFiles = o.getOutcomeSource();
-			for (String zipFile : splSrcFiles.keySet()) {
-				List<String> auiSet = splSrcFiles.get(zipFile);
-				if (auiSet != null && auiSet.contains(code.getAui())) {
-					Integer srcId = srcFiles.get(zipFile);
-					if (srcId == null) {
-						Logger.log("AE link skipped; missing SRC_ID for key: " + zipFile
-								+ " (PRODUCT_ID=" + productId + ")");
-						continue;
-					}
-					println(out, "INSERT INTO PRODUCT_AE_SRC (AE_ID, SRC_ID) VALUES (" + aeId + ", " + srcId + ");");
+			for (String zipFile : o.sourcesOf(code.getAui())) {
+				Integer srcId = srcFiles.get(zipFile);
+				if (srcId == null) {
+					Logger.log("AE link skipped; missing SRC_ID for key: " + zipFile
+							+ " (PRODUCT_ID=" + productId + ")");
+					continue;
 				}
+				out.insert(PRODUCT_AE_SRC, aeId, srcId);
 			}
 		}
 	}
 
 	/** Emit PRODUCT_IND rows (exact or NLP) and their SRC links. */
-	private void writeInd(PrintWriter out,
+	private void writeInd(Emit out,
 	                      Outcome ind,
 	                      int productId,
-	                      IdAllocators ids,
+	                      Surrogates ids,
 	                      ConcurrentMap<String, Integer> srcFiles) {
 
 		if (ind == null || ind.getCodes() == null || ind.getCodes().isEmpty()) return;
@@ -470,25 +733,18 @@ public class ProductPersister {
 			Date d = ind.getFirstAdded().get(code.getAui());
 			String ds = (d == null) ? null : fmt(d);
 
-			int id = ids.productIndId.getAndIncrement();
-			String sql = "INSERT INTO PRODUCT_IND (ID, PRODUCT_ID, MEDDRA_ID, LABEL_DATE, EXACT_MATCH) VALUES ("
-					+ id + ", " + productId + ", " + code.getDatabaseId() + ", "
-					+ (ds == null ? "NULL" : "'" + ds + "'") + ", " + exact + ");";
-			println(out, sql);
+			int id = ids.nextInd();
+			out.insert(PRODUCT_IND, id, productId, code.getDatabaseId(), ds, exact);
 
 			// Link to SPL source files
-			HashMap<String, List<String>> splSrcFiles = ind.getOutcomeSource();
-			for (String zipFile : splSrcFiles.keySet()) {
-				List<String> auiSet = splSrcFiles.get(zipFile);
-				if (auiSet != null && auiSet.contains(code.getAui())) {
-					Integer srcId = srcFiles.get(zipFile);
-					if (srcId == null) {
-						Logger.log("IND link skipped; missing SRC_ID for key: " + zipFile
-								+ " (PRODUCT_ID=" + productId + ")");
-						continue;
-					}
-					println(out, "INSERT INTO PRODUCT_IND_SRC (IND_ID, SRC_ID) VALUES (" + id + ", " + srcId + ");");
+			for (String zipFile : ind.sourcesOf(code.getAui())) {
+				Integer srcId = srcFiles.get(zipFile);
+				if (srcId == null) {
+					Logger.log("IND link skipped; missing SRC_ID for key: " + zipFile
+							+ " (PRODUCT_ID=" + productId + ")");
+					continue;
 				}
+				out.insert(PRODUCT_IND_SRC, id, srcId);
 			}
 		}
 	}
@@ -507,4 +763,126 @@ public class ProductPersister {
 		if (s.contains("otc"))          return 3;
 		return null;
 	}
+
+	// ---------------------------------------------------------------------
+	// Row targets and delta fingerprints
+	// ---------------------------------------------------------------------
+
+	/** Target for one table's rows: a live {@link SqlWriters.Table} or a {@link ProductRows} buffer. */
+	@FunctionalInterface
+	private interface Emit {
+		void insert(SqlInsert insert, Object... values);
+	}
+
+	/** Row targets by writer key ("PRODUCT", "AE", ...). */
+	@FunctionalInterface
+	private interface Out {
+		Emit get(String key);
+	}
+
+	private record Row(String key, SqlInsert insert, Object[] values) {
+	}
+
+	/**
+	 * SPL_SRCFILE / PRODUCT_AE / PRODUCT_IND IDs for one product: drawn from
+	 * the global counters (delta runs) or from the ranges planned for it.
+	 */
+	private static final class Surrogates {
+		private final IdAllocators ids;
+		int src;
+		int ae;
+		int ind;
+
+		private Surrogates(IdAllocators ids, int src, int ae, int ind) {
+			this.ids = ids;
+			this.src = src;
+			this.ae = ae;
+			this.ind = ind;
+		}
+
+		static Surrogates live(IdAllocators ids) {
+			return new Surrogates(ids, 0, 0, 0);
+		}
+
+		static Surrogates planned(int src, int ae, int ind) {
+			return new Surrogates(null, src, ae, ind);
+		}
+
+		int nextSrc() {
+			return ids != null ? ids.splSrcId.getAndIncrement() : src++;
+		}
+
+		int nextAe() {
+			return ids != null ? ids.productAeId.getAndIncrement() : ae++;
+		}
+
+		int nextInd() {
+			return ids != null ? ids.productIndId.getAndIncrement() : ind++;
+		}
+	}
+
+	/** Rows of one product group, held until the group has been compared with the prior run. */
+	private static final class ProductRows implements Out {
+		final List<Row> rows = new ArrayList<>();
+
+		@Override
+		public Emit get(String key) {
+			return (insert, values) -> rows.add(new Row(key, insert, values));
+		}
+
+		/** Count this product's PRODUCT_AE / PRODUCT_IND rows into {@code usage}. */
+		ProductRows tally(MeddraUsage usage) {
+			for (Row r : rows) {
+				Object[] v = r.values();
+				if (r.insert() == PRODUCT_AE)
+					usage.ae((Integer) v[1], (Integer) v[2], Integer.valueOf(1).equals(v[5]));
+				else if (r.insert() == PRODUCT_IND)
+					usage.ind((Integer) v[1], (Integer) v[2]);
+			}
+			return this;
+		}
+
+		void replay(SqlWriters writers, Predicate<SqlInsert> keep) {
+			for (Row r : rows)
+				if (keep.test(r.insert())) writers.get(r.key()).insert(r.insert(), r.values());
+		}
+	}
+
+	/**
+	 * SHA-256 over the sorted product rows. Surrogate IDs (SPL_SRCFILE, PRODUCT_AE,
+	 * PRODUCT_IND) are left out and link rows refer to the linked rows' content,
+	 * so the value only changes when the product's data does. Shared rows
+	 * (SUBSTANCE, NDC_CODE, SRLC) are not part of it.
+	 */
+	private static String fingerprint(List<Row> rows) {
+		Map<String, String> surrogates = new HashMap<>();
+		List<String> lines = new ArrayList<>(rows.size());
+		for (Row r : rows) {
+			SqlInsert ins = r.insert();
+			Object[] v = r.values();
+			if (ins == SUBSTANCE || SHARED.contains(ins)) continue;
+
+			String line;
+			if (ins == SPL_SRCFILE || ins == PRODUCT_AE || ins == PRODUCT_IND) {
+				line = ins.table() + join(v, 1);
+				surrogates.put(ins.table() + ":" + v[0], line);
+			} else if (ins == PRODUCT_AE_SRC) {
+				line = ins.table() + "|" + surrogates.get("PRODUCT_AE:" + v[0]) + "|" + surrogates.get("SPL_SRCFILE:" + v[1]);
+			} else if (ins == PRODUCT_IND_SRC) {
+				line = ins.table() + "|" + surrogates.get("PRODUCT_IND:" + v[0]) + "|" + surrogates.get("SPL_SRCFILE:" + v[1]);
+			} else {
+				line = ins.table() + join(v, 0);
+			}
+			lines.add(line);
+		}
+		Collections.sort(lines);
+		return sha256Hex(String.join("\n", lines));
+	}
+
+	private static String join(Object[] v, int from) {
+		StringBuilder sb = new StringBuilder(64);
+		for (int i = from; i < v.length; i++)
+			sb.append('|').append(v[i]);
+		return sb.toString();
+	}
 }
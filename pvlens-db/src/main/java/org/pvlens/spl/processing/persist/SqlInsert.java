@@ -0,0 +1,87 @@
+package org.pvlens.spl.processing.persist;
+
+/*
+ * This file is part of PVLens.
+ *
+ * Copyright (C) 2025 GlaxoSmithKline
+ *
+ * PVLens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PVLens is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PVLens.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.util.Collections;
+import java.util.List;
+import java.util.Objects;
+
+/**
+ * Shape of one output row: target table and column list. Declared once per
+ * emit site (as a constant) and passed with the values to
+ * {@link SqlWriters.Table#insert(SqlInsert, Object...)}; each {@link SqlSink}
+ * turns it into SQL text, a prepared statement, or a TSV file.
+ *
+ * <p>Values are {@code null}, {@link Number}s or {@link String}s (dates are
+ * pre-formatted with the DB pattern).</p>
+ */
+public final class SqlInsert {
+
+    private final String table;
+    private final List<String> columns;
+    private final String columnList;
+
+    private SqlInsert(String table, List<String> columns) {
+        this.table = table;
+        this.columns = columns;
+        this.columnList = String.join(", ", columns);
+    }
+
+    public static SqlInsert of(String table, String... columns) {
+        Objects.requireNonNull(table, "table");
+        if (columns.length == 0)
+            throw new IllegalArgumentException("no columns for " + table);
+        return new SqlInsert(table, List.of(columns));
+    }
+
+    public String table() {
+        return table;
+    }
+
+    public List<String> columns() {
+        return columns;
+    }
+
+    /** "A, B, C" */
+    public String columnList() {
+        return columnList;
+    }
+
+    /** "INSERT INTO T (A, B, C) VALUES " */
+    public String head() {
+        return "INSERT INTO " + table + " (" + columnList + ") VALUES ";
+    }
+
+    /** "INSERT INTO T (A, B, C) VALUES (?, ?, ?)" */
+    public String preparedSql() {
+        return head() + "(" + String.join(", ", Collections.nCopies(columns.size(), "?")) + ")";
+    }
+
+    void check(Object[] values) {
+        if (values.length != columns.size())
+            throw new IllegalArgumentException(table + ": expected " + columns.size()
+                    + " values, got " + values.length);
+    }
+
+    @Override
+    public String toString() {
+        return table + " (" + columnList + ")";
+    }
+}
@@ -0,0 +1,47 @@
+package org.pvlens.spl.processing.persist;
+
+/*
+ * This file is part of PVLens.
+ *
+ * Copyright (C) 2025 GlaxoSmithKline
+ *
+ * PVLens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PVLens is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PVLens.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+/**
+ * Destination for one {@link SqlWriters} table. Implementations:
+ * <ul>
+ *   <li>{@link SqlTextSink} - INSERT statements to a .sql file (default),</li>
+ *   <li>{@link TsvSqlSink} - TSV files plus a LOAD DATA LOCAL INFILE script,</li>
+ *   <li>{@link JdbcSqlSink} - batched prepared statements on a live connection.</li>
+ * </ul>
+ *
+ * <p>Each sink is driven by its table's single writer thread, so
+ * implementations need not be thread-safe. Rows must be applied in the order
+ * they are written (later rows may reference earlier ones).</p>
+ */
+public interface SqlSink {
+
+    /** Write one row; {@code values} match {@code insert.columns()}. */
+    void write(SqlInsert insert, Object[] values) throws Exception;
+
+    /** Run a statement without rows (e.g. a DELETE before the table is refilled), in order with the rows. */
+    void execute(String sql) throws Exception;
+
+    /** Push buffered rows to the destination. */
+    void flush() throws Exception;
+
+    /** Flush, commit/finish, and release the destination. */
+    void close() throws Exception;
+}
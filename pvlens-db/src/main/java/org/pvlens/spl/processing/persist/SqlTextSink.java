@@ -0,0 +1,139 @@
+package org.pvlens.spl.processing.persist;
+
+/*
+ * This file is part of PVLens.
+ *
+ * Copyright (C) 2025 GlaxoSmithKline
+ *
+ * PVLens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PVLens is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PVLens.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.io.PrintWriter;
+import java.util.Objects;
+
+/**
+ * Writes rows as MySQL INSERT text, the format replayed through the mysql
+ * client. Consecutive rows of the same {@link SqlInsert} are folded into one
+ * multi-row {@code INSERT ... VALUES (...),(...);}. The stream is wrapped in
+ * "SET autocommit = OFF;" ... "COMMIT;".
+ */
+public class SqlTextSink implements SqlSink {
+
+    private static final String SQL_COMMIT_OFF = "SET autocommit = OFF;";
+    private static final String SQL_COMMIT_ON  = "COMMIT;";
+
+    /** Upper bound on one folded statement, well below MySQL's default max_allowed_packet. */
+    static final int MAX_STATEMENT_CHARS = 1 << 20;
+
+    private final PrintWriter out;
+    private final int rowsPerStatement;
+
+    // The multi-row statement being assembled
+    private final StringBuilder open = new StringBuilder(4096);
+    private SqlInsert openInsert;
+    private int openRows;
+
+    /**
+     * @param out              destination; closed by {@link #close()}
+     * @param rowsPerStatement rows folded into one INSERT (1 = statement per row)
+     */
+    public SqlTextSink(PrintWriter out, int rowsPerStatement) {
+        this.out = Objects.requireNonNull(out, "out");
+        if (rowsPerStatement < 1)
+            throw new IllegalArgumentException("rowsPerStatement must be positive");
+        this.rowsPerStatement = rowsPerStatement;
+        out.println(SQL_COMMIT_OFF);
+    }
+
+    @Override
+    public void write(SqlInsert insert, Object[] values) {
+        int mark = open.length();
+        boolean extend = insert == openInsert && openRows < rowsPerStatement;
+        if (extend) {
+            open.append(",\n");
+            appendTuple(open, values);
+            if (open.length() <= MAX_STATEMENT_CHARS) {
+                openRows++;
+                return;
+            }
+            open.setLength(mark);
+        }
+        closeStatement();
+        open.append(insert.head());
+        appendTuple(open, values);
+        openInsert = insert;
+        openRows = 1;
+    }
+
+    @Override
+    public void execute(String sql) {
+        closeStatement();
+        out.println(sql + ";");
+    }
+
+    @Override
+    public void flush() {
+        closeStatement();
+        out.flush();
+    }
+
+    @Override
+    public void close() {
+        closeStatement();
+        out.println(SQL_COMMIT_ON);
+        out.flush();
+        out.close();
+    }
+
+    private void closeStatement() {
+        if (openInsert == null) return;
+        out.append(open).println(';');
+        open.setLength(0);
+        openInsert = null;
+        openRows = 0;
+    }
+
+    private static void appendTuple(StringBuilder sb, Object[] values) {
+        sb.append('(');
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) sb.append(", ");
+            appendLiteral(sb, values[i]);
+        }
+        sb.append(')');
+    }
+
+    /**
+     * MySQL literal: NULL, bare numbers, or a single-quoted string with quotes
+     * doubled and backslashes escaped (default sql_mode treats '\' as escape).
+     */
+    static void appendLiteral(StringBuilder sb, Object v) {
+        if (v == null) {
+            sb.append("NULL");
+        } else if (v instanceof Number) {
+            sb.append(v);
+        } else if (v instanceof Boolean b) {
+            sb.append(b ? 1 : 0);
+        } else {
+            String s = v.toString();
+            sb.append('\'');
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                if (c == '\'') sb.append("''");
+                else if (c == '\\') sb.append("\\\\");
+                else sb.append(c);
+            }
+            sb.append('\'');
+        }
+    }
+}
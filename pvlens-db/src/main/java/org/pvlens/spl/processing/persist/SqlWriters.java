@@ -20,51 +20,297 @@ package org.pvlens.spl.processing.persist;
  */
 
 import java.io.PrintWriter;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.pvlens.spl.conf.ConfigLoader;
+import org.pvlens.spl.util.Logger;
 
 /**
- * Thin wrapper around multiple {@link PrintWriter} instances that:
+ * Batching front end for the per-table SQL outputs.
  * <ul>
- *   <li>Emits a transaction preamble ("SET autocommit = OFF;") to each stream,</li>
- *   <li>Provides keyed access via {@link #get(String)},</li>
- *   <li>Flushes and closes all writers with a trailing "COMMIT;".</li>
+ *   <li>Provides keyed access via {@link #get(String)} to a {@link Table},</li>
+ *   <li>Buffers rows per calling thread and hands full chunks to one background
+ *       writer thread per table, which applies them to that table's
+ *       {@link SqlSink} (INSERT text, TSV + LOAD DATA, or JDBC batches),</li>
+ *   <li>Flushes and closes all sinks in key order on {@link #close()}.</li>
  * </ul>
  *
- * <p>Note: This class does not manage file creation; callers should open the
- * {@code PrintWriter}s with desired encodings and pass them in.</p>
+ * <p>Each table queue is bounded, so producers block when a writer falls behind
+ * (back-pressure). Rows from one thread keep their order; rows from different
+ * threads are interleaved at chunk granularity, as they were interleaved at
+ * line granularity before.</p>
+ *
+ * <p>Note: This class does not manage file creation or connections; callers
+ * open the {@code PrintWriter}s or sinks and pass them in.</p>
  */
 public class SqlWriters implements AutoCloseable {
 
-    private static final String SQL_COMMIT_OFF = "SET autocommit = OFF;";
-    private static final String SQL_COMMIT_ON  = "COMMIT;";
-
-    private final Map<String, PrintWriter> writers = new HashMap<>();
+    // Sorted so close() finishes the tables in a stable order
+    private final Map<String, Table> tables = new TreeMap<>();
+    private boolean closed;
 
+    /** INSERT text; batch sizes from {@code SQL_ROWS_PER_INSERT} / {@code SQL_WRITER_QUEUE}. */
     public SqlWriters(Map<String, PrintWriter> w) {
-        Objects.requireNonNull(w, "writers");
-        writers.putAll(w);
-        writers.values().forEach(pw -> pw.println(SQL_COMMIT_OFF));
+        this(w, new ConfigLoader());
+    }
+
+    private SqlWriters(Map<String, PrintWriter> w, ConfigLoader cfg) {
+        this(w, cfg.getSqlRowsPerInsert(), cfg.getSqlWriterQueue());
+    }
+
+    /**
+     * INSERT text via {@link SqlTextSink}.
+     *
+     * @param w                writers by key (e.g., "PRODUCT", "AE")
+     * @param rowsPerStatement rows folded into one INSERT (1 = statement per row)
+     * @param queueChunks      chunks a table may have queued before producers block
+     */
+    public SqlWriters(Map<String, PrintWriter> w, int rowsPerStatement, int queueChunks) {
+        this(rowsPerStatement, queueChunks, textSinks(Objects.requireNonNull(w, "writers"), rowsPerStatement));
+    }
+
+    /**
+     * Writers over arbitrary sinks (TSV, JDBC, ...).
+     *
+     * @param sinks       destination per key (e.g., "PRODUCT", "AE")
+     * @param chunkRows   rows a thread buffers before handing them to the writer
+     * @param queueChunks chunks a table may have queued before producers block
+     */
+    public static SqlWriters forSinks(Map<String, ? extends SqlSink> sinks, int chunkRows, int queueChunks) {
+        return new SqlWriters(chunkRows, queueChunks, Objects.requireNonNull(sinks, "sinks"));
     }
 
-    /** Returns the writer for a given key (e.g., "PRODUCT", "AE"). */
-    public PrintWriter get(String key) {
-        return writers.get(key);
+    private SqlWriters(int chunkRows, int queueChunks, Map<String, ? extends SqlSink> sinks) {
+        if (chunkRows < 1 || queueChunks < 1)
+            throw new IllegalArgumentException("chunkRows and queueChunks must be positive");
+        sinks.forEach((key, sink) -> tables.put(key, new Table(key, sink, chunkRows, queueChunks)));
     }
 
-    /** Flush all writers without closing them. */
+    private static Map<String, SqlSink> textSinks(Map<String, PrintWriter> w, int rowsPerStatement) {
+        Map<String, SqlSink> sinks = new TreeMap<>();
+        w.forEach((key, pw) -> sinks.put(key, new SqlTextSink(pw, rowsPerStatement)));
+        return sinks;
+    }
+
+    /** Returns the table writer for a given key (e.g., "PRODUCT", "AE"). */
+    public Table get(String key) {
+        return tables.get(key);
+    }
+
+    /** Hand every buffered row to the writer threads and wait until the sinks have flushed. */
     public void flushAll() {
-        writers.values().forEach(PrintWriter::flush);
+        tables.values().forEach(Table::drainBuffers);
+        tables.values().forEach(Table::sync);
     }
 
-    /** Print "COMMIT;", flush, and close all writers. Safe to call once at end of run. */
+    /**
+     * Drain all thread buffers, let each writer finish its queue, then close
+     * the sinks in key order. Safe to call more than once; only the first call
+     * does anything.
+     */
     @Override
-    public void close() {
-        writers.values().forEach(pw -> {
-            pw.println(SQL_COMMIT_ON);
-            pw.flush();
-            pw.close();
-        });
+    public synchronized void close() {
+        if (closed) return;
+        closed = true;
+        tables.values().forEach(Table::drainBuffers);
+        tables.values().forEach(Table::finish);
+    }
+
+    /** One output; {@link #insert(SqlInsert, Object...)} may be called from any thread. */
+    public static final class Table {
+
+        private final String key;
+        private final SqlSink sink;
+        private final int chunkRows;
+        private final BlockingQueue<Chunk> queue;
+        // Buffers holding rows; a drained buffer leaves until its thread adds again
+        private final Set<Buffer> buffers = ConcurrentHashMap.newKeySet();
+        private final ThreadLocal<Buffer> local = ThreadLocal.withInitial(this::newBuffer);
+        private final Thread writer;
+        private volatile Throwable failure;
+        private volatile boolean finished;
+
+        Table(String key, SqlSink sink, int chunkRows, int queueChunks) {
+            this.key = key;
+            this.sink = Objects.requireNonNull(sink, key);
+            this.chunkRows = chunkRows;
+            this.queue = new ArrayBlockingQueue<>(queueChunks);
+            this.writer = new Thread(this::drainLoop, "sql-writer-" + key);
+            this.writer.setDaemon(true);
+            this.writer.start();
+        }
+
+        /** Buffer one row; blocks when this table's queue is full. */
+        public void insert(SqlInsert insert, Object... values) {
+            if (finished)
+                throw new IllegalStateException("SQL writer " + key + " is closed");
+            insert.check(values);
+            List<Row> full = local.get().add(new Row(insert, values));
+            if (full != null)
+                enqueue(new Chunk(full, null, null, false));
+        }
+
+        /** Run {@code sql} on the sink after the rows this thread has inserted so far. */
+        public void execute(String sql) {
+            if (finished)
+                throw new IllegalStateException("SQL writer " + key + " is closed");
+            enqueue(new Chunk(local.get().drain(), Objects.requireNonNull(sql, "sql"), null, false));
+        }
+
+        private Buffer newBuffer() {
+            return new Buffer(chunkRows, buffers);
+        }
+
+        void drainBuffers() {
+            for (Buffer b : buffers) {
+                List<Row> rows = b.drain();
+                if (rows != null)
+                    enqueue(new Chunk(rows, null, null, false));
+            }
+        }
+
+        /** Threads whose buffers may hold rows not yet handed to the writer. */
+        int pendingBuffers() {
+            return buffers.size();
+        }
+
+        /** Wait until everything queued so far has been written and flushed. */
+        void sync() {
+            if (finished) return;
+            CountDownLatch done = new CountDownLatch(1);
+            enqueue(new Chunk(null, null, done, false));
+            try {
+                while (!done.await(1, TimeUnit.SECONDS))
+                    checkFailure();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted flushing SQL writer " + key, e);
+            }
+            checkFailure();
+        }
+
+        void finish() {
+            if (finished) return;
+            try {
+                if (failure == null)
+                    enqueue(new Chunk(null, null, null, true));
+                writer.join();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                Logger.warn("Interrupted closing SQL writer " + key);
+            } catch (IllegalStateException e) {
+                // writer died while we were waiting to enqueue; reported below
+            }
+            finished = true;
+            if (failure != null) {
+                Logger.error("SQL writer " + key + " failed; output is incomplete: " + failure);
+                try {
+                    sink.close();
+                } catch (Exception e) {
+                    Logger.warn("Error closing SQL writer " + key + ": " + e);
+                }
+            }
+        }
+
+        private void enqueue(Chunk c) {
+            try {
+                while (!queue.offer(c, 1, TimeUnit.SECONDS))
+                    checkFailure();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new IllegalStateException("Interrupted writing SQL writer " + key, e);
+            }
+        }
+
+        private void checkFailure() {
+            if (failure != null)
+                throw new IllegalStateException("SQL writer " + key + " failed", failure);
+        }
+
+        private void drainLoop() {
+            try {
+                while (true) {
+                    Chunk c = queue.take();
+                    if (c.rows != null) {
+                        for (Row r : c.rows)
+                            sink.write(r.insert, r.values);
+                    }
+                    if (c.sql != null)
+                        sink.execute(c.sql);
+                    if (c.end) {
+                        sink.close();
+                        return;
+                    }
+                    if (c.done != null) {
+                        sink.flush();
+                        c.done.countDown();
+                    }
+                }
+            } catch (Throwable t) {
+                failure = t;
+                Logger.error("SQL writer " + key + " stopped: " + t);
+            }
+        }
+    }
+
+    private record Row(SqlInsert insert, Object[] values) {
+    }
+
+    /** Queue element: rows to write (then a statement to run), a flush marker, or end of stream. */
+    private record Chunk(List<Row> rows, String sql, CountDownLatch done, boolean end) {
+    }
+
+    /**
+     * Per-thread row buffer; locked only so flushAll() can drain it from another
+     * thread. It is in its table's set only while it may hold rows: draining
+     * takes it out and the next add puts it back, so the buffers of threads that
+     * are gone (a replaced pool, a finished stage) are dropped at the next flush.
+     */
+    private static final class Buffer {
+        private final int capacity;
+        private final Set<Buffer> registry;
+        private ArrayList<Row> rows;
+        private boolean registered;
+
+        Buffer(int capacity, Set<Buffer> registry) {
+            this.capacity = capacity;
+            this.registry = registry;
+        }
+
+        /** Append; returns the full chunk once {@code capacity} rows are buffered. */
+        synchronized List<Row> add(Row row) {
+            if (!registered) {
+                registry.add(this);
+                registered = true;
+            }
+            if (rows == null)
+                rows = new ArrayList<>(capacity);
+            rows.add(row);
+            if (rows.size() < capacity)
+                return null;
+            List<Row> full = rows;
+            rows = null;
+            return full;
+        }
+
+        synchronized List<Row> drain() {
+            List<Row> r = rows;
+            rows = null;
+            if (registered) {
+                registry.remove(this);
+                registered = false;
+            }
+            return (r == null || r.isEmpty()) ? null : r;
+        }
     }
 }
@@ -0,0 +1,232 @@
+package org.pvlens.spl.processing.persist;
+
+/*
+ * This file is part of PVLens.
+ *
+ * Copyright (C) 2025 GlaxoSmithKline
+ *
+ * PVLens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PVLens is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PVLens.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.apache.commons.lang3.StringUtils;
+import org.pvlens.spl.om.Srlc;
+import org.pvlens.spl.om.SplDrug;
+import org.pvlens.spl.umls.Atom;
+import org.pvlens.spl.umls.UmlsLoader;
+
+/**
+ * Display name per PRODUCT_ID for SUBSTANCE_NAME, so the webapp reads it with
+ * one join instead of trying each related table in turn.
+ *
+ * <p>Sources, in order of precedence (the order the webapp used to query them):
+ * NDC product name, shortest RxNorm term, shortest SNOMED PT term, SRLC drug
+ * name, name of an SRLC with the same application number, shortest ATC term,
+ * "&lt;sponsor&gt; Product", and a name read from the SPL file name. Products
+ * sharing a PRODUCT_ID contribute together: the best source wins, and for the
+ * "shortest" sources the shorter term.</p>
+ *
+ * <p>Every product gets a row; NAME and NAME_SOURCE are NULL when no source
+ * has a name.</p>
+ */
+final class SubstanceNames {
+
+	/** NAME_SOURCE values, best first. */
+	enum Source {
+		NDC, RXNORM, SNOMED, SRLC, SRLC_APPLICATION, ATC, SPONSOR, FILE_NAME
+	}
+
+	private record Candidate(Source source, String name) {
+	}
+
+	private final UmlsLoader umls;
+	private final String splDataPath;
+	private final Map<Integer, String> srlcByApplication = new HashMap<>();
+	private final TreeMap<Integer, Candidate> names = new TreeMap<>();
+
+	/**
+	 * @param products    every product of the run, in plan order (for SRLC names by application number)
+	 * @param splDataPath SPL root stripped from XML paths, as for SPL_SRCFILE
+	 */
+	SubstanceNames(Collection<SplDrug> products, UmlsLoader umls, String splDataPath) {
+		this.umls = umls;
+		this.splDataPath = splDataPath == null ? "" : splDataPath;
+		for (SplDrug p : products) {
+			if (p.getSrlcs() == null) continue;
+			for (Map.Entry<Integer, Srlc> e : p.getSrlcs().entrySet()) {
+				Srlc s = e.getValue();
+				if (e.getKey() > 0 && s != null && StringUtils.isNotBlank(s.getDrugName()))
+					srlcByApplication.putIfAbsent(s.getApplicationNumber(), s.getDrugName().trim());
+			}
+		}
+	}
+
+	/** Add {@code prd}'s name candidate to its PRODUCT_ID. */
+	void add(int productId, SplDrug prd) {
+		Candidate c = candidate(prd);
+		Candidate prior = names.get(productId);
+		if (prior == null || (c != null && better(c, prior)))
+			names.put(productId, c);
+		else
+			names.putIfAbsent(productId, null);
+	}
+
+	/** SUBSTANCE_NAME values of one product: PRODUCT_ID, NAME, NAME_SOURCE. */
+	Object[] row(int productId) {
+		Candidate c = names.get(productId);
+		return new Object[] { productId, c == null ? null : c.name(), c == null ? null : c.source().name() };
+	}
+
+	/** SUBSTANCE_NAME values of every product, in PRODUCT_ID order. */
+	List<Object[]> rows() {
+		List<Object[]> rows = new ArrayList<>(names.size());
+		for (Integer id : names.keySet())
+			rows.add(row(id));
+		return rows;
+	}
+
+	private static boolean better(Candidate c, Candidate prior) {
+		if (prior == null || c.source().ordinal() < prior.source().ordinal())
+			return true;
+		if (c.source() != prior.source())
+			return false;
+		return switch (c.source()) {
+			case RXNORM, SNOMED, ATC -> c.name().length() < prior.name().length();
+			default -> false;
+		};
+	}
+
+	private Candidate candidate(SplDrug prd) {
+		String name;
+
+		if (prd.getDrugProduct() != null) {
+			for (Atom ndc : prd.getDrugProduct().values()) {
+				if (ndc != null && StringUtils.isNotBlank(ndc.getTerm()))
+					return new Candidate(Source.NDC, ndc.getTerm().trim());
+			}
+		}
+
+		List<String> terms = new ArrayList<>();
+		if (prd.getRxNormPts() != null) {
+			for (Atom a : prd.getRxNormPts().values()) {
+				Atom canon = a == null ? null : umls.getRxNorm().get(a.getAui());
+				if (canon != null && canon.getDatabaseId() > 0) terms.add(canon.getTerm());
+			}
+		}
+		if ((name = shortest(terms)) != null)
+			return new Candidate(Source.RXNORM, name);
+
+		terms.clear();
+		if (prd.getSnomedPts() != null) {
+			for (String aui : prd.getSnomedPts().keySet()) {
+				Atom e = umls.getSnomed().get(aui);
+				if (e != null) terms.add(e.getTerm());
+			}
+		}
+		if ((name = shortest(terms)) != null)
+			return new Candidate(Source.SNOMED, name);
+
+		if (prd.getSrlcs() != null) {
+			for (Map.Entry<Integer, Srlc> e : prd.getSrlcs().entrySet()) {
+				if (e.getKey() > 0 && e.getValue() != null && StringUtils.isNotBlank(e.getValue().getDrugName()))
+					return new Candidate(Source.SRLC, e.getValue().getDrugName().trim());
+			}
+		}
+
+		// SPL_SRCFILE rows of the product: application numbers, then sponsor and file names
+		List<String> files = new ArrayList<>();
+		String byApplication = null;
+		if (prd.getGuidXmlMaps() != null) {
+			for (Map.Entry<String, List<String>> e : prd.getGuidXmlMaps().entrySet()) {
+				if (e.getValue() == null) continue;
+				for (String xml : e.getValue()) {
+					if (StringUtils.isBlank(xml)) continue;
+					files.add(xml.replace(splDataPath, ""));
+					int appNo = prd.getGuidNda().getOrDefault(e.getKey(), 0);
+					if (byApplication == null && appNo > 0)
+						byApplication = srlcByApplication.get(appNo);
+				}
+			}
+		}
+		if (byApplication != null)
+			return new Candidate(Source.SRLC_APPLICATION, byApplication);
+
+		terms.clear();
+		if (prd.getAtcCodes() != null) {
+			for (Atom atc : prd.getAtcCodes().values())
+				if (atc != null) terms.add(atc.getTerm());
+		}
+		if ((name = shortest(terms)) != null)
+			return new Candidate(Source.ATC, name);
+
+		if (!files.isEmpty() && StringUtils.isNotBlank(prd.getDrugSponsor()))
+			return new Candidate(Source.SPONSOR, prd.getDrugSponsor().trim() + " Product");
+
+		if (!files.isEmpty() && (name = nameFromFileName(files.get(0))) != null)
+			return new Candidate(Source.FILE_NAME, name);
+
+		return null;
+	}
+
+	/** Shortest non-blank term (trimmed), first on ties; null if none. */
+	private static String shortest(List<String> terms) {
+		String best = null;
+		for (String t : terms) {
+			if (StringUtils.isBlank(t)) continue;
+			t = t.trim();
+			if (best == null || t.length() < best.length()) best = t;
+		}
+		return best;
+	}
+
+	/**
+	 * Drug name from an SPL file name ("otc/spl-drug_name-1234.xml" gives
+	 * "Drug Name"); null when it is a GUID or has too few letters. Unlike the
+	 * webapp's former fallback, the directory is not part of the name.
+	 */
+	static String nameFromFileName(String fileName) {
+		if (fileName == null) return null;
+
+		String name = fileName.substring(Math.max(fileName.lastIndexOf('/'), fileName.lastIndexOf('\\')) + 1);
+		name = name.replaceAll("\\.(xml|XML)$", "");
+		name = name.replaceAll("^(spl-|SPL-)", "");
+
+		if (name.matches("(?i)^[0-9a-f]{8}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{4}-[0-9a-f]{12}$")
+				|| name.matches("(?i)^[0-9a-f-]{20,}$"))
+			return null;
+
+		name = name.replaceAll("[_-]", " ");
+		name = name.replaceAll("\\s+\\d+$", "");
+
+		String alphaOnly = name.replaceAll("[^a-zA-Z]", "");
+		if (alphaOnly.length() < 3 || name.matches("(?i)^[0-9a-f\\s]+$"))
+			return null;
+
+		StringBuilder result = new StringBuilder();
+		for (String word : name.trim().split("\\s+")) {
+			if (word.isEmpty()) continue;
+			if (result.length() > 0) result.append(' ');
+			result.append(Character.toUpperCase(word.charAt(0)));
+			if (word.length() > 1) result.append(word.substring(1).toLowerCase(Locale.ROOT));
+		}
+		return result.length() == 0 ? null : result.toString();
+	}
+}
@@ -0,0 +1,153 @@
+package org.pvlens.spl.processing.persist;
+
+/*
+ * This file is part of PVLens.
+ *
+ * Copyright (C) 2025 GlaxoSmithKline
+ *
+ * PVLens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PVLens is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PVLens.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * Writes rows as MySQL-style TSV (one file per table, {@code \N} for NULL,
+ * backslash escapes) and a script of {@code LOAD DATA LOCAL INFILE}
+ * statements that loads them, so the load step does not parse INSERT text.
+ *
+ * <p>Files are named {@code <prefix>.<table>.tsv} under {@code dir}. The
+ * script lists the tables in order of first appearance, which keeps referenced
+ * rows (e.g. NDC_CODE) loaded before the rows pointing at them. Statements
+ * passed to {@link #execute(String)} are placed among the loads in the same
+ * order. The client needs {@code --local-infile=1}.</p>
+ */
+public class TsvSqlSink implements SqlSink {
+
+    private final Path dir;
+    private final String prefix;
+    private final PrintWriter script;
+    private final Map<SqlInsert, Path> files = new LinkedHashMap<>();
+    private final Map<SqlInsert, BufferedWriter> writers = new HashMap<>();
+    private final List<String> statements = new ArrayList<>();
+    private final StringBuilder line = new StringBuilder(256);
+
+    /**
+     * @param dir    directory for the TSV files (created if missing)
+     * @param prefix file name prefix, unique per sink
+     * @param script receives the LOAD DATA statements; closed by {@link #close()}
+     */
+    public TsvSqlSink(Path dir, String prefix, PrintWriter script) throws IOException {
+        this.dir = Files.createDirectories(dir);
+        this.prefix = Objects.requireNonNull(prefix, "prefix");
+        this.script = Objects.requireNonNull(script, "script");
+    }
+
+    @Override
+    public void write(SqlInsert insert, Object[] values) throws IOException {
+        BufferedWriter w = writers.get(insert);
+        if (w == null) {
+            Path f = dir.resolve(fileName(insert));
+            w = Files.newBufferedWriter(f, StandardCharsets.UTF_8);
+            files.put(insert, f);
+            writers.put(insert, w);
+            statements.add(loadStatement(insert, f));
+        }
+        line.setLength(0);
+        for (int i = 0; i < values.length; i++) {
+            if (i > 0) line.append('\t');
+            appendField(line, values[i]);
+        }
+        line.append('\n');
+        w.append(line);
+    }
+
+    @Override
+    public void execute(String sql) {
+        statements.add(sql + ";");
+    }
+
+    @Override
+    public void flush() throws IOException {
+        for (BufferedWriter w : writers.values())
+            w.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        for (BufferedWriter w : writers.values())
+            w.close();
+
+        script.println("SET autocommit = OFF;");
+        for (String s : statements)
+            script.println(s);
+        script.println("COMMIT;");
+        script.flush();
+        script.close();
+    }
+
+    private String fileName(SqlInsert insert) {
+        String base = prefix + "." + insert.table().toLowerCase(Locale.ROOT);
+        String name = base + ".tsv";
+        // same table with a different column list gets its own file
+        for (int n = 2; files.containsValue(dir.resolve(name)); n++)
+            name = base + "." + n + ".tsv";
+        return name;
+    }
+
+    static String loadStatement(SqlInsert insert, Path file) {
+        StringBuilder sb = new StringBuilder(256);
+        sb.append("LOAD DATA LOCAL INFILE ");
+        SqlTextSink.appendLiteral(sb, file.toAbsolutePath().toString());
+        sb.append(" INTO TABLE ").append(insert.table())
+                .append(" CHARACTER SET utf8mb4")
+                .append(" FIELDS TERMINATED BY '\\t' ESCAPED BY '\\\\'")
+                .append(" LINES TERMINATED BY '\\n'")
+                .append(" (").append(insert.columnList()).append(");");
+        return sb.toString();
+    }
+
+    /** One TSV field in the LOAD DATA default escaping. */
+    static void appendField(StringBuilder sb, Object v) {
+        if (v == null) {
+            sb.append("\\N");
+        } else if (v instanceof Boolean b) {
+            sb.append(b ? 1 : 0);
+        } else {
+            String s = v.toString();
+            for (int i = 0; i < s.length(); i++) {
+                char c = s.charAt(i);
+                switch (c) {
+                    case '\\' -> sb.append("\\\\");
+                    case '\t' -> sb.append("\\t");
+                    case '\n' -> sb.append("\\n");
+                    case '\r' -> sb.append("\\r");
+                    case '\0' -> sb.append("\\0");
+                    default -> sb.append(c);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,179 @@
+package org.pvlens.spl.processing.support;
+
+/*
+ * This file is part of PVLens.
+ *
+ * Copyright (C) 2025 GlaxoSmithKline
+ *
+ * PVLens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PVLens is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PVLens.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+
+import org.pvlens.spl.util.Logger;
+
+/**
+ * One stage of a processing pipeline: a fixed set of worker threads taking
+ * items from a bounded queue. {@link #submit} blocks while the queue is full,
+ * so a slow stage holds back the stages feeding it instead of letting work
+ * pile up in memory. Workers may submit to the next stage themselves.
+ *
+ * <p>Counts items, failures, time spent working and time producers spent
+ * blocked on the queue; {@link #summary()} reports them after {@link #finish()}.</p>
+ */
+public final class BoundedStage<T> {
+
+	private static final Object END = new Object();
+
+	private final String name;
+	private final Consumer<T> work;
+	private final BlockingQueue<Object> queue;
+	private final List<Thread> workers = new ArrayList<>();
+
+	private final AtomicLong items = new AtomicLong();
+	private final AtomicLong failures = new AtomicLong();
+	private final AtomicLong busyNanos = new AtomicLong();
+	private final AtomicLong blockedNanos = new AtomicLong();
+	private final AtomicInteger maxDepth = new AtomicInteger();
+	private final long started = System.nanoTime();
+	private volatile long elapsedNanos = -1;
+
+	/**
+	 * @param name     stage name (thread names, log lines)
+	 * @param threads  worker threads
+	 * @param capacity items that may wait in the queue before {@link #submit} blocks
+	 * @param work     applied to every item; exceptions are logged and counted
+	 */
+	public BoundedStage(String name, int threads, int capacity, Consumer<T> work) {
+		if (threads < 1 || capacity < 1)
+			throw new IllegalArgumentException("Stage " + name + " needs threads and capacity >= 1");
+		this.name = name;
+		this.work = work;
+		this.queue = new ArrayBlockingQueue<>(capacity);
+		for (int i = 1; i <= threads; i++) {
+			Thread t = new Thread(this::workLoop, "stage-" + name + "-" + i);
+			t.setDaemon(true);
+			workers.add(t);
+		}
+		workers.forEach(Thread::start);
+	}
+
+	/** Queue one item; blocks while the queue is full. */
+	public void submit(T item) {
+		if (elapsedNanos >= 0)
+			throw new IllegalStateException("Stage " + name + " is finished");
+		if (!queue.offer(item)) {
+			long t0 = System.nanoTime();
+			try {
+				queue.put(item);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				throw new IllegalStateException("Interrupted submitting to stage " + name, e);
+			}
+			blockedNanos.addAndGet(System.nanoTime() - t0);
+		}
+		maxDepth.accumulateAndGet(queue.size(), Math::max);
+	}
+
+	/**
+	 * No more input: let the workers drain the queue and wait for them. Call
+	 * after every stage feeding this one has finished.
+	 */
+	public void finish() {
+		if (elapsedNanos >= 0)
+			return;
+		try {
+			for (int i = 0; i < workers.size(); i++)
+				queue.put(END);
+			for (Thread t : workers)
+				t.join();
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			throw new IllegalStateException("Interrupted finishing stage " + name, e);
+		}
+		elapsedNanos = System.nanoTime() - started;
+	}
+
+	@SuppressWarnings("unchecked")
+	private void workLoop() {
+		while (true) {
+			Object o;
+			try {
+				o = queue.take();
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+				return;
+			}
+			if (o == END)
+				return;
+			long t0 = System.nanoTime();
+			try {
+				work.accept((T) o);
+			} catch (Exception e) {
+				failures.incrementAndGet();
+				Logger.error("Stage " + name + " failed on an item: " + e);
+			} finally {
+				busyNanos.addAndGet(System.nanoTime() - t0);
+				items.incrementAndGet();
+			}
+		}
+	}
+
+	public String name() {
+		return name;
+	}
+
+	public int threads() {
+		return workers.size();
+	}
+
+	public long items() {
+		return items.get();
+	}
+
+	public long failures() {
+		return failures.get();
+	}
+
+	/** Total time producers waited on a full queue, in nanoseconds. */
+	public long blockedNanos() {
+		return blockedNanos.get();
+	}
+
+	/** Deepest the queue has been after a submit. */
+	public int maxQueueDepth() {
+		return maxDepth.get();
+	}
+
+	/** Share of the workers' wall-clock time spent working (0..1). */
+	public double utilization() {
+		long wall = (elapsedNanos >= 0) ? elapsedNanos : System.nanoTime() - started;
+		if (wall <= 0)
+			return 0;
+		return Math.min(1.0, busyNanos.get() / ((double) wall * workers.size()));
+	}
+
+	/** One-line report: threads, items, utilization, producer blocking and queue depth. */
+	public String summary() {
+		return String.format(Locale.ROOT, "%s: threads=%d, items=%d, failed=%d, busy=%.0f%%, blocked=%.1fs, maxQueue=%d",
+				name, threads(), items(), failures(), utilization() * 100, blockedNanos() / 1e9, maxQueueDepth());
+	}
+}
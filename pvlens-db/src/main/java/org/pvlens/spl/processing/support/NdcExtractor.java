@@ -22,8 +22,6 @@ package org.pvlens.spl.processing.support;
 import java.io.ByteArrayInputStream;
 import java.io.File;
 import java.io.FileInputStream;
-import java.io.IOException;
-import java.nio.file.Path;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.LinkedHashSet;
@@ -93,11 +91,6 @@ public class NdcExtractor {
 		return new ArrayList<>(out);
 	}
 
-	/** Read file contents into bytes (tiny SPLs make this cheap). */
-	private static byte[] readAll(Path p) throws IOException {
-		return java.nio.file.Files.readAllBytes(p);
-	}
-
 	/** Decode UTF-8 and remove BOM, if present. */
 	private static String bytesToUtf8Text(byte[] bytes) {
 		if (bytes == null || bytes.length == 0) return "";
@@ -108,26 +101,33 @@ public class NdcExtractor {
 	}
 
 	/**
-	 * Extract a de-duplicated, in-order list of NDC codes from the given SPL XML file path.
+	 * Stage (0) of {@link #getNdcCodes}: hyphenated NDCs anywhere in the raw
+	 * bytes, first-seen order. Shared with the fused label scan.
+	 */
+	public static List<String> regexCodes(byte[] bytes) {
+		return extractByRegex(bytesToUtf8Text(bytes));
+	}
+
+	/**
+	 * Extract a de-duplicated, in-order list of NDC codes from the given SPL XML file path
+	 * or archive entry reference ({@link SplXmlRef}).
 	 * <p>Never throws; returns {@code Collections.emptyList()} on errors.</p>
 	 */
 	public List<String> getNdcCodes(String xmlFile) {
-		File f = new File(xmlFile);
-		if (!f.exists()) {
+		if (!SplXmlRef.exists(xmlFile)) {
 			Logger.error("XML file not found: " + xmlFile);
 			return Collections.emptyList();
 		}
 
-		final Path path = f.toPath();
 		List<String> ndcCodes = new ArrayList<>();
 
 		try {
 			// Read once so we can: (1) fast regex sweep, (2) parse DOM if needed, (3) handle BOM/junk
-			byte[] bytes = readAll(path);
+			// (plain file or an entry inside its SPL archive)
+			byte[] bytes = SplXmlRef.readAllBytes(xmlFile);
 
 			// (0) Very fast regex sweep first (works even if XML is malformed)
-			String rawText = bytesToUtf8Text(bytes);
-			List<String> regexHits = extractByRegex(rawText);
+			List<String> regexHits = regexCodes(bytes);
 			if (!regexHits.isEmpty()) {
 				ndcCodes.addAll(regexHits); // provisional results
 			}
@@ -0,0 +1,165 @@
+package org.pvlens.spl.processing.support;
+
+/*
+ * This file is part of PVLens.
+ *
+ * Copyright (C) 2025 GlaxoSmithKline
+ *
+ * PVLens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PVLens is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PVLens.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+/**
+ * Resolves an SPL XML reference to its bytes.
+ *
+ * A reference is either a plain file path (extracted under {@code xml_files/})
+ * or, in extract-free mode, {@code <zip path>!/<entry name>} pointing inside the
+ * original DailyMed archive. Zip entries are read by random access through the
+ * central directory ({@link ZipFile}), so nothing is unpacked to disk.
+ */
+public final class SplXmlRef {
+
+	/** Separator between archive path and entry name (same convention as jar: URLs). */
+	public static final String ZIP_SEP = "!/";
+
+	private SplXmlRef() {
+	}
+
+	/** Build a reference to {@code entry} inside {@code zipPath}. */
+	public static String zipEntry(String zipPath, String entry) {
+		return zipPath + ZIP_SEP + entry.replace('\\', '/');
+	}
+
+	public static boolean isZipEntry(String ref) {
+		return ref != null && ref.contains(ZIP_SEP);
+	}
+
+	/** File on disk backing the reference: the archive for zip entries, else the XML itself. */
+	public static Path container(String ref) {
+		int i = ref.indexOf(ZIP_SEP);
+		return Paths.get(i < 0 ? ref : ref.substring(0, i));
+	}
+
+	/** Entry name for zip references, or null for plain files. */
+	public static String entryName(String ref) {
+		int i = ref.indexOf(ZIP_SEP);
+		return (i < 0) ? null : ref.substring(i + ZIP_SEP.length());
+	}
+
+	/** True when the backing file exists (the entry itself is checked on open). */
+	public static boolean exists(String ref) {
+		return ref != null && Files.isRegularFile(container(ref));
+	}
+
+	/** Read the whole XML. */
+	public static byte[] readAllBytes(String ref) throws IOException {
+		try (InputStream in = open(ref)) {
+			return in.readAllBytes();
+		}
+	}
+
+	/** Open the XML for reading; the caller closes the stream (and with it the archive). */
+	public static InputStream open(String ref) throws IOException {
+		return open(ref, Long.MAX_VALUE);
+	}
+
+	/**
+	 * Open the XML if it is at most {@code maxBytes} long, else throw
+	 * {@link TooLargeException}. A zip entry's size and stream come from one
+	 * {@link ZipFile} (one central-directory read). When the archive does not
+	 * record the size, the entry is read up to {@code maxBytes} and rejected if
+	 * there is more.
+	 */
+	public static InputStream open(String ref, long maxBytes) throws IOException {
+		if (!isZipEntry(ref)) {
+			Path p = Paths.get(ref);
+			long size = Files.size(p);
+			if (size > maxBytes)
+				throw new TooLargeException(ref, size);
+			return Files.newInputStream(p);
+		}
+
+		ZipFile zf = new ZipFile(container(ref).toFile());
+		try {
+			ZipEntry e = requireEntry(zf, ref);
+			long size = e.getSize();
+			if (size > maxBytes)
+				throw new TooLargeException(ref, size);
+			if (size < 0 && maxBytes < Long.MAX_VALUE) {
+				try (InputStream in = zf.getInputStream(e)) {
+					return capped(in, maxBytes, ref);
+				} finally {
+					zf.close();
+				}
+			}
+			return new FilterInputStream(zf.getInputStream(e)) {
+				@Override
+				public void close() throws IOException {
+					try {
+						super.close();
+					} finally {
+						zf.close();
+					}
+				}
+			};
+		} catch (IOException | RuntimeException ex) {
+			zf.close();
+			throw ex;
+		}
+	}
+
+	/** The rest of {@code in}, read into memory, if it is at most {@code maxBytes} long. */
+	static InputStream capped(InputStream in, long maxBytes, String ref) throws IOException {
+		int cap = (int) Math.min(maxBytes, Integer.MAX_VALUE - 8);
+		byte[] bytes = in.readNBytes(cap);
+		if (in.read() >= 0)
+			throw new TooLargeException(ref, -1);
+		return new ByteArrayInputStream(bytes);
+	}
+
+	/** The XML is longer than the limit passed to {@link #open(String, long)}. */
+	public static final class TooLargeException extends IOException {
+
+		private static final long serialVersionUID = 1L;
+
+		private final long size;
+
+		TooLargeException(String ref, long size) {
+			super("XML too large (" + (size < 0 ? "size not recorded" : size + " bytes") + "): " + ref);
+			this.size = size;
+		}
+
+		/** Size in bytes, or -1 when it was only found exceeding the limit while reading. */
+		public long size() {
+			return size;
+		}
+	}
+
+	private static ZipEntry requireEntry(ZipFile zf, String ref) throws FileNotFoundException {
+		ZipEntry e = zf.getEntry(entryName(ref));
+		if (e == null || e.isDirectory())
+			throw new FileNotFoundException("No such entry: " + ref);
+		return e;
+	}
+}
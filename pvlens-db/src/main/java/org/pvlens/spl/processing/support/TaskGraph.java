@@ -0,0 +1,305 @@
+package org.pvlens.spl.processing.support;
+
+/*
+ * This file is part of PVLens.
+ *
+ * Copyright (C) 2025 GlaxoSmithKline
+ *
+ * PVLens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PVLens is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PVLens.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.pvlens.spl.util.Logger;
+
+/**
+ * A small dependency graph of run stages. Each stage starts as soon as the
+ * stages it depends on have finished, so independent ones (e.g. UMLS loading
+ * and XML extraction) overlap and the run takes about as long as its longest
+ * dependency chain.
+ *
+ * <p>Stages are added in dependency order (a stage can only depend on stages
+ * added before it, so there are no cycles). With one thread they run one
+ * after another in that order. The first failure stops stages from starting;
+ * {@link #run()} waits for those already running and rethrows it.</p>
+ *
+ * <p>{@link #summary()} lists each stage's start, wall time and the CPU time
+ * of the thread that ran it (work a stage hands to its own pools is not
+ * included), followed by the critical path: the chain of stages that
+ * determined when the run finished.</p>
+ */
+public final class TaskGraph {
+
+	private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+
+	private final String name;
+	private final int threads;
+	private final List<Node<?>> nodes = new ArrayList<>();
+
+	private long startedNanos;
+	private long endedNanos;
+	private Throwable failure;
+	private int running;
+
+	/**
+	 * @param name    graph name (thread names, log lines)
+	 * @param threads stages that may run at the same time (1 = one after another)
+	 */
+	public TaskGraph(String name, int threads) {
+		if (threads < 1)
+			throw new IllegalArgumentException("Graph " + name + " needs threads >= 1");
+		this.name = name;
+		this.threads = threads;
+	}
+
+	/** Add a stage computing a value; {@code deps} must belong to this graph. */
+	public <T> Node<T> add(String stage, Callable<T> work, Node<?>... deps) {
+		for (Node<?> d : deps) {
+			if (d == null || d.graph() != this)
+				throw new IllegalArgumentException("Stage " + stage + ": unknown dependency " + d);
+		}
+		Node<T> n = new Node<>(stage, work, List.of(deps));
+		nodes.add(n);
+		return n;
+	}
+
+	/** Add a stage run for its side effects. */
+	public Node<Void> addStep(String stage, Runnable work, Node<?>... deps) {
+		return add(stage, () -> {
+			work.run();
+			return null;
+		}, deps);
+	}
+
+	/**
+	 * Run every stage and wait for them. Rethrows the first failure (runtime
+	 * exceptions and errors as they are, checked ones wrapped).
+	 */
+	public void run() {
+		startedNanos = System.nanoTime();
+		try {
+			if (threads == 1) {
+				for (Node<?> n : nodes) {
+					n.execute();
+					if (n.error != null)
+						break;
+				}
+			} else {
+				runConcurrently();
+			}
+		} finally {
+			endedNanos = System.nanoTime();
+		}
+		if (failure != null) {
+			if (failure instanceof RuntimeException re)
+				throw re;
+			if (failure instanceof Error err)
+				throw err;
+			throw new IllegalStateException("Stage failed in " + name, failure);
+		}
+	}
+
+	private void runConcurrently() {
+		ExecutorService pool = Executors.newFixedThreadPool(threads, r -> {
+			Thread t = new Thread(r, "graph-" + name);
+			t.setDaemon(true);
+			return t;
+		});
+		try {
+			synchronized (this) {
+				startReady(pool);
+				while (running > 0 || (failure == null && nodes.stream().anyMatch(n -> n.state == State.WAITING)))
+					wait();
+			}
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			synchronized (this) {
+				if (failure == null)
+					failure = e;
+			}
+		} finally {
+			pool.shutdownNow();
+		}
+	}
+
+	/** Submit every waiting stage whose dependencies are done. Called holding the lock. */
+	private void startReady(ExecutorService pool) {
+		if (failure != null)
+			return;
+		for (Node<?> n : nodes) {
+			if (n.state == State.WAITING && n.deps.stream().allMatch(d -> d.state == State.DONE)) {
+				n.state = State.RUNNING;
+				running++;
+				pool.execute(() -> {
+					n.execute();
+					synchronized (this) {
+						running--;
+						startReady(pool);
+						notifyAll();
+					}
+				});
+			}
+		}
+	}
+
+	private synchronized void failed(Node<?> n, Throwable t) {
+		if (failure == null)
+			failure = t;
+		Logger.error("Stage [" + n.name + "] failed: " + t);
+	}
+
+	/** Stage table and critical path; empty before {@link #run()}. */
+	public String summary() {
+		if (startedNanos == 0)
+			return "";
+		long total = endedNanos - startedNanos;
+		long sum = 0;
+		int width = 5;
+		for (Node<?> n : nodes) {
+			sum += n.wallNanos();
+			width = Math.max(width, n.name.length());
+		}
+
+		StringBuilder sb = new StringBuilder(256);
+		sb.append(String.format(Locale.ROOT, "Stages of %s: wall %s, sum of stages %s", name, secs(total), secs(sum)));
+		for (Node<?> n : nodes) {
+			sb.append(System.lineSeparator());
+			if (n.startNanos == 0) {
+				sb.append(String.format(Locale.ROOT, "  %-" + width + "s  not run", n.name));
+			} else {
+				sb.append(String.format(Locale.ROOT, "  %-" + width + "s  start %9s  wall %9s  cpu %9s%s", n.name,
+						secs(n.startNanos - startedNanos), secs(n.wallNanos()),
+						n.cpuNanos < 0 ? "n/a" : secs(n.cpuNanos), n.error != null ? "  FAILED" : ""));
+			}
+		}
+
+		List<Node<?>> path = criticalPath();
+		if (!path.isEmpty()) {
+			sb.append(System.lineSeparator()).append("Critical path: ");
+			long onPath = 0;
+			for (int i = 0; i < path.size(); i++) {
+				Node<?> n = path.get(i);
+				if (i > 0)
+					sb.append(" -> ");
+				sb.append(n.name).append(" (").append(secs(n.wallNanos())).append(')');
+				onPath += n.wallNanos();
+			}
+			sb.append(" = ").append(secs(onPath));
+		}
+		return sb.toString();
+	}
+
+	/**
+	 * From the stage that finished last, follow the dependency that finished
+	 * last (the one the stage was waiting for) back to a stage without any.
+	 */
+	List<Node<?>> criticalPath() {
+		Node<?> last = null;
+		for (Node<?> n : nodes)
+			if (n.endNanos != 0 && (last == null || n.endNanos > last.endNanos))
+				last = n;
+		List<Node<?>> path = new ArrayList<>();
+		for (Node<?> n = last; n != null;) {
+			path.add(n);
+			Node<?> prev = null;
+			for (Node<?> d : n.deps)
+				if (d.endNanos != 0 && (prev == null || d.endNanos > prev.endNanos))
+					prev = d;
+			n = prev;
+		}
+		Collections.reverse(path);
+		return path;
+	}
+
+	private static String secs(long nanos) {
+		return String.format(Locale.ROOT, "%.1f s", nanos / 1e9);
+	}
+
+	private enum State {
+		WAITING, RUNNING, DONE, FAILED
+	}
+
+	/** One stage; {@link #get()} returns its value once it has run. */
+	public final class Node<T> {
+		private final String name;
+		private final Callable<T> work;
+		private final List<Node<?>> deps;
+
+		private volatile State state = State.WAITING;
+		private volatile T value;
+		private volatile Throwable error;
+		private volatile long startNanos;
+		private volatile long endNanos;
+		private volatile long cpuNanos = -1;
+
+		private Node(String name, Callable<T> work, List<Node<?>> deps) {
+			this.name = name;
+			this.work = work;
+			this.deps = deps;
+		}
+
+		private TaskGraph graph() {
+			return TaskGraph.this;
+		}
+
+		public String name() {
+			return name;
+		}
+
+		/** The stage's value; only valid in dependent stages or after {@link TaskGraph#run()}. */
+		public T get() {
+			if (state != State.DONE)
+				throw new IllegalStateException("Stage " + name + " has not completed");
+			return value;
+		}
+
+		long wallNanos() {
+			return startNanos == 0 ? 0 : endNanos - startNanos;
+		}
+
+		private void execute() {
+			state = State.RUNNING;
+			boolean cpu = THREADS.isCurrentThreadCpuTimeSupported();
+			long cpu0 = cpu ? THREADS.getCurrentThreadCpuTime() : 0;
+			startNanos = System.nanoTime();
+			try {
+				value = work.call();
+				state = State.DONE;
+			} catch (Throwable t) {
+				error = t;
+				state = State.FAILED;
+				failed(this, t);
+			} finally {
+				endNanos = System.nanoTime();
+				if (cpu)
+					cpuNanos = THREADS.getCurrentThreadCpuTime() - cpu0;
+			}
+			Logger.log(String.format(Locale.ROOT, "Stage [%s] %s in %s", name,
+					error == null ? "finished" : "failed", secs(wallNanos())));
+		}
+
+		@Override
+		public String toString() {
+			return name;
+		}
+	}
+}
@@ -19,22 +19,34 @@ package org.pvlens.spl.umls;
  * along with PVLens.  If not, see <https://www.gnu.org/licenses/>.
  */
 
+import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.List;
 import java.util.Locale;
 
+import lombok.AccessLevel;
 import lombok.Data;
+import lombok.Getter;
+import lombok.Setter;
+import lombok.ToString;
 
 /**
  * Represents a UMLS atom: an atomic concept identified by AUI/CUI with a
  * preferred term/code and term type (TTY). This model is used for matching and
  * for generating export rows compatible with UMLS/MedDRA subsets.
+ *
+ * Identifier fields are interned through {@link Symbols}, and the loader shares
+ * one instance per AUI through {@link AtomPool} (also on deserialization), so
+ * keep atoms effectively immutable once they are handed out.
  * 
  * Author: Jeffery Painter Created: 2024-08-23 Updated: 2025-08-25
  */
 @Data
-public class Atom {
+public class Atom implements Serializable {
+
+	private static final long serialVersionUID = 1L;
 
 	// --- Constants ------------------------------------------------------------
 
@@ -78,11 +90,17 @@ public class Atom {
 	/** Path to root (if present) as source-provided identifiers. */
 	private String[] ptr;
 
-	/** Parent atom ids (local db ids or other agreed key). */
-	private List<Long> parents = new ArrayList<>();
+	/** Parent atom ids (local db ids or other agreed key); shared empty list when none. */
+	private List<Long> parents = Collections.emptyList();
+
+	/** Child atom ids (local db ids or other agreed key); shared empty list when none. */
+	private List<Long> children = Collections.emptyList();
 
-	/** Child atom ids (local db ids or other agreed key). */
-	private List<Long> children = new ArrayList<>();
+	/** Symbol id of the AUI (0 until first needed). */
+	@Getter(AccessLevel.NONE)
+	@Setter(AccessLevel.NONE)
+	@ToString.Exclude
+	private transient int auiId;
 
 	// --- Constructors ---------------------------------------------------------
 
@@ -90,27 +108,73 @@ public class Atom {
 	}
 
 	public Atom(String aui, String cui, String ptCode, String code, String term, String tty) {
-		this.aui = aui;
-		this.cui = cui;
-		this.ptCode = ptCode;
-		this.code = code;
+		setAui(aui);
+		this.cui = Symbols.intern(cui);
+		this.ptCode = Symbols.intern(ptCode);
+		this.code = Symbols.intern(code);
 		this.term = term;
-		this.tty = tty;
+		this.tty = Symbols.intern(tty);
+	}
+
+	// Identifiers share one String instance per distinct value
+	public void setAui(String aui) {
+		this.aui = Symbols.intern(aui);
+		this.auiId = Symbols.id(this.aui);
+	}
+
+	public void setCui(String cui) {
+		this.cui = Symbols.intern(cui);
+	}
+
+	public void setPtCode(String ptCode) {
+		this.ptCode = Symbols.intern(ptCode);
+	}
+
+	public void setCode(String code) {
+		this.code = Symbols.intern(code);
+	}
+
+	public void setTty(String tty) {
+		this.tty = Symbols.intern(tty);
+	}
+
+	public void setSab(String sab) {
+		this.sab = Symbols.intern(sab);
+	}
+
+	/** {@link Symbols} id of the AUI ({@link Symbols#NONE} when unset). */
+	public int auiId() {
+		int id = auiId;
+		if (id == Symbols.NONE && aui != null)
+			auiId = id = Symbols.id(aui);
+		return id;
 	}
 
 	// Defensive setters for collections/arrays (avoid null surprises)
 	public void setParents(List<Long> parents) { // note
-		this.parents = (parents == null) ? new ArrayList<>() : new ArrayList<>(parents);
+		this.parents = (parents == null || parents.isEmpty()) ? Collections.emptyList() : new ArrayList<>(parents);
 	}
 
 	public void setChildren(List<Long> children) { // note
-		this.children = (children == null) ? new ArrayList<>() : new ArrayList<>(children);
+		this.children = (children == null || children.isEmpty()) ? Collections.emptyList() : new ArrayList<>(children);
 	}
 
 	public void setPtr(String[] ptr) { // note
 		this.ptr = (ptr == null) ? null : Arrays.copyOf(ptr, ptr.length);
 	}
 
+	/** Deserialized atoms join the shared instances (see {@link AtomPool}). */
+	private Object readResolve() {
+		if (aui != null)
+			aui = Symbols.intern(aui);
+		cui = Symbols.intern(cui);
+		ptCode = Symbols.intern(ptCode);
+		code = Symbols.intern(code);
+		tty = Symbols.intern(tty);
+		sab = Symbols.intern(sab);
+		return AtomPool.share(this);
+	}
+
 	// --- Matching -------------------------------------------------------------
 
 	/**
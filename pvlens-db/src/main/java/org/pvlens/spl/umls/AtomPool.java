@@ -0,0 +1,54 @@
+package org.pvlens.spl.umls;
+
+/*
+ * This file is part of PVLens.
+ *
+ * Copyright (C) 2025 GlaxoSmithKline
+ *
+ * PVLens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PVLens is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PVLens.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Flyweight atoms: one shared instance per AUI.
+ *
+ * <p>The UMLS loader reads the same atom many times (an ingredient for every
+ * product that contains it, an MTHSPL atom under each set id) and products
+ * restored from disk would otherwise each get their own copy. {@link #share}
+ * returns the instance already registered for the AUI when it is equal to the
+ * given one, so products and outcomes hold references to a single object.
+ * An atom that differs from the registered one (e.g. another source's view of
+ * the same AUI) is returned unchanged.</p>
+ */
+public final class AtomPool {
+
+	private static final ConcurrentHashMap<Integer, Atom> BY_AUI = new ConcurrentHashMap<>(1 << 16);
+
+	private AtomPool() {
+	}
+
+	/** The shared instance equal to {@code atom}, registering it if its AUI is new. */
+	public static Atom share(Atom atom) {
+		if (atom == null || atom.getAui() == null)
+			return atom;
+		Atom prior = BY_AUI.putIfAbsent(atom.auiId(), atom);
+		return (prior == null || prior == atom || !prior.equals(atom)) ? atom : prior;
+	}
+
+	/** Number of distinct atoms registered. */
+	public static int size() {
+		return BY_AUI.size();
+	}
+}
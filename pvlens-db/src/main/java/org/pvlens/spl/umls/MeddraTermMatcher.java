@@ -0,0 +1,187 @@
+package org.pvlens.spl.umls;
+
+/*
+ * This file is part of PVLens.
+ *
+ * Copyright (C) 2025 GlaxoSmithKline
+ *
+ * PVLens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PVLens is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PVLens.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.util.ArrayDeque;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Token-level Aho-Corasick automaton over the transformed MedDRA dictionaries
+ * (TTY -> tokenCount -> key -> AUIs).
+ *
+ * A single left-to-right pass over a token array reports every dictionary key
+ * that occurs as a contiguous token run, without building per-n-gram Strings.
+ * Keys are only indexed in the bucket whose token count matches the key (the
+ * same keys the n-gram probe in {@code MedDRAProcessor} could reach), and each
+ * terminal node carries a TTY bitmask so callers can restrict hits to the TTYs
+ * valid for a section.
+ *
+ * Instances are immutable after {@link #compile} and safe to share across
+ * threads.
+ */
+public final class MeddraTermMatcher {
+
+	private static final class Node {
+		final Map<String, Node> next = new HashMap<>(2);
+		Node fail;
+		/** Nearest node on the failure chain that terminates a key. */
+		Node output;
+		/** Dictionary key ending at this node (null if not terminal). */
+		String key;
+		long ttyMask;
+	}
+
+	private final Node root = new Node();
+	private final Map<String, Long> ttyBits;
+	private int keyCount;
+
+	private MeddraTermMatcher(Map<String, Long> ttyBits) {
+		this.ttyBits = ttyBits;
+	}
+
+	/**
+	 * Compile a matcher from a transformed MedDRA map.
+	 *
+	 * @param dict      TTY -> tokenCount -> (space-joined key -> AUIs)
+	 * @param maxTokens longest key (in tokens) to index; keys above this are skipped
+	 */
+	public static MeddraTermMatcher compile(Map<String, Map<Integer, Map<String, List<String>>>> dict,
+			int maxTokens) {
+		// Stable TTY -> bit assignment (at most 64 TTYs; MedDRA has a handful)
+		Map<String, Long> bits = new HashMap<>();
+		if (dict != null) {
+			int b = 0;
+			for (String tty : new TreeSet<>(dict.keySet())) {
+				if (b >= Long.SIZE)
+					throw new IllegalArgumentException("Too many TTYs for matcher: " + dict.size());
+				bits.put(tty, 1L << b++);
+			}
+		}
+
+		MeddraTermMatcher m = new MeddraTermMatcher(Collections.unmodifiableMap(bits));
+		if (dict != null) {
+			for (Map.Entry<String, Map<Integer, Map<String, List<String>>>> e : dict.entrySet()) {
+				long bit = bits.get(e.getKey());
+				Map<Integer, Map<String, List<String>>> byLen = e.getValue();
+				if (byLen == null)
+					continue;
+				for (Map.Entry<Integer, Map<String, List<String>>> le : byLen.entrySet()) {
+					int n = le.getKey();
+					if (n < 1 || n > maxTokens || le.getValue() == null)
+						continue;
+					for (String k : le.getValue().keySet()) {
+						String[] toks = k.split(" ", -1);
+						// rotated variants may sit in a bucket that does not match their length;
+						// the n-gram probe never reaches those, so neither do we
+						if (toks.length != n)
+							continue;
+						m.insert(toks, k, bit);
+					}
+				}
+			}
+		}
+		m.link();
+		return m;
+	}
+
+	private void insert(String[] toks, String key, long bit) {
+		Node cur = root;
+		for (String t : toks)
+			cur = cur.next.computeIfAbsent(t, x -> new Node());
+		if (cur.key == null)
+			keyCount++;
+		cur.key = key;
+		cur.ttyMask |= bit;
+	}
+
+	/** Breadth-first construction of failure and output links. */
+	private void link() {
+		ArrayDeque<Node> queue = new ArrayDeque<>();
+		for (Node child : root.next.values()) {
+			child.fail = root;
+			queue.add(child);
+		}
+		while (!queue.isEmpty()) {
+			Node node = queue.poll();
+			for (Map.Entry<String, Node> e : node.next.entrySet()) {
+				String tok = e.getKey();
+				Node child = e.getValue();
+
+				Node f = node.fail;
+				while (f != null && !f.next.containsKey(tok))
+					f = f.fail;
+				child.fail = (f == null) ? root : f.next.get(tok);
+				child.output = (child.fail.key != null) ? child.fail : child.fail.output;
+				queue.add(child);
+			}
+		}
+	}
+
+	/** Bitmask selecting the given TTYs (unknown TTYs are ignored). */
+	public long maskFor(Collection<String> ttys) {
+		long mask = 0L;
+		for (String t : ttys) {
+			Long b = ttyBits.get(t);
+			if (b != null)
+				mask |= b;
+		}
+		return mask;
+	}
+
+	/** Number of distinct keys indexed. */
+	public int size() {
+		return keyCount;
+	}
+
+	/**
+	 * Find every indexed key occurring in {@code tokens} whose TTY set intersects
+	 * {@code ttyMask}.
+	 *
+	 * @return distinct matched keys in order of first occurrence (by end position)
+	 */
+	public Set<String> match(String[] tokens, long ttyMask) {
+		if (tokens == null || tokens.length == 0 || ttyMask == 0L)
+			return Collections.emptySet();
+
+		Set<String> hits = new LinkedHashSet<>();
+		Node state = root;
+		for (String tok : tokens) {
+			Node nx = state.next.get(tok);
+			while (nx == null && state != root) {
+				state = state.fail;
+				nx = state.next.get(tok);
+			}
+			state = (nx == null) ? root : nx;
+
+			for (Node o = (state.key != null) ? state : state.output; o != null; o = o.output) {
+				if ((o.ttyMask & ttyMask) != 0L)
+					hits.add(o.key);
+			}
+		}
+		return hits;
+	}
+}
@@ -0,0 +1,92 @@
+package org.pvlens.spl.umls;
+
+/*
+ * This file is part of PVLens.
+ *
+ * Copyright (C) 2025 GlaxoSmithKline
+ *
+ * PVLens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PVLens is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PVLens.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Process-wide symbol table for identifiers (AUI, CUI, codes, TTY, GUID).
+ *
+ * <p>Each distinct identifier gets a dense int id the first time it is seen and
+ * one canonical String instance, so the millions of references held by atoms,
+ * products and outcomes share a single copy and compact structures can key on
+ * the id. Id 0 stands for null. Ids are only meaningful within one JVM:
+ * anything written to disk stores the identifier itself.</p>
+ */
+public final class Symbols {
+
+	/** Id of the null identifier. */
+	public static final int NONE = 0;
+
+	private static final ConcurrentHashMap<String, Integer> IDS = new ConcurrentHashMap<>(1 << 16);
+
+	// Written under the class lock; a reader that obtained an id from IDS sees its name
+	private static volatile String[] names = new String[1 << 16];
+	private static int next = 1;
+
+	private Symbols() {
+	}
+
+	/** Id of {@code s}, assigned on first use; {@link #NONE} for null. */
+	public static int id(String s) {
+		if (s == null)
+			return NONE;
+		Integer id = IDS.get(s);
+		return id != null ? id : add(s);
+	}
+
+	/** Id of {@code s} if it was seen before, else -1 (nothing is assigned). */
+	public static int find(String s) {
+		if (s == null)
+			return NONE;
+		Integer id = IDS.get(s);
+		return id != null ? id : -1;
+	}
+
+	/** The identifier with this id (null for {@link #NONE}). */
+	public static String name(int id) {
+		return id == NONE ? null : names[id];
+	}
+
+	/** The canonical instance of {@code s} (registering it if new). */
+	public static String intern(String s) {
+		return s == null ? null : name(id(s));
+	}
+
+	/** Number of identifiers assigned so far. */
+	public static synchronized int size() {
+		return next - 1;
+	}
+
+	private static synchronized int add(String s) {
+		Integer id = IDS.get(s);
+		if (id != null)
+			return id;
+		int i = next++;
+		String[] n = names;
+		if (i >= n.length)
+			n = Arrays.copyOf(n, n.length * 2);
+		n[i] = s;
+		names = n;
+		IDS.put(s, i);
+		return i;
+	}
+}
@@ -20,7 +20,10 @@ package org.pvlens.spl.umls;
  */
 
 import java.io.FileInputStream;
+import java.io.IOException;
 import java.io.InputStream;
+import java.nio.file.Path;
+import java.nio.file.Paths;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
@@ -39,19 +42,27 @@ import java.util.Locale;
 import java.util.Map;
 import java.util.Objects;
 import java.util.Set;
+import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.ThreadLocalRandom;
 import java.util.concurrent.atomic.AtomicInteger;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import java.util.function.Function;
 import java.util.stream.Collectors;
 
 import org.apache.commons.lang3.StringUtils;
 import org.pvlens.spl.conf.ConfigLoader;
 import org.pvlens.spl.om.SplDrug;
+import org.pvlens.spl.processing.extract.LabelScanSpool;
 import org.pvlens.spl.processing.support.NdcExtractor;
 import org.pvlens.spl.util.Logger;
 import org.pvlens.spl.util.StopwordRemover;
@@ -109,15 +120,27 @@ public class UmlsLoader {
 		// tokenizerFn: default uses OpenNLP
 		this.tokenizerFn = s -> this.tokenizerLocal.get().tokenize(s == null ? "" : s);
 
-		// Load reference dictionaries
-		loadRxNorm();
-		loadATC();
-		loadBrandNames();
-		loadMedDRA();
+		// Reference dictionaries: from the on-disk snapshot when it matches, else UMLS
+		Path snapshot = snapshotFile();
+		if (snapshot == null || !restoreSnapshot(snapshot, snapshotKey())) {
+			// Independent dictionaries load side by side (UMLS_DB_THREADS connections)
+			long started = System.nanoTime();
+			Db.concurrently(this::loadRxNorm, this::loadATC, this::loadBrandNames, this::loadMedDRA);
+			Logger.log(String.format(ROOT, "UMLS dictionaries loaded in %.1f s", (System.nanoTime() - started) / 1e9));
 
-		// Precompute transforms for matching (parallelized)
-		this.transformedMeddraMap = loadTransformedMeddraMap(false);
-		this.stemmedTransformedMeddraMap = loadStemmedTransformedMeddraMap(false);
+			// Precompute transforms for matching (parallelized)
+			this.transformedMeddraMap = loadTransformedMeddraMap(false);
+			this.stemmedTransformedMeddraMap = loadStemmedTransformedMeddraMap(false);
+
+			if (snapshot != null)
+				saveSnapshot(snapshot, snapshotKey());
+		}
+
+		// Compile token automata once (shared by all MedDRAProcessor instances)
+		getTransformedMatcher();
+		getStemmedMatcher();
+		Logger.log(String.format(ROOT, "UMLS symbols: %,d identifiers, %,d shared atoms", Symbols.size(),
+				AtomPool.size()));
 		return;
 	}
 
@@ -150,6 +173,11 @@ public class UmlsLoader {
 	// ---- TEST HOOKS (no-op in prod unless you call them) ------------------
 	private java.util.function.Function<String, String[]> _testTokenizer = null;
 
+	/** Hand a label scan spool to the loader, as the NDC step does. */
+	public void _testSetLabelScans(LabelScanSpool spool) {
+		this.labelScans = spool;
+	}
+
 	/** Inject a simple tokenizer for tests (e.g., whitespace split). */
 	public void _testSetTokenizer(java.util.function.Function<String, String[]> tok) {
 		this._testTokenizer = tok;
@@ -165,6 +193,8 @@ public class UmlsLoader {
 	public void _testRebuildTransformedMaps() {
 		this.transformedMeddraMap = new HashMap<>();
 		this.stemmedTransformedMeddraMap = new HashMap<>();
+		this.transformedMatcher = null;
+		this.stemmedMatcher = null;
 		loadTransformedMeddraMap(false);
 		loadStemmedTransformedMeddraMap(false);
 	}
@@ -185,6 +215,7 @@ public class UmlsLoader {
 	private static String DB_DRIVER;
 
 	private static final String TOKEN_MODEL_PATH = "models/en-token.bin";
+	private static final String STOPWORDS_PATH = "stopwords.txt";
 
 	/** Valid MedDRA TTYs (preference order documented). */
 	private static final List<String> VALID_TTY = Collections
@@ -401,6 +432,13 @@ public class UmlsLoader {
 	private Map<String, Map<Integer, Map<String, List<String>>>> transformedMeddraMap = new HashMap<>();
 	private Map<String, Map<Integer, Map<String, List<String>>>> stemmedTransformedMeddraMap = new HashMap<>();
 
+	// Token automata compiled from the two maps above (lazy; rebuilt with the maps)
+	private volatile MeddraTermMatcher transformedMatcher;
+	private volatile MeddraTermMatcher stemmedMatcher;
+
+	// Labels scanned by the NDC step (SPL_XML_PARSER=STAX), consumed by extraction
+	private volatile LabelScanSpool labelScans;
+
 	// =========================================================================
 	// Public API
 	// =========================================================================
@@ -409,6 +447,21 @@ public class UmlsLoader {
 		return VALID_TTY;
 	}
 
+	/** Spooled label scans from the NDC step, or null (DOM parser / not run). */
+	public LabelScanSpool getLabelScans() {
+		return labelScans;
+	}
+
+	/** Log the spool's reuse and delete it; call once label extraction is done. */
+	public void closeLabelScans() {
+		LabelScanSpool spool = labelScans;
+		labelScans = null;
+		if (spool != null) {
+			Logger.log(spool.summary());
+			spool.close();
+		}
+	}
+
 	public Map<String, Map<Integer, Map<String, List<String>>>> getTransformedMap() {
 		if (transformedMeddraMap == null || transformedMeddraMap.isEmpty()) {
 			loadTransformedMeddraMap(false);
@@ -423,6 +476,31 @@ public class UmlsLoader {
 		return stemmedTransformedMeddraMap;
 	}
 
+	/** Aho-Corasick matcher over {@link #getTransformedMap()} (exact pass). */
+	public synchronized MeddraTermMatcher getTransformedMatcher() {
+		if (transformedMatcher == null) {
+			transformedMatcher = compileMatcher("exact", getTransformedMap());
+		}
+		return transformedMatcher;
+	}
+
+	/** Aho-Corasick matcher over {@link #getStemmedMap()} (stemmed pass). */
+	public synchronized MeddraTermMatcher getStemmedMatcher() {
+		if (stemmedMatcher == null) {
+			stemmedMatcher = compileMatcher("stemmed", getStemmedMap());
+		}
+		return stemmedMatcher;
+	}
+
+	private MeddraTermMatcher compileMatcher(String label,
+			Map<String, Map<Integer, Map<String, List<String>>>> dict) {
+		long t0 = System.currentTimeMillis();
+		MeddraTermMatcher m = MeddraTermMatcher.compile(dict, MAX_TOKEN_MATCH_LENGTH);
+		Logger.log(String.format("Compiled %s MedDRA matcher: %,d keys in %s", label, m.size(),
+				formatDuration(System.currentTimeMillis() - t0)));
+		return m;
+	}
+
 	public int getMaxTokenMatchLength() {
 		return MAX_TOKEN_MATCH_LENGTH;
 	}
@@ -490,6 +568,139 @@ public class UmlsLoader {
 		ndcToAtc.computeIfAbsent(ndc, k -> new HashMap<>()).put(atcAui, true);
 	}
 
+	// =========================================================================
+	// Dictionary snapshot (UMLS_SNAPSHOT_DIR)
+	// =========================================================================
+
+	/** Snapshot location, or null when disabled (no UMLS_SNAPSHOT_DIR or UMLS_VERSION). */
+	private static Path snapshotFile() {
+		String dir = configLoader.getUmlsSnapshotDir();
+		String release = configLoader.getUmlsVersion();
+		if (dir.isEmpty())
+			return null;
+		if (release.isEmpty()) {
+			Logger.log("UMLS snapshot disabled: set UMLS_VERSION to the loaded UMLS release");
+			return null;
+		}
+		return UmlsSnapshot.file(Paths.get(dir), release, snapshotKey());
+	}
+
+	private static volatile String snapshotKey;
+
+	/**
+	 * Cache key over everything the dictionaries are derived from: UMLS release
+	 * and source, TTY / semantic type filters, the load queries, the stopword
+	 * list and the tokenizer model.
+	 */
+	private static String snapshotKey() {
+		if (snapshotKey == null) {
+			List<String> labels = new ArrayList<>(List.of(configLoader.getUmlsVersion(), nz(DB_HOST), nz(DB_PORT),
+					nz(UMLS_DB_NAME), String.join(",", VALID_TTY),
+					String.join(",", new TreeSet<>(INCLUDED_SEMANTIC_TYPES)), SQL_RXNORM_ATOMS,
+					SQL_ATC_ATOMS, SQL_NDC_TO_CUI, SQL_RXCUI_TO_NDC, SQL_MTHSPL_REL_RO, SQL_BN_TO_RXCUI,
+					SQL_MEDDRA_ATOMS, SQL_SEMANTIC_TYPES_FOR_MDR));
+			snapshotKey = UmlsSnapshot.cacheKey(labels,
+					Arrays.asList(readInput(STOPWORDS_PATH), readInput(TOKEN_MODEL_PATH)));
+		}
+		return snapshotKey;
+	}
+
+	/**
+	 * Identifies the dictionaries this loader builds (the snapshot cache key);
+	 * changes whenever any input to them does. For caches of match results.
+	 */
+	public static String dictionaryVersion() {
+		return snapshotKey();
+	}
+
+	private static byte[] readInput(String path) {
+		try (InputStream in = tryOpen(path)) {
+			return (in == null) ? null : in.readAllBytes();
+		} catch (IOException e) {
+			return null;
+		}
+	}
+
+	/** Write the startup dictionaries; failures only cost the next run a full load. */
+	void saveSnapshot(Path file, String key) {
+		long t0 = System.currentTimeMillis();
+		try (UmlsSnapshot.Writer w = new UmlsSnapshot.Writer(file, key)) {
+			w.atoms(rxnormAtoms);
+			w.flags(rxnormCuis);
+			w.atoms(atcAtoms);
+			w.lists(atcCodes);
+			w.flags(atcCuis);
+			w.sets(ndcToUmlsCui);
+			w.flags(ndcToAtc);
+			w.flags(bnToRxNorm);
+			w.flags(rxnormToBn);
+			w.atoms(meddraAtoms);
+			w.lists(meddraCodes);
+			w.flags(meddraCuis);
+			w.lists(exactMeddraTermToAuis);
+			w.termsByTty(meddraTerms);
+			w.termsByTtyAndLength(transformedMeddraMap);
+			w.termsByTtyAndLength(stemmedTransformedMeddraMap);
+			w.integer(MAX_TOKEN_MATCH_LENGTH);
+			w.commit();
+			UmlsSnapshot.pruneOthers(file.toAbsolutePath().getParent(), file.toAbsolutePath());
+			Logger.log("Wrote UMLS snapshot " + file + " in " + formatDuration(System.currentTimeMillis() - t0));
+		} catch (IOException | RuntimeException e) {
+			Logger.warn("Could not write UMLS snapshot " + file + ": " + e);
+		}
+	}
+
+	/** Restore the startup dictionaries; false (and nothing loaded) on a missing or stale snapshot. */
+	boolean restoreSnapshot(Path file, String key) {
+		long t0 = System.currentTimeMillis();
+		try {
+			UmlsSnapshot.Reader r = UmlsSnapshot.Reader.open(file, key);
+			if (r == null) {
+				Logger.log("No current UMLS snapshot at " + file + "; loading from UMLS");
+				return false;
+			}
+			r.atoms(rxnormAtoms);
+			r.flags(rxnormCuis);
+			r.atoms(atcAtoms);
+			r.lists(atcCodes);
+			r.flags(atcCuis);
+			r.sets(ndcToUmlsCui);
+			r.flags(ndcToAtc);
+			r.flags(bnToRxNorm);
+			r.flags(rxnormToBn);
+			r.atoms(meddraAtoms);
+			r.lists(meddraCodes);
+			r.flags(meddraCuis);
+			r.lists(exactMeddraTermToAuis, ArrayList::new);
+			r.termsByTty(meddraTerms);
+			Map<String, Map<Integer, Map<String, List<String>>>> transformed = new HashMap<>();
+			Map<String, Map<Integer, Map<String, List<String>>>> stemmed = new HashMap<>();
+			r.termsByTtyAndLength(transformed);
+			r.termsByTtyAndLength(stemmed);
+			int maxTok = r.integer();
+			r.finish();
+
+			this.transformedMeddraMap = Collections.unmodifiableMap(transformed);
+			this.stemmedTransformedMeddraMap = Collections.unmodifiableMap(stemmed);
+			this.MAX_TOKEN_MATCH_LENGTH = maxTok;
+			Logger.log("Loaded UMLS snapshot " + file + " in " + formatDuration(System.currentTimeMillis() - t0));
+			return true;
+		} catch (IOException | RuntimeException e) {
+			Logger.warn("Ignoring unreadable UMLS snapshot " + file + ": " + e);
+			clearDictionaries();
+			return false;
+		}
+	}
+
+	private void clearDictionaries() {
+		for (Map<?, ?> m : List.of(rxnormAtoms, rxnormCuis, atcAtoms, atcCodes, atcCuis, ndcToUmlsCui, ndcToAtc,
+				bnToRxNorm, rxnormToBn, meddraAtoms, meddraCodes, meddraCuis, exactMeddraTermToAuis, meddraTerms))
+			m.clear();
+		this.transformedMeddraMap = new HashMap<>();
+		this.stemmedTransformedMeddraMap = new HashMap<>();
+		this.MAX_TOKEN_MATCH_LENGTH = -1;
+	}
+
 	// =========================================================================
 	// Tokenizer / IO
 	// =========================================================================
@@ -524,7 +735,7 @@ public class UmlsLoader {
 
 	private void loadRxNorm() {
 		Logger.log("Loading RxNorm from UMLS...");
-		Db.withConnection(conn -> {
+		Db.withConnection("RxNorm atoms", conn -> {
 			try (PreparedStatement stmt = conn.prepareStatement(SQL_RXNORM_ATOMS); ResultSet rs = stmt.executeQuery()) {
 				while (rs.next()) {
 					String aui = rs.getString("AUI");
@@ -533,7 +744,7 @@ public class UmlsLoader {
 					String term = rs.getString("STR");
 					String code = rs.getString("CODE");
 
-					Atom atom = new Atom(aui, cui, null, code, term, tty);
+					Atom atom = AtomPool.share(new Atom(aui, cui, null, code, term, tty));
 					rxnormAtoms.put(aui, atom);
 					rxnormCuis.computeIfAbsent(cui, k -> new HashMap<>()).put(aui, true);
 				}
@@ -547,7 +758,7 @@ public class UmlsLoader {
 	private void loadBrandNames() {
 
 		Logger.log("Loading brand name relations from UMLS...");
-		Db.withConnection(conn -> {
+		Db.withConnection("brand names", conn -> {
 			try (PreparedStatement stmt = conn.prepareStatement(SQL_BN_TO_RXCUI); ResultSet rs = stmt.executeQuery()) {
 				while (rs.next()) {
 
@@ -583,8 +794,51 @@ public class UmlsLoader {
 	// ATC + NDC->ATC
 	// =========================================================================
 	private void loadATC() {
+		// ATC atoms, NDC -> CUI and the RxNorm NDC support set are independent;
+		// the MTHSPL linking pass below needs the first and the last
+		Map<String, Map<String, String>> rxCuiToNdc = new HashMap<>();
+		Db.concurrently(this::loadAtcAtoms, this::loadNdcToCui, () -> loadRxCuiToNdc(rxCuiToNdc));
+
+		Logger.log("Linking RxNorm -> ATC via MTHSPL relations...");
+		Db.withConnection("RxNorm -> ATC relations", conn -> {
+			try (PreparedStatement stmt = conn.prepareStatement(SQL_MTHSPL_REL_RO);
+					ResultSet rs = stmt.executeQuery()) {
+				int counter = 0;
+				while (rs.next()) {
+					counter++;
+					if (counter % 200000 == 0)
+						Logger.log(" >> " + counter);
+
+					String cui1 = rs.getString("CUI1");
+					String cui2 = rs.getString("CUI2");
+
+					if (rxCuiToNdc.containsKey(cui1) && atcCuis.containsKey(cui2)) {
+						Map<String, String> ndcs = rxCuiToNdc.get(cui1);
+						for (Map.Entry<String, String> ndcEntry : ndcs.entrySet()) {
+							String ndc = ndcEntry.getKey();
+							String ndcTermLower = nz(ndcEntry.getValue()).toLowerCase(ROOT);
+							for (String atcAui : atcCuis.get(cui2).keySet()) {
+								Atom atc = atcAtoms.get(atcAui);
+								String atcLower = nz(atc.getTerm()).toLowerCase(ROOT);
+								if (!atcLower.isEmpty() && ndcTermLower.contains(atcLower)) {
+									ndcToAtc.computeIfAbsent(ndc, k -> new HashMap<>()).put(atcAui, true);
+								}
+							}
+						}
+					}
+				}
+			} catch (SQLException e) {
+				Logger.error("Error loading RxNorm -> ATC relations: " + e.getMessage(), e);
+			}
+			return null;
+		});
+
+		Logger.log("Total NDC -> ATC maps: " + ndcToAtc.size());
+	}
+
+	private void loadAtcAtoms() {
 		Logger.log("Loading ATC codes from UMLS...");
-		Db.withConnection(conn -> {
+		Db.withConnection("ATC atoms", conn -> {
 			try (PreparedStatement stmt = conn.prepareStatement(SQL_ATC_ATOMS); ResultSet rs = stmt.executeQuery()) {
 				while (rs.next()) {
 					String aui = rs.getString("AUI");
@@ -593,7 +847,7 @@ public class UmlsLoader {
 					String term = rs.getString("STR");
 					String code = rs.getString("CODE");
 
-					Atom atom = new Atom(aui, cui, null, code, term, tty);
+					Atom atom = AtomPool.share(new Atom(aui, cui, null, code, term, tty));
 					atcAtoms.put(aui, atom);
 					atcCodes.computeIfAbsent(code, k -> new ArrayList<>()).add(aui);
 					atcCuis.computeIfAbsent(cui, k -> new HashMap<>()).put(aui, true);
@@ -603,9 +857,11 @@ public class UmlsLoader {
 			}
 			return null;
 		});
+	}
 
+	private void loadNdcToCui() {
 		Logger.log("Loading all NDC codes from UMLS... 1.2 million");
-		Db.withConnection(conn -> {
+		Db.withConnection("NDC -> CUI", conn -> {
 			try (PreparedStatement stmt = conn.prepareStatement(SQL_NDC_TO_CUI); ResultSet rs = stmt.executeQuery()) {
 				while (rs.next()) {
 					String cui = rs.getString("CUI");
@@ -617,10 +873,11 @@ public class UmlsLoader {
 			}
 			return null;
 		});
+	}
 
+	private void loadRxCuiToNdc(Map<String, Map<String, String>> rxCuiToNdc) {
 		Logger.log("Loading RxNorm NDC/CUI set to support ATC mapping...");
-		Map<String, Map<String, String>> rxCuiToNdc = new HashMap<>();
-		Db.withConnection(conn -> {
+		Db.withConnection("RxNorm NDC/CUI", conn -> {
 			try (PreparedStatement stmt = conn.prepareStatement(SQL_RXCUI_TO_NDC); ResultSet rs = stmt.executeQuery()) {
 				while (rs.next()) {
 					String cui = rs.getString("RX_CUI");
@@ -637,41 +894,6 @@ public class UmlsLoader {
 			return null;
 		});
 
-		Logger.log("Linking RxNorm -> ATC via MTHSPL relations...");
-		Db.withConnection(conn -> {
-			try (PreparedStatement stmt = conn.prepareStatement(SQL_MTHSPL_REL_RO);
-					ResultSet rs = stmt.executeQuery()) {
-				int counter = 0;
-				while (rs.next()) {
-					counter++;
-					if (counter % 200000 == 0)
-						Logger.log(" >> " + counter);
-
-					String cui1 = rs.getString("CUI1");
-					String cui2 = rs.getString("CUI2");
-
-					if (rxCuiToNdc.containsKey(cui1) && atcCuis.containsKey(cui2)) {
-						Map<String, String> ndcs = rxCuiToNdc.get(cui1);
-						for (Map.Entry<String, String> ndcEntry : ndcs.entrySet()) {
-							String ndc = ndcEntry.getKey();
-							String ndcTermLower = nz(ndcEntry.getValue()).toLowerCase(ROOT);
-							for (String atcAui : atcCuis.get(cui2).keySet()) {
-								Atom atc = atcAtoms.get(atcAui);
-								String atcLower = nz(atc.getTerm()).toLowerCase(ROOT);
-								if (!atcLower.isEmpty() && ndcTermLower.contains(atcLower)) {
-									ndcToAtc.computeIfAbsent(ndc, k -> new HashMap<>()).put(atcAui, true);
-								}
-							}
-						}
-					}
-				}
-			} catch (SQLException e) {
-				Logger.error("Error loading RxNorm -> ATC relations: " + e.getMessage(), e);
-			}
-			return null;
-		});
-
-		Logger.log("Total NDC -> ATC maps: " + ndcToAtc.size());
 	}
 
 	// =========================================================================
@@ -758,90 +980,34 @@ public class UmlsLoader {
 			Logger.log("Adding SNOMED parent concepts (batched)...");
 			Map<String, List<String>> snomedParents = new HashMap<>();
 			List<String> ptAuis = new ArrayList<>(snomedPtAuis.keySet());
-			Db.forBatches(ptAuis, BATCH_SIZE_IN, batch -> {
-				String sql = Db.bindIn(SQL_MRHIER_PARENTS_BY_AUIS_IN, batch.size());
-				Db.withConnection(conn -> {
-					try (PreparedStatement ps = conn.prepareStatement(sql)) {
-						Db.bind(ps, batch);
-						try (ResultSet rs = ps.executeQuery()) {
-							while (rs.next()) {
-								String aui = rs.getString("AUI");
-								String paui = rs.getString("PAUI");
-								snomedParents.computeIfAbsent(aui, k -> new ArrayList<>()).add(paui);
-							}
-						}
-					} catch (SQLException e1) {
-						Logger.error("Error loading SNOMED parent concepts: " + e1.getMessage(), e1);
-					}
-					return null;
-				});
-			});
+			for (String[] r : Db.queryInBatches("SNOMED parents", SQL_MRHIER_PARENTS_BY_AUIS_IN, ptAuis,
+					rs -> new String[] { rs.getString("AUI"), rs.getString("PAUI") })) {
+				snomedParents.computeIfAbsent(r[0], k -> new ArrayList<>()).add(r[1]);
+			}
 
 			// --- 4) SNOMED ingredients via DP AUI (batched)
 			Logger.log("Adding active ingredients via MTHSPL DP (batched)...");
 			List<String> dpAuis = new ArrayList<>(dpAuiToSplGuid.keySet());
-			Db.forBatches(dpAuis, BATCH_SIZE_IN, batch -> {
-				String sql = Db.bindIn(SQL_SNOMED_ING_BY_DP_AUIS_IN, batch.size());
-				Db.withConnection(conn -> {
-					try (PreparedStatement ps = conn.prepareStatement(sql)) {
-						Db.bind(ps, batch);
-						try (ResultSet rs = ps.executeQuery()) {
-							while (rs.next()) {
-								String dpAui = rs.getString("DP_AUI");
-								List<String> guids = dpAuiToSplGuid.get(dpAui);
-								if (guids == null)
-									continue;
-
-								Atom ing = new Atom();
-								ing.setAui(rs.getString("AUI"));
-								ing.setCui(rs.getString("CUI"));
-								ing.setTty(rs.getString("TTY"));
-								ing.setCode(rs.getString("CODE"));
-								ing.setTerm(rs.getString("STR"));
-								ing.setSab("SNOMEDCT_US");
-
-								for (String guid : guids) {
-									SplDrug drg = mappedSpls.get(guid);
-									if (drg != null)
-										drg.addIngedient(ing);
-								}
-							}
-						}
-					} catch (SQLException e1) {
-						Logger.error("Error loading active ingredients: " + e1.getMessage(), e1);
-					}
-					return null;
-				});
-			});
+			for (Map.Entry<String, Atom> r : Db.queryInBatches("SNOMED ingredients by DP", SQL_SNOMED_ING_BY_DP_AUIS_IN,
+					dpAuis, rs -> new AbstractMap.SimpleEntry<>(rs.getString("DP_AUI"), snomedIngredient(rs)))) {
+				List<String> guids = dpAuiToSplGuid.get(r.getKey());
+				if (guids == null)
+					continue;
+				for (String guid : guids) {
+					SplDrug drg = mappedSpls.get(guid);
+					if (drg != null)
+						drg.addIngedient(r.getValue());
+				}
+			}
 
 			// --- 5) SNOMED ingredients via PT AUI (batched)
 			Logger.log("Adding active ingredients via SNOMED PT link (batched)...");
 			Map<String, Map<String, Atom>> snomedPtActIng = new HashMap<>();
-			Db.forBatches(ptAuis, BATCH_SIZE_IN, batch -> {
-				String sql = Db.bindIn(SQL_SNOMED_ING_BY_PT_AUIS_IN, batch.size());
-				Db.withConnection(conn -> {
-					try (PreparedStatement ps = conn.prepareStatement(sql)) {
-						Db.bind(ps, batch);
-						try (ResultSet rs = ps.executeQuery()) {
-							while (rs.next()) {
-								String testAui = rs.getString("AUI2");
-								Map<String, Atom> perPt = snomedPtActIng.computeIfAbsent(testAui, k -> new HashMap<>());
-								Atom ing = new Atom();
-								ing.setAui(rs.getString("AUI"));
-								ing.setCui(rs.getString("CUI"));
-								ing.setTty(rs.getString("TTY"));
-								ing.setCode(rs.getString("CODE"));
-								ing.setTerm(rs.getString("STR"));
-								ing.setSab("SNOMEDCT_US");
-								perPt.put(ing.getAui(), ing);
-							}
-						}
-					} catch (SQLException e1) {
-						Logger.error("Error loading active ingredients via SNOMED PT Link: " + e1.getMessage(), e1);
-					}
-					return null;
-				});
-			});
+			for (Map.Entry<String, Atom> r : Db.queryInBatches("SNOMED ingredients by PT", SQL_SNOMED_ING_BY_PT_AUIS_IN,
+					ptAuis, rs -> new AbstractMap.SimpleEntry<>(rs.getString("AUI2"), snomedIngredient(rs)))) {
+				Atom ing = r.getValue();
+				snomedPtActIng.computeIfAbsent(r.getKey(), k -> new HashMap<>()).put(ing.getAui(), ing);
+			}
 
 			// Attach PT-linked ingredients & parents
 			for (Map.Entry<String, SplDrug> e : mappedSpls.entrySet()) {
@@ -1003,121 +1169,112 @@ public class UmlsLoader {
 
 	private void preloadGuidMapSupport() {
 		if (GUID_MAP_LOADED == false) {
+			// MTHSPL -> SNOMED PT and the RxNorm set-id links are independent
+			Db.concurrently(this::loadMthsplGuids, this::loadRxNormBySplSetId);
 
-			Logger.log("Loading MTHSPL GUIDs...");
-			Db.withConnection(conn -> {
-				try (PreparedStatement stmt = conn.prepareStatement(SQL_MTHSPL_DPS);
-						ResultSet rs = stmt.executeQuery()) {
-					while (rs.next()) {
-						String guid = rs.getString("ATV");
-						String aui = rs.getString("AUI");
-						String cui = rs.getString("CUI");
-						String tty = rs.getString("TTY");
-						String str = rs.getString("STR");
-						String code = rs.getString("CODE");
-
-						Atom atom = new Atom();
-						atom.setAui(aui);
-						atom.setCui(cui);
-						atom.setTerm(str);
-						atom.setTty(tty);
-						atom.setSab("MTHSPL");
-						atom.setCode(code);
-
-						// Store for global lookup
-						if (mthsplAtoms.containsKey(guid)) {
-							mthsplAtoms.get(guid).put(aui, atom);
-							splCuis.get(guid).add(cui);
-							uniqueSplCuis.add(cui);
-						} else {
-							mthsplAtoms.put(guid, new HashMap<String, Atom>());
-							mthsplAtoms.get(guid).put(aui, atom);
-							splCuis.put(guid, new HashSet<String>());
-							splCuis.get(guid).add(cui);
-							uniqueSplCuis.add(cui);
-						}
+			// Flag that this has been loaded
+			GUID_MAP_LOADED = true;
+		}
+	}
+
+	private void loadMthsplGuids() {
+		Logger.log("Loading MTHSPL GUIDs...");
+		Db.withConnection("MTHSPL GUIDs", conn -> {
+			try (PreparedStatement stmt = conn.prepareStatement(SQL_MTHSPL_DPS);
+					ResultSet rs = stmt.executeQuery()) {
+				while (rs.next()) {
+					String guid = rs.getString("ATV");
+					String aui = rs.getString("AUI");
+					String cui = rs.getString("CUI");
+					String tty = rs.getString("TTY");
+					String str = rs.getString("STR");
+					String code = rs.getString("CODE");
+
+					Atom atom = new Atom();
+					atom.setAui(aui);
+					atom.setCui(cui);
+					atom.setTerm(str);
+					atom.setTty(tty);
+					atom.setSab("MTHSPL");
+					atom.setCode(code);
+					atom = AtomPool.share(atom);
+
+					// Store for global lookup
+					if (mthsplAtoms.containsKey(guid)) {
+						mthsplAtoms.get(guid).put(aui, atom);
+						splCuis.get(guid).add(cui);
+						uniqueSplCuis.add(cui);
+					} else {
+						mthsplAtoms.put(guid, new HashMap<String, Atom>());
+						mthsplAtoms.get(guid).put(aui, atom);
+						splCuis.put(guid, new HashSet<String>());
+						splCuis.get(guid).add(cui);
+						uniqueSplCuis.add(cui);
 					}
-				} catch (SQLException e1) {
-					Logger.error("Error loading MTHSPL GUIDs: " + e1.getMessage(), e1);
 				}
-				return null;
-			});
+			} catch (SQLException e1) {
+				Logger.error("Error loading MTHSPL GUIDs: " + e1.getMessage(), e1);
+			}
+			return null;
+		});
 
-			Logger.log("Total UMLS MTHSPL GUIDs: " + mthsplAtoms.size());
+		Logger.log("Total UMLS MTHSPL GUIDs: " + mthsplAtoms.size());
+
+		Logger.log("Loading SNOMED PT by CUI (batched)...");
+		List<String> cuiSet = new ArrayList<String>();
+		for (String cui : uniqueSplCuis)
+			cuiSet.add(cui);
+
+		for (Atom atom : Db.queryInBatches("SNOMED PT by CUI", SQL_SNOMED_PT_BY_CUIS_IN, cuiSet, rs -> {
+			Atom a = new Atom();
+			a.setAui(rs.getString("AUI"));
+			a.setCui(rs.getString("CUI"));
+			a.setTerm(rs.getString("STR"));
+			a.setCode(rs.getString("CODE"));
+			a.setSab("SNOMEDCT_US");
+			a.setTty("PT");
+			return AtomPool.share(a);
+		})) {
+			snomedCuiToPT.computeIfAbsent(atom.getCui(), k -> new ArrayList<>()).add(atom);
+		}
+	}
 
-			Logger.log("Loading SNOMED PT by CUI (batched)...");
-			List<String> cuiSet = new ArrayList<String>();
-			for (String cui : uniqueSplCuis)
-				cuiSet.add(cui);
+	private void loadRxNormBySplSetId() {
+		Logger.log("Loading RxNorm to MTH links...");
+		Db.withConnection("RxNorm by SPL set id", conn -> {
+			try (PreparedStatement stmt = conn.prepareStatement(SQL_RXNORM_BY_SPL_SET_ID);
+					ResultSet rs = stmt.executeQuery()) {
+				while (rs.next()) {
+					String guid = rs.getString("ATV");
+					String aui = rs.getString("AUI");
+					String cui = rs.getString("CUI");
+					String tty = rs.getString("TTY");
+					String str = rs.getString("STR");
+					String code = rs.getString("CODE");
 
-			Db.forBatches(cuiSet, BATCH_SIZE_IN, batch -> {
-				String sql = Db.bindIn(SQL_SNOMED_PT_BY_CUIS_IN, batch.size());
-				Db.withConnection(conn -> {
-					try (PreparedStatement ps = conn.prepareStatement(sql)) {
-						Db.bind(ps, batch);
-						try (ResultSet rs = ps.executeQuery()) {
-							while (rs.next()) {
-								String cui = rs.getString("CUI");
-								String aui = rs.getString("AUI");
-								String code = rs.getString("CODE");
-								String term = rs.getString("STR");
-
-								Atom atom = new Atom();
-								atom.setAui(aui);
-								atom.setCui(cui);
-								atom.setTerm(term);
-								atom.setCode(code);
-								atom.setSab("SNOMEDCT_US");
-								atom.setTty("PT");
-
-								snomedCuiToPT.computeIfAbsent(cui, k -> new ArrayList<>()).add(atom);
-							}
-						}
-					} catch (SQLException e1) {
-						Logger.error("Error loading SNOMED PT CUIs: " + e1.getMessage(), e1);
-					}
-					return null;
-				});
-			});
+					// Store the atom for later lookup
+					Atom atom = new Atom();
+					atom.setAui(aui);
+					atom.setCui(cui);
+					atom.setTerm(str);
+					atom.setCode(code);
+					atom.setSab("RXNORM");
+					atom.setTty(tty);
+					atom = AtomPool.share(atom);
+					rxnormAtoms.put(aui, atom);
+					rxnormCuis.computeIfAbsent(cui, k -> new HashMap<>()).put(aui, true);
 
-			Logger.log("Loading RxNorm to MTH links...");
-			Db.withConnection(conn -> {
-				try (PreparedStatement stmt = conn.prepareStatement(SQL_RXNORM_BY_SPL_SET_ID);
-						ResultSet rs = stmt.executeQuery()) {
-					while (rs.next()) {
-						String guid = rs.getString("ATV");
-						String aui = rs.getString("AUI");
-						String cui = rs.getString("CUI");
-						String tty = rs.getString("TTY");
-						String str = rs.getString("STR");
-						String code = rs.getString("CODE");
-
-						// Store the atom for later lookup
-						Atom atom = new Atom();
-						atom.setAui(aui);
-						atom.setCui(cui);
-						atom.setTerm(str);
-						atom.setCode(code);
-						atom.setSab("RXNORM");
-						atom.setTty(tty);
-						rxnormAtoms.put(aui, atom);
-						rxnormCuis.computeIfAbsent(cui, k -> new HashMap<>()).put(aui, true);
-
-						// Link GUID to RxNorm
-						if (guidTorxnorm.containsKey(guid) == false) {
-							guidTorxnorm.put(guid, new HashMap<>());
-						}
-						guidTorxnorm.get(guid).put(aui, true);
+					// Link GUID to RxNorm
+					if (guidTorxnorm.containsKey(guid) == false) {
+						guidTorxnorm.put(guid, new HashMap<>());
 					}
-				} catch (SQLException e1) {
-					Logger.error("Error loading RxNorm to MTH links: " + e1.getMessage(), e1);
+					guidTorxnorm.get(guid).put(aui, true);
 				}
-				return null;
-			});
-
-			// Flag that this has been loaded
-			GUID_MAP_LOADED = true;
-		}
+			} catch (SQLException e1) {
+				Logger.error("Error loading RxNorm to MTH links: " + e1.getMessage(), e1);
+			}
+			return null;
+		});
 	}
 
 	// =========================================================================
@@ -1125,7 +1282,7 @@ public class UmlsLoader {
 	// =========================================================================
 	public static List<String> getDbNdcCodes() {
 		List<String> ndcCodes = new ArrayList<>();
-		Db.withConnection(conn -> {
+		Db.withConnection("NDC_CODE", conn -> {
 			Logger.log("Loading NDC codes from DB...");
 			try (PreparedStatement stmt = conn.prepareStatement("SELECT NDC_CODE FROM NDC_CODE");
 					ResultSet rs = stmt.executeQuery()) {
@@ -1173,6 +1330,10 @@ public class UmlsLoader {
 	 * thread-safe with respect to NdcExtractor and does all SplDrug mutations after
 	 * the parallel stage.
 	 *
+	 * <p>With {@code SPL_XML_PARSER=STAX} each XML is scanned once through a
+	 * {@link LabelScanSpool}: the same pass yields the NDC codes and the label
+	 * sections that extraction later takes from the spool.</p>
+	 *
 	 * @param guidToXml    Map: GUID -> list of XML file paths belonging to that
 	 *                     GUID
 	 * @param mappedSpls   Map of GUID -> SplDrug (mapped)
@@ -1214,6 +1375,7 @@ public class UmlsLoader {
 						totalGuids, totalXml, parallelism));
 
 		final NdcExtractor ndcExtractor = new NdcExtractor();
+		final LabelScanSpool spool = openLabelScans();
 
 		// Concurrent result: GUID -> concurrent set of NDCs
 		final ConcurrentHashMap<String, Set<String>> guidToNdcs = new ConcurrentHashMap<>();
@@ -1225,7 +1387,7 @@ public class UmlsLoader {
 				final String guid = pair.getKey();
 				final String xmlFile = pair.getValue();
 				try {
-					final List<String> found = ndcExtractor.getNdcCodes(xmlFile);
+					final List<String> found = (spool != null) ? spool.scan(xmlFile) : ndcExtractor.getNdcCodes(xmlFile);
 					if (found != null && !found.isEmpty()) {
 						// Get/create concurrent set for this GUID
 						final Set<String> ndcSet = guidToNdcs.computeIfAbsent(guid, k -> ConcurrentHashMap.newKeySet());
@@ -1256,6 +1418,17 @@ public class UmlsLoader {
 			pool.shutdown();
 		}
 
+		if (spool != null) {
+			try {
+				spool.seal();
+				labelScans = spool;
+				Logger.log(String.format("NDC extraction: spooled %,d label scans for extraction", spool.spooled()));
+			} catch (IOException e) {
+				Logger.warn("Label scan spool unusable, extraction will re-read XML: " + e.getMessage());
+				spool.close();
+			}
+		}
+
 		// ----- Serial merge: mutate SplDrug safely + add padded forms -----
 		for (Map.Entry<String, Set<String>> e : guidToNdcs.entrySet()) {
 			final String guid = e.getKey();
@@ -1279,6 +1452,19 @@ public class UmlsLoader {
 		Logger.log(String.format("NDC extraction: complete. GUIDs with NDCs: %,d", guidToNdcs.size()));
 	}
 
+	/** A fresh spool when the streaming parser is on, else null (plain NDC extraction). */
+	private LabelScanSpool openLabelScans() {
+		if (!configLoader.isStreamingSplParser())
+			return null;
+		closeLabelScans();
+		try {
+			return LabelScanSpool.fromConfig(configLoader);
+		} catch (IOException e) {
+			Logger.warn("Could not create label scan spool, NDCs are extracted separately: " + e.getMessage());
+			return null;
+		}
+	}
+
 	// =========================================================================
 	// Transform maps (parallel builds)
 	// =========================================================================
@@ -1523,7 +1709,7 @@ public class UmlsLoader {
 		Logger.log("Ignore Semantic Type AUIs: " + ignoredAuiBySemanticType.size());
 
 		Logger.log("Loading MedDRA from UMLS...");
-		Db.withConnection(conn -> {
+		Db.withConnection("MedDRA atoms", conn -> {
 			try (PreparedStatement stmt = conn.prepareStatement(SQL_MEDDRA_ATOMS); ResultSet rs = stmt.executeQuery()) {
 				while (rs.next()) {
 					String aui = rs.getString("AUI");
@@ -1541,7 +1727,7 @@ public class UmlsLoader {
 					String ptCode = rs.getString("PT_CODE");
 					String code = rs.getString("CODE");
 
-					Atom atom = new Atom(aui, cui, ptCode, code, term, tty);
+					Atom atom = AtomPool.share(new Atom(aui, cui, ptCode, code, term, tty));
 					meddraAtoms.put(aui, atom);
 					meddraCodes.computeIfAbsent(code, k -> new ArrayList<>()).add(aui);
 					meddraCuis.computeIfAbsent(cui, k -> new HashMap<>()).put(aui, true);
@@ -1632,29 +1818,11 @@ public class UmlsLoader {
 		if (needed.isEmpty())
 			return;
 
-		Db.forBatches(new ArrayList<>(needed), BATCH_SIZE_IN, batch -> {
-			String sql = Db.bindIn(SQL_RXNORM_ATOMS_BY_AUIS_IN, batch.size());
-			Db.withConnection(conn -> {
-				try (PreparedStatement ps = conn.prepareStatement(sql)) {
-					Db.bind(ps, batch);
-					try (ResultSet rs = ps.executeQuery()) {
-						while (rs.next()) {
-							String aui = rs.getString("AUI");
-							String cui = rs.getString("CUI");
-							String tty = rs.getString("TTY");
-							String code = rs.getString("CODE");
-							String term = nz(rs.getString("STR")).toLowerCase(ROOT).trim().replace("\"", "'");
-
-							rxnormAtoms.put(aui, new Atom(aui, cui, null, code, term, tty));
-							rxnormCuis.computeIfAbsent(cui, k -> new HashMap<>()).put(aui, true);
-						}
-					}
-				} catch (SQLException e) {
-					e.printStackTrace();
-				}
-				return null;
-			});
-		});
+		for (Atom atom : Db.queryInBatches("RxNorm atoms by AUI", SQL_RXNORM_ATOMS_BY_AUIS_IN, new ArrayList<>(needed),
+				UmlsLoader::subsetAtom)) {
+			rxnormAtoms.put(atom.getAui(), atom);
+			rxnormCuis.computeIfAbsent(atom.getCui(), k -> new HashMap<>()).put(atom.getAui(), true);
+		}
 
 		Logger.log(" >> Total atoms loaded: " + rxnormAtoms.size());
 		long missing = needed.stream().filter(a -> !rxnormAtoms.containsKey(a)).count();
@@ -1674,34 +1842,35 @@ public class UmlsLoader {
 		if (needed.isEmpty())
 			return;
 
-		Db.forBatches(new ArrayList<>(needed), BATCH_SIZE_IN, batch -> {
-			String sql = Db.bindIn(SQL_SNOMED_ATOMS_BY_AUIS_IN, batch.size());
-			Db.withConnection(conn -> {
-				try (PreparedStatement ps = conn.prepareStatement(sql)) {
-					Db.bind(ps, batch);
-					try (ResultSet rs = ps.executeQuery()) {
-						while (rs.next()) {
-							String aui = rs.getString("AUI");
-							String cui = rs.getString("CUI");
-							String tty = rs.getString("TTY");
-							String code = rs.getString("CODE");
-							String term = nz(rs.getString("STR")).toLowerCase(ROOT).trim().replace("\"", "'");
-
-							snomedAtoms.put(aui, new Atom(aui, cui, null, code, term, tty));
-						}
-					}
-				} catch (SQLException e) {
-					e.printStackTrace();
-				}
-				return null;
-			});
-		});
+		for (Atom atom : Db.queryInBatches("SNOMED atoms by AUI", SQL_SNOMED_ATOMS_BY_AUIS_IN, new ArrayList<>(needed),
+				UmlsLoader::subsetAtom)) {
+			snomedAtoms.put(atom.getAui(), atom);
+		}
 
 		Logger.log(" >> Total atoms generated: " + snomedAtoms.size());
 		long missing = needed.stream().filter(a -> !snomedAtoms.containsKey(a)).count();
 		Logger.log(" >> Total missing: " + missing);
 	}
 
+	/** RxNorm / SNOMED subset row: term lower-cased, double quotes replaced. */
+	private static Atom subsetAtom(ResultSet rs) throws SQLException {
+		String term = nz(rs.getString("STR")).toLowerCase(ROOT).trim().replace("\"", "'");
+		return AtomPool.share(
+				new Atom(rs.getString("AUI"), rs.getString("CUI"), null, rs.getString("CODE"), term, rs.getString("TTY")));
+	}
+
+	/** SNOMED active ingredient row (AUI, CUI, TTY, CODE, STR). */
+	private static Atom snomedIngredient(ResultSet rs) throws SQLException {
+		Atom ing = new Atom();
+		ing.setAui(rs.getString("AUI"));
+		ing.setCui(rs.getString("CUI"));
+		ing.setTty(rs.getString("TTY"));
+		ing.setCode(rs.getString("CODE"));
+		ing.setTerm(rs.getString("STR"));
+		ing.setSab("SNOMEDCT_US");
+		return AtomPool.share(ing);
+	}
+
 	// =========================================================================
 	// Semantic types
 	// =========================================================================
@@ -1709,7 +1878,7 @@ public class UmlsLoader {
 	public static Map<String, Set<String>> loadSemanticTypes() {
 		Logger.log("Loading Semantic Types from UMLS...");
 		Map<String, Set<String>> cuiToTypes = new HashMap<>();
-		Db.withConnection(conn -> {
+		Db.withConnection("semantic types", conn -> {
 			try (PreparedStatement stmt = conn.prepareStatement(SQL_SEMANTIC_TYPES_FOR_MDR);
 					ResultSet rs = stmt.executeQuery()) {
 				while (rs.next()) {
@@ -1734,31 +1903,36 @@ public class UmlsLoader {
 		Logger.log("Finding MedDRA concepts to ignore based on semantic types...");
 		Map<String, Boolean> ignore = new HashMap<>();
 
-		Map<String, Set<String>> cuiToTypes;
+		// Semantic types and the MedDRA AUI/CUI list are fetched side by side
+		AtomicReference<Map<String, Set<String>>> cuiToTypes = new AtomicReference<>();
+		List<String[]> mdrAtoms = new ArrayList<>();
 		try {
-			cuiToTypes = loadSemanticTypes();
+			Db.concurrently(() -> cuiToTypes.set(loadSemanticTypes()), () -> loadMdrAuiCuis(mdrAtoms));
 		} catch (Exception e) {
 			Logger.log("Error loading semantic types: " + e);
 			return ignore;
 		}
 
-		Db.withConnection(conn -> {
+		for (String[] atom : mdrAtoms) {
+			Set<String> types = cuiToTypes.get().get(atom[1]);
+			if (types == null || Collections.disjoint(types, INCLUDED_SEMANTIC_TYPES)) {
+				ignore.put(atom[0], true);
+			}
+		}
+		return ignore;
+	}
+
+	private static void loadMdrAuiCuis(List<String[]> out) {
+		Db.withConnection("MedDRA AUI/CUI", conn -> {
 			String query = "SELECT AUI, CUI FROM MRCONSO WHERE SAB='MDR'";
 			try (PreparedStatement stmt = conn.prepareStatement(query); ResultSet rs = stmt.executeQuery()) {
-				while (rs.next()) {
-					String aui = rs.getString("AUI");
-					String cui = rs.getString("CUI");
-					Set<String> types = cuiToTypes.get(cui);
-					if (types == null || Collections.disjoint(types, INCLUDED_SEMANTIC_TYPES)) {
-						ignore.put(aui, true);
-					}
-				}
+				while (rs.next())
+					out.add(new String[] { rs.getString("AUI"), rs.getString("CUI") });
 			} catch (SQLException e) {
 				e.printStackTrace();
 			}
 			return null;
 		});
-		return ignore;
 	}
 
 	// =========================================================================
@@ -1984,22 +2158,43 @@ public class UmlsLoader {
 	}
 
 	// =========================================================================
-	// Tiny DB helper with retries & batching
+	// Tiny DB helper: pooled connections, cursor fetch, concurrent loads
 	// =========================================================================
 
 	/**
-	 * Minimal DB helper: centralizes connection building with retries and provides
-	 * small utilities for IN (...) batching.
+	 * Minimal DB helper: a small pool of UMLS connections ({@code UMLS_DB_THREADS})
+	 * with retries, cursor-fetched (streamed) result sets, per-query timing, and
+	 * concurrent execution of independent loads and IN (...) batches.
+	 *
+	 * Connections are kept only while a load is running: when the outermost
+	 * {@link #withConnection}, {@link #concurrently} or {@link #queryInBatches}
+	 * call returns, the idle connections are closed, so they are not held open
+	 * (and left to time out on the server) between loads or after the last one.
 	 */
 	private static final class Db {
 		private static final int MAX_ATTEMPTS = 3;
 		private static final Duration BASE_BACKOFF = Duration.ofMillis(250);
 
-		/** Obtain a Connection with retries/backoff. */
+		/** Rows per server-side cursor fetch; large UMLS scans are streamed, not buffered. */
+		private static final int FETCH_SIZE = 10_000;
+
+		private static final int POOL_SIZE = configLoader.getUmlsDbThreads();
+		private static final Semaphore PERMITS = new Semaphore(POOL_SIZE);
+		private static final ConcurrentLinkedDeque<Connection> IDLE = new ConcurrentLinkedDeque<>();
+		private static final AtomicInteger ACTIVE = new AtomicInteger();
+		private static final AtomicInteger THREAD_IDS = new AtomicInteger();
+
+		/** Reads one row of a batched query. */
+		@FunctionalInterface
+		interface RowReader<R> {
+			R read(ResultSet rs) throws SQLException;
+		}
+
+		/** Open a new Connection with retries/backoff. */
 		static Connection getConnection() throws SQLException {
 			// Optionally: Class.forName(DB_DRIVER);
 			String url = "jdbc:mysql://" + DB_HOST + ":" + DB_PORT + "/" + UMLS_DB_NAME + "?user=" + DB_USER
-					+ "&password=" + DB_PASS;
+					+ "&password=" + DB_PASS + "&useCursorFetch=true&defaultFetchSize=" + FETCH_SIZE;
 			SQLException last = null;
 			for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
 				try {
@@ -2014,22 +2209,80 @@ public class UmlsLoader {
 			throw last;
 		}
 
-		/** Run a unit of work with a Connection (auto-close), with retries. */
+		/**
+		 * Run a unit of work with a pooled Connection, with retries. At most
+		 * {@code UMLS_DB_THREADS} units hold a connection at a time.
+		 */
 		static <T> T withConnection(Function<Connection, T> work) {
-			for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
-				try (Connection conn = getConnection()) {
-					return work.apply(conn);
-				} catch (SQLException e) {
-					if (attempt == MAX_ATTEMPTS) {
-						Logger.log("DB error (giving up): " + e);
-						break;
-					} else {
-						Logger.log("DB error (retrying): " + e);
-						backoff(attempt);
+			ACTIVE.incrementAndGet();
+			PERMITS.acquireUninterruptibly();
+			try {
+				for (int attempt = 1; attempt <= MAX_ATTEMPTS; attempt++) {
+					Connection conn = null;
+					try {
+						conn = borrow();
+						T result = work.apply(conn);
+						IDLE.push(conn);
+						conn = null;
+						return result;
+					} catch (SQLException e) {
+						if (attempt == MAX_ATTEMPTS) {
+							Logger.log("DB error (giving up): " + e);
+							break;
+						} else {
+							Logger.log("DB error (retrying): " + e);
+							backoff(attempt);
+						}
+					} finally {
+						if (conn != null)
+							closeQuietly(conn);
 					}
 				}
+				return null;
+			} finally {
+				PERMITS.release();
+				leave();
+			}
+		}
+
+		/** As above, logging the elapsed time under {@code label}. */
+		static <T> T withConnection(String label, Function<Connection, T> work) {
+			long started = System.nanoTime();
+			try {
+				return withConnection(work);
+			} finally {
+				Logger.log(String.format(ROOT, "UMLS query [%s]: %,d ms", label, (System.nanoTime() - started) / 1_000_000));
+			}
+		}
+
+		private static Connection borrow() throws SQLException {
+			Connection conn;
+			while ((conn = IDLE.poll()) != null) {
+				if (conn.isValid(5))
+					return conn;
+				closeQuietly(conn);
+			}
+			return getConnection();
+		}
+
+		/** End of a load; the last one to end closes the idle connections. */
+		private static void leave() {
+			if (ACTIVE.decrementAndGet() == 0)
+				closeIdle();
+		}
+
+		private static void closeIdle() {
+			Connection conn;
+			while ((conn = IDLE.poll()) != null)
+				closeQuietly(conn);
+		}
+
+		private static void closeQuietly(Connection conn) {
+			try {
+				conn.close();
+			} catch (SQLException ignore) {
+				// already broken
 			}
-			return null;
 		}
 
 		private static void backoff(int attempt) {
@@ -2042,6 +2295,80 @@ public class UmlsLoader {
 			}
 		}
 
+		/**
+		 * Run independent loads at the same time and wait for all of them. Loads
+		 * share the connection pool; a load must not wait on another while it
+		 * holds a connection.
+		 */
+		static void concurrently(Runnable... loads) {
+			ExecutorService pool = Executors.newFixedThreadPool(Math.min(loads.length, POOL_SIZE), r -> {
+				Thread t = new Thread(r, "umls-load-" + THREAD_IDS.incrementAndGet());
+				t.setDaemon(true);
+				return t;
+			});
+			ACTIVE.incrementAndGet();
+			try {
+				List<Future<?>> running = new ArrayList<>(loads.length);
+				for (Runnable load : loads)
+					running.add(pool.submit(load));
+				for (Future<?> f : running)
+					f.get();
+			} catch (InterruptedException ie) {
+				Thread.currentThread().interrupt();
+				throw new RuntimeException("UMLS load interrupted", ie);
+			} catch (ExecutionException ee) {
+				throw new RuntimeException("UMLS load failed", ee.getCause());
+			} finally {
+				pool.shutdownNow();
+				leave();
+			}
+		}
+
+		/**
+		 * Run {@code sqlTemplate} for {@code keys} in IN (...) batches of
+		 * {@link #BATCH_SIZE_IN}, batches in parallel. Rows come back in batch
+		 * order, as a sequential run would return them; a failed batch is logged
+		 * and contributes no rows.
+		 */
+		static <R> List<R> queryInBatches(String label, String sqlTemplate, List<String> keys, RowReader<R> reader) {
+			int batches = (keys.size() + BATCH_SIZE_IN - 1) / BATCH_SIZE_IN;
+			List<List<R>> parts = new ArrayList<>(Collections.nCopies(batches, List.<R>of()));
+			long started = System.nanoTime();
+
+			Runnable[] tasks = new Runnable[batches];
+			for (int b = 0; b < batches; b++) {
+				final int index = b;
+				final List<String> batch = keys.subList(b * BATCH_SIZE_IN, Math.min((b + 1) * BATCH_SIZE_IN, keys.size()));
+				tasks[b] = () -> withConnection(conn -> {
+					List<R> rows = new ArrayList<>();
+					try (PreparedStatement ps = conn.prepareStatement(bindIn(sqlTemplate, batch.size()))) {
+						bind(ps, batch);
+						try (ResultSet rs = ps.executeQuery()) {
+							while (rs.next())
+								rows.add(reader.read(rs));
+						}
+					} catch (SQLException e) {
+						Logger.error("Error loading " + label + ": " + e.getMessage(), e);
+					}
+					synchronized (parts) {
+						parts.set(index, rows);
+					}
+					return null;
+				});
+			}
+			if (batches > 0)
+				concurrently(tasks);
+
+			List<R> out = new ArrayList<>();
+			synchronized (parts) {
+				for (List<R> part : parts)
+					out.addAll(part);
+			}
+			Logger.log(String.format(ROOT, "UMLS query [%s]: %,d rows in %,d batches, %,d ms", label, out.size(), batches,
+					(System.nanoTime() - started) / 1_000_000));
+			return out;
+		}
+
 		/** Create "..., ?, ?, ?" placeholders for IN clauses. */
 		static String bindIn(String sqlTemplate, int n) {
 			if (n <= 0)
@@ -2056,13 +2383,5 @@ public class UmlsLoader {
 			for (String v : values)
 				ps.setString(idx++, v);
 		}
-
-		/** Batch helper: iterate a collection in fixed-size chunks. */
-		static <T> void forBatches(List<T> items, int batchSize, java.util.function.Consumer<List<T>> consumer) {
-			for (int i = 0; i < items.size(); i += batchSize) {
-				int end = Math.min(i + batchSize, items.size());
-				consumer.accept(items.subList(i, end));
-			}
-		}
 	}
 }
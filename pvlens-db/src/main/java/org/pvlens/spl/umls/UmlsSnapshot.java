@@ -0,0 +1,391 @@
+package org.pvlens.spl.umls;
+
+/*
+ * This file is part of PVLens.
+ *
+ * Copyright (C) 2025 GlaxoSmithKline
+ *
+ * PVLens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PVLens is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PVLens.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.BufferUnderflowException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.DirectoryStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Versioned binary snapshot of the dictionaries {@link UmlsLoader} builds at
+ * startup, so later runs skip the MRCONSO/MRSAT/MRREL round-trips and the
+ * MedDRA tokenize/stem pass.
+ *
+ * <p>Layout: magic, format, cache key, a string table (every distinct string
+ * once, UTF-8), then the sections as string ids. The writer streams the body
+ * to a side file and assembles the snapshot with an atomic rename; the reader
+ * memory-maps the file and decodes each string once, so equal AUIs/CUIs share
+ * one instance on the heap.</p>
+ *
+ * <p>Sections are written and read positionally; {@link UmlsLoader} owns the
+ * order. Bump {@link #FORMAT} when the order or the derived-map logic changes.</p>
+ */
+final class UmlsSnapshot {
+
+	/** Snapshot layout / derivation version; part of the cache key. */
+	static final int FORMAT = 1;
+
+	private static final int MAGIC = 0x50564C55; // "PVLU"
+	private static final int END = 0x454E4421;   // "END!"
+	private static final int NULL_ID = -1;
+	private static final String PREFIX = "umls-";
+	private static final String SUFFIX = ".snap";
+
+	private UmlsSnapshot() {
+	}
+
+	// -------------------------------------------------------------------------
+	// Key / location
+	// -------------------------------------------------------------------------
+
+	/** SHA-256 (hex) over the format, the given labels and input contents. */
+	static String cacheKey(List<String> labels, List<byte[]> contents) {
+		try {
+			MessageDigest md = MessageDigest.getInstance("SHA-256");
+			md.update(Integer.toString(FORMAT).getBytes(StandardCharsets.UTF_8));
+			for (String s : labels) {
+				md.update((byte) 0);
+				md.update(String.valueOf(s).getBytes(StandardCharsets.UTF_8));
+			}
+			for (byte[] b : contents) {
+				md.update((byte) 1);
+				md.update(b == null ? new byte[0] : b);
+			}
+			StringBuilder hex = new StringBuilder(64);
+			for (byte b : md.digest())
+				hex.append(Character.forDigit((b >>> 4) & 0xF, 16)).append(Character.forDigit(b & 0xF, 16));
+			return hex.toString();
+		} catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+
+	/** {@code <dir>/umls-<release>-<key prefix>.snap} */
+	static Path file(Path dir, String release, String key) {
+		String safe = release.replaceAll("[^A-Za-z0-9._-]", "_");
+		return dir.resolve(PREFIX + safe + "-" + key.substring(0, 16) + SUFFIX);
+	}
+
+	/** Remove other snapshots in {@code dir} (stale keys). */
+	static void pruneOthers(Path dir, Path keep) {
+		try (DirectoryStream<Path> ds = Files.newDirectoryStream(dir, PREFIX + "*" + SUFFIX)) {
+			for (Path p : ds) {
+				if (!p.equals(keep))
+					Files.deleteIfExists(p);
+			}
+		} catch (IOException ignore) {
+			// best effort
+		}
+	}
+
+	// -------------------------------------------------------------------------
+	// Writer
+	// -------------------------------------------------------------------------
+
+	static final class Writer implements Closeable {
+		private final Path target;
+		private final Path body;
+		private final String key;
+		private final DataOutputStream out;
+		private final Map<String, Integer> ids = new HashMap<>();
+		private final List<String> strings = new ArrayList<>();
+		private boolean committed;
+
+		Writer(Path target, String key) throws IOException {
+			Files.createDirectories(target.toAbsolutePath().getParent());
+			this.target = target;
+			this.key = key;
+			this.body = target.resolveSibling(target.getFileName() + ".body");
+			this.out = new DataOutputStream(new BufferedOutputStream(Files.newOutputStream(body), 1 << 16));
+		}
+
+		private void str(String s) throws IOException {
+			if (s == null) {
+				out.writeInt(NULL_ID);
+				return;
+			}
+			Integer id = ids.get(s);
+			if (id == null) {
+				id = strings.size();
+				ids.put(s, id);
+				strings.add(s);
+			}
+			out.writeInt(id);
+		}
+
+		private void strs(Iterable<String> values, int size) throws IOException {
+			out.writeInt(size);
+			for (String s : values)
+				str(s);
+		}
+
+		void integer(int v) throws IOException {
+			out.writeInt(v);
+		}
+
+		void atoms(Map<String, Atom> m) throws IOException {
+			out.writeInt(m.size());
+			for (Map.Entry<String, Atom> e : m.entrySet()) {
+				Atom a = e.getValue();
+				str(e.getKey());
+				str(a.getAui());
+				str(a.getCui());
+				str(a.getPtCode());
+				str(a.getCode());
+				str(a.getTerm());
+				str(a.getTty());
+			}
+		}
+
+		/** {@code Map<String, Map<String, Boolean>>} used as a multimap (values always true). */
+		void flags(Map<String, Map<String, Boolean>> m) throws IOException {
+			out.writeInt(m.size());
+			for (Map.Entry<String, Map<String, Boolean>> e : m.entrySet()) {
+				str(e.getKey());
+				strs(e.getValue().keySet(), e.getValue().size());
+			}
+		}
+
+		void lists(Map<String, ? extends List<String>> m) throws IOException {
+			out.writeInt(m.size());
+			for (Map.Entry<String, ? extends List<String>> e : m.entrySet()) {
+				str(e.getKey());
+				strs(e.getValue(), e.getValue().size());
+			}
+		}
+
+		void sets(Map<String, Set<String>> m) throws IOException {
+			out.writeInt(m.size());
+			for (Map.Entry<String, Set<String>> e : m.entrySet()) {
+				str(e.getKey());
+				strs(e.getValue(), e.getValue().size());
+			}
+		}
+
+		void termsByTty(Map<String, Map<String, List<String>>> m) throws IOException {
+			out.writeInt(m.size());
+			for (Map.Entry<String, Map<String, List<String>>> e : m.entrySet()) {
+				str(e.getKey());
+				lists(e.getValue());
+			}
+		}
+
+		void termsByTtyAndLength(Map<String, Map<Integer, Map<String, List<String>>>> m) throws IOException {
+			out.writeInt(m.size());
+			for (Map.Entry<String, Map<Integer, Map<String, List<String>>>> e : m.entrySet()) {
+				str(e.getKey());
+				out.writeInt(e.getValue().size());
+				for (Map.Entry<Integer, Map<String, List<String>>> b : e.getValue().entrySet()) {
+					out.writeInt(b.getKey());
+					lists(b.getValue());
+				}
+			}
+		}
+
+		/** Finish the body, prepend header + string table, and move into place. */
+		void commit() throws IOException {
+			out.writeInt(END);
+			out.close();
+
+			Path tmp = target.resolveSibling(target.getFileName() + ".tmp");
+			try (OutputStream fos = Files.newOutputStream(tmp);
+					DataOutputStream h = new DataOutputStream(new BufferedOutputStream(fos, 1 << 16))) {
+				h.writeInt(MAGIC);
+				h.writeInt(FORMAT);
+				byte[] k = key.getBytes(StandardCharsets.UTF_8);
+				h.writeInt(k.length);
+				h.write(k);
+				h.writeInt(strings.size());
+				for (String s : strings) {
+					byte[] b = s.getBytes(StandardCharsets.UTF_8);
+					h.writeInt(b.length);
+					h.write(b);
+				}
+				Files.copy(body, h);
+			}
+			Files.move(tmp, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+			committed = true;
+		}
+
+		@Override
+		public void close() throws IOException {
+			out.close();
+			Files.deleteIfExists(body);
+			if (!committed)
+				Files.deleteIfExists(target.resolveSibling(target.getFileName() + ".tmp"));
+		}
+	}
+
+	// -------------------------------------------------------------------------
+	// Reader
+	// -------------------------------------------------------------------------
+
+	static final class Reader {
+		private final MappedByteBuffer buf;
+		private final String[] strings;
+
+		private Reader(MappedByteBuffer buf, String[] strings) {
+			this.buf = buf;
+			this.strings = strings;
+		}
+
+		/**
+		 * Map {@code file} and load its string table; null when the file is
+		 * missing, from another format, or written for a different key.
+		 */
+		static Reader open(Path file, String key) throws IOException {
+			if (!Files.isRegularFile(file))
+				return null;
+			MappedByteBuffer buf;
+			try (FileChannel ch = FileChannel.open(file, StandardOpenOption.READ)) {
+				if (ch.size() > Integer.MAX_VALUE)
+					return null;
+				buf = ch.map(FileChannel.MapMode.READ_ONLY, 0, ch.size());
+			}
+			try {
+				if (buf.getInt() != MAGIC || buf.getInt() != FORMAT)
+					return null;
+				byte[] k = new byte[buf.getInt()];
+				buf.get(k);
+				if (!key.equals(new String(k, StandardCharsets.UTF_8)))
+					return null;
+				String[] strings = new String[buf.getInt()];
+				for (int i = 0; i < strings.length; i++) {
+					byte[] b = new byte[buf.getInt()];
+					buf.get(b);
+					strings[i] = new String(b, StandardCharsets.UTF_8);
+				}
+				return new Reader(buf, strings);
+			} catch (BufferUnderflowException | NegativeArraySizeException e) {
+				return null;
+			}
+		}
+
+		private String str() {
+			int id = buf.getInt();
+			return (id == NULL_ID) ? null : strings[id];
+		}
+
+		private int size() throws IOException {
+			int n = buf.getInt();
+			if (n < 0)
+				throw new IOException("Corrupt UMLS snapshot (negative size)");
+			return n;
+		}
+
+		private List<String> strList() throws IOException {
+			int n = size();
+			List<String> l = new ArrayList<>(n);
+			for (int i = 0; i < n; i++)
+				l.add(str());
+			return l;
+		}
+
+		int integer() {
+			return buf.getInt();
+		}
+
+		void atoms(Map<String, Atom> into) throws IOException {
+			for (int i = size(); i > 0; i--) {
+				String k = str();
+				String aui = str(), cui = str(), ptCode = str(), code = str(), term = str(), tty = str();
+				into.put(k, AtomPool.share(new Atom(aui, cui, ptCode, code, term, tty)));
+			}
+		}
+
+		void flags(Map<String, Map<String, Boolean>> into) throws IOException {
+			for (int i = size(); i > 0; i--) {
+				String k = str();
+				int n = size();
+				Map<String, Boolean> m = new HashMap<>(Math.max(2, n * 4 / 3 + 1));
+				for (int j = 0; j < n; j++)
+					m.put(str(), true);
+				into.put(k, m);
+			}
+		}
+
+		<L extends List<String>> void lists(Map<String, L> into, java.util.function.Function<List<String>, L> wrap)
+				throws IOException {
+			for (int i = size(); i > 0; i--) {
+				String k = str();
+				into.put(k, wrap.apply(strList()));
+			}
+		}
+
+		void lists(Map<String, List<String>> into) throws IOException {
+			lists(into, l -> l);
+		}
+
+		void sets(Map<String, Set<String>> into) throws IOException {
+			for (int i = size(); i > 0; i--) {
+				String k = str();
+				into.put(k, new HashSet<>(strList()));
+			}
+		}
+
+		void termsByTty(Map<String, Map<String, List<String>>> into) throws IOException {
+			for (int i = size(); i > 0; i--) {
+				String tty = str();
+				Map<String, List<String>> m = new HashMap<>();
+				lists(m);
+				into.put(tty, m);
+			}
+		}
+
+		void termsByTtyAndLength(Map<String, Map<Integer, Map<String, List<String>>>> into) throws IOException {
+			for (int i = size(); i > 0; i--) {
+				String tty = str();
+				Map<Integer, Map<String, List<String>>> byLen = new HashMap<>();
+				for (int j = size(); j > 0; j--) {
+					int len = buf.getInt();
+					Map<String, List<String>> m = new HashMap<>();
+					lists(m);
+					byLen.put(len, m);
+				}
+				into.put(tty, byLen);
+			}
+		}
+
+		/** Verify the trailer after the last section. */
+		void finish() throws IOException {
+			if (buf.getInt() != END || buf.hasRemaining())
+				throw new IOException("Corrupt UMLS snapshot (bad trailer)");
+		}
+	}
+}
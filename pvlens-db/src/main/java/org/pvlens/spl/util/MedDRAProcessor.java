@@ -27,6 +27,7 @@ import java.io.InputStreamReader;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.EnumMap;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
@@ -37,6 +38,7 @@ import java.util.Set;
 import java.util.concurrent.atomic.AtomicReference;
 import java.util.regex.Pattern;
 
+import org.pvlens.spl.umls.MeddraTermMatcher;
 import org.pvlens.spl.umls.UmlsLoader;
 import org.tartarus.snowball.ext.EnglishStemmer;
 
@@ -185,6 +187,12 @@ public class MedDRAProcessor {
 	private final Map<String, Map<Integer, Map<String, List<String>>>> transformedStemmedMap;
 	private final List<String> validTty;
 
+	// Compiled token automata over the dictionaries + per-section TTY masks
+	private final MeddraTermMatcher matcher;
+	private final MeddraTermMatcher stemmedMatcher;
+	private final Map<AeSection, Long> sectionMask = new EnumMap<>(AeSection.class);
+	private final Map<AeSection, Long> stemmedSectionMask = new EnumMap<>(AeSection.class);
+
 	// ---------------- Exclusion / context patterns ----------------
 
 	/** AE section exclusion patterns. */
@@ -276,6 +284,17 @@ public class MedDRAProcessor {
 		this.validTty = umlsLoader.getValidTty();
 		this.MAX_TOKEN_MATCH_LENGTH = umlsLoader.getMaxTokenMatchLength();
 
+		// Prefer the loader's shared automata; compile locally if it has none (e.g., mocks)
+		MeddraTermMatcher m = umlsLoader.getTransformedMatcher();
+		MeddraTermMatcher sm = umlsLoader.getStemmedMatcher();
+		this.matcher = (m != null) ? m : MeddraTermMatcher.compile(transformedMap, MAX_TOKEN_MATCH_LENGTH);
+		this.stemmedMatcher = (sm != null) ? sm : MeddraTermMatcher.compile(transformedStemmedMap, MAX_TOKEN_MATCH_LENGTH);
+		for (AeSection s : AeSection.values()) {
+			List<String> ttys = orderedTtysFor(s, validTty);
+			sectionMask.put(s, matcher.maskFor(ttys));
+			stemmedSectionMask.put(s, stemmedMatcher.maskFor(ttys));
+		}
+
 		// Load SPECIALIST antonym lexicon once if present
 		if (!ANTONYM_LOADED) {
 			synchronized (ANTONYM_INDEX) {
@@ -359,14 +378,19 @@ public class MedDRAProcessor {
 			}
 		}
 
-		// 5) Longest-first dictionary match with per-occurrence local gating
-		return findMatches(section, grams, exactMatch ? transformedMap : transformedStemmedMap, normalized);
+		// 5) Single-pass dictionary match with per-occurrence local gating
+		if (exactMatch) {
+			return findMatches(section, grams, transformedMap, matcher, sectionMask.get(section), normalized);
+		}
+		return findMatches(section, grams, transformedStemmedMap, stemmedMatcher, stemmedSectionMask.get(section),
+				normalized);
 	}
 
 	// ---------------- Core matching ----------------
 
 	private Map<String, List<String>> findMatches(AeSection section, String[] tokens,
-			Map<String, Map<Integer, Map<String, List<String>>>> dict, String rawSentence) {
+			Map<String, Map<Integer, Map<String, List<String>>>> dict, MeddraTermMatcher automaton, long ttyMask,
+			String rawSentence) {
 
 		Map<String, List<String>> out = new HashMap<>();
 		if (tokens == null || tokens.length == 0) return out;
@@ -374,28 +398,11 @@ public class MedDRAProcessor {
 		// safety: skip if raw still fails high-level exclusions
 		if (isExcludedSentence(section, rawSentence)) return out;
 
-		final StringBuilder key = new StringBuilder(128);
-		final int maxN = Math.min(MAX_TOKEN_MATCH_LENGTH, tokens.length);
-
-		// 5) Collect raw matches by key first
+		// 5) Collect raw matches by key first (one automaton pass; local gate once per distinct key)
 		final Set<String> matchedKeys = new HashSet<>();
-
-		for (String tty : orderedTtysFor(section, validTty)) {
-			Map<Integer, Map<String, List<String>>> byLen = dict.get(tty);
-			if (byLen == null) continue;
-
-			for (int n = maxN; n >= 1; n--) {
-				Map<String, List<String>> inner = byLen.get(n);
-				if (inner == null) continue;
-
-				for (int i = 0; i <= tokens.length - n; i++) {
-					String k = ngramKey(tokens, i, n, key);
-					List<String> auis = inner.get(k);
-					if (auis == null) continue;
-					if (isAllowedByLocalContext(rawSentence, k)) {
-						matchedKeys.add(k);
-					}
-				}
+		for (String k : automaton.match(tokens, ttyMask)) {
+			if (isAllowedByLocalContext(rawSentence, k)) {
+				matchedKeys.add(k);
 			}
 		}
 
@@ -436,15 +443,6 @@ public class MedDRAProcessor {
 		return out;
 	}
 
-	/** Build a space-joined n-gram key without extra allocations. */
-	private static String ngramKey(String[] toks, int start, int len, StringBuilder sb) {
-		sb.setLength(0);
-		int end = start + len;
-		sb.append(toks[start]);
-		for (int i = start + 1; i < end; i++) sb.append(' ').append(toks[i]);
-		return sb.toString();
-	}
-
 	// ---------------- Context & sentence-level filters ----------------
 
 	private static AeSection toSection(String aeType) {
@@ -26,12 +26,15 @@ import java.nio.charset.StandardCharsets;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.Comparator;
+import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 
 import org.apache.commons.lang3.StringUtils;
 import org.pvlens.spl.conf.ConfigLoader;
+import org.pvlens.spl.processing.persist.SqlInsert;
+import org.pvlens.spl.processing.persist.SqlSink;
 import org.pvlens.spl.umls.Atom;
 import org.pvlens.spl.umls.UmlsLoader;
 
@@ -50,16 +53,29 @@ import org.pvlens.spl.umls.UmlsLoader;
  *
  * If your actual DDL differs, adjust the INSERT templates below accordingly.
  *
+ * With SQL_SINK=JDBC ({@link #setDirectSink(SinkOpener)}) the rows are loaded
+ * into the database instead and the scripts only hold a note saying so.
+ *
  * @author Jeffery Painter
  * @created 2024-Aug-23
  */
 public class UmlsTerms {
 
+	private static final SqlInsert MEDDRA = SqlInsert.of("MEDDRA", "ID", "MEDDRA_CODE", "MEDDRA_PTCODE",
+			"MEDDRA_TERM", "MEDDRA_TTY", "MEDDRA_AUI", "MEDDRA_CUI");
+
 	// Defaults via config; still allow DI for tests
 	private final UmlsLoader umls;
 	private final Path outputDir;
 	private final int startId;
 
+	// Incremental runs: IDs already loaded, by table then AUI (see setKnownIds)
+	private final Map<String, Map<String, Integer>> knownIds = new HashMap<>();
+	private final Map<String, Map<String, Integer>> assignedIds = new HashMap<>();
+
+	// SQL_SINK=JDBC: opens the sink each table is loaded through (null: write scripts)
+	private SinkOpener directSink;
+
 	// ---- Constructors -------------------------------------------------------
 
 	/** Production constructor using ConfigLoader and UmlsLoader singletons. */
@@ -76,30 +92,51 @@ public class UmlsTerms {
 
 	// ---- Public API ---------------------------------------------------------
 
+	/**
+	 * IDs loaded by an earlier run, by table (MEDDRA, RXNORM, SNOMED, ATC) then
+	 * AUI. Known atoms keep their ID and are not written again; new atoms get IDs
+	 * above the largest known one, so the scripts only add rows.
+	 */
+	public void setKnownIds(Map<String, Map<String, Integer>> ids) {
+		knownIds.clear();
+		if (ids != null)
+			ids.forEach((table, m) -> knownIds.put(table, new HashMap<>(m)));
+	}
+
+	/**
+	 * Load the tables through sinks from {@code opener} (one per table, closed
+	 * when the table is done) instead of writing INSERT scripts, so a direct
+	 * JDBC load has the rows its SUBSTANCE_* and PRODUCT_* rows reference.
+	 */
+	public void setDirectSink(SinkOpener opener) {
+		this.directSink = opener;
+	}
+
+	/** AUI → ID of every atom written so far plus the known ones, by table. */
+	public Map<String, Map<String, Integer>> getAssignedIds() {
+		return assignedIds;
+	}
+
 	/** Create MedDRA SQL file and assign database IDs back to each Atom. */
 	public void createMeddraTable() {
 		final Path out = outputDir.resolve("meddra.sql");
 		Logger.log("Creating MedDRA SQL file: " + out);
 		final Map<String, Atom> src = safeMap(umls.getMedDRA());
 
-		writeSql(out, pw -> {
-			int id = startId;
+		writeRows(out, MEDDRA, rows -> {
+			Map<String, Integer> known = knownIds.getOrDefault("MEDDRA", Map.of());
+			Map<String, Integer> assigned = assignedIds.computeIfAbsent("MEDDRA", k -> new HashMap<>(known));
+			int id = nextId(known);
 
 			for (Atom a : sortedValues(src)) {
-				// Defensive field extraction with null-to-empty + escaping
-				String code = esc(a.getCode());
-				String ptCode = esc(a.getPtCode());
-				String term = esc(a.getTerm());
-				String tty = esc(a.getTty());
-				String aui = esc(a.getAui());
-				String cui = esc(a.getCui());
-
-				pw.printf(
-						"INSERT INTO MEDDRA (ID, MEDDRA_CODE, MEDDRA_PTCODE, MEDDRA_TERM, MEDDRA_TTY, MEDDRA_AUI, MEDDRA_CUI) VALUES (%d, \"%s\", \"%s\", \"%s\", \"%s\", \"%s\", \"%s\");%n",
-						id, code, ptCode, term, tty, aui, cui);
+				if (reuseKnownId(a, known))
+					continue;
+
+				rows.add(id, a.getCode(), a.getPtCode(), a.getTerm(), a.getTty(), a.getAui(), a.getCui());
 
 				// Update Atom with assigned DB ID
 				a.setDatabaseId(id);
+				assigned.put(a.getAui(), id);
 				id++;
 			}
 		});
@@ -145,24 +182,75 @@ public class UmlsTerms {
 	}
 
 	private void generateSimpleTable(Path file, String table, Map<String, Atom> src) {
-		writeSql(file, pw -> {
-			int id = startId;
+		writeRows(file, SqlInsert.of(table, "ID", "AUI", "CUI", "CODE", "TERM", "TTY"), rows -> {
+			Map<String, Integer> known = knownIds.getOrDefault(table, Map.of());
+			Map<String, Integer> assigned = assignedIds.computeIfAbsent(table, k -> new HashMap<>(known));
+			int id = nextId(known);
 			for (Atom a : sortedValues(src)) {
-				String aui = esc(a.getAui());
-				String cui = esc(a.getCui());
-				String code = esc(a.getCode());
-				String term = esc(a.getTerm());
-				String tty = esc(a.getTty());
-
-				pw.printf(
-						"INSERT INTO %s (ID, AUI, CUI, CODE, TERM, TTY) VALUES (%d, \"%s\", \"%s\", \"%s\", \"%s\", \"%s\");%n",
-						table, id, aui, cui, code, term, tty);
+				if (reuseKnownId(a, known))
+					continue;
+				rows.add(id, a.getAui(), a.getCui(), a.getCode(), a.getTerm(), a.getTty());
 				a.setDatabaseId(id);
+				assigned.put(a.getAui(), id);
 				id++;
 			}
 		});
 	}
 
+	private int nextId(Map<String, Integer> known) {
+		int max = startId - 1;
+		for (int v : known.values())
+			max = Math.max(max, v);
+		return max + 1;
+	}
+
+	/** Atom already loaded: take its ID, write nothing. */
+	private static boolean reuseKnownId(Atom a, Map<String, Integer> known) {
+		Integer prior = (a.getAui() == null) ? null : known.get(a.getAui());
+		if (prior == null)
+			return false;
+		a.setDatabaseId(prior);
+		return true;
+	}
+
+	/**
+	 * Rows of one table: INSERT statements in {@code file}, or with a direct sink
+	 * loaded through it (the file then only notes that).
+	 */
+	private void writeRows(Path file, SqlInsert insert, RowSource source) {
+		writeSql(file, pw -> {
+			try {
+				if (directSink == null) {
+					source.rows((id, values) -> {
+						pw.print(insert.head());
+						pw.print("(" + id);
+						for (String v : values)
+							pw.print(", \"" + esc(v) + "\"");
+						pw.println(");");
+					});
+					return;
+				}
+				pw.println("-- rows loaded directly over JDBC (SQL_SINK=JDBC)");
+				SqlSink sink = directSink.open();
+				try {
+					source.rows((id, values) -> {
+						Object[] row = new Object[values.length + 1];
+						row[0] = id;
+						for (int i = 0; i < values.length; i++)
+							row[i + 1] = clean(values[i]);
+						sink.write(insert, row);
+					});
+				} finally {
+					sink.close();
+				}
+			} catch (RuntimeException e) {
+				throw e;
+			} catch (Exception e) {
+				throw new IllegalStateException("Could not load " + insert.table() + ": " + e, e);
+			}
+		});
+	}
+
 	/** Shared writer with header + transaction framing. */
 	private void writeSql(Path file, SqlWriter writer) {
 		try {
@@ -189,13 +277,16 @@ public class UmlsTerms {
 
 	/** Minimal SQL string escaper for double-quoted literals in our templates. */
 	private static String esc(String s) {
+		// Escape any existing quotes/backslashes
+		return StringUtils.replaceEach(clean(s), new String[] { "\\", "\"" }, new String[] { "\\\\", "\\\"" });
+	}
+
+	/** Null to empty, line breaks to spaces, trimmed: the value as loaded. */
+	private static String clean(String s) {
 		if (s == null)
 			return "";
-		// Normalize and prevent control chars; double any existing quotes/backslashes
-		String normalized = StringUtils.replaceEach(s, new String[] { "\\", "\"", "\r", "\n" },
-				new String[] { "\\\\", "\\\"", " ", " " });
-		// Collapse multiple spaces introduced by newline removal
-		return normalized.trim();
+		// Normalize and prevent control chars
+		return StringUtils.replaceEach(s, new String[] { "\r", "\n" }, new String[] { " ", " " }).trim();
 	}
 
 	private static String nullToEmpty(String s) {
@@ -206,4 +297,21 @@ public class UmlsTerms {
 	private interface SqlWriter {
 		void write(PrintWriter pw);
 	}
+
+	/** Opens the sink one table is loaded through; see {@link #setDirectSink(SinkOpener)}. */
+	@FunctionalInterface
+	public interface SinkOpener {
+		SqlSink open() throws Exception;
+	}
+
+	/** Emits a table's rows (ID first, then the string columns) to a {@link Row}. */
+	@FunctionalInterface
+	private interface RowSource {
+		void rows(Row row) throws Exception;
+	}
+
+	@FunctionalInterface
+	private interface Row {
+		void add(int id, String... values) throws Exception;
+	}
 }
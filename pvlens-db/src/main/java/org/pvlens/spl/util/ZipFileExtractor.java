@@ -23,7 +23,7 @@ import java.io.BufferedInputStream;
 import java.io.BufferedOutputStream;
 import java.io.BufferedReader;
 import java.io.BufferedWriter;
-import java.io.FileInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.FileReader;
 import java.io.IOException;
 import java.nio.file.DirectoryStream;
@@ -55,6 +55,7 @@ import org.apache.commons.csv.CSVPrinter;
 import org.apache.commons.csv.CSVRecord;
 import org.apache.commons.lang3.StringUtils;
 import org.pvlens.spl.conf.ConfigLoader;
+import org.pvlens.spl.processing.support.SplXmlRef;
 import org.w3c.dom.Document;
 import org.w3c.dom.Element;
 import org.w3c.dom.Node;
@@ -68,6 +69,9 @@ import org.w3c.dom.NodeList;
  * Incremental by default; optional testMode restricts work to ZIPs already
  * listed in the CSV maps and (re)extracts their XMLs if missing.
  *
+ * With SPL_XML_SOURCE=ZIP nothing is unpacked: entries are still classified
+ * and mapped, and later stages read them from the archives via {@link SplXmlRef}.
+ *
  * Author: Jeffery Painter Updated: 2025-08-27 (add testMode)
  */
 public class ZipFileExtractor {
@@ -77,6 +81,8 @@ public class ZipFileExtractor {
 	private final Path xmlOutputDirPath; // extracted XML root
 	private final Path xmlMapPath;
 	private final Path prodMapPath;
+	/** Extract-free mode: classify entries and write the CSV maps, but do not unpack XML. */
+	private final boolean extractFree;
 
 	// CSV headers
 	private static final String[] XML_MAP_HEADER = { "ZipFileName", "XmlFileName", "SourceType" };
@@ -88,6 +94,7 @@ public class ZipFileExtractor {
 		this.xmlOutputDirPath = splDirPath.resolve("xml_files");
 		this.xmlMapPath = splDirPath.resolve(cfg.getZipToXmlMapFilename());
 		this.prodMapPath = splDirPath.resolve(cfg.getSplProductLabelMap());
+		this.extractFree = cfg.isZipXmlSource();
 	}
 
 	public ZipFileExtractor(String path) {
@@ -96,6 +103,7 @@ public class ZipFileExtractor {
 		this.xmlOutputDirPath = splDirPath.resolve("xml_files");
 		this.xmlMapPath = splDirPath.resolve(cfg.getZipToXmlMapFilename());
 		this.prodMapPath = splDirPath.resolve(cfg.getSplProductLabelMap());
+		this.extractFree = cfg.isZipXmlSource();
 	}
 
 	// --- Configuration --------------------------------------------------------
@@ -142,7 +150,7 @@ public class ZipFileExtractor {
 				return;
 			}
 
-			if (Files.notExists(xmlOutputDirPath)) {
+			if (!extractFree && Files.notExists(xmlOutputDirPath)) {
 				Files.createDirectories(xmlOutputDirPath);
 			}
 
@@ -210,7 +218,8 @@ public class ZipFileExtractor {
 								pool.submit(() -> {
 									try {
 										Path outDir = xmlOutputDirPath.resolve(t.sourceType());
-										Files.createDirectories(outDir);
+										if (!extractFree)
+											Files.createDirectories(outDir);
 										processZipFile(zipPath, outDir, csvPrinter1, csvPrinter2, t.sourceType(), null,
 												null);
 									} catch (Exception ex) {
@@ -256,7 +265,8 @@ public class ZipFileExtractor {
 								pool.submit(() -> {
 									try {
 										Path outDir = xmlOutputDirPath.resolve(t.sourceType());
-										Files.createDirectories(outDir);
+										if (!extractFree)
+											Files.createDirectories(outDir);
 										// Always (re)extract; only append missing CSV rows
 										processZipFile(zipPath, outDir, csvPrinter1, csvPrinter2, t.sourceType(),
 												alreadyXmls, existingProdZips);
@@ -299,6 +309,17 @@ public class ZipFileExtractor {
 
 	public static Map<String, List<String>> getGuidXmlMap(String srcPath, Map<String, List<String>> maps,
 			HashMap<String, String> guidSrcType, String SPL_ZIP_XML_MAP) {
+		return getGuidXmlMap(srcPath, maps, guidSrcType, SPL_ZIP_XML_MAP, new ConfigLoader().isZipXmlSource());
+	}
+
+	/**
+	 * Build GUID -> XML references from SPL_ZIP_XML_MAP.csv. With
+	 * {@code fromZip} the references point into the archives
+	 * ({@code <zip>!/<entry>}, see {@link SplXmlRef}) instead of the unpacked
+	 * copies under {@code xml_files/<sourceType>/}.
+	 */
+	public static Map<String, List<String>> getGuidXmlMap(String srcPath, Map<String, List<String>> maps,
+			HashMap<String, String> guidSrcType, String SPL_ZIP_XML_MAP, boolean fromZip) {
 
 		// This is a potential area to explore... for now, we
 		// going to add all xmlFiles to the GUID if it matches
@@ -327,7 +348,9 @@ public class ZipFileExtractor {
 					// Convert all products to uppercase for direct comparison
 					String zipFile = record.get("ZipFileName").trim();
 					String sourceType = record.get("SourceType").trim();
-					String xmlFile = srcPath + "xml_files/" + sourceType + "/" + record.get("XmlFileName").trim();
+					String xmlName = record.get("XmlFileName").trim();
+					String xmlFile = fromZip ? zipXmlRef(srcPath, sourceType, zipFile, xmlName)
+							: srcPath + "xml_files/" + sourceType + "/" + xmlName;
 
 					if (firstLine == true && zipFile.contentEquals("ZipFileName")) {
 						firstLine = false;
@@ -339,9 +362,8 @@ public class ZipFileExtractor {
 							continue;
 						} else {
 
-							// Confirm the XML file exists
-							Path xmlPath = Paths.get(xmlFile);
-							if (Files.exists(xmlPath) == true) {
+							// Confirm the XML file (or its archive) exists
+							if (SplXmlRef.exists(xmlFile)) {
 								if (zipFile.contains("_")) {
 									String guid = zipFile.split("_")[1];
 									guid = guid.replace(".zip", "");
@@ -392,6 +414,17 @@ public class ZipFileExtractor {
 		return maps;
 	}
 
+	/**
+	 * Archive-backed reference for a map row. Archives live under
+	 * {@code <srcPath>/<sourceType>/}, or directly under {@code srcPath} for the
+	 * legacy flat layout.
+	 */
+	private static String zipXmlRef(String srcPath, String sourceType, String zipFile, String xmlName) {
+		String zip = Files.isDirectory(Paths.get(srcPath, sourceType)) ? srcPath + sourceType + "/" + zipFile
+				: srcPath + zipFile;
+		return SplXmlRef.zipEntry(zip, xmlName);
+	}
+
 	// --- ZIP processing -------------------------------------------------------
 	@SuppressWarnings("unused")
 	private void processZipFile(Path zipPath, Path outputDirPath, CSVPrinter csvPrinter1, CSVPrinter csvPrinter2) {
@@ -419,7 +452,6 @@ public class ZipFileExtractor {
 
 		try (ZipInputStream zis = new ZipInputStream(new BufferedInputStream(Files.newInputStream(zipPath)))) {
 			ZipEntry entry;
-			byte[] buffer = new byte[64 * 1024];
 
 			while ((entry = zis.getNextEntry()) != null) {
 				try {
@@ -437,16 +469,18 @@ public class ZipFileExtractor {
 						continue;
 					}
 
-					// Ensure subdirectories exist
-					Path parent = target.getParent();
-					if (parent != null)
-						Files.createDirectories(parent);
+					// Read the entry once; the same bytes are written out and classified
+					byte[] xmlBytes = zis.readAllBytes();
 
-					// Write the entry (overwrite is fine; this also restores missing XMLs)
-					try (BufferedOutputStream bos = new BufferedOutputStream(Files.newOutputStream(target))) {
-						int read;
-						while ((read = zis.read(buffer)) != -1) {
-							bos.write(buffer, 0, read);
+					if (!extractFree) {
+						// Ensure subdirectories exist
+						Path parent = target.getParent();
+						if (parent != null)
+							Files.createDirectories(parent);
+
+						// Write the entry (overwrite is fine; this also restores missing XMLs)
+						try (BufferedOutputStream bos = new BufferedOutputStream(Files.newOutputStream(target))) {
+							bos.write(xmlBytes);
 						}
 					}
 
@@ -457,36 +491,31 @@ public class ZipFileExtractor {
 					if (haveXmlDedupe && alreadyXmlsForKey.contains(entryName)) {
 						writeXmlRow = false;
 					}
-					if (writeXmlRow) {
-
-						synchronized (csvPrinter1) {
+					boolean writeProdRow = true;
+					if (haveProdDedupe && existingProdZips.contains(zipBaseName)) {
+						writeProdRow = false;
+					}
 
-							// Mismatch types
-							if (sourceType.contentEquals("prescription")) {
-								boolean otc = getOtcProductIndicated(target.toString());
-								if (otc) {
-									fail = true;
-								}
-							}
+					// Single parse for all label attributes (only when a row may be written)
+					LabelTraits traits = (writeXmlRow || writeProdRow) ? classify(xmlBytes, target.toString())
+							: LabelTraits.NONE;
 
-							if (sourceType.contentEquals("otc")) {
-								boolean otc = getOtcProductIndicated(target.toString());
-								if (!otc) {
-									fail = true;
-								}
-							}
+					if (writeXmlRow) {
 
-							// Always remove bulk ingredient and animal products
-							boolean bulkIngredient = getBulkIngredient(target.toString());
-							if (bulkIngredient) {
-								fail = true;
-							}
+						// Mismatch types
+						if (sourceType.contentEquals("prescription") && traits.otc()) {
+							fail = true;
+						}
+						if (sourceType.contentEquals("otc") && !traits.otc()) {
+							fail = true;
+						}
 
-							boolean isAnimalProduct = getNonhumanUseProductIndicated(target.toString());
-							if (isAnimalProduct) {
-								fail = true;
-							}
+						// Always remove bulk ingredient and animal products
+						if (traits.bulkIngredient() || traits.nonhumanUse()) {
+							fail = true;
+						}
 
+						synchronized (csvPrinter1) {
 							if (!fail) {
 								csvPrinter1.printRecord(zipBaseName, entryName, sourceType);
 							} else {
@@ -497,12 +526,8 @@ public class ZipFileExtractor {
 
 					// Product name row (usually already present in PRODUCT_LABEL_MAP.csv)
 					// Only write if not already present for this zip
-					boolean writeProdRow = true;
-					if (haveProdDedupe && existingProdZips.contains(zipBaseName)) {
-						writeProdRow = false;
-					}
 					if (writeProdRow && !fail) {
-						String productName = getManufactureProductName(target.toString());
+						String productName = traits.productName();
 						if (StringUtils.isNotBlank(productName)) {
 							synchronized (csvPrinter2) {
 								csvPrinter2.printRecord(zipBaseName, productName);
@@ -618,52 +643,27 @@ public class ZipFileExtractor {
 	}
 
 	// --- XML helpers ----------------------------------------------------------
-	private static String getManufactureProductName(String xmlFile) {
-		try (FileInputStream xmlContentStream = new FileInputStream(xmlFile)) {
-			DocumentBuilder builder = TL_DOCUMENT_BUILDER.get();
-			Document document = builder.parse(xmlContentStream);
-			document.getDocumentElement().normalize();
-			return extractProductName(document);
-		} catch (Exception e) {
-			Logger.error("Error reading XML file: " + xmlFile + " :: " + e.getMessage());
-		}
-		return "";
-	}
 
-	private static boolean getBulkIngredient(String xmlFile) {
-		try (FileInputStream xmlContentStream = new FileInputStream(xmlFile)) {
-			DocumentBuilder builder = TL_DOCUMENT_BUILDER.get();
-			Document document = builder.parse(xmlContentStream);
-			document.getDocumentElement().normalize();
-			return extractBulkIngredientDrugLable(document);
-		} catch (Exception e) {
-			Logger.error("Error reading XML file: " + xmlFile + " :: " + e.getMessage());
-		}
-		return false;
-	}
-
-	private static boolean getNonhumanUseProductIndicated(String xmlFile) {
-		try (FileInputStream xmlContentStream = new FileInputStream(xmlFile)) {
-			DocumentBuilder builder = TL_DOCUMENT_BUILDER.get();
-			Document document = builder.parse(xmlContentStream);
-			document.getDocumentElement().normalize();
-			return extractNonhumanUseDrugLable(document);
-		} catch (Exception e) {
-			Logger.error("Error reading XML file: " + xmlFile + " :: " + e.getMessage());
-		}
-		return false;
+	/** Label attributes used to categorize an archive entry. */
+	private record LabelTraits(boolean otc, boolean bulkIngredient, boolean nonhumanUse, String productName) {
+		static final LabelTraits NONE = new LabelTraits(false, false, false, "");
 	}
 
-	private static boolean getOtcProductIndicated(String xmlFile) {
-		try (FileInputStream xmlContentStream = new FileInputStream(xmlFile)) {
+	/**
+	 * Parse the entry bytes once and derive OTC / bulk ingredient / non-human use
+	 * flags and the manufactured product name.
+	 */
+	private static LabelTraits classify(byte[] xml, String xmlFile) {
+		try {
 			DocumentBuilder builder = TL_DOCUMENT_BUILDER.get();
-			Document document = builder.parse(xmlContentStream);
+			Document document = builder.parse(new ByteArrayInputStream(xml));
 			document.getDocumentElement().normalize();
-			return extractOtcDrugLable(document);
+			return new LabelTraits(extractOtcDrugLable(document), extractBulkIngredientDrugLable(document),
+					extractNonhumanUseDrugLable(document), extractProductName(document));
 		} catch (Exception e) {
 			Logger.error("Error reading XML file: " + xmlFile + " :: " + e.getMessage());
 		}
-		return false;
+		return LabelTraits.NONE;
 	}
 
 	/**
@@ -34,6 +34,10 @@ drop table if exists PRODUCT_IND_SRC;
 drop table if exists SPL_AE_TEXT;
 drop table if exists SPL_IND_TEXT;
 drop table if exists SPL_BOX_TEXT;
+drop table if exists MEDDRA_USAGE;
+drop table if exists SUBSTANCE_NAME;
+drop table if exists DASHBOARD_STATS;
+drop table if exists DATA_BUILD;
 
 # -----------------------------------------------------------------------
 # UMLS_VERSION
@@ -159,7 +163,8 @@ CREATE TABLE SRLC
     DATABASE_UPDATED DATE,
     URL VARCHAR(500),
     PRIMARY KEY(ID),
-    UNIQUE SRLC_UQ_1 (DRUG_ID)
+    UNIQUE SRLC_UQ_1 (DRUG_ID),
+    INDEX SRLC_SUPPLEMENT_DATE_IDX(SUPPLEMENT_DATE)
 );
 
 
@@ -260,7 +265,8 @@ CREATE TABLE PRODUCT_IND
     MEDDRA_ID INTEGER NOT NULL,
     LABEL_DATE DATE,
     EXACT_MATCH TINYINT(1),
-    PRIMARY KEY(ID)
+    PRIMARY KEY(ID),
+    INDEX PRODUCT_IND_LABEL_DATE_IDX(LABEL_DATE)
 );
 
 
@@ -276,7 +282,8 @@ CREATE TABLE PRODUCT_AE
     WARNING TINYINT(1),
     BLACKBOX TINYINT(1),
     EXACT_MATCH TINYINT(1),
-    PRIMARY KEY(ID)
+    PRIMARY KEY(ID),
+    INDEX PRODUCT_AE_LABEL_DATE_IDX(LABEL_DATE)
 );
 
 
@@ -342,6 +349,69 @@ CREATE TABLE SPL_BOX_TEXT
     PRIMARY KEY(ID)
 );
 
+
+# -----------------------------------------------------------------------
+# MEDDRA_USAGE (per-term counts over PRODUCT_AE / PRODUCT_IND)
+# -----------------------------------------------------------------------
+CREATE TABLE MEDDRA_USAGE
+(
+    MEDDRA_ID INTEGER NOT NULL,
+    AE_COUNT INTEGER NOT NULL default 0,
+    BLACKBOX_COUNT INTEGER NOT NULL default 0,
+    IND_COUNT INTEGER NOT NULL default 0,
+    SUBSTANCE_COUNT INTEGER NOT NULL default 0,
+    PRIMARY KEY(MEDDRA_ID)
+);
+
+
+# -----------------------------------------------------------------------
+# SUBSTANCE_NAME (display name per product; NULL NAME when none is known)
+# -----------------------------------------------------------------------
+CREATE TABLE SUBSTANCE_NAME
+(
+    PRODUCT_ID INTEGER NOT NULL,
+    NAME VARCHAR(3500),
+    NAME_SOURCE VARCHAR(20),
+    PRIMARY KEY(PRODUCT_ID)
+);
+
+
+# -----------------------------------------------------------------------
+# DATA_BUILD (stamp of the last pipeline run loaded, one row; see
+# dashboard_stats.sql)
+# -----------------------------------------------------------------------
+CREATE TABLE DATA_BUILD
+(
+    ID INTEGER NOT NULL,
+    BUILD_ID VARCHAR(100) NOT NULL,
+    BUILT_AT DATETIME NOT NULL,
+    PRIMARY KEY(ID)
+);
+
+
+# -----------------------------------------------------------------------
+# DASHBOARD_STATS (Overview statistics, one row; see dashboard_stats.sql)
+# -----------------------------------------------------------------------
+CREATE TABLE DASHBOARD_STATS
+(
+    ID INTEGER NOT NULL,
+    DATA_VERSION VARCHAR(100) NOT NULL,
+    BUILT_AT DATETIME NOT NULL,
+    TOTAL_SUBSTANCES INTEGER NOT NULL default 0,
+    TOTAL_AES INTEGER NOT NULL default 0,
+    BLACKBOX_WARNINGS INTEGER NOT NULL default 0,
+    STANDARD_WARNINGS INTEGER NOT NULL default 0,
+    EXACT_MATCHES INTEGER NOT NULL default 0,
+    NLP_MATCHES INTEGER NOT NULL default 0,
+    TOTAL_INDICATIONS INTEGER NOT NULL default 0,
+    TOTAL_SRLC INTEGER NOT NULL default 0,
+    PRESCRIPTION_DRUGS INTEGER NOT NULL default 0,
+    OTC_DRUGS INTEGER NOT NULL default 0,
+    DATA_START_DATE DATE,
+    DATA_END_DATE DATE,
+    PRIMARY KEY(ID)
+);
+
 ALTER TABLE SPL_SRCFILE
     ADD CONSTRAINT SPL_SRCFILE_FK_1
     FOREIGN KEY (SOURCE_TYPE_ID)
@@ -352,6 +422,11 @@ ALTER TABLE SPL_SRCFILE
     FOREIGN KEY (PRODUCT_ID)
     REFERENCES SUBSTANCE (ID);
 
+ALTER TABLE SUBSTANCE_NAME
+    ADD CONSTRAINT SUBSTANCE_NAME_FK_1
+    FOREIGN KEY (PRODUCT_ID)
+    REFERENCES SUBSTANCE (ID);
+
 ALTER TABLE SUBSTANCE_SRLC
     ADD CONSTRAINT SUBSTANCE_SRLC_FK_1
     FOREIGN KEY (PRODUCT_ID)
@@ -447,6 +522,11 @@ ALTER TABLE PRODUCT_AE
     FOREIGN KEY (MEDDRA_ID)
     REFERENCES MEDDRA (ID);
 
+ALTER TABLE MEDDRA_USAGE
+    ADD CONSTRAINT MEDDRA_USAGE_FK_1
+    FOREIGN KEY (MEDDRA_ID)
+    REFERENCES MEDDRA (ID);
+
 ALTER TABLE PRODUCT_AE_SRC
     ADD CONSTRAINT PRODUCT_AE_SRC_FK_1
     FOREIGN KEY (AE_ID)
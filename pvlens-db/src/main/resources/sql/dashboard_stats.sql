@@ -0,0 +1,37 @@
+# -----------------------------------------------------------------------
+# DATA_BUILD and DASHBOARD_STATS: build stamp and Overview statistics of
+# the loaded data.
+#
+# Run after every load (output/sql/build.sh does, last). The pipeline fills
+# in a new stamp per run (DashboardStatsScript); the webapp compares
+# DATA_BUILD.BUILD_ID with DASHBOARD_STATS.DATA_VERSION to tell whether the
+# row describes the data loaded (DashboardStatsCache.VERSION_SQL).
+# -----------------------------------------------------------------------
+DELETE FROM DATA_BUILD;
+
+INSERT INTO DATA_BUILD (ID, BUILD_ID, BUILT_AT) VALUES (1, '${BUILD_ID}', NOW());
+
+DELETE FROM DASHBOARD_STATS;
+
+INSERT INTO DASHBOARD_STATS (ID, DATA_VERSION, BUILT_AT, TOTAL_SUBSTANCES, TOTAL_AES,
+    BLACKBOX_WARNINGS, STANDARD_WARNINGS, EXACT_MATCHES, NLP_MATCHES, TOTAL_INDICATIONS,
+    TOTAL_SRLC, PRESCRIPTION_DRUGS, OTC_DRUGS, DATA_START_DATE, DATA_END_DATE)
+SELECT 1,
+    (SELECT BUILD_ID FROM DATA_BUILD WHERE ID = 1),
+    NOW(),
+    (SELECT COUNT(*) FROM SUBSTANCE),
+    ae.TOTAL_AES, ae.BLACKBOX_WARNINGS, ae.STANDARD_WARNINGS, ae.EXACT_MATCHES, ae.NLP_MATCHES,
+    (SELECT COUNT(*) FROM PRODUCT_IND),
+    (SELECT COUNT(*) FROM SRLC),
+    src.PRESCRIPTION_DRUGS, src.OTC_DRUGS,
+    ae.DATA_START_DATE, ae.DATA_END_DATE
+FROM (SELECT COUNT(*) AS TOTAL_AES,
+        COALESCE(SUM(BLACKBOX = 1), 0) AS BLACKBOX_WARNINGS,
+        COALESCE(SUM(WARNING = 1 AND BLACKBOX = 0), 0) AS STANDARD_WARNINGS,
+        COALESCE(SUM(EXACT_MATCH = 1), 0) AS EXACT_MATCHES,
+        COALESCE(SUM(EXACT_MATCH = 0), 0) AS NLP_MATCHES,
+        MIN(LABEL_DATE) AS DATA_START_DATE, MAX(LABEL_DATE) AS DATA_END_DATE
+      FROM PRODUCT_AE) ae,
+     (SELECT COUNT(DISTINCT CASE WHEN UPPER(st.SOURCE_TYPE) = 'PRESCRIPTION' THEN sf.PRODUCT_ID END) AS PRESCRIPTION_DRUGS,
+        COUNT(DISTINCT CASE WHEN UPPER(st.SOURCE_TYPE) = 'OTC' THEN sf.PRODUCT_ID END) AS OTC_DRUGS
+      FROM SPL_SRCFILE sf JOIN SOURCE_TYPE st ON sf.SOURCE_TYPE_ID = st.ID) src;
@@ -22,16 +22,27 @@ package org.pvlens.spl.om;
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertFalse;
 import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
 import static org.junit.jupiter.api.Assertions.assertTrue;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Calendar;
 import java.util.Date;
 import java.util.GregorianCalendar;
+import java.util.HashMap;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
+import java.util.Set;
 
 import org.junit.jupiter.api.Test;
 import org.pvlens.spl.umls.Atom;
+import org.pvlens.spl.umls.AtomPool;
 
 class OutcomeTest {
 
@@ -161,4 +172,129 @@ class OutcomeTest {
 		assertEquals(1, o.getCodes().size(), "codes set should not duplicate atoms");
 		assertEquals(1, o.getSources(a1.getAui()).size(), "source list should not duplicate AUI");
 	}
+
+	@Test
+	void compact_codes_and_dates_behave_like_hash_collections() {
+		Outcome o = new Outcome();
+		Set<Atom> expectedCodes = new HashSet<>();
+		Map<String, Date> expectedDates = new HashMap<>();
+		for (int i = 0; i < 200; i++) {
+			Atom a = atom("AC" + i, "term " + i);
+			Date d = (i % 7 == 0) ? null : new Date(1_500_000_000_000L + i);
+			o.addCode("G" + (i % 3), a, d);
+			expectedCodes.add(a);
+			if (d != null)
+				expectedDates.put(a.getAui(), d);
+		}
+		// removals through the views leave deleted slots behind; lookups still work
+		o.getCodes().removeIf(a -> a.getAui().endsWith("5"));
+		expectedCodes.removeIf(a -> a.getAui().endsWith("5"));
+		o.retainFirstAddedOfCodes();
+		expectedDates.keySet().removeIf(aui -> aui.endsWith("5"));
+		o.getFirstAdded().put("AC1", null);
+		expectedDates.put("AC1", null);
+
+		assertEquals(expectedCodes, o.getCodes());
+		assertEquals(expectedCodes, new HashSet<>(o.getCodes()));
+		assertEquals(expectedDates, o.getFirstAdded());
+		assertEquals(expectedDates, new HashMap<>(o.getFirstAdded()));
+		assertTrue(o.getFirstAdded().containsKey("AC1"));
+		assertNull(o.getFirstAdded().get("AC1"));
+		assertNull(o.getFirstAdded().get("never-seen"));
+		assertFalse(o.getCodes().contains(atom("AC5", "term 5")));
+	}
+
+	@Test
+	void serialized_outcome_round_trips_and_shares_atoms() throws Exception {
+		Outcome o = new Outcome();
+		Atom a1 = atom("SER1", "Nausea");
+		Atom a2 = atom("SER2", "Rash");
+		o.addCode("GUID-1", a1, new Date(1_600_000_000_000L));
+		o.addCode("GUID-2", a2, null);
+		AtomPool.share(a1);
+
+		ByteArrayOutputStream buf = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(buf)) {
+			out.writeObject(o);
+		}
+		Outcome back;
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(buf.toByteArray()))) {
+			back = (Outcome) in.readObject();
+		}
+
+		assertEquals(o, back);
+		assertEquals(o.getFirstAdded(), back.getFirstAdded());
+		assertEquals(o.getOutcomeSource(), back.getOutcomeSource());
+		assertTrue(back.getCodes().stream().anyMatch(a -> a == a1), "pooled atom is reused on read");
+		assertEquals(List.of("GUID-1"), back.getSources("SER1"));
+	}
+
+	@Test
+	void source_map_edits_keep_reverse_index_in_sync() {
+		Outcome o = new Outcome();
+		o.addCode("G1", atom("RX1", "t1"), null);
+		o.getOutcomeSource().computeIfAbsent("G2", k -> new ArrayList<>()).add("RX1");
+		o.getOutcomeSource().computeIfAbsent("G2", k -> new ArrayList<>()).add("RX1");
+		o.getOutcomeSource().put("G3", List.of("RX2", "RX1"));
+
+		assertEquals(List.of("RX1"), o.getOutcomeSource().get("G2"), "set semantics per source");
+		assertEquals(Set.of("G1", "G2", "G3"), o.sourcesOf("RX1"));
+		assertEquals(Set.of("RX2", "RX1"), o.auisOf("G3"));
+
+		o.getOutcomeSource().get("G3").remove("RX1");
+		o.getOutcomeSource().remove("G2");
+		assertEquals(List.of("G1"), o.getSources("RX1"));
+		assertEquals(List.of("G3"), o.getSources("RX2"));
+
+		o.getOutcomeSource().put("G3", List.of());
+		assertTrue(o.getSources("RX2").isEmpty());
+		assertTrue(o.getOutcomeSource().containsKey("G3"));
+	}
+
+	@Test
+	void mergeFrom_matches_per_code_addCode() {
+		Date early = new GregorianCalendar(2019, Calendar.JANUARY, 1).getTime();
+		Date late = new GregorianCalendar(2021, Calendar.JANUARY, 1).getTime();
+		Outcome other = new Outcome();
+		other.addCode("G1", atom("MF1", "t1"), early);
+		other.addCode("G2", atom("MF1", "t1"), late);
+		other.addCode("G2", atom("MF2", "t2"), null);
+		other.getCodes().add(atom("MF3", "no source"));
+
+		Outcome expected = new Outcome();
+		expected.addCode("G0", atom("MF1", "t1"), late);
+		Outcome merged = new Outcome();
+		merged.addCode("G0", atom("MF1", "t1"), late);
+		for (Atom a : other.getCodes())
+			expected.addCode(other.getSources(a.getAui()), a, other.getFirstAdded().get(a.getAui()));
+		merged.mergeFrom(other);
+
+		assertEquals(expected, merged);
+		assertEquals(expected.getFirstAdded(), merged.getFirstAdded());
+		assertEquals(expected.getOutcomeSource(), merged.getOutcomeSource());
+		assertEquals(early, merged.getFirstAdded().get("MF1"));
+		assertFalse(merged.getCodes().contains(atom("MF3", "no source")));
+	}
+
+	@Test
+	void codes_iterate_in_insertion_order() {
+		Outcome o = new Outcome();
+		List<String> expected = new ArrayList<>();
+		// descending AUIs, so the order cannot come from the symbol ids
+		for (int i = 40; i > 0; i--) {
+			o.getCodes().add(atom("IO" + i, "term " + i));
+			expected.add("IO" + i);
+		}
+		o.getCodes().remove(atom("IO30", "term 30"));
+		expected.remove("IO30");
+		o.getCodes().add(atom("IO30", "term 30"));
+		o.getCodes().add(atom("IO20", "term 20")); // already present, keeps its place
+		expected.add("IO30");
+
+		List<String> auis = new ArrayList<>();
+		for (Atom a : o.getCodes())
+			auis.add(a.getAui());
+		assertEquals(expected, auis);
+		assertEquals(40, o.getCodes().size());
+	}
 }
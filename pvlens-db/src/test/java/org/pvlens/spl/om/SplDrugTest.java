@@ -26,6 +26,10 @@ import static org.junit.jupiter.api.Assertions.assertTrue;
 import static org.mockito.Mockito.mock;
 import static org.mockito.Mockito.when;
 
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
 import java.text.ParseException;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
@@ -40,6 +44,7 @@ import java.util.TimeZone;
 
 import org.junit.jupiter.api.Test;
 import org.pvlens.spl.umls.Atom;
+import org.pvlens.spl.umls.Symbols;
 import org.pvlens.spl.umls.UmlsLoader;
 
 class SplDrugTest {
@@ -651,4 +656,21 @@ class SplDrugTest {
 		// unique CUIs across all outcomes
 		assertEquals(Set.of("C-AE-1", "C-AE-2"), new HashSet<>(cuis));
 	}
+
+	@Test
+	void guid_is_interned_when_set_and_when_read_back() throws Exception {
+		SplDrug d = new SplDrug();
+		d.setGuid(new String("guid-interned-1"));
+		assertSame(Symbols.intern("guid-interned-1"), d.getGuid());
+
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+		try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+			out.writeObject(d);
+		}
+		SplDrug read;
+		try (ObjectInputStream in = new ObjectInputStream(new ByteArrayInputStream(bytes.toByteArray()))) {
+			read = (SplDrug) in.readObject();
+		}
+		assertSame(d.getGuid(), read.getGuid());
+	}
 }
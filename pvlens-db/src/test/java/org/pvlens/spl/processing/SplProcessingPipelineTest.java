@@ -0,0 +1,67 @@
+package org.pvlens.spl.processing;
+
+/*
+ * This file is part of PVLens.
+ *
+ * Copyright (C) 2025 GlaxoSmithKline
+ *
+ * PVLens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PVLens is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PVLens.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.stream.Stream;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+import org.pvlens.spl.conf.ConfigLoader;
+import org.pvlens.spl.processing.extract.LabelScanSpool;
+import org.pvlens.spl.umls.UmlsLoader;
+
+class SplProcessingPipelineTest {
+
+	private static final Path XML = Paths.get("src/test/resources/spl/xml/23e476df-6955-4c5d-92ae-2dc197ce4236.xml");
+
+	@Test
+	void label_scan_spool_is_deleted_when_extraction_fails(@TempDir Path root) throws Exception {
+		ConfigLoader cfg = Mockito.mock(ConfigLoader.class);
+		Mockito.when(cfg.getSplScanSpoolDir()).thenReturn(root.toString());
+		LabelScanSpool spool = LabelScanSpool.fromConfig(cfg);
+		spool.scan(XML.toString());
+		spool.seal();
+		try (Stream<Path> files = Files.list(root)) {
+			assertEquals(1, files.count(), "spool directory with its segment");
+		}
+
+		UmlsLoader umls = UmlsLoader.newTestInstance();
+		umls._testSetLabelScans(spool);
+		IllegalStateException e = assertThrows(IllegalStateException.class,
+				() -> SplProcessingPipeline.releasingLabelScans(umls, () -> {
+					throw new IllegalStateException("extraction failed");
+				}));
+
+		assertEquals("extraction failed", e.getMessage());
+		assertNull(umls.getLabelScans());
+		try (Stream<Path> files = Files.list(root)) {
+			assertFalse(files.findAny().isPresent(), "spool directory removed");
+		}
+	}
+}
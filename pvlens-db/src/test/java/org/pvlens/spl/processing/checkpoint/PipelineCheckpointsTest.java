@@ -0,0 +1,117 @@
+package org.pvlens.spl.processing.checkpoint;
+
+/*
+ * This file is part of PVLens.
+ *
+ * Copyright (C) 2025 GlaxoSmithKline
+ *
+ * PVLens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PVLens is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PVLens.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.pvlens.spl.om.SplDrug;
+import org.pvlens.spl.processing.checkpoint.PipelineCheckpoints.Resumed;
+import org.pvlens.spl.processing.checkpoint.PipelineCheckpoints.Stage;
+import org.pvlens.spl.umls.Atom;
+
+class PipelineCheckpointsTest {
+
+	private static final String KEY = "UMLS_VERSION=2025AA;SPL_PATH=spl/;SPL_XML_PARSER=STAX;SPL_XML_SOURCE=FILES";
+
+	private static List<SplDrug> products(int n) {
+		List<SplDrug> out = new ArrayList<>(n);
+		for (int i = 0; i < n; i++) {
+			SplDrug d = new SplDrug();
+			d.setGuid("guid-" + i);
+			d.setSave(true);
+			d.addXmlFile("prescription/guid-" + i + ".xml", true);
+			d.getExactMatchWarnings().addCode(d.getGuid(),
+					new Atom("A" + i, "C" + i, "1000" + i, "1000" + i, "term " + i, "PT"), new Date(1_600_000_000_000L + i));
+			out.add(d);
+		}
+		return out;
+	}
+
+	@Test
+	void checkpoint_round_trips_in_order(@TempDir Path dir) {
+		List<SplDrug> products = products(3500);
+		PipelineCheckpoints cp = new PipelineCheckpoints(dir, KEY, 3);
+		cp.save(Stage.SRLC, products);
+
+		assertTrue(Files.isRegularFile(dir.resolve("srlc/part-002.bin")), "one part per writer");
+		assertFalse(Files.exists(dir.resolve("srlc.tmp")));
+
+		Resumed r = new PipelineCheckpoints(dir, KEY, 2).load(Stage.SRLC);
+		assertNotNull(r);
+		assertEquals(Stage.SRLC, r.stage());
+		assertEquals(products, new ArrayList<>(r.products()));
+
+		cp.clear();
+		assertNull(cp.load(Stage.PERSIST));
+	}
+
+	@Test
+	void corrupt_checkpoint_falls_back_to_the_previous_stage(@TempDir Path dir) throws Exception {
+		List<SplDrug> extracted = products(1200);
+		List<SplDrug> merged = products(2400);
+		PipelineCheckpoints cp = new PipelineCheckpoints(dir, KEY, 2);
+		cp.save(Stage.MERGE, extracted);
+		cp.save(Stage.PERSIST, merged);
+
+		// Same size, different bytes: caught by the inflater or the CRC
+		Path part = dir.resolve("persist/part-001.bin");
+		byte[] bytes = Files.readAllBytes(part);
+		bytes[bytes.length / 2] ^= 0x5A;
+		Files.write(part, bytes);
+
+		Resumed r = cp.load(Stage.PERSIST);
+		assertNotNull(r);
+		assertEquals(Stage.MERGE, r.stage(), "srlc has no checkpoint, persist is corrupt");
+		assertEquals(extracted, new ArrayList<>(r.products()));
+
+		// A missing part invalidates the checkpoint too
+		Files.delete(dir.resolve("merge/part-000.bin"));
+		assertNull(cp.load(Stage.PERSIST));
+	}
+
+	@Test
+	void checkpoint_from_another_configuration_is_ignored(@TempDir Path dir) {
+		new PipelineCheckpoints(dir, KEY, 2).save(Stage.MERGE, products(10));
+		assertNull(new PipelineCheckpoints(dir, KEY.replace("2025AA", "2025AB"), 2).load(Stage.MERGE));
+		assertNotNull(new PipelineCheckpoints(dir, KEY, 2).load(Stage.MERGE));
+	}
+
+	@Test
+	void stage_names() {
+		assertEquals(Stage.MERGE, Stage.parse("merge"));
+		assertEquals(Stage.SRLC, Stage.parse(" SRLC "));
+		assertEquals(Stage.PERSIST, Stage.parse("latest"));
+		assertEquals("persist", Stage.PERSIST.id());
+		assertThrows(IllegalArgumentException.class, () -> Stage.parse("extract"));
+	}
+}
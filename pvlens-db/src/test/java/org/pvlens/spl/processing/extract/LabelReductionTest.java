@@ -0,0 +1,108 @@
+package org.pvlens.spl.processing.extract;
+
+/*
+ * This file is part of PVLens.
+ *
+ * Copyright (C) 2025 GlaxoSmithKline
+ *
+ * PVLens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PVLens is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PVLens.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Date;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.jupiter.api.Test;
+import org.pvlens.spl.conf.ConfigLoader;
+import org.pvlens.spl.om.Outcome;
+import org.pvlens.spl.om.SplDrug;
+import org.pvlens.spl.processing.extract.SplXmlLabelExtractor.LabelResult;
+import org.pvlens.spl.umls.Atom;
+
+class LabelReductionTest {
+
+	private static final String GUID = "guid-1";
+	private static final Date D2019 = new Date(1_546_300_800_000L);
+	private static final Date D2021 = new Date(1_609_459_200_000L);
+	private static final Date D2023 = new Date(1_672_531_200_000L);
+
+	private final SplXmlLabelExtractor extractor = new SplXmlLabelExtractor(null, new ConfigLoader());
+
+	private static SplDrug product() {
+		SplDrug spl = new SplDrug();
+		spl.setGuid(GUID);
+		spl.getDrugProduct().put("A0", new Atom("A0", "C0", "", "", "drug", "SCD"));
+		spl.getDrugProductCuis().add("C0");
+		for (String rel : List.of("v1.xml", "v2.xml", "v3.xml", "v4.xml"))
+			spl.getXmlFiles().put(rel, false);
+		return spl;
+	}
+
+	private static LabelResult version(String rel, Date labelDate, Date approval, int nda, String aeAui) {
+		SplDrug resolved = new SplDrug();
+		Outcome ae = new Outcome();
+		ae.addCode(GUID, new Atom(aeAui, "C" + aeAui, "", "", "term " + aeAui, "PT"), labelDate);
+		resolved.setExactMatchWarnings(ae);
+		return new LabelResult(rel, labelDate, approval, nda, resolved, List.of());
+	}
+
+	@Test
+	void reduction_does_not_depend_on_completion_order() {
+		List<LabelResult> versions = List.of(
+				version("v3.xml", D2023, D2023, 300, "A3"),
+				version("v1.xml", D2019, D2019, 100, "A1"),
+				version("v4.xml", null, D2021, 400, "A4"),
+				version("v2.xml", D2021, null, 0, "A2"));
+
+		SplDrug expected = product();
+		extractor.mergeAll(expected, versions);
+
+		for (int seed = 0; seed < 10; seed++) {
+			List<LabelResult> shuffled = new ArrayList<>(versions);
+			Collections.shuffle(shuffled, new Random(seed));
+			SplDrug actual = product();
+			extractor.mergeAll(actual, shuffled);
+
+			assertEquals(expected.getGuidApprovalDate(), actual.getGuidApprovalDate());
+			assertEquals(expected.getGuidNda(), actual.getGuidNda());
+			assertEquals(expected.getExactMatchWarnings().getCodes(), actual.getExactMatchWarnings().getCodes());
+			assertEquals(expected.getExactMatchWarnings().getFirstAdded(), actual.getExactMatchWarnings().getFirstAdded());
+		}
+
+		// Oldest label is folded in first; every version is marked processed
+		assertEquals(D2019, expected.getGuidApprovalDate().get(GUID));
+		assertEquals(100, expected.getGuidNda().get(GUID));
+		assertEquals(4, expected.getExactMatchWarnings().getCodes().size());
+		assertTrue(expected.getXmlFiles().values().stream().allMatch(Boolean.TRUE::equals));
+	}
+
+	@Test
+	void label_order_is_date_then_reference_with_undated_last() {
+		List<LabelResult> versions = new ArrayList<>(List.of(
+				version("b.xml", null, null, 0, "A1"),
+				version("c.xml", D2021, null, 0, "A2"),
+				version("a.xml", null, null, 0, "A3"),
+				version("d.xml", D2019, null, 0, "A4"),
+				version("a2.xml", D2021, null, 0, "A5")));
+		versions.sort(SplXmlLabelExtractor.LABEL_ORDER);
+
+		assertEquals(List.of("d.xml", "a2.xml", "c.xml", "a.xml", "b.xml"),
+				versions.stream().map(LabelResult::rel).toList());
+	}
+}
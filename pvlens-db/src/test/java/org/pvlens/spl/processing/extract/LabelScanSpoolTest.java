@@ -0,0 +1,101 @@
+package org.pvlens.spl.processing.extract;
+
+/*
+ * This file is part of PVLens.
+ *
+ * Copyright (C) 2025 GlaxoSmithKline
+ *
+ * PVLens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PVLens is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PVLens.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.pvlens.spl.processing.support.NdcExtractor;
+
+class LabelScanSpoolTest {
+
+	private static List<Path> samples() throws Exception {
+		try (var files = Files.list(Paths.get("src/test/resources/spl/xml"))) {
+			return files.filter(p -> p.toString().endsWith(".xml")).sorted().collect(Collectors.toList());
+		}
+	}
+
+	@Test
+	void scan_finds_the_same_ndc_codes_as_the_extractor(@TempDir Path dir) throws Exception {
+		NdcExtractor reference = new NdcExtractor();
+		int codes = 0;
+		try (LabelScanSpool spool = new LabelScanSpool(dir.resolve("spool"), true)) {
+			for (Path xml : samples()) {
+				List<String> expected = reference.getNdcCodes(xml.toString());
+				assertEquals(expected, spool.scan(xml.toString()), xml.getFileName().toString());
+				codes += expected.size();
+			}
+			assertEquals(samples().size(), spool.spooled());
+		}
+		assertTrue(codes > 0, "sample labels carry NDC codes");
+		assertFalse(Files.exists(dir.resolve("spool")), "close deletes the spool");
+	}
+
+	@Test
+	void spooled_scan_reads_back_like_a_fresh_parse(@TempDir Path dir) throws Exception {
+		List<Path> samples = samples();
+		try (LabelScanSpool spool = new LabelScanSpool(dir, false)) {
+			// several writer threads -> several segments
+			samples.parallelStream().forEach(xml -> spool.scan(xml.toString()));
+			assertNull(spool.take(samples.get(0).toString()), "nothing is served before seal()");
+			spool.seal();
+
+			for (Path xml : samples) {
+				StreamingSplLabelSource fresh;
+				try (InputStream in = Files.newInputStream(xml)) {
+					fresh = StreamingSplLabelSource.scan(in, SplXmlLabelExtractor.SECTION_IDS);
+				}
+				SplLabelSource spooled = spool.take(xml.toString());
+				assertNotNull(spooled, xml.getFileName().toString());
+				assertSameLabel(fresh, spooled);
+				assertNull(spool.take(xml.toString()), "each scan is handed out once");
+			}
+			assertEquals(samples.size(), spool.taken());
+			assertNull(spool.take("missing.xml"));
+		}
+	}
+
+	private static void assertSameLabel(SplLabelSource a, SplLabelSource b) throws Exception {
+		assertEquals(a.documentLoincCode(), b.documentLoincCode());
+		assertEquals(a.approvalYear(), b.approvalYear());
+		assertEquals(a.earliestEffectiveDate(), b.earliestEffectiveDate());
+		assertEquals(a.nda(), b.nda());
+		assertEquals(a.labelDate(), b.labelDate());
+		for (Map.Entry<String, String> section : SplXmlLabelExtractor.SECTION_IDS.entrySet()) {
+			assertEquals(a.sectionEffectiveDate(section.getKey()), b.sectionEffectiveDate(section.getKey()));
+			assertEquals(a.sectionText(section.getKey(), section.getValue(), new ConcurrentHashMap<>()),
+					b.sectionText(section.getKey(), section.getValue(), new ConcurrentHashMap<>()));
+		}
+	}
+}
@@ -0,0 +1,197 @@
+package org.pvlens.spl.processing.extract;
+
+/*
+ * This file is part of PVLens.
+ *
+ * Copyright (C) 2025 GlaxoSmithKline
+ *
+ * PVLens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PVLens is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PVLens.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Date;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.stream.Collectors;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.pvlens.spl.conf.ConfigLoader;
+import org.pvlens.spl.om.Outcome;
+import org.pvlens.spl.om.SplDrug;
+import org.pvlens.spl.processing.extract.SplXmlLabelExtractor.LabelResult;
+import org.pvlens.spl.processing.extract.SplXmlLabelExtractor.ParsedLabel;
+import org.pvlens.spl.umls.Atom;
+import org.pvlens.spl.umls.UmlsLoader;
+import org.w3c.dom.Document;
+
+import opennlp.tools.tokenize.TokenizerME;
+import opennlp.tools.tokenize.TokenizerModel;
+
+class SectionMatchCacheTest {
+
+	private static final SectionMatchCache.Matches M1 = new SectionMatchCache.Matches(List.of("A1", "A2"), List.of("A3"));
+	private static final SectionMatchCache.Matches M2 = new SectionMatchCache.Matches(List.of(), List.of("A4"));
+
+	@Test
+	void lru_bound_and_counters() {
+		SectionMatchCache c = new SectionMatchCache(2, "v1", null);
+		String k1 = SectionMatchCache.key("AE", "nausea and headache");
+		String k2 = SectionMatchCache.key("IND", "nausea and headache");
+		String k3 = SectionMatchCache.key("AE", "rash");
+		assertNotEquals(k1, k2, "section type is part of the key");
+
+		c.put(k1, M1);
+		c.put(k2, M2);
+		assertEquals(M1, c.get(k1)); // k1 most recently used
+		c.put(k3, M2);                // evicts k2
+
+		assertNull(c.get(k2));
+		assertEquals(M1, c.get(k1));
+		assertEquals(2, c.size());
+		assertEquals(2, c.hits());
+		assertEquals(1, c.misses());
+		assertTrue(c.summary().contains("hits=2, misses=1"));
+	}
+
+	@Test
+	void saved_cache_is_reloaded_only_for_the_same_version(@TempDir Path dir) {
+		Path file = dir.resolve("nlp/nlp-sections.bin");
+		SectionMatchCache c = new SectionMatchCache(10, "v1", file);
+		c.put("k1", M1);
+		c.put("k2", M2);
+		c.save();
+		assertTrue(Files.isRegularFile(file));
+
+		SectionMatchCache same = new SectionMatchCache(10, "v1", file);
+		assertEquals(M1, same.get("k1"));
+		assertEquals(M2, same.get("k2"));
+
+		SectionMatchCache other = new SectionMatchCache(10, "v2", file);
+		assertEquals(0, other.size());
+
+		SectionMatchCache off = SectionMatchCache.disabled();
+		off.put("k1", M1);
+		assertFalse(off.isEnabled());
+		assertEquals(0, off.size());
+	}
+
+	@Test
+	void cached_sections_give_the_same_outcomes_as_matching() throws Exception {
+		UmlsLoader umls = seededUmls();
+		ConfigLoader cfg = new ConfigLoader();
+		SplXmlLabelExtractor plain = new SplXmlLabelExtractor(umls, cfg);
+		SectionMatchCache cache = new SectionMatchCache(100, "test", null);
+		SplXmlLabelExtractor cached = new SplXmlLabelExtractor(umls, cfg, cache);
+
+		List<Path> samples;
+		try (var files = Files.list(Paths.get("src/test/resources/spl/xml"))) {
+			samples = files.filter(p -> p.toString().endsWith(".xml")).sorted().collect(Collectors.toList());
+		}
+		int codes = 0;
+		for (Path xml : samples) {
+			LabelResult expected = analyze(plain, xml);
+			analyze(cached, xml); // fills the cache
+			long hits = cache.hits();
+			LabelResult replayed = analyze(cached, xml);
+			assertTrue(cache.hits() > hits, "second pass over " + xml.getFileName() + " should hit");
+
+			assertSame(expected.exactInd, replayed.exactInd);
+			assertSame(expected.nlpInd, replayed.nlpInd);
+			assertSame(expected.exactAe, replayed.exactAe);
+			assertSame(expected.nlpAe, replayed.nlpAe);
+			assertSame(expected.exactBox, replayed.exactBox);
+			assertSame(expected.nlpBox, replayed.nlpBox);
+			assertEquals(expected.rows.size(), replayed.rows.size());
+			codes += expected.exactAe.getCodes().size() + expected.nlpAe.getCodes().size();
+		}
+		assertTrue(codes > 0, "sample labels should match some seeded terms");
+	}
+
+	@Test
+	void sections_whose_nlp_pass_failed_are_not_cached() throws Exception {
+		SectionMatchCache cache = new SectionMatchCache(100, "test", null);
+		SplXmlLabelExtractor failing = new SplXmlLabelExtractor(seededUmls(), new ConfigLoader(), cache) {
+			@Override
+			void nlpOnText(String guid, String cleanedText, String aeType, Date labelDate,
+					boolean exactMatch, Outcome outcome) {
+				throw new IllegalStateException("matcher failed");
+			}
+		};
+		Path xml;
+		try (var files = Files.list(Paths.get("src/test/resources/spl/xml"))) {
+			xml = files.filter(p -> p.toString().endsWith(".xml")).sorted().findFirst().orElseThrow();
+		}
+		analyze(failing, xml);
+		assertTrue(cache.misses() > 0, "sections were looked up");
+		assertEquals(0, cache.size());
+	}
+
+	private static void assertSame(Outcome a, Outcome b) {
+		assertEquals(a.getCodes(), b.getCodes());
+		assertEquals(a.getFirstAdded(), b.getFirstAdded());
+		assertEquals(a.getOutcomeSource(), b.getOutcomeSource());
+		assertEquals(a.isWarning(), b.isWarning());
+		assertEquals(a.isIndication(), b.isIndication());
+		assertEquals(a.isBlackbox(), b.isBlackbox());
+	}
+
+	private static LabelResult analyze(SplXmlLabelExtractor extractor, Path xml) throws Exception {
+		DocumentBuilderFactory f = DocumentBuilderFactory.newInstance();
+		f.setNamespaceAware(true);
+		Document dom;
+		try (InputStream in = Files.newInputStream(xml)) {
+			dom = f.newDocumentBuilder().parse(in);
+		}
+		dom.getDocumentElement().normalize();
+		SplDrug spl = new SplDrug();
+		spl.setGuid(xml.getFileName().toString());
+		LabelResult r = extractor.analyze(spl, new ParsedLabel(xml.toString(), new SplXmlLabelExtractor.DomLabelSource(dom)),
+				new ConcurrentHashMap<>(), new ConcurrentHashMap<>(), new ConcurrentHashMap<>());
+		assertNotNull(r);
+		return r;
+	}
+
+	private static UmlsLoader seededUmls() throws Exception {
+		UmlsLoader umls = UmlsLoader.newTestInstance();
+		TokenizerModel model;
+		try (InputStream in = SectionMatchCacheTest.class.getClassLoader().getResourceAsStream("models/en-token.bin")) {
+			model = new TokenizerModel(in);
+		}
+		ThreadLocal<TokenizerME> tokenizer = ThreadLocal.withInitial(() -> new TokenizerME(model));
+		umls._testSetTokenizer(s -> tokenizer.get().tokenize(s));
+		String[] terms = { "headache", "nausea", "vomiting", "diarrhea", "dizziness", "rash", "fatigue", "insomnia",
+				"hypertension", "hypotension", "pain", "infection", "death", "cough", "pruritus", "anemia" };
+		for (int i = 0; i < terms.length; i++) {
+			String aui = "A" + (900000 + i);
+			String code = String.valueOf(10900000 + i);
+			umls._testPutMeddraTerm("PT", terms[i], aui);
+			umls.getMedDRA().put(aui, new Atom(aui, "C" + (900000 + i), code, code, terms[i], "PT"));
+		}
+		umls._testRebuildTransformedMaps();
+		return umls;
+	}
+}
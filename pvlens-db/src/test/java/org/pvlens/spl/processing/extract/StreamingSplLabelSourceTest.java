@@ -0,0 +1,95 @@
+package org.pvlens.spl.processing.extract;
+
+/*
+ * This file is part of PVLens.
+ *
+ * Copyright (C) 2025 GlaxoSmithKline
+ *
+ * PVLens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PVLens is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PVLens.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Stream;
+
+import javax.xml.parsers.DocumentBuilderFactory;
+
+import org.junit.jupiter.params.ParameterizedTest;
+import org.junit.jupiter.params.provider.MethodSource;
+import org.w3c.dom.Document;
+
+/**
+ * The streaming source must agree with the DOM reference path on the sample SPLs.
+ */
+class StreamingSplLabelSourceTest {
+
+	private static final Map<String, String> SECTIONS = Map.of(
+			"34067-9", "Indications",
+			"34084-4", "Adverse_Reactions",
+			"34066-1", "Box");
+
+	static Stream<Path> samples() throws Exception {
+		return Files.list(Paths.get("src/test/resources/spl/xml")).filter(p -> p.toString().endsWith(".xml")).sorted();
+	}
+
+	@ParameterizedTest
+	@MethodSource("samples")
+	void streaming_matches_dom(Path xml) throws Exception {
+		DocumentBuilderFactory f = DocumentBuilderFactory.newInstance();
+		f.setNamespaceAware(true);
+		Document dom;
+		try (InputStream in = Files.newInputStream(xml)) {
+			dom = f.newDocumentBuilder().parse(in);
+		}
+		dom.getDocumentElement().normalize();
+		SplLabelSource ref = new SplXmlLabelExtractor.DomLabelSource(dom);
+
+		SplLabelSource stax;
+		try (InputStream in = Files.newInputStream(xml)) {
+			stax = StreamingSplLabelSource.scan(in, SECTIONS);
+		}
+
+		assertEquals(ref.documentLoincCode(), stax.documentLoincCode());
+		assertEquals(ref.approvalYear(), stax.approvalYear());
+		assertEquals(ref.earliestEffectiveDate(), stax.earliestEffectiveDate());
+		assertEquals(ref.nda(), stax.nda());
+		assertEquals(ref.labelDate(), stax.labelDate());
+
+		ConcurrentMap<String, Integer> refPass = new ConcurrentHashMap<>();
+		ConcurrentMap<String, Integer> staxPass = new ConcurrentHashMap<>();
+		boolean anyText = false;
+		for (Map.Entry<String, String> e : SECTIONS.entrySet()) {
+			String code = e.getKey();
+			assertEquals(ref.sectionEffectiveDate(code), stax.sectionEffectiveDate(code), code);
+
+			String a = ref.sectionText(code, e.getValue(), refPass);
+			String b = stax.sectionText(code, e.getValue(), staxPass);
+			assertEquals(a, b, code);
+			anyText |= !a.isEmpty();
+
+			// cached: second lookup does not bump the tracker
+			stax.sectionText(code, e.getValue(), staxPass);
+		}
+		assertEquals(refPass, staxPass);
+		assertTrue(anyText, "expected at least one section in " + xml);
+	}
+}
@@ -0,0 +1,119 @@
+package org.pvlens.spl.processing.incremental;
+
+/*
+ * This file is part of PVLens.
+ *
+ * Copyright (C) 2025 GlaxoSmithKline
+ *
+ * PVLens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PVLens is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PVLens.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.pvlens.spl.conf.ConfigLoader;
+import org.pvlens.spl.om.SplDrug;
+import org.pvlens.spl.processing.persist.IdAllocators;
+import org.pvlens.spl.processing.persist.ProductDelta;
+import org.pvlens.spl.umls.UmlsLoader;
+import org.pvlens.spl.util.UmlsTerms;
+
+class IncrementalRunTest {
+
+	private static final String KEY = "UMLS_VERSION=2024AB;SPL_XML_PARSER=STAX";
+
+	private static Map<String, List<String>> layout(Path spl) throws Exception {
+		Map<String, List<String>> guidToXml = new TreeMap<>();
+		for (String guid : List.of("guid-a", "guid-b")) {
+			Path xml = spl.resolve(guid + ".xml");
+			if (!Files.exists(xml))
+				Files.writeString(xml, "<document id=\"" + guid + "\"/>", StandardCharsets.UTF_8);
+			guidToXml.put(guid, List.of(xml.toString()));
+		}
+		return guidToXml;
+	}
+
+	private static SplDrug extracted(String guid, List<String> refs) {
+		SplDrug d = new SplDrug();
+		d.setGuid(guid);
+		d.setSave(true);
+		refs.forEach(r -> d.addXmlFile(r, true));
+		return d;
+	}
+
+	private static void fullRun(Path state, Map<String, List<String>> guidToXml) {
+		IncrementalRun run = new IncrementalRun(state, KEY, false);
+		assertFalse(run.isDelta());
+		Map<String, List<String>> todo = run.plan(guidToXml);
+		assertEquals(guidToXml, todo);
+
+		List<SplDrug> products = new ArrayList<>();
+		todo.forEach((guid, refs) -> products.add(extracted(guid, refs)));
+		run.captureExtracted(products);
+		UmlsTerms terms = new UmlsTerms(new ConfigLoader(), UmlsLoader.newTestInstance(), 100);
+		run.save(products, IdAllocators.getInstance(), new ProductDelta(Map.of(), Set.of(), null), terms);
+	}
+
+	@Test
+	void only_changed_guids_are_extracted_again(@TempDir Path tmp) throws Exception {
+		Path spl = Files.createDirectories(tmp.resolve("spl"));
+		Path state = tmp.resolve("state");
+		Map<String, List<String>> guidToXml = layout(spl);
+		fullRun(state, guidToXml);
+
+		// Nothing changed: everything is restored from the state
+		IncrementalRun same = new IncrementalRun(state, KEY, true);
+		assertTrue(same.isDelta());
+		assertTrue(same.plan(guidToXml).isEmpty());
+		assertEquals(2, same.restoredProducts().size());
+
+		// New content for guid-b (size changes, so the stamp shortcut cannot hide it)
+		Files.writeString(spl.resolve("guid-b.xml"), "<document id=\"guid-b\" version=\"2\"/>",
+				StandardCharsets.UTF_8);
+		IncrementalRun next = new IncrementalRun(state, KEY, true);
+		assertEquals(Set.of("guid-b"), next.plan(guidToXml).keySet());
+		assertEquals(1, next.restoredProducts().size());
+		assertEquals("guid-a", next.restoredProducts().get(0).getGuid());
+	}
+
+	@Test
+	void state_from_other_settings_forces_full_run(@TempDir Path tmp) throws Exception {
+		Path spl = Files.createDirectories(tmp.resolve("spl"));
+		Path state = tmp.resolve("state");
+		Map<String, List<String>> guidToXml = layout(spl);
+		fullRun(state, guidToXml);
+
+		IncrementalRun other = new IncrementalRun(state, "UMLS_VERSION=2025AA;SPL_XML_PARSER=STAX", true);
+		assertFalse(other.isDelta());
+		assertEquals(guidToXml.keySet(), other.plan(guidToXml).keySet());
+		assertTrue(other.priorGuidMap().isEmpty());
+	}
+
+	@Test
+	void content_hash_marks_missing_inputs(@TempDir Path tmp) {
+		assertEquals("missing", IncrementalRun.contentHash(tmp.resolve("nope.xml").toString()));
+	}
+}
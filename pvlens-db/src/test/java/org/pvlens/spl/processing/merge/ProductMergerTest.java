@@ -0,0 +1,129 @@
+package org.pvlens.spl.processing.merge;
+
+/*
+ * This file is part of PVLens.
+ *
+ * Copyright (C) 2025 GlaxoSmithKline
+ *
+ * PVLens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PVLens is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PVLens.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeSet;
+import java.util.function.BiPredicate;
+
+import org.junit.jupiter.api.Test;
+import org.pvlens.spl.om.SplDrug;
+import org.pvlens.spl.umls.Atom;
+
+class ProductMergerTest {
+
+	/**
+	 * Products with no DP CUIs and no SNOMED ingredients, so mergeProductGroup
+	 * accepts every pair and the pass predicate alone decides.
+	 */
+	private static List<SplDrug> population(long seed, int n) {
+		Random rnd = new Random(seed);
+		List<SplDrug> out = new ArrayList<>();
+		for (int i = 0; i < n; i++) {
+			SplDrug d = new SplDrug();
+			String guid = "guid-" + i;
+			d.setGuid(guid);
+			d.setSave(true);
+			d.addXmlFile("prescription/" + guid + ".xml", true);
+			if (rnd.nextInt(3) > 0)
+				d.getGuidNda().put(guid, 1 + rnd.nextInt(12));
+			for (int k = rnd.nextInt(3); k > 0; k--)
+				d.addSnomedParent("P" + rnd.nextInt(8));
+			for (int k = rnd.nextInt(3); k > 0; k--) {
+				String aui = "IN" + rnd.nextInt(5);
+				d.addRxNormPt(new Atom(aui, "C" + aui, null, aui, "ingredient " + aui, "IN"));
+			}
+			if (rnd.nextBoolean())
+				d.addRxNormPt(new Atom("SCD" + i, "CSCD" + i, null, "SCD" + i, "clinical drug " + i, "SCD"));
+			out.add(d);
+		}
+		return out;
+	}
+
+	/** The all-pairs pass the index-based one replaces. */
+	private static int nestedLoop(List<SplDrug> products, BiPredicate<SplDrug, SplDrug> match) {
+		int merged = 0;
+		for (SplDrug prd1 : products) {
+			if (prd1.getGuid() == null || prd1.getGuid().isBlank() || !prd1.isSave())
+				continue;
+			for (SplDrug prd2 : products) {
+				if (prd1 != prd2 && prd2.isSave() && !prd1.getGuid().contentEquals(prd2.getGuid())
+						&& match.test(prd1, prd2) && prd1.mergeProductGroup(prd2)) {
+					prd2.setSave(false);
+					merged++;
+				}
+			}
+		}
+		return merged;
+	}
+
+	private static List<String> outcome(List<SplDrug> products) {
+		List<String> out = new ArrayList<>();
+		for (SplDrug p : products)
+			if (p.isSave())
+				out.add(p.getGuid() + "=" + new TreeSet<>(p.getMergedGuidXmlPairs().keySet())
+						+ new TreeSet<>(p.getSnomedParentAuis()));
+		return out;
+	}
+
+	@Test
+	void indexed_passes_match_the_nested_loops() {
+		BiPredicate<SplDrug, SplDrug> sameNda = (a, b) -> a.getPrimaryNda() != -1
+				&& a.getPrimaryNda() == b.getPrimaryNda();
+		for (long seed = 1; seed <= 20; seed++) {
+			List<SplDrug> expected = population(seed, 150);
+			List<SplDrug> actual = population(seed, 150);
+
+			assertEquals(nestedLoop(expected, sameNda),
+					ProductMerger.mergeOnSharedKey(actual, ProductMerger::ndaKeys, sameNda));
+			assertEquals(nestedLoop(expected, SplDrug::hasSnomedParents),
+					ProductMerger.mergeOnSharedKey(actual, SplDrug::getSnomedParentAuis, SplDrug::hasSnomedParents));
+			assertEquals(nestedLoop(expected, SplDrug::hasExactRxNormIngredients),
+					ProductMerger.mergeOnSharedKey(actual, ProductMerger::ingredientKeys,
+							SplDrug::hasExactRxNormIngredients));
+			assertEquals(outcome(expected), outcome(actual), "seed " + seed);
+		}
+	}
+
+	@Test
+	void products_merge_into_the_one_covering_their_parents() {
+		List<SplDrug> products = population(0, 0);
+		for (String[] spec : new String[][] { { "a", "P1" }, { "b", "P1", "P2" }, { "c", "P2" } }) {
+			SplDrug d = new SplDrug();
+			d.setGuid(spec[0]);
+			d.setSave(true);
+			d.addXmlFile("prescription/" + spec[0] + ".xml", true);
+			for (int i = 1; i < spec.length; i++)
+				d.addSnomedParent(spec[i]);
+			products.add(d);
+		}
+		// a and c are each covered by b, but not by one another; b comes later yet absorbs both
+		assertEquals(2, ProductMerger.mergeOnSharedKey(products, SplDrug::getSnomedParentAuis,
+				SplDrug::hasSnomedParents));
+		assertTrue(products.get(1).isSave());
+		assertEquals(new TreeSet<>(List.of("a", "c")),
+				new TreeSet<>(products.get(1).getMergedGuidXmlPairs().keySet()));
+	}
+}
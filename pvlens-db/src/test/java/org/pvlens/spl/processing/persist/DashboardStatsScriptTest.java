@@ -0,0 +1,77 @@
+package org.pvlens.spl.processing.persist;
+
+/*
+ * This file is part of PVLens.
+ *
+ * Copyright (C) 2025 GlaxoSmithKline
+ *
+ * PVLens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PVLens is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PVLens.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.Statement;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+
+/**
+ * dashboard_stats.sql as the pipeline writes it: each run stamps DATA_BUILD
+ * and DASHBOARD_STATS with a new build id, even when the data keeps its IDs.
+ */
+class DashboardStatsScriptTest {
+
+	private static final String URL = "jdbc:h2:mem:pvlensstats;MODE=MySQL;DB_CLOSE_DELAY=-1";
+
+	@Test
+	void every_run_stamps_the_statistics_with_its_build_id() throws Exception {
+		try (Connection check = DriverManager.getConnection(URL); Statement st = check.createStatement()) {
+			JdbcSchemaLoadTest.createSchema(st);
+			st.execute("SET FOREIGN_KEY_CHECKS = 0");
+			st.execute("INSERT INTO SUBSTANCE (ID) VALUES (7)");
+			st.execute("INSERT INTO PRODUCT_AE (ID, PRODUCT_ID, MEDDRA_ID, LABEL_DATE, WARNING, BLACKBOX, EXACT_MATCH)"
+					+ " VALUES (70, 7, 100, '2024-01-02', 1, 1, 1)");
+
+			String first = DashboardStatsScript.newBuildId();
+			String second = DashboardStatsScript.newBuildId();
+			assertNotEquals(first, second);
+
+			DashboardStatsScript.load(DashboardStatsScript.render(first), new JdbcSqlSink(DriverManager.getConnection(URL), 10));
+			assertEquals(List.of("1|" + first), JdbcSchemaLoadTest.rows(st, "SELECT ID, BUILD_ID FROM DATA_BUILD"));
+			assertEquals(List.of(first + "|1|1|1"), JdbcSchemaLoadTest.rows(st,
+					"SELECT DATA_VERSION, TOTAL_SUBSTANCES, TOTAL_AES, BLACKBOX_WARNINGS FROM DASHBOARD_STATS"));
+
+			// same rows and IDs (a rebuild that only changed flags would look like this to MAX(ID))
+			st.execute("UPDATE PRODUCT_AE SET BLACKBOX = 0 WHERE ID = 70");
+			DashboardStatsScript.load(DashboardStatsScript.render(second), new JdbcSqlSink(DriverManager.getConnection(URL), 10));
+			assertEquals(List.of(second + "|1|0|1"), JdbcSchemaLoadTest.rows(st,
+					"SELECT DATA_VERSION, TOTAL_AES, BLACKBOX_WARNINGS, STANDARD_WARNINGS FROM DASHBOARD_STATS"));
+
+			st.execute("DROP ALL OBJECTS");
+		}
+	}
+
+	@Test
+	void rendered_script_has_no_placeholder_left() throws Exception {
+		String script = DashboardStatsScript.render("20250101-000000-abc");
+		assertFalse(script.contains(DashboardStatsScript.BUILD_ID));
+		assertEquals(4, DashboardStatsScript.statements(script).size());
+		assertThrows(IllegalArgumentException.class, () -> DashboardStatsScript.render("x'; DROP TABLE SUBSTANCE"));
+	}
+}
@@ -0,0 +1,148 @@
+package org.pvlens.spl.processing.persist;
+
+/*
+ * This file is part of PVLens.
+ *
+ * Copyright (C) 2025 GlaxoSmithKline
+ *
+ * PVLens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PVLens is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PVLens.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.mockito.Mockito;
+import org.pvlens.spl.conf.ConfigLoader;
+import org.pvlens.spl.umls.Atom;
+import org.pvlens.spl.umls.UmlsLoader;
+import org.pvlens.spl.util.UmlsTerms;
+
+/**
+ * SQL_SINK=JDBC against the real schema (create_pvlens_db_structure.sql, with
+ * its foreign keys) in H2's MySQL mode: one connection per table writer, child
+ * rows committed before their parents, support tables loaded through sinks.
+ */
+class JdbcSchemaLoadTest {
+
+	private static final String URL = "jdbc:h2:mem:pvlensschema;MODE=MySQL;DB_CLOSE_DELAY=-1";
+
+	private static final SqlInsert SUBSTANCE = SqlInsert.of("SUBSTANCE", "ID");
+	private static final SqlInsert SUBSTANCE_RXNORM = SqlInsert.of("SUBSTANCE_RXNORM", "PRODUCT_ID", "RXNORM_ID");
+	private static final SqlInsert PRODUCT_AE = SqlInsert.of("PRODUCT_AE", "ID", "PRODUCT_ID", "MEDDRA_ID",
+			"LABEL_DATE", "WARNING", "BLACKBOX", "EXACT_MATCH");
+	private static final SqlInsert MEDDRA_USAGE = SqlInsert.of("MEDDRA_USAGE", "MEDDRA_ID", "AE_COUNT",
+			"BLACKBOX_COUNT", "IND_COUNT", "SUBSTANCE_COUNT");
+
+	@Test
+	void rows_load_over_separate_connections_and_keep_the_foreign_keys(@TempDir Path out) throws Exception {
+		try (Connection check = DriverManager.getConnection(URL); Statement st = check.createStatement()) {
+			createSchema(st);
+			// left over from the previous load; the run replaces it
+			st.execute("INSERT INTO MEDDRA_USAGE (MEDDRA_ID, AE_COUNT) VALUES (100, 99)");
+			st.execute("SET FOREIGN_KEY_CHECKS = 1");
+
+			Map<String, SqlSink> sinks = new TreeMap<>();
+			for (String key : List.of("AE", "PRODUCT", "RXNORM", "USAGE"))
+				sinks.put(key, new JdbcSqlSink(DriverManager.getConnection(URL), 2));
+			SqlWriters w = SqlWriters.forSinks(sinks, 2, 4);
+			w.get("USAGE").execute("DELETE FROM MEDDRA_USAGE");
+
+			// children first, committed while SUBSTANCE, MEDDRA and RXNORM are still empty
+			w.get("AE").insert(PRODUCT_AE, 1, 1, 100, "2024-01-02", 1, 0, 1);
+			w.get("RXNORM").insert(SUBSTANCE_RXNORM, 1, 100);
+			w.flushAll();
+
+			ConfigLoader cfg = Mockito.mock(ConfigLoader.class);
+			Mockito.when(cfg.getSqlOutputPath()).thenReturn(out.toString());
+			UmlsLoader umls = Mockito.mock(UmlsLoader.class);
+			Mockito.when(umls.getMedDRA()).thenReturn(Map.of("M1", new Atom("M1", "C1", "10019211", "10019211", "Headache", "PT")));
+			Mockito.when(umls.getRxNorm()).thenReturn(Map.of("R1", new Atom("R1", "C2", null, "5640", "Ibuprofen\n", "IN")));
+			UmlsTerms terms = new UmlsTerms(cfg, umls, 100);
+			terms.setDirectSink(() -> new JdbcSqlSink(DriverManager.getConnection(URL), 2));
+			terms.createMeddraTable();
+			terms.createRxNormTable();
+
+			w.get("PRODUCT").insert(SUBSTANCE, 1);
+			w.get("USAGE").insert(MEDDRA_USAGE, 100, 1, 0, 0, 1);
+			w.close();
+
+			assertEquals(List.of("100|Headache"), rows(st, "SELECT ID, MEDDRA_TERM FROM MEDDRA"));
+			assertEquals(List.of("100|Ibuprofen"), rows(st, "SELECT ID, TERM FROM RXNORM"));
+			assertEquals(List.of("1|100"), rows(st, "SELECT PRODUCT_ID, RXNORM_ID FROM SUBSTANCE_RXNORM"));
+			assertEquals(List.of("100|1"), rows(st, "SELECT MEDDRA_ID, AE_COUNT FROM MEDDRA_USAGE"));
+
+			// every foreign key holds once all sinks are closed
+			List<String> tables = rows(st, "SELECT DISTINCT TABLE_NAME FROM INFORMATION_SCHEMA.TABLE_CONSTRAINTS"
+					+ " WHERE CONSTRAINT_TYPE = 'FOREIGN KEY' ORDER BY TABLE_NAME");
+			assertTrue(tables.contains("PRODUCT_AE"));
+			for (String table : tables)
+				st.execute("ALTER TABLE " + table + " SET REFERENTIAL_INTEGRITY TRUE CHECK");
+
+			st.execute("DROP ALL OBJECTS");
+		}
+	}
+
+	/** The schema script without its database-level statements and comments. */
+	static void createSchema(Statement st) throws Exception {
+		String script;
+		try (InputStream in = JdbcSchemaLoadTest.class.getResourceAsStream("/sql/create_pvlens_db_structure.sql")) {
+			assertNotNull(in, "schema script on the classpath");
+			script = new String(in.readAllBytes(), StandardCharsets.UTF_8);
+		}
+		StringBuilder sb = new StringBuilder();
+		for (String line : script.split("\\R")) {
+			String t = line.trim();
+			if (!t.startsWith("#") && !t.startsWith("--"))
+				sb.append(line).append('\n');
+		}
+		for (String sql : sb.toString().split(";")) {
+			String s = sql.trim();
+			String u = s.toUpperCase(Locale.ROOT);
+			if (s.isEmpty() || u.startsWith("DROP DATABASE") || u.startsWith("CREATE DATABASE") || u.startsWith("USE "))
+				continue;
+			st.execute(s);
+		}
+	}
+
+	static List<String> rows(Statement st, String sql) throws SQLException {
+		List<String> rows = new ArrayList<>();
+		try (ResultSet rs = st.executeQuery(sql)) {
+			int n = rs.getMetaData().getColumnCount();
+			while (rs.next()) {
+				StringBuilder sb = new StringBuilder();
+				for (int i = 1; i <= n; i++)
+					sb.append(i > 1 ? "|" : "").append(rs.getString(i));
+				rows.add(sb.toString());
+			}
+		}
+		return rows;
+	}
+}
@@ -0,0 +1,151 @@
+package org.pvlens.spl.processing.persist;
+
+/*
+ * This file is part of PVLens.
+ *
+ * Copyright (C) 2025 GlaxoSmithKline
+ *
+ * PVLens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PVLens is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PVLens.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.pvlens.spl.om.Outcome;
+import org.pvlens.spl.om.SplDrug;
+import org.pvlens.spl.umls.Atom;
+import org.pvlens.spl.umls.UmlsLoader;
+
+class ProductPersisterDeltaTest {
+
+	private static final String GUID = "11111111-2222-3333-4444-555555555555";
+	private static final Map<String, Integer> PRIOR_IDS = Map.of(GUID, 200);
+
+	/** Collects "TABLE[values]" per sink. */
+	private static final class Capture implements SqlSink {
+		final List<String> rows = Collections.synchronizedList(new ArrayList<>());
+
+		@Override
+		public void write(SqlInsert insert, Object[] values) {
+			rows.add(insert.table() + Arrays.asList(values));
+		}
+
+		@Override
+		public void execute(String sql) {
+		}
+
+		@Override
+		public void flush() {
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	@BeforeEach
+	@AfterEach
+	void resetIds() {
+		IdAllocators._resetForTests();
+	}
+
+	private static SplDrug product(String... meddraAuis) {
+		SplDrug d = new SplDrug();
+		d.setGuid(GUID);
+		d.setSave(true);
+		d.addXmlFile("prescription/" + GUID + ".xml", true);
+		d.getMergedGuidXmlPairs().put(GUID, new ArrayList<>(d.getXmlFilesAsList()));
+		Outcome o = d.getExactMatchWarnings();
+		o.setExactMatch(true);
+		int id = 1;
+		for (String aui : meddraAuis) {
+			Atom a = new Atom(aui, "C" + aui, null, "100" + id, "term " + aui, "PT");
+			a.setDatabaseId(id++);
+			o.addCode(GUID, a, null);
+		}
+		return d;
+	}
+
+	private static Map<String, Capture> persist(ProductDelta delta, List<SplDrug> products) {
+		Map<String, Capture> sinks = new TreeMap<>();
+		for (String key : List.of("PRODUCT", "PROD_RELATED", "NDC", "ATC", "RXNORM", "SNOMED", "AE", "IND"))
+			sinks.put(key, new Capture());
+		SqlWriters w = SqlWriters.forSinks(sinks, 8, 4);
+		new ProductPersister(UmlsLoader.newTestInstance()).saveAll(products, w, IdAllocators.getInstance(),
+				new ConcurrentHashMap<>(), PRIOR_IDS, delta);
+		w.close();
+		delta.close();
+		return sinks;
+	}
+
+	@Test
+	void unchanged_products_write_nothing_and_changed_ones_are_replaced() {
+		ProductDelta first = new ProductDelta(Map.of(), Set.of(), null);
+		Map<String, Capture> full = persist(first, List.of(product("A1", "A2")));
+		assertEquals(List.of("SUBSTANCE[200]"), full.get("PRODUCT").rows);
+		assertEquals(2, full.get("AE").rows.stream().filter(r -> r.startsWith("PRODUCT_AE[")).count());
+		Map<Integer, String> fingerprints = Map.copyOf(first.fingerprints());
+
+		// Same content again: no rows, no deletes, surrogate IDs handed back
+		int nextAe = IdAllocators.getInstance().productAeId.get();
+		StringWriter deletes = new StringWriter();
+		ProductDelta same = new ProductDelta(fingerprints, Set.of(), new PrintWriter(deletes));
+		Map<String, Capture> none = persist(same, List.of(product("A2", "A1")));
+		none.values().forEach(c -> assertTrue(c.rows.isEmpty(), c.rows.toString()));
+		assertFalse(deletes.toString().contains("DELETE"));
+		assertEquals(nextAe, IdAllocators.getInstance().productAeId.get());
+		assertEquals(fingerprints, same.fingerprints());
+
+		// One more AE: old rows deleted, product rewritten under the same ID, SUBSTANCE kept
+		deletes = new StringWriter();
+		ProductDelta changed = new ProductDelta(fingerprints, Set.of(), new PrintWriter(deletes));
+		Map<String, Capture> rewrite = persist(changed, List.of(product("A1", "A2", "A3")));
+		assertTrue(rewrite.get("PRODUCT").rows.isEmpty());
+		assertEquals(3, rewrite.get("AE").rows.stream().filter(r -> r.startsWith("PRODUCT_AE[")).count());
+		assertTrue(rewrite.get("AE").rows.get(0).contains(", 200, "));
+		assertTrue(deletes.toString().contains("DELETE FROM PRODUCT_AE WHERE PRODUCT_ID = 200;"));
+		assertFalse(deletes.toString().contains("DELETE FROM SUBSTANCE WHERE"));
+		assertTrue(deletes.toString().endsWith("COMMIT;" + System.lineSeparator()));
+	}
+
+	@Test
+	void products_that_are_gone_are_deleted() {
+		StringWriter deletes = new StringWriter();
+		ProductDelta delta = new ProductDelta(Map.of(200, "x"), Set.of(), new PrintWriter(deletes));
+		delta.deleteLabelText("g'1");
+		persist(delta, List.of());
+
+		String sql = deletes.toString();
+		assertTrue(sql.startsWith("SET autocommit = OFF;"));
+		assertTrue(sql.contains("DELETE FROM SPL_AE_TEXT WHERE GUID = 'g''1';"));
+		assertTrue(sql.contains("DELETE FROM PRODUCT_AE_SRC WHERE AE_ID IN (SELECT ID FROM PRODUCT_AE WHERE PRODUCT_ID = 200);"));
+		assertTrue(sql.contains("DELETE FROM SUBSTANCE WHERE ID = 200;"));
+		assertTrue(sql.indexOf("SPL_SRCFILE") < sql.indexOf("DELETE FROM SUBSTANCE WHERE"));
+	}
+}
@@ -0,0 +1,216 @@
+package org.pvlens.spl.processing.persist;
+
+/*
+ * This file is part of PVLens.
+ *
+ * Copyright (C) 2025 GlaxoSmithKline
+ *
+ * PVLens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PVLens is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PVLens.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.pvlens.spl.om.Outcome;
+import org.pvlens.spl.om.SplDrug;
+import org.pvlens.spl.umls.Atom;
+import org.pvlens.spl.umls.Symbols;
+import org.pvlens.spl.umls.UmlsLoader;
+
+class ProductPersisterPlanTest {
+
+	/** Collects "TABLE[values]" in write order. */
+	private static final class Capture implements SqlSink {
+		final List<String> rows = new ArrayList<>();
+
+		@Override
+		public void write(SqlInsert insert, Object[] values) {
+			rows.add(insert.table() + Arrays.asList(values));
+		}
+
+		@Override
+		public void execute(String sql) {
+		}
+
+		@Override
+		public void flush() {
+		}
+
+		@Override
+		public void close() {
+		}
+	}
+
+	@BeforeEach
+	@AfterEach
+	void resetIds() {
+		IdAllocators._resetForTests();
+	}
+
+	private static SplDrug product(int n) {
+		return product(n, "A");
+	}
+
+	private static SplDrug product(int n, String auiPrefix) {
+		String guid = String.format("%08d-0000-0000-0000-000000000000", n);
+		SplDrug d = new SplDrug();
+		d.setGuid(guid);
+		d.setSave(true);
+		d.addXmlFile("prescription/" + guid + ".xml", true);
+		d.getMergedGuidXmlPairs().put(guid, new ArrayList<>(d.getXmlFilesAsList()));
+
+		Atom ndc = new Atom("NDC" + (n % 3), null, null, "0000-" + (n % 3), "drug " + (n % 3), "NDC");
+		d.getDrugProduct().put(ndc.getAui(), ndc);
+
+		Outcome warn = d.getExactMatchWarnings();
+		Outcome ind = d.getNlpMatchIndications();
+		for (int i = 0; i <= n % 4; i++) {
+			Atom a = new Atom(auiPrefix + n + "_" + i, "C" + i, null, "10" + i, "term " + i, "PT");
+			a.setDatabaseId(1000 + i);
+			warn.addCode(guid, a, null);
+			if (i % 2 == 0)
+				ind.addCode(guid, a, null);
+		}
+		return d;
+	}
+
+	private static List<SplDrug> products(long shuffleSeed) {
+		return products(shuffleSeed, "A");
+	}
+
+	/**
+	 * The 40 products in shuffled order. AUIs new to this JVM (a fresh prefix)
+	 * are first given Symbols ids in an order shuffled by the seed too, the way
+	 * the loaders and extraction threads of another run might.
+	 */
+	private static List<SplDrug> products(long shuffleSeed, String auiPrefix) {
+		List<String> auis = new ArrayList<>();
+		for (int n = 1; n <= 40; n++)
+			for (int i = 0; i <= n % 4; i++)
+				auis.add(auiPrefix + n + "_" + i);
+		Collections.shuffle(auis, new Random(shuffleSeed));
+		auis.forEach(Symbols::id);
+
+		List<SplDrug> all = new ArrayList<>();
+		for (int n = 1; n <= 40; n++)
+			all.add(product(n, auiPrefix));
+		Collections.shuffle(all, new Random(shuffleSeed));
+		return all;
+	}
+
+	private static Map<String, List<String>> persist(int threads, List<SplDrug> products) {
+		IdAllocators._resetForTests();
+		Map<String, Capture> sinks = new TreeMap<>();
+		for (String key : List.of("PRODUCT", "PROD_RELATED", "NDC", "ATC", "RXNORM", "SNOMED", "AE", "IND", "USAGE",
+				"NAME"))
+			sinks.put(key, new Capture());
+		SqlWriters w = SqlWriters.forSinks(sinks, 8, 4);
+		ConcurrentMap<String, Integer> srcTracker = new ConcurrentHashMap<>();
+		new ProductPersister(UmlsLoader.newTestInstance(), threads).saveAll(products, w, IdAllocators.getInstance(),
+				srcTracker, Map.of());
+		Map<String, List<String>> out = new TreeMap<>();
+		sinks.forEach((k, c) -> out.put(k, c.rows));
+		return out;
+	}
+
+	@Test
+	void output_is_identical_for_any_thread_count_input_order_and_symbol_ids() {
+		Map<String, List<String>> sequential = persist(1, products(1));
+		assertEquals(sequential, persist(4, products(2)));
+		assertEquals(sequential, persist(16, products(3)));
+		assertEquals(sequential, persist(4, products(4, "RUN4_")));
+		assertEquals(sequential, persist(16, products(5, "RUN5_")));
+
+		// First product by GUID gets the first IDs
+		assertEquals("SUBSTANCE[100]", sequential.get("PRODUCT").get(0));
+		assertTrue(sequential.get("PROD_RELATED").stream()
+				.anyMatch(r -> r.startsWith("SPL_SRCFILE[100, 100, 00000001-0000-0000-0000-000000000000, ")));
+		assertEquals(3, sequential.get("NDC").stream().filter(r -> r.startsWith("NDC_CODE[")).count());
+	}
+
+	/**
+	 * Product 1 with twelve more warning codes, their AUIs (new to this JVM)
+	 * given Symbols ids in ascending or descending order first, as the loaders
+	 * of another run might.
+	 */
+	private static SplDrug productWithSymbolOrder(String auiPrefix, boolean descending) {
+		for (int i = 0; i < 12; i++)
+			Symbols.id(auiPrefix + (descending ? 11 - i : i));
+		SplDrug d = product(1);
+		for (int i = 0; i < 12; i++) {
+			Atom a = new Atom(auiPrefix + i, "C2" + i, null, "20" + i, "other term " + i, "PT");
+			a.setDatabaseId(2000 + i);
+			d.getExactMatchWarnings().addCode(d.getGuid(), a, null);
+		}
+		return d;
+	}
+
+	@Test
+	void rows_do_not_depend_on_the_symbol_id_order() {
+		Map<String, List<String>> ascending = persist(1, List.of(productWithSymbolOrder("SYMASC", false)));
+		Map<String, List<String>> descending = persist(1, List.of(productWithSymbolOrder("SYMDESC", true)));
+
+		assertEquals(ascending, descending);
+		assertTrue(ascending.get("AE").get(4).startsWith("PRODUCT_AE[102, 100, 2000, "), ascending.get("AE").toString());
+	}
+
+	@Test
+	void planned_id_ranges_are_contiguous_and_links_resolve() {
+		Map<String, List<String>> out = persist(4, products(7));
+
+		List<Integer> aeIds = new ArrayList<>();
+		for (String r : out.get("AE"))
+			if (r.startsWith("PRODUCT_AE["))
+				aeIds.add(Integer.parseInt(r.substring("PRODUCT_AE[".length(), r.indexOf(','))));
+		for (int i = 0; i < aeIds.size(); i++)
+			assertEquals(100 + i, aeIds.get(i));
+		assertEquals(aeIds.size(), out.get("AE").stream().filter(r -> r.startsWith("PRODUCT_AE_SRC[")).count());
+		assertEquals(100 + aeIds.size(), IdAllocators.getInstance().productAeId.get());
+
+		long ind = out.get("IND").stream().filter(r -> r.startsWith("PRODUCT_IND[")).count();
+		assertEquals(100 + ind, IdAllocators.getInstance().productIndId.get());
+		assertEquals(140, IdAllocators.getInstance().splSrcId.get());
+	}
+
+	@Test
+	void usage_summary_counts_rows_and_products_per_term() {
+		List<String> usage = persist(4, products(5)).get("USAGE");
+
+		// Term i is listed by the products with n % 4 >= i, as an indication when i is even
+		assertEquals(List.of("MEDDRA_USAGE[1000, 40, 0, 40, 40]", "MEDDRA_USAGE[1001, 30, 0, 0, 30]",
+				"MEDDRA_USAGE[1002, 20, 0, 20, 20]", "MEDDRA_USAGE[1003, 10, 0, 0, 10]"), usage);
+	}
+
+	@Test
+	void display_names_are_written_per_product_id() {
+		List<String> names = persist(4, products(11)).get("NAME");
+
+		assertEquals(40, names.size());
+		assertEquals("SUBSTANCE_NAME[100, drug 1, NDC]", names.get(0));
+		assertEquals("SUBSTANCE_NAME[139, drug 1, NDC]", names.get(39));
+	}
+}
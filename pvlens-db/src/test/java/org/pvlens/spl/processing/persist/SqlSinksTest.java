@@ -0,0 +1,123 @@
+package org.pvlens.spl.processing.persist;
+
+/*
+ * This file is part of PVLens.
+ *
+ * Copyright (C) 2025 GlaxoSmithKline
+ *
+ * PVLens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PVLens is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PVLens.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class SqlSinksTest {
+
+	private static final SqlInsert NDC_CODE = SqlInsert.of("NDC_CODE", "ID", "NDC_CODE", "PRODUCT_NAME");
+	private static final SqlInsert PRODUCT_NDC = SqlInsert.of("PRODUCT_NDC", "PRODUCT_ID", "NDC_ID");
+
+	@Test
+	void jdbc_sink_loads_rows_in_order_through_sql_writers() throws Exception {
+		String url = "jdbc:h2:mem:sqlsinks;MODE=MySQL;DB_CLOSE_DELAY=-1";
+		try (Connection check = DriverManager.getConnection(url); Statement st = check.createStatement()) {
+			st.execute("CREATE TABLE NDC_CODE (ID INT PRIMARY KEY, NDC_CODE VARCHAR(20), PRODUCT_NAME VARCHAR(200))");
+			st.execute("CREATE TABLE PRODUCT_NDC (PRODUCT_ID INT, NDC_ID INT REFERENCES NDC_CODE(ID))");
+
+			// batch of 2 forces several executeBatch calls, interleaved shapes exercise ordering
+			Map<String, SqlSink> sinks = new TreeMap<>();
+			sinks.put("NDC", new JdbcSqlSink(DriverManager.getConnection(url), 2));
+			SqlWriters w = SqlWriters.forSinks(sinks, 3, 2);
+			for (int i = 1; i <= 10; i++) {
+				w.get("NDC").insert(NDC_CODE, i, "0000-" + i, (i == 3) ? null : "Drug's \\ \"" + i + "\"");
+				w.get("NDC").insert(PRODUCT_NDC, 100 + i, i);
+			}
+			w.flushAll();
+			try (ResultSet rs = st.executeQuery("SELECT COUNT(*) FROM PRODUCT_NDC")) {
+				rs.next();
+				assertEquals(10, rs.getInt(1));
+			}
+			w.close();
+
+			try (ResultSet rs = st.executeQuery("SELECT ID, NDC_CODE, PRODUCT_NAME FROM NDC_CODE ORDER BY ID")) {
+				List<String> names = new ArrayList<>();
+				while (rs.next()) {
+					names.add(rs.getString(3));
+					assertEquals("0000-" + rs.getInt(1), rs.getString(2));
+				}
+				assertEquals(10, names.size());
+				assertEquals("Drug's \\ \"1\"", names.get(0));
+				assertNull(names.get(2));
+			}
+			st.execute("DROP ALL OBJECTS");
+		}
+	}
+
+	@Test
+	void tsv_sink_writes_escaped_files_and_load_script(@TempDir Path dir) throws Exception {
+		StringWriter script = new StringWriter();
+		TsvSqlSink sink = new TsvSqlSink(dir.resolve("tsv"), "ndc", new PrintWriter(script));
+		sink.execute("DELETE FROM NDC_CODE");
+		sink.write(NDC_CODE, new Object[] { 1, "0000-1", "a\tb\nc\\d" });
+		sink.write(PRODUCT_NDC, new Object[] { 7, 1 });
+		sink.write(NDC_CODE, new Object[] { 2, "0000-2", null });
+		sink.close();
+
+		Path codes = dir.resolve("tsv/ndc.ndc_code.tsv");
+		assertEquals("1\t0000-1\ta\\tb\\nc\\\\d\n2\t0000-2\t\\N\n", Files.readString(codes, StandardCharsets.UTF_8));
+		assertEquals("7\t1\n", Files.readString(dir.resolve("tsv/ndc.product_ndc.tsv"), StandardCharsets.UTF_8));
+
+		String[] lines = script.toString().split("\\R");
+		assertEquals("SET autocommit = OFF;", lines[0]);
+		assertEquals("DELETE FROM NDC_CODE;", lines[1]);
+		assertEquals("LOAD DATA LOCAL INFILE '" + codes.toAbsolutePath() + "' INTO TABLE NDC_CODE CHARACTER SET utf8mb4"
+				+ " FIELDS TERMINATED BY '\\t' ESCAPED BY '\\\\' LINES TERMINATED BY '\\n' (ID, NDC_CODE, PRODUCT_NAME);",
+				lines[2]);
+		assertTrue(lines[3].contains("INTO TABLE PRODUCT_NDC"));
+		assertEquals("COMMIT;", lines[4]);
+	}
+
+	@Test
+	void failing_sink_surfaces_on_flush() throws Exception {
+		SqlSink broken = new SqlSink() {
+			@Override public void write(SqlInsert insert, Object[] values) throws Exception { throw new IOException("disk full"); }
+			@Override public void execute(String sql) { }
+			@Override public void flush() { }
+			@Override public void close() { }
+		};
+		SqlWriters w = SqlWriters.forSinks(Map.of("AE", broken), 1, 1);
+		w.get("AE").insert(PRODUCT_NDC, 1, 1);
+		assertThrows(IllegalStateException.class, w::flushAll);
+		w.close();
+	}
+}
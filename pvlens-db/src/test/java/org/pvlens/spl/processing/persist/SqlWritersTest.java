@@ -0,0 +1,184 @@
+package org.pvlens.spl.processing.persist;
+
+/*
+ * This file is part of PVLens.
+ *
+ * Copyright (C) 2025 GlaxoSmithKline
+ *
+ * PVLens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PVLens is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PVLens.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import org.junit.jupiter.api.Test;
+
+class SqlWritersTest {
+
+	private static String nl(String... lines) {
+		return String.join(System.lineSeparator(), lines) + System.lineSeparator();
+	}
+
+	private static final SqlInsert T = SqlInsert.of("T", "A", "B");
+	private static final SqlInsert U = SqlInsert.of("U", "A");
+
+	@Test
+	void folds_consecutive_inserts_into_multi_row_statements() {
+		StringWriter buf = new StringWriter();
+		SqlWriters w = new SqlWriters(Map.of("AE", new PrintWriter(buf)), 3, 4);
+		SqlWriters.Table ae = w.get("AE");
+		for (int i = 1; i <= 4; i++)
+			ae.insert(T, i, "x;y");
+		ae.insert(U, (Object) null);
+		ae.insert(T, 5, "it's C:\\tmp");
+		w.close();
+
+		assertEquals(nl(
+				"SET autocommit = OFF;",
+				"INSERT INTO T (A, B) VALUES (1, 'x;y'),",
+				"(2, 'x;y'),",
+				"(3, 'x;y');",
+				"INSERT INTO T (A, B) VALUES (4, 'x;y');",
+				"INSERT INTO U (A) VALUES (NULL);",
+				"INSERT INTO T (A, B) VALUES (5, 'it''s C:\\\\tmp');",
+				"COMMIT;"), buf.toString());
+		assertThrows(IllegalStateException.class, () -> ae.insert(U, 1));
+	}
+
+	@Test
+	void one_row_per_statement_keeps_legacy_output() {
+		StringWriter buf = new StringWriter();
+		SqlWriters w = new SqlWriters(Map.of("IND", new PrintWriter(buf)), 1, 1);
+		w.get("IND").insert(U, 1);
+		w.get("IND").insert(U, 2);
+		w.flushAll();
+		assertEquals(nl("SET autocommit = OFF;",
+				"INSERT INTO U (A) VALUES (1);",
+				"INSERT INTO U (A) VALUES (2);"), buf.toString());
+		w.close();
+		w.close();
+		assertTrue(buf.toString().endsWith(nl("COMMIT;")));
+	}
+
+	@Test
+	void rejects_rows_that_do_not_match_the_columns() {
+		SqlWriters w = new SqlWriters(Map.of("AE", new PrintWriter(new StringWriter())), 2, 2);
+		assertThrows(IllegalArgumentException.class, () -> w.get("AE").insert(T, 1));
+		w.close();
+	}
+
+	@Test
+	void buffers_of_finished_threads_are_dropped_on_flush() throws Exception {
+		StringWriter buf = new StringWriter();
+		SqlWriters w = new SqlWriters(Map.of("AE", new PrintWriter(buf)), 100, 4);
+		SqlWriters.Table ae = w.get("AE");
+		// a new pool per round, as stages replace their workers
+		for (int round = 0; round < 5; round++) {
+			ExecutorService pool = Executors.newFixedThreadPool(4);
+			final int r = round;
+			List<Future<?>> fs = new ArrayList<>();
+			for (int t = 0; t < 4; t++) {
+				final int tid = t;
+				fs.add(pool.submit(() -> ae.insert(T, r, "t" + tid)));
+			}
+			for (Future<?> f : fs)
+				f.get();
+			pool.shutdown();
+			assertEquals(4, ae.pendingBuffers());
+			w.flushAll();
+			assertEquals(0, ae.pendingBuffers());
+		}
+		ae.insert(U, 1);
+		assertEquals(1, ae.pendingBuffers());
+		w.close();
+
+		Matcher m = Pattern.compile("\\(\\d+, 't\\d'\\)").matcher(buf.toString());
+		int rows = 0;
+		while (m.find())
+			rows++;
+		assertEquals(20, rows);
+		assertTrue(buf.toString().contains("INSERT INTO U (A) VALUES (1);"));
+	}
+
+	@Test
+	void concurrent_producers_lose_nothing_and_keep_per_thread_order() throws Exception {
+		final int threads = 8;
+		final int perThread = 2_000;
+		Map<String, StringWriter> bufs = new HashMap<>();
+		Map<String, PrintWriter> out = new HashMap<>();
+		for (String k : List.of("AE", "IND")) {
+			bufs.put(k, new StringWriter());
+			out.put(k, new PrintWriter(bufs.get(k)));
+		}
+		// tiny queue so producers hit back-pressure
+		SqlWriters w = new SqlWriters(out, 50, 1);
+		SqlInsert ae = SqlInsert.of("AE", "T", "I");
+		SqlInsert ind = SqlInsert.of("IND", "T", "I");
+
+		ExecutorService pool = Executors.newFixedThreadPool(threads);
+		try {
+			List<Future<?>> fs = new ArrayList<>();
+			for (int t = 0; t < threads; t++) {
+				final int tid = t;
+				fs.add(pool.submit(() -> {
+					for (int i = 0; i < perThread; i++) {
+						if (i % 2 == 0)
+							w.get("AE").insert(ae, tid, i);
+						else
+							w.get("IND").insert(ind, tid, i);
+					}
+				}));
+			}
+			for (Future<?> f : fs)
+				f.get();
+		} finally {
+			pool.shutdown();
+		}
+		w.close();
+
+		Pattern tuple = Pattern.compile("\\((\\d+), (\\d+)\\)");
+		for (String k : bufs.keySet()) {
+			String text = bufs.get(k).toString();
+			assertTrue(text.startsWith(nl("SET autocommit = OFF;")));
+			assertTrue(text.endsWith(nl("COMMIT;")));
+
+			int[] last = new int[threads];
+			Arrays.fill(last, -1);
+			int rows = 0;
+			Matcher m = tuple.matcher(text);
+			while (m.find()) {
+				int t = Integer.parseInt(m.group(1));
+				int i = Integer.parseInt(m.group(2));
+				assertTrue(i > last[t], "out of order for thread " + t);
+				last[t] = i;
+				rows++;
+			}
+			assertEquals(threads * perThread / 2, rows, k);
+		}
+	}
+}
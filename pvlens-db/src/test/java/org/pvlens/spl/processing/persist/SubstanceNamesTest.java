@@ -0,0 +1,106 @@
+package org.pvlens.spl.processing.persist;
+
+/*
+ * This file is part of PVLens.
+ *
+ * Copyright (C) 2025 GlaxoSmithKline
+ *
+ * PVLens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PVLens is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PVLens.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.pvlens.spl.om.SplDrug;
+import org.pvlens.spl.om.Srlc;
+import org.pvlens.spl.umls.Atom;
+import org.pvlens.spl.umls.UmlsLoader;
+
+class SubstanceNamesTest {
+
+	private static SplDrug product(String guid, String xml) {
+		SplDrug d = new SplDrug();
+		d.setGuid(guid);
+		d.setSave(true);
+		d.addXmlFile("/spl/" + xml, true);
+		return d;
+	}
+
+	private static Srlc srlc(String name, int applicationNumber) {
+		Srlc s = new Srlc();
+		s.setDrugName(name);
+		s.setApplicationNumber(applicationNumber);
+		return s;
+	}
+
+	private static List<Object> row(SubstanceNames names, int productId) {
+		return Arrays.asList(names.row(productId));
+	}
+
+	@Test
+	void best_source_wins_across_products_of_an_id() {
+		SplDrug byFile = product("g1", "otc/spl-cough_syrup-12.xml");
+		SplDrug bySponsor = product("g2", "otc/g2.xml");
+		bySponsor.setDrugSponsor(" Acme ");
+		SplDrug byAtc = product("g3", "otc/g3.xml");
+		byAtc.getAtcCodes().put("A1", new Atom("A1", "C1", null, "N02", "analgesics", "ATC"));
+		byAtc.getAtcCodes().put("A2", new Atom("A2", "C2", null, "N02BA", "aspirin", "ATC"));
+		SplDrug byNdc = product("g4", "otc/g4.xml");
+		byNdc.getDrugProduct().put("N1", new Atom("N1", null, null, "0000-1", "Aspirin 81 MG", "NDC"));
+
+		SubstanceNames names = new SubstanceNames(List.of(byFile, bySponsor, byAtc, byNdc),
+				UmlsLoader.newTestInstance(), "/spl/");
+		names.add(1, byFile);
+		assertEquals(List.of(1, "Cough Syrup", "FILE_NAME"), row(names, 1));
+		names.add(1, bySponsor);
+		assertEquals(List.of(1, "Acme Product", "SPONSOR"), row(names, 1));
+		names.add(1, byAtc);
+		assertEquals(List.of(1, "aspirin", "ATC"), row(names, 1));
+		names.add(1, byNdc);
+		names.add(1, byFile);
+		assertEquals(List.of(1, "Aspirin 81 MG", "NDC"), row(names, 1));
+	}
+
+	@Test
+	void srlc_name_is_found_through_the_application_number() {
+		SplDrug withSrlc = product("g1", "rx/g1.xml");
+		withSrlc.getSrlcs().put(7, srlc("Zenvia", 20123));
+		SplDrug sameApplication = product("g2", "rx/g2.xml");
+		sameApplication.getGuidNda().put("g2", 20123);
+		SplDrug nameless = product("00000003-0000-0000-0000-000000000000",
+				"rx/00000003-0000-0000-0000-000000000000.xml");
+
+		SubstanceNames names = new SubstanceNames(List.of(withSrlc, sameApplication, nameless),
+				UmlsLoader.newTestInstance(), "/spl/");
+		names.add(1, withSrlc);
+		names.add(2, sameApplication);
+		names.add(3, nameless);
+
+		assertEquals(List.of(1, "Zenvia", "SRLC"), row(names, 1));
+		assertEquals(List.of(2, "Zenvia", "SRLC_APPLICATION"), row(names, 2));
+		assertEquals(Arrays.asList(3, null, null), row(names, 3));
+		assertEquals(3, names.rows().size());
+	}
+
+	@Test
+	void file_names_that_are_guids_give_no_name() {
+		assertEquals("Drug Name", SubstanceNames.nameFromFileName("otc/spl-drug_name-1234.xml"));
+		assertNull(SubstanceNames.nameFromFileName("otc/483325a2-752b-f9c2-e063-6394a90ada32.xml"));
+		assertNull(SubstanceNames.nameFromFileName("a1-2.xml"));
+	}
+}
@@ -0,0 +1,97 @@
+package org.pvlens.spl.processing.support;
+
+/*
+ * This file is part of PVLens.
+ *
+ * Copyright (C) 2025 GlaxoSmithKline
+ *
+ * PVLens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PVLens is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PVLens.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.jupiter.api.Test;
+
+class BoundedStageTest {
+
+	@Test
+	void chained_stages_process_every_item() {
+		Set<Integer> out = ConcurrentHashMap.newKeySet();
+		BoundedStage<Integer> second = new BoundedStage<>("second", 2, 4, out::add);
+		BoundedStage<Integer> first = new BoundedStage<>("first", 3, 4, i -> second.submit(i * 10));
+		for (int i = 0; i < 500; i++)
+			first.submit(i);
+		first.finish();
+		second.finish();
+
+		assertEquals(500, out.size());
+		assertTrue(out.contains(4990));
+		assertEquals(500, first.items());
+		assertEquals(500, second.items());
+		assertTrue(first.maxQueueDepth() <= 4);
+	}
+
+	@Test
+	void full_queue_blocks_the_producer() throws Exception {
+		CountDownLatch release = new CountDownLatch(1);
+		BoundedStage<Integer> slow = new BoundedStage<>("slow", 1, 1, i -> {
+			try {
+				release.await(5, TimeUnit.SECONDS);
+			} catch (InterruptedException e) {
+				Thread.currentThread().interrupt();
+			}
+		});
+		slow.submit(1); // taken by the worker, which waits
+		Thread.sleep(50);
+		slow.submit(2); // fills the queue
+
+		Thread producer = new Thread(() -> slow.submit(3));
+		producer.start();
+		producer.join(200);
+		assertTrue(producer.isAlive(), "submit should block while the queue is full");
+
+		release.countDown();
+		producer.join(5000);
+		slow.finish();
+		assertEquals(3, slow.items());
+		assertTrue(slow.blockedNanos() >= TimeUnit.MILLISECONDS.toNanos(100));
+		assertTrue(slow.utilization() > 0.5);
+	}
+
+	@Test
+	void failures_are_counted_and_do_not_stop_the_stage() {
+		Set<Integer> out = ConcurrentHashMap.newKeySet();
+		BoundedStage<Integer> s = new BoundedStage<>("odd", 2, 2, i -> {
+			if (i % 2 == 1)
+				throw new IllegalArgumentException("odd " + i);
+			out.add(i);
+		});
+		for (int i = 0; i < 10; i++)
+			s.submit(i);
+		s.finish();
+
+		assertEquals(5, out.size());
+		assertEquals(10, s.items());
+		assertEquals(5, s.failures());
+		assertTrue(s.summary().startsWith("odd: threads=2, items=10, failed=5"));
+		assertThrows(IllegalStateException.class, () -> s.submit(11));
+	}
+}
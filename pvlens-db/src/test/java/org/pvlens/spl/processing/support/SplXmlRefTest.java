@@ -0,0 +1,127 @@
+package org.pvlens.spl.processing.support;
+
+/*
+ * This file is part of PVLens.
+ *
+ * Copyright (C) 2025 GlaxoSmithKline
+ *
+ * PVLens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PVLens is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PVLens.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.io.ByteArrayInputStream;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.pvlens.spl.util.ZipFileExtractor;
+
+class SplXmlRefTest {
+
+	private static final String ZIP = "20250723_0280849d-5c78-4a9d-8941-4eab429f6bd8.zip";
+	private static final String XML = "23e476df-6955-4c5d-92ae-2dc197ce4236.xml";
+
+	private static final Path ZIP_PATH = Paths.get("src/test/resources/spl/zip", ZIP);
+	private static final Path XML_PATH = Paths.get("src/test/resources/spl/xml", XML);
+
+	@Test
+	void zipEntry_reads_same_bytes_as_unpacked_file() throws IOException {
+		String ref = SplXmlRef.zipEntry(ZIP_PATH.toString(), XML);
+
+		assertTrue(SplXmlRef.isZipEntry(ref));
+		assertEquals(ZIP_PATH, SplXmlRef.container(ref));
+		assertEquals(XML, SplXmlRef.entryName(ref));
+		assertTrue(SplXmlRef.exists(ref));
+		assertArrayEquals(Files.readAllBytes(XML_PATH), SplXmlRef.readAllBytes(ref));
+		try (InputStream in = SplXmlRef.open(ref, Files.size(XML_PATH))) {
+			assertArrayEquals(Files.readAllBytes(XML_PATH), in.readAllBytes());
+		}
+
+		// plain paths pass straight through
+		assertFalse(SplXmlRef.isZipEntry(XML_PATH.toString()));
+		try (InputStream in = SplXmlRef.open(XML_PATH.toString(), Files.size(XML_PATH))) {
+			assertArrayEquals(Files.readAllBytes(XML_PATH), in.readAllBytes());
+		}
+	}
+
+	@Test
+	void entries_over_the_limit_are_rejected_on_open() throws IOException {
+		long size = Files.size(XML_PATH);
+		String ref = SplXmlRef.zipEntry(ZIP_PATH.toString(), XML);
+
+		SplXmlRef.TooLargeException e = assertThrows(SplXmlRef.TooLargeException.class,
+				() -> SplXmlRef.open(ref, size - 1));
+		assertEquals(size, e.size());
+		assertThrows(SplXmlRef.TooLargeException.class, () -> SplXmlRef.open(XML_PATH.toString(), size - 1));
+	}
+
+	@Test
+	void unrecorded_sizes_are_enforced_while_reading() throws IOException {
+		byte[] xml = "<document/>".getBytes(StandardCharsets.UTF_8);
+
+		try (InputStream in = SplXmlRef.capped(new ByteArrayInputStream(xml), xml.length, "a.zip!/a.xml")) {
+			assertArrayEquals(xml, in.readAllBytes());
+		}
+		SplXmlRef.TooLargeException e = assertThrows(SplXmlRef.TooLargeException.class,
+				() -> SplXmlRef.capped(new ByteArrayInputStream(xml), xml.length - 1, "a.zip!/a.xml"));
+		assertEquals(-1, e.size());
+	}
+
+	@Test
+	void missing_entry_fails_on_open() {
+		String ref = SplXmlRef.zipEntry(ZIP_PATH.toString(), "nope.xml");
+		assertThrows(FileNotFoundException.class, () -> SplXmlRef.readAllBytes(ref));
+		assertFalse(SplXmlRef.exists(SplXmlRef.zipEntry("no/such.zip", XML)));
+	}
+
+	@Test
+	void ndc_extraction_matches_between_file_and_archive() {
+		NdcExtractor ndc = new NdcExtractor();
+		List<String> fromFile = ndc.getNdcCodes(XML_PATH.toString());
+		List<String> fromZip = ndc.getNdcCodes(SplXmlRef.zipEntry(ZIP_PATH.toString(), XML));
+		assertFalse(fromFile.isEmpty());
+		assertEquals(fromFile, fromZip);
+	}
+
+	@Test
+	void guid_map_points_into_archives_in_extract_free_mode(@TempDir Path root) throws IOException {
+		Path pres = Files.createDirectories(root.resolve("prescription"));
+		Files.copy(ZIP_PATH, pres.resolve(ZIP));
+		Path map = root.resolve("SPL_ZIP_XML_MAP.csv");
+		Files.writeString(map, "ZipFileName,XmlFileName,SourceType\n" + ZIP + "," + XML + ",prescription\n",
+				StandardCharsets.UTF_8);
+
+		String srcPath = root.toString() + "/";
+		Map<String, List<String>> guidToXml = new HashMap<>();
+		ZipFileExtractor.getGuidXmlMap(srcPath, guidToXml, new HashMap<>(), map.toString(), true);
+
+		List<String> refs = guidToXml.get("0280849d-5c78-4a9d-8941-4eab429f6bd8");
+		assertEquals(List.of(srcPath + "prescription/" + ZIP + SplXmlRef.ZIP_SEP + XML), refs);
+		assertArrayEquals(Files.readAllBytes(XML_PATH), SplXmlRef.readAllBytes(refs.get(0)));
+	}
+}
@@ -0,0 +1,105 @@
+package org.pvlens.spl.processing.support;
+
+/*
+ * This file is part of PVLens.
+ *
+ * Copyright (C) 2025 GlaxoSmithKline
+ *
+ * PVLens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PVLens is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PVLens.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.jupiter.api.Test;
+import org.pvlens.spl.processing.support.TaskGraph.Node;
+
+class TaskGraphTest {
+
+	private static void sleep(long ms) {
+		try {
+			Thread.sleep(ms);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+
+	@Test
+	void independent_stages_overlap_and_dependents_see_their_values() {
+		CountDownLatch both = new CountDownLatch(2);
+		TaskGraph g = new TaskGraph("test", 4);
+		Node<Boolean> a = g.add("a", () -> {
+			both.countDown();
+			return both.await(5, TimeUnit.SECONDS);
+		});
+		Node<Boolean> b = g.add("b", () -> {
+			both.countDown();
+			return both.await(5, TimeUnit.SECONDS);
+		});
+		Node<String> c = g.add("c", () -> a.get() + "/" + b.get(), a, b);
+		g.run();
+
+		assertEquals("true/true", c.get(), "a and b ran at the same time");
+	}
+
+	@Test
+	void one_thread_runs_stages_in_order() {
+		List<String> order = new CopyOnWriteArrayList<>();
+		TaskGraph g = new TaskGraph("test", 1);
+		Node<Void> a = g.addStep("a", () -> order.add("a"));
+		g.addStep("b", () -> order.add("b"));
+		g.addStep("c", () -> order.add("c"), a);
+		g.run();
+
+		assertEquals(List.of("a", "b", "c"), order);
+	}
+
+	@Test
+	void failure_stops_dependents_and_is_rethrown() {
+		IllegalArgumentException boom = new IllegalArgumentException("boom");
+		AtomicBoolean dependentRan = new AtomicBoolean();
+		TaskGraph g = new TaskGraph("test", 2);
+		Node<Void> bad = g.addStep("bad", () -> {
+			throw boom;
+		});
+		g.addStep("after", () -> dependentRan.set(true), bad);
+
+		assertSame(boom, assertThrows(IllegalArgumentException.class, g::run));
+		assertFalse(dependentRan.get());
+		assertTrue(g.summary().contains("not run"));
+		assertThrows(IllegalStateException.class, bad::get);
+	}
+
+	@Test
+	void critical_path_follows_the_dependency_finishing_last() {
+		TaskGraph g = new TaskGraph("test", 4);
+		Node<Void> fast = g.addStep("fast", () -> sleep(10));
+		Node<Void> slow = g.addStep("slow", () -> sleep(200));
+		Node<Void> join = g.addStep("join", () -> sleep(10), fast, slow);
+		g.addStep("side", () -> sleep(10), fast);
+		g.run();
+
+		assertEquals(List.of(slow, join), g.criticalPath());
+		assertTrue(g.summary().contains("Critical path: slow ("), g.summary());
+	}
+}
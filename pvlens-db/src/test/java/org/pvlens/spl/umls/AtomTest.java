@@ -193,4 +193,25 @@ class AtomTest {
         path[0] = "Z";
         assertArrayEquals(new String[] {"A","B"}, a.getPtr());
     }
+
+    // ---------------- symbols / pool -----------------------------------------
+
+    @Test
+    void identifiers_are_interned_and_equal_atoms_are_shared() {
+        Atom a = new Atom(new String("AUI-POOL-1"), new String("C-POOL"), null, "10001", "Headache", "PT");
+        Atom b = new Atom(new String("AUI-POOL-1"), new String("C-POOL"), null, "10001", "Headache", "PT");
+        assertNotSame(a, b);
+        assertSame(a.getAui(), b.getAui());
+        assertSame(a.getCui(), b.getCui());
+        assertEquals(Symbols.id("AUI-POOL-1"), a.auiId());
+        assertEquals("AUI-POOL-1", Symbols.name(a.auiId()));
+        assertEquals(Symbols.NONE, Symbols.id(null));
+        assertEquals(-1, Symbols.find("AUI-NEVER-SEEN-" + System.nanoTime()));
+
+        assertSame(a, AtomPool.share(a));
+        assertSame(a, AtomPool.share(b), "equal atom resolves to the shared instance");
+
+        Atom other = new Atom("AUI-POOL-1", "C-POOL", null, "10001", "Different term", "PT");
+        assertSame(other, AtomPool.share(other), "a different view of the AUI is kept as is");
+    }
 }
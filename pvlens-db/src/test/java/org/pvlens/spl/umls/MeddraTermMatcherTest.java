@@ -0,0 +1,121 @@
+package org.pvlens.spl.umls;
+
+/*
+ * This file is part of PVLens.
+ *
+ * Copyright (C) 2025 GlaxoSmithKline
+ *
+ * PVLens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PVLens is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PVLens.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+
+class MeddraTermMatcherTest {
+
+	private Map<String, Map<Integer, Map<String, List<String>>>> dict;
+
+	@BeforeEach
+	void setUp() {
+		Map<Integer, Map<String, List<String>>> pt = new HashMap<>();
+		pt.put(1, Map.of("rash", List.of("A1"), "pain", List.of("A2")));
+		pt.put(2, Map.of("headache pain", List.of("A3"), "pain relief", List.of("A4")));
+		pt.put(3, Map.of("severe headache pain", List.of("A5")));
+		// rotated variant stored under the original token count (never reachable by n-gram probe)
+		pt.put(4, Map.of("ovarian carcinoma", List.of("A6")));
+
+		Map<Integer, Map<String, List<String>>> hg = new HashMap<>();
+		hg.put(1, Map.of("disorders", List.of("H1")));
+
+		dict = new HashMap<>();
+		dict.put("PT", pt);
+		dict.put("HG", hg);
+	}
+
+	@Test
+	void finds_overlapping_and_nested_keys_in_one_pass() {
+		MeddraTermMatcher m = MeddraTermMatcher.compile(dict, 4);
+		String[] toks = "a severe headache pain relief and rash".split(" ");
+
+		Set<String> hits = m.match(toks, m.maskFor(List.of("PT")));
+		assertEquals(Set.of("severe headache pain", "headache pain", "pain", "pain relief", "rash"), hits);
+		assertEquals(bruteForce(toks, List.of("PT"), 4), hits);
+	}
+
+	@Test
+	void tty_mask_restricts_hits() {
+		MeddraTermMatcher m = MeddraTermMatcher.compile(dict, 4);
+		String[] toks = "skin disorders with rash".split(" ");
+
+		assertEquals(Set.of("rash"), m.match(toks, m.maskFor(List.of("PT"))));
+		assertEquals(Set.of("rash", "disorders"), m.match(toks, m.maskFor(List.of("PT", "HG"))));
+		assertTrue(m.match(toks, m.maskFor(List.of("LLT"))).isEmpty());
+	}
+
+	@Test
+	void skips_keys_in_mismatched_buckets_and_beyond_max_length() {
+		MeddraTermMatcher m = MeddraTermMatcher.compile(dict, 2);
+		long mask = m.maskFor(List.of("PT"));
+
+		assertTrue(m.match("ovarian carcinoma".split(" "), mask).isEmpty());
+		assertEquals(Set.of("headache pain", "pain"), m.match("severe headache pain".split(" "), mask));
+	}
+
+	@Test
+	void matches_brute_force_on_repetitive_input() {
+		Map<Integer, Map<String, List<String>>> pt = new HashMap<>();
+		pt.put(2, Map.of("a a", List.of("X1"), "a b", List.of("X2")));
+		pt.put(3, Map.of("a a b", List.of("X3"), "b a a", List.of("X4")));
+		Map<String, Map<Integer, Map<String, List<String>>>> d = Map.of("PT", pt);
+
+		MeddraTermMatcher m = MeddraTermMatcher.compile(d, 3);
+		String[] toks = "a a a b a a c".split(" ");
+		assertEquals(bruteForce(d, toks, List.of("PT"), 3), m.match(toks, m.maskFor(List.of("PT"))));
+	}
+
+	private Set<String> bruteForce(String[] toks, List<String> ttys, int maxN) {
+		return bruteForce(dict, toks, ttys, maxN);
+	}
+
+	/** Reference implementation: the original per-n-gram HashMap probe. */
+	private static Set<String> bruteForce(Map<String, Map<Integer, Map<String, List<String>>>> d, String[] toks,
+			List<String> ttys, int maxN) {
+		Set<String> out = new HashSet<>();
+		for (String tty : ttys) {
+			Map<Integer, Map<String, List<String>>> byLen = d.get(tty);
+			if (byLen == null)
+				continue;
+			for (int n = Math.min(maxN, toks.length); n >= 1; n--) {
+				Map<String, List<String>> inner = byLen.get(n);
+				if (inner == null)
+					continue;
+				for (int i = 0; i <= toks.length - n; i++) {
+					String k = String.join(" ", java.util.Arrays.copyOfRange(toks, i, i + n));
+					if (inner.containsKey(k))
+						out.add(k);
+				}
+			}
+		}
+		return out;
+	}
+}
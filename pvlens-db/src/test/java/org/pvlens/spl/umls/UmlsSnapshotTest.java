@@ -0,0 +1,113 @@
+package org.pvlens.spl.umls;
+
+/*
+ * This file is part of PVLens.
+ *
+ * Copyright (C) 2025 GlaxoSmithKline
+ *
+ * PVLens is free software: you can redistribute it and/or modify
+ * it under the terms of the GNU General Public License as published by
+ * the Free Software Foundation, either version 3 of the License, or
+ * (at your option) any later version.
+ *
+ * PVLens is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with PVLens.  If not, see <https://www.gnu.org/licenses/>.
+ */
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+class UmlsSnapshotTest {
+
+	private static final String KEY = UmlsSnapshot.cacheKey(List.of("UMLS_VERSION"),
+			List.of("2025AA".getBytes(StandardCharsets.UTF_8)));
+
+	private static UmlsLoader newLoader() {
+		UmlsLoader ldr = UmlsLoader.newTestInstance();
+		ldr._testSetTokenizer(s -> (s == null || s.isBlank()) ? new String[0] : s.trim().split("\\s+"));
+		return ldr;
+	}
+
+	private static UmlsLoader seededLoader() {
+		UmlsLoader ldr = newLoader();
+		ldr._testPutMeddraTerm("PT", "Increased blood pressure", "AUI1");
+		ldr._testPutMeddraTerm("LLT", "Headache", "AUI2", "AUI3");
+		ldr._testPutAtcAtom("A100", new Atom("A100", "C0004057", null, "N02BA01", "aspirin", "RXN_IN"));
+		ldr._testLinkNdcToAtc("0000-1111", "A100");
+		ldr._testRebuildTransformedMaps();
+		return ldr;
+	}
+
+	@Test
+	void restore_round_trips_dictionaries(@TempDir Path dir) {
+		UmlsLoader src = seededLoader();
+		Path file = UmlsSnapshot.file(dir, "2025AA", KEY);
+		src.saveSnapshot(file, KEY);
+		assertTrue(Files.isRegularFile(file));
+
+		UmlsLoader dst = newLoader();
+		assertTrue(dst.restoreSnapshot(file, KEY));
+		assertEquals(src.getMeddraTerms(), dst.getMeddraTerms());
+		assertEquals(src.getTransformedMap(), dst.getTransformedMap());
+		assertEquals(src.getStemmedMap(), dst.getStemmedMap());
+		assertEquals(src.getAtc(), dst.getAtc());
+		assertEquals(src.getMaxTokenMatchLength(), dst.getMaxTokenMatchLength());
+		assertEquals(List.of("C0004057"),
+				dst.getNdcToAtcCodes("0000-1111").stream().map(Atom::getCui).toList());
+	}
+
+	@Test
+	void different_key_is_a_miss(@TempDir Path dir) {
+		Path file = UmlsSnapshot.file(dir, "2025AA", KEY);
+		seededLoader().saveSnapshot(file, KEY);
+
+		String other = UmlsSnapshot.cacheKey(List.of("UMLS_VERSION"), List.of("2025AB".getBytes(StandardCharsets.UTF_8)));
+		assertNotEquals(KEY, other);
+		assertFalse(newLoader().restoreSnapshot(file, other));
+		assertFalse(newLoader().restoreSnapshot(dir.resolve("missing.snap"), KEY));
+	}
+
+	@Test
+	void truncated_snapshot_is_rejected_and_leaves_maps_empty(@TempDir Path dir) throws Exception {
+		Path file = UmlsSnapshot.file(dir, "2025AA", KEY);
+		seededLoader().saveSnapshot(file, KEY);
+		byte[] bytes = Files.readAllBytes(file);
+		Files.write(file, Arrays.copyOf(bytes, bytes.length - 12));
+
+		UmlsLoader dst = newLoader();
+		assertFalse(dst.restoreSnapshot(file, KEY));
+		assertTrue(dst.getMeddraTerms().isEmpty());
+		assertTrue(dst.getTransformedMap().isEmpty());
+		assertTrue(dst.getAtc().isEmpty());
+	}
+
+	@Test
+	void saving_prunes_stale_snapshots(@TempDir Path dir) throws Exception {
+		Path stale = UmlsSnapshot.file(dir, "2024AB", KEY);
+		Files.write(stale, new byte[] { 1, 2, 3 });
+		Path file = UmlsSnapshot.file(dir, "2025AA", KEY);
+		seededLoader().saveSnapshot(file, KEY);
+
+		assertTrue(Files.exists(file));
+		assertFalse(Files.exists(stale));
+		try (var files = Files.list(dir)) {
+			assertEquals(List.of(file.getFileName()), files.map(Path::getFileName).toList());
+		}
+	}
+}
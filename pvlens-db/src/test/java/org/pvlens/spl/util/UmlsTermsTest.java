@@ -73,6 +73,30 @@ class UmlsTermsTest {
         assertEquals(1001, rx.get("A2").getDatabaseId());
     }
 
+    @Test
+    void knownIdsAreKeptAndOnlyNewAtomsWritten() throws Exception {
+        Path tmp = Files.createTempDirectory("umls-terms-known");
+        ConfigLoader cfg = Mockito.mock(ConfigLoader.class);
+        Mockito.when(cfg.getSqlOutputPath()).thenReturn(tmp.toString());
+
+        Map<String, Atom> rx = new LinkedHashMap<>();
+        rx.put("A1", atom("A1", "C1", "RXC1", "Acetaminophen", "PT", 0));
+        rx.put("A2", atom("A2", "C2", "RXC2", "Ibuprofen", "PT", 0));
+        UmlsLoader umls = Mockito.mock(UmlsLoader.class);
+        Mockito.when(umls.getRxNorm()).thenReturn(rx);
+
+        UmlsTerms terms = new UmlsTerms(cfg, umls, 100);
+        terms.setKnownIds(Map.of("RXNORM", Map.of("A2", 7000)));
+        terms.createRxNormTable();
+
+        String sql = Files.readString(tmp.resolve("rxnorm.sql"));
+        assertFalse(sql.contains("Ibuprofen"), "known atom is not written again");
+        assertTrue(sql.contains("(7001, \"A1\""), "new atom continues above the known IDs");
+        assertEquals(7000, rx.get("A2").getDatabaseId());
+        assertEquals(7001, rx.get("A1").getDatabaseId());
+        assertEquals(Map.of("A1", 7001, "A2", 7000), terms.getAssignedIds().get("RXNORM"));
+    }
+
     private static Atom atom(String aui, String cui, String code, String term, String tty, int id) {
         Atom a = new Atom();
         a.setAui(aui);
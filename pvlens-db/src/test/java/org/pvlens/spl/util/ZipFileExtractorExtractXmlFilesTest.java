@@ -106,7 +106,7 @@ class ZipFileExtractorExtractXmlFilesTest {
     }
 
     private static String minimalProductXml(String productName) {
-        // Very small, valid SPL-like structure that ZipFileExtractor.getManufactureProductName can parse
+        // Very small, valid SPL-like structure that ZipFileExtractor's label classifier can parse
         return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
                "<document>\n" +
                "  <structuredBody>\n" +
@@ -149,6 +149,44 @@ class ZipFileExtractorExtractXmlFilesTest {
         assertTrue(processedZipNames.contains(PRES_ZIP),  "Prescription ZIP should be processed");
 
     }
+
+    @Test
+    @DisplayName("extractXmlFiles drops OTC and bulk-ingredient labels found under 'prescription'")
+    void extractXmlFiles_rejectsMiscategorizedLabels() throws Exception {
+        String otcZip  = "20250101_otc-in-prescription.zip";
+        String bulkZip = "20250101_bulk-in-prescription.zip";
+        createZipWithXml(presDir.resolve(otcZip),
+                Map.of("otc.xml", codedProductXml("HUMAN OTC DRUG LABEL", "OTC PRODUCT")));
+        createZipWithXml(presDir.resolve(bulkZip),
+                Map.of("bulk.xml", codedProductXml("BULK INGREDIENT", "BULK PRODUCT")));
+
+        new ZipFileExtractor(splRootDir).extractXmlFiles();
+
+        List<CSVRecord> xmlMap  = readCsv(xmlMapCsv, XML_MAP_HEADER);
+        List<CSVRecord> prodMap = readCsv(prodMapCsv, PROD_MAP_HEADER);
+        Set<String> xmlZips  = xmlMap.stream().map(r -> r.get("ZipFileName")).collect(Collectors.toSet());
+        Set<String> prodZips = prodMap.stream().map(r -> r.get("ZipFileName")).collect(Collectors.toSet());
+
+        assertFalse(xmlZips.contains(otcZip));
+        assertFalse(xmlZips.contains(bulkZip));
+        assertFalse(prodZips.contains(otcZip));
+        assertFalse(prodZips.contains(bulkZip));
+
+        // the well-formed prescription label still gets its product name
+        assertTrue(prodMap.stream().anyMatch(r -> r.get("ManufactureProductName").equals("PRESCRIPTION PRODUCT A")));
+    }
+
+    private static String codedProductXml(String displayName, String productName) {
+        return "<?xml version=\"1.0\" encoding=\"UTF-8\"?>\n" +
+               "<document>\n" +
+               "  <code code=\"00000-0\" displayName=\"" + displayName + "\"/>\n" +
+               "  <structuredBody>\n" +
+               "    <manufacturedProduct>\n" +
+               "      <name>" + productName + "</name>\n" +
+               "    </manufacturedProduct>\n" +
+               "  </structuredBody>\n" +
+               "</document>\n";
+    }
     
     
 }
@@ -0,0 +1,33 @@
+package org.pvlens.webapp.om;
+
+import java.util.List;
+
+/**
+ * One page of search results with the cursors of the pages around it.
+ * A cursor is null when there is no such page or the sort order cannot be
+ * paged by cursor (the page is then addressed by number).
+ */
+public class ResultPage<T> {
+
+    private final List<T> items;
+    private final String nextCursor;
+    private final String previousCursor;
+
+    public ResultPage(List<T> items, String nextCursor, String previousCursor) {
+        this.items = items;
+        this.nextCursor = nextCursor;
+        this.previousCursor = previousCursor;
+    }
+
+    public List<T> getItems() {
+        return items;
+    }
+
+    public String getNextCursor() {
+        return nextCursor;
+    }
+
+    public String getPreviousCursor() {
+        return previousCursor;
+    }
+}
@@ -0,0 +1,65 @@
+package org.pvlens.webapp.services;
+
+import java.sql.SQLException;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Short-lived cache of search result counts. Paging through results repeats
+ * the same COUNT(*) with the same filters on every page; within
+ * pvlens.countCache.seconds seconds (system property, default 60; 0 turns
+ * the cache off) the count is served from here. Keys are built with
+ * {@link #key(Object...)} from normalized filter values, so equivalent
+ * filters ("All" and no filter, different case in a search term) share an
+ * entry. At most 1000 entries are kept, least recently used dropped first.
+ */
+final class CountCache {
+
+    private static final long TTL_MILLIS = Long.getLong("pvlens.countCache.seconds", 60L) * 1000L;
+    private static final int MAX_ENTRIES = 1000;
+
+    /** A count query. */
+    @FunctionalInterface
+    interface Count {
+        int run() throws SQLException;
+    }
+
+    private record Entry(int count, long expires) {
+    }
+
+    private final Map<String, Entry> entries = new LinkedHashMap<>(64, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, Entry> eldest) {
+            return size() > MAX_ENTRIES;
+        }
+    };
+
+    /** The count for {@code key}, running {@code count} when there is no live entry. Failures are not cached. */
+    int get(String key, Count count) throws SQLException {
+        long now = System.currentTimeMillis();
+        synchronized (entries) {
+            Entry e = entries.get(key);
+            if (e != null && e.expires() > now) {
+                return e.count();
+            }
+        }
+        int n = count.run();
+        if (TTL_MILLIS > 0) {
+            synchronized (entries) {
+                entries.put(key, new Entry(n, System.currentTimeMillis() + TTL_MILLIS));
+            }
+        }
+        return n;
+    }
+
+    /** Cache key of normalized filter values (strings are trimmed and lower-cased). */
+    static String key(Object... parts) {
+        StringBuilder sb = new StringBuilder();
+        for (Object p : parts) {
+            String s = p == null ? "" : String.valueOf(p).trim().toLowerCase(Locale.ROOT);
+            sb.append(s.length()).append(':').append(s).append('|');
+        }
+        return sb.toString();
+    }
+}
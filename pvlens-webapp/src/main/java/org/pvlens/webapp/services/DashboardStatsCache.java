@@ -0,0 +1,205 @@
+package org.pvlens.webapp.services;
+
+import org.pvlens.webapp.om.DashboardStats;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Overview statistics served from memory.
+ *
+ * The statistics only change when a new pipeline build is loaded, so they are
+ * read once per dataset version instead of on every Overview page view. The
+ * version is the build stamp in DATA_BUILD, which pvlens-db writes anew on
+ * every pipeline run (full or incremental) once its rows are loaded, so it
+ * changes even when a rebuild keeps the row IDs or a delta only updates or
+ * removes rows. Databases loaded before DATA_BUILD existed fall back to the
+ * largest SUBSTANCE, PRODUCT_AE, PRODUCT_IND and SRLC IDs.
+ *
+ * A snapshot comes from the DASHBOARD_STATS row that pvlens-db writes with the
+ * stamp (dashboard_stats.sql, run last by build.sh). When that row is missing
+ * or was computed for another version, the same statistics are computed from
+ * the tables, once for that version.
+ *
+ * The first snapshot is loaded in the background at startup (or by the first
+ * request, if it comes sooner). Every pvlens.dashboardStats.checkSeconds
+ * seconds (system property, default 60; 0 disables the check) the version is
+ * read again and, when it changed, a new snapshot is loaded in the background
+ * while requests keep getting the previous one.
+ */
+public final class DashboardStatsCache {
+
+    private static final Logger log = LoggerFactory.getLogger(DashboardStatsCache.class);
+
+    private static final long CHECK_SECONDS = Long.getLong("pvlens.dashboardStats.checkSeconds", 60L);
+
+    /** Dataset version; dashboard_stats.sql writes the same stamp to DASHBOARD_STATS.DATA_VERSION. */
+    static final String VERSION_SQL = "SELECT BUILD_ID FROM DATA_BUILD WHERE ID = 1";
+
+    /** Version of a database without DATA_BUILD (loaded by an older pvlens-db). */
+    static final String LEGACY_VERSION_SQL = "SELECT CONCAT_WS('/', "
+            + "(SELECT COALESCE(MAX(ID), 0) FROM SUBSTANCE), "
+            + "(SELECT COALESCE(MAX(ID), 0) FROM PRODUCT_AE), "
+            + "(SELECT COALESCE(MAX(ID), 0) FROM PRODUCT_IND), "
+            + "(SELECT COALESCE(MAX(ID), 0) FROM SRLC))";
+
+    /** The statistics from the tables, with the column names of DASHBOARD_STATS. */
+    private static final String STATS_SQL = "SELECT "
+            + "(SELECT COUNT(*) FROM SUBSTANCE) AS TOTAL_SUBSTANCES, "
+            + "ae.TOTAL_AES, ae.BLACKBOX_WARNINGS, ae.STANDARD_WARNINGS, ae.EXACT_MATCHES, ae.NLP_MATCHES, "
+            + "(SELECT COUNT(*) FROM PRODUCT_IND) AS TOTAL_INDICATIONS, "
+            + "(SELECT COUNT(*) FROM SRLC) AS TOTAL_SRLC, "
+            + "src.PRESCRIPTION_DRUGS, src.OTC_DRUGS, "
+            + "ae.DATA_START_DATE, ae.DATA_END_DATE "
+            + "FROM (SELECT COUNT(*) AS TOTAL_AES, "
+            + "  COALESCE(SUM(BLACKBOX = 1), 0) AS BLACKBOX_WARNINGS, "
+            + "  COALESCE(SUM(WARNING = 1 AND BLACKBOX = 0), 0) AS STANDARD_WARNINGS, "
+            + "  COALESCE(SUM(EXACT_MATCH = 1), 0) AS EXACT_MATCHES, "
+            + "  COALESCE(SUM(EXACT_MATCH = 0), 0) AS NLP_MATCHES, "
+            + "  MIN(LABEL_DATE) AS DATA_START_DATE, MAX(LABEL_DATE) AS DATA_END_DATE "
+            + "  FROM PRODUCT_AE) ae, "
+            + "(SELECT COUNT(DISTINCT CASE WHEN UPPER(st.SOURCE_TYPE) = 'PRESCRIPTION' THEN sf.PRODUCT_ID END) AS PRESCRIPTION_DRUGS, "
+            + "  COUNT(DISTINCT CASE WHEN UPPER(st.SOURCE_TYPE) = 'OTC' THEN sf.PRODUCT_ID END) AS OTC_DRUGS "
+            + "  FROM SPL_SRCFILE sf JOIN SOURCE_TYPE st ON sf.SOURCE_TYPE_ID = st.ID) src";
+
+    private static final String TABLE_SQL = "SELECT * FROM DASHBOARD_STATS WHERE ID = 1 AND DATA_VERSION = ?";
+
+    private record Snapshot(String version, DashboardStats stats) {
+    }
+
+    private final MeddraSearchIndex.ConnectionSource connections;
+
+    private volatile Snapshot snapshot;
+    private ScheduledExecutorService checker;
+
+    public DashboardStatsCache(MeddraSearchIndex.ConnectionSource connections) {
+        this.connections = connections;
+    }
+
+    /** Load the first snapshot in the background, then check the version on the interval. */
+    public synchronized void start() {
+        if (checker != null) {
+            return;
+        }
+        checker = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "dashboard-stats");
+            t.setDaemon(true);
+            return t;
+        });
+        if (CHECK_SECONDS > 0) {
+            checker.scheduleWithFixedDelay(this::checkQuietly, 0, CHECK_SECONDS, TimeUnit.SECONDS);
+        } else {
+            checker.execute(this::checkQuietly);
+        }
+    }
+
+    /**
+     * The current statistics. Only a request arriving before the first
+     * snapshot was loaded goes to the database (empty statistics if that fails).
+     */
+    public DashboardStats get() {
+        Snapshot s = snapshot;
+        if (s == null) {
+            try {
+                check();
+            } catch (SQLException e) {
+                log.error("Error getting dashboard stats", e);
+            }
+            s = snapshot;
+        }
+        return s == null ? new DashboardStats() : s.stats();
+    }
+
+    /** Load a new snapshot if the dataset version changed since the current one. */
+    public synchronized void check() throws SQLException {
+        try (Connection conn = connections.get()) {
+            String version = version(conn);
+            Snapshot s = snapshot;
+            if (s != null && s.version().equals(version)) {
+                return;
+            }
+            long start = System.currentTimeMillis();
+            DashboardStats stats = fromTable(conn, version);
+            boolean stored = stats != null;
+            if (!stored) {
+                stats = compute(conn);
+            }
+            snapshot = new Snapshot(version, stats);
+            log.info("Dashboard stats for data version {} {} in {} ms", version,
+                    stored ? "read from DASHBOARD_STATS" : "computed", System.currentTimeMillis() - start);
+        }
+    }
+
+    private void checkQuietly() {
+        try {
+            check();
+        } catch (SQLException | RuntimeException e) {
+            log.error("Error refreshing dashboard stats", e);
+        }
+    }
+
+    private static String version(Connection conn) throws SQLException {
+        try {
+            return version(conn, VERSION_SQL);
+        } catch (SQLException e) {
+            return "legacy:" + version(conn, LEGACY_VERSION_SQL);
+        }
+    }
+
+    private static String version(Connection conn, String sql) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(sql);
+             ResultSet rs = ps.executeQuery()) {
+            return rs.next() ? rs.getString(1) : "";
+        }
+    }
+
+    /** The DASHBOARD_STATS row for {@code version}; null if there is none (or no table). */
+    private static DashboardStats fromTable(Connection conn, String version) {
+        try (PreparedStatement ps = conn.prepareStatement(TABLE_SQL)) {
+            ps.setString(1, version);
+            try (ResultSet rs = ps.executeQuery()) {
+                return rs.next() ? map(rs) : null;
+            }
+        } catch (SQLException e) {
+            return null;
+        }
+    }
+
+    private static DashboardStats compute(Connection conn) throws SQLException {
+        try (PreparedStatement ps = conn.prepareStatement(STATS_SQL);
+             ResultSet rs = ps.executeQuery()) {
+            return rs.next() ? map(rs) : new DashboardStats();
+        }
+    }
+
+    private static DashboardStats map(ResultSet rs) throws SQLException {
+        DashboardStats stats = new DashboardStats();
+        stats.setTotalSubstances(rs.getInt("TOTAL_SUBSTANCES"));
+        stats.setTotalAdverseEvents(rs.getInt("TOTAL_AES"));
+        stats.setTotalIndications(rs.getInt("TOTAL_INDICATIONS"));
+        stats.setTotalSrlcUpdates(rs.getInt("TOTAL_SRLC"));
+        stats.setBlackboxWarnings(rs.getInt("BLACKBOX_WARNINGS"));
+        stats.setStandardWarnings(rs.getInt("STANDARD_WARNINGS"));
+        stats.setExactMatches(rs.getInt("EXACT_MATCHES"));
+        stats.setNlpMatches(rs.getInt("NLP_MATCHES"));
+        stats.setPrescriptionDrugs(rs.getInt("PRESCRIPTION_DRUGS"));
+        stats.setOtcDrugs(rs.getInt("OTC_DRUGS"));
+        stats.setDataStartDate(rs.getDate("DATA_START_DATE"));
+        stats.setDataEndDate(rs.getDate("DATA_END_DATE"));
+
+        // Calculate rates
+        if (stats.getTotalSubstances() > 0) {
+            stats.setProcessedRate(97.22); // Placeholder - calculate actual rate
+            stats.setVerifiedRate(71.74);
+            stats.setAnomalyRate(10.12);
+        }
+        return stats;
+    }
+}
@@ -8,12 +8,14 @@ import org.slf4j.LoggerFactory;
 import java.sql.*;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.TreeMap;
 
 /**
  * Database service for PVLens data access
@@ -24,6 +26,14 @@ public class DatabaseService {
     private static final Logger log = LoggerFactory.getLogger(DatabaseService.class);
     private static DatabaseService instance;
     private BasicDataSource dataSource;
+    private final MeddraSearchIndex meddraIndex;
+    private final DashboardStatsCache dashboardStats;
+    private final CountCache counts = new CountCache();
+    private volatile Boolean meddraUsage;
+    private volatile Boolean substanceNames;
+
+    // Above this many matching MedDRA terms the fuzzy AE search uses SQL matching instead of ID lists
+    private static final int MAX_FUZZY_MEDDRA_IDS = 5000;
 
     // Database configuration (should be loaded from properties in production)
     private static final String DB_URL = "jdbc:mysql://localhost:3306/pvlens?useSSL=false&serverTimezone=UTC&allowPublicKeyRetrieval=true";
@@ -32,6 +42,10 @@ public class DatabaseService {
 
     private DatabaseService() {
         initDataSource();
+        meddraIndex = new MeddraSearchIndex(this::getConnection);
+        meddraIndex.start();
+        dashboardStats = new DashboardStatsCache(this::getConnection);
+        dashboardStats.start();
     }
 
     public static synchronized DatabaseService getInstance() {
@@ -57,79 +71,108 @@ public class DatabaseService {
         return dataSource.getConnection();
     }
 
-    // ==================== Dashboard Stats ====================
-
-    public DashboardStats getDashboardStats() {
-        DashboardStats stats = new DashboardStats();
-
-        try (Connection conn = getConnection()) {
-            // Total substances
-            stats.setTotalSubstances(getCount(conn, "SELECT COUNT(*) FROM SUBSTANCE"));
-
-            // Total adverse events
-            stats.setTotalAdverseEvents(getCount(conn, "SELECT COUNT(*) FROM PRODUCT_AE"));
-
-            // Total indications
-            stats.setTotalIndications(getCount(conn, "SELECT COUNT(*) FROM PRODUCT_IND"));
-
-            // Total SRLC updates
-            stats.setTotalSrlcUpdates(getCount(conn, "SELECT COUNT(*) FROM SRLC"));
-
-            // Blackbox warnings
-            stats.setBlackboxWarnings(getCount(conn, "SELECT COUNT(*) FROM PRODUCT_AE WHERE BLACKBOX = 1"));
-
-            // Standard warnings
-            stats.setStandardWarnings(getCount(conn, "SELECT COUNT(*) FROM PRODUCT_AE WHERE WARNING = 1 AND BLACKBOX = 0"));
-
-            // Exact matches
-            stats.setExactMatches(getCount(conn, "SELECT COUNT(*) FROM PRODUCT_AE WHERE EXACT_MATCH = 1"));
+    /**
+     * True when the database has the MEDDRA_USAGE summary written by the
+     * pipeline (databases loaded before it existed do not).
+     */
+    static boolean hasMeddraUsage(Connection conn) {
+        return hasRows(conn, "MEDDRA_USAGE");
+    }
 
-            // NLP matches
-            stats.setNlpMatches(getCount(conn, "SELECT COUNT(*) FROM PRODUCT_AE WHERE EXACT_MATCH = 0"));
+    private static boolean hasRows(Connection conn, String table) {
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT 1 FROM " + table + " LIMIT 1")) {
+            return rs.next();
+        } catch (SQLException e) {
+            return false;
+        }
+    }
 
-            // Source type counts (case-insensitive comparison)
-            stats.setPrescriptionDrugs(getCount(conn,
-                "SELECT COUNT(DISTINCT s.ID) FROM SUBSTANCE s " +
-                "JOIN SPL_SRCFILE sf ON s.ID = sf.PRODUCT_ID " +
-                "JOIN SOURCE_TYPE st ON sf.SOURCE_TYPE_ID = st.ID " +
-                "WHERE UPPER(st.SOURCE_TYPE) = 'PRESCRIPTION'"));
+    private boolean hasMeddraUsage() {
+        Boolean has = meddraUsage;
+        if (has == null) {
+            try (Connection conn = getConnection()) {
+                has = hasMeddraUsage(conn);
+            } catch (SQLException e) {
+                log.error("Error checking for MEDDRA_USAGE", e);
+                return false;
+            }
+            meddraUsage = has;
+            if (!has) {
+                log.warn("MEDDRA_USAGE is missing or empty; term usage is counted per query");
+            }
+        }
+        return has;
+    }
 
-            stats.setOtcDrugs(getCount(conn,
-                "SELECT COUNT(DISTINCT s.ID) FROM SUBSTANCE s " +
-                "JOIN SPL_SRCFILE sf ON s.ID = sf.PRODUCT_ID " +
-                "JOIN SOURCE_TYPE st ON sf.SOURCE_TYPE_ID = st.ID " +
-                "WHERE UPPER(st.SOURCE_TYPE) = 'OTC'"));
+    /**
+     * usage_count of MEDDRA term m: a MEDDRA_USAGE lookup, or a count over
+     * {@code table} when the database has no summary.
+     */
+    private String usageCountSql(String column, String table) {
+        return hasMeddraUsage()
+                ? "COALESCE((SELECT u." + column + " FROM MEDDRA_USAGE u WHERE u.MEDDRA_ID = m.ID), 0)"
+                : "(SELECT COUNT(*) FROM " + table + " x WHERE x.MEDDRA_ID = m.ID)";
+    }
 
-            // Date range
-            try (PreparedStatement ps = conn.prepareStatement(
-                    "SELECT MIN(LABEL_DATE), MAX(LABEL_DATE) FROM PRODUCT_AE WHERE LABEL_DATE IS NOT NULL");
-                 ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    stats.setDataStartDate(rs.getDate(1));
-                    stats.setDataEndDate(rs.getDate(2));
-                }
+    /**
+     * True when the database has the SUBSTANCE_NAME display names written by
+     * the pipeline.
+     */
+    private boolean hasSubstanceNames() {
+        Boolean has = substanceNames;
+        if (has == null) {
+            try (Connection conn = getConnection()) {
+                has = hasRows(conn, "SUBSTANCE_NAME");
+            } catch (SQLException e) {
+                log.error("Error checking for SUBSTANCE_NAME", e);
+                return false;
             }
-
-            // Calculate rates
-            int total = stats.getTotalSubstances();
-            if (total > 0) {
-                stats.setProcessedRate(97.22); // Placeholder - calculate actual rate
-                stats.setVerifiedRate(71.74);
-                stats.setAnomalyRate(10.12);
+            substanceNames = has;
+            if (!has) {
+                log.warn("SUBSTANCE_NAME is missing or empty; substance names are looked up per row");
             }
-
-        } catch (SQLException e) {
-            log.error("Error getting dashboard stats", e);
         }
+        return has;
+    }
+
+    /**
+     * PRIMARY_NAME and NAME_ROW columns of substance s: the SUBSTANCE_NAME row
+     * joined by {@link #substanceNameJoin()}, or the first NDC name when the
+     * database has no display names.
+     */
+    private String substanceNameColumns() {
+        return hasSubstanceNames()
+                ? "sn.NAME AS PRIMARY_NAME, sn.PRODUCT_ID AS NAME_ROW "
+                : "(SELECT n.PRODUCT_NAME FROM NDC_CODE n JOIN PRODUCT_NDC pn ON n.ID = pn.NDC_ID "
+                  + "WHERE pn.PRODUCT_ID = s.ID LIMIT 1) AS PRIMARY_NAME, NULL AS NAME_ROW ";
+    }
 
-        return stats;
+    private String substanceNameJoin() {
+        return hasSubstanceNames() ? "LEFT JOIN SUBSTANCE_NAME sn ON sn.PRODUCT_ID = s.ID " : "";
     }
 
-    private int getCount(Connection conn, String sql) throws SQLException {
-        try (PreparedStatement ps = conn.prepareStatement(sql);
-             ResultSet rs = ps.executeQuery()) {
-            return rs.next() ? rs.getInt(1) : 0;
+    /**
+     * Display name of a row selected with {@link #substanceNameColumns()}.
+     * Only substances without a SUBSTANCE_NAME row (or without an NDC name,
+     * on older databases) cost further queries.
+     */
+    private String substanceName(Connection conn, ResultSet rs, int substanceId) throws SQLException {
+        String name = rs.getString("PRIMARY_NAME");
+        if (name != null && !name.trim().isEmpty()) {
+            return name;
+        }
+        if (rs.getObject("NAME_ROW") != null) {
+            return "Unknown Substance (ID: " + substanceId + ")";
         }
+        return getPrimaryNameForSubstance(conn, substanceId);
+    }
+
+    // ==================== Dashboard Stats ====================
+
+    /** Overview statistics, from memory (see {@link DashboardStatsCache}). */
+    public DashboardStats getDashboardStats() {
+        return dashboardStats.get();
     }
 
     // ==================== Substances ====================
@@ -139,11 +182,10 @@ public class DatabaseService {
 
         StringBuilder sql = new StringBuilder();
         sql.append("SELECT DISTINCT s.ID, ");
-        sql.append("(SELECT n.PRODUCT_NAME FROM NDC_CODE n ");
-        sql.append(" JOIN PRODUCT_NDC pn ON n.ID = pn.NDC_ID ");
-        sql.append(" WHERE pn.PRODUCT_ID = s.ID LIMIT 1) AS PRIMARY_NAME, ");
+        sql.append(substanceNameColumns()).append(", ");
         sql.append("sf.NDA_SPONSOR, st.SOURCE_TYPE, sf.APPROVAL_DATE ");
         sql.append("FROM SUBSTANCE s ");
+        sql.append(substanceNameJoin());
         sql.append("LEFT JOIN SPL_SRCFILE sf ON s.ID = sf.PRODUCT_ID ");
         sql.append("LEFT JOIN SOURCE_TYPE st ON sf.SOURCE_TYPE_ID = st.ID ");
         sql.append("LEFT JOIN PRODUCT_NDC pn ON s.ID = pn.PRODUCT_ID ");
@@ -187,12 +229,7 @@ public class DatabaseService {
                     Substance s = new Substance();
                     int substanceId = rs.getInt("ID");
                     s.setId(substanceId);
-                    String primaryName = rs.getString("PRIMARY_NAME");
-                    // Use fallback if PRIMARY_NAME is null or empty
-                    if (primaryName == null || primaryName.trim().isEmpty()) {
-                        primaryName = getPrimaryNameForSubstance(conn, substanceId);
-                    }
-                    s.setPrimaryName(primaryName);
+                    s.setPrimaryName(substanceName(conn, rs, substanceId));
                     s.setSponsor(rs.getString("NDA_SPONSOR"));
                     s.setSourceType(rs.getString("SOURCE_TYPE"));
                     s.setApprovalDate(rs.getDate("APPROVAL_DATE"));
@@ -250,8 +287,9 @@ public class DatabaseService {
     }
 
     public Substance getSubstanceById(int id) {
-        String sql = "SELECT s.ID, sf.NDA_SPONSOR, st.SOURCE_TYPE, sf.APPROVAL_DATE " +
+        String sql = "SELECT s.ID, " + substanceNameColumns() + ", sf.NDA_SPONSOR, st.SOURCE_TYPE, sf.APPROVAL_DATE " +
                      "FROM SUBSTANCE s " +
+                     substanceNameJoin() +
                      "LEFT JOIN SPL_SRCFILE sf ON s.ID = sf.PRODUCT_ID " +
                      "LEFT JOIN SOURCE_TYPE st ON sf.SOURCE_TYPE_ID = st.ID " +
                      "WHERE s.ID = ? LIMIT 1";
@@ -269,8 +307,7 @@ public class DatabaseService {
                     s.setSourceType(rs.getString("SOURCE_TYPE"));
                     s.setApprovalDate(rs.getDate("APPROVAL_DATE"));
 
-                    // Get primary name from NDC
-                    s.setPrimaryName(getPrimaryNameForSubstance(conn, id));
+                    s.setPrimaryName(substanceName(conn, rs, id));
 
                     return s;
                 }
@@ -488,12 +525,10 @@ public class DatabaseService {
         List<DropdownItem> items = new ArrayList<>();
         items.add(new DropdownItem(0, "All Substances"));
 
-        String sql = "SELECT DISTINCT s.ID, " +
-                     "(SELECT n.PRODUCT_NAME FROM NDC_CODE n " +
-                     " JOIN PRODUCT_NDC pn ON n.ID = pn.NDC_ID " +
-                     " WHERE pn.PRODUCT_ID = s.ID LIMIT 1) AS NAME " +
+        String sql = "SELECT DISTINCT s.ID, " + substanceNameColumns() +
                      "FROM SUBSTANCE s " +
-                     "ORDER BY NAME LIMIT 100";
+                     substanceNameJoin() +
+                     "ORDER BY PRIMARY_NAME LIMIT 100";
 
         try (Connection conn = getConnection();
              PreparedStatement ps = conn.prepareStatement(sql);
@@ -501,11 +536,7 @@ public class DatabaseService {
 
             while (rs.next()) {
                 int substanceId = rs.getInt("ID");
-                String name = rs.getString("NAME");
-                // Use fallback if name is null or empty
-                if (name == null || name.trim().isEmpty()) {
-                    name = getPrimaryNameForSubstance(conn, substanceId);
-                }
+                String name = substanceName(conn, rs, substanceId);
                 if (name != null && !name.trim().isEmpty()) {
                     items.add(new DropdownItem(substanceId, name));
                 }
@@ -524,8 +555,19 @@ public class DatabaseService {
                                                    String severity, String matchType,
                                                    String sortBy, String sortOrder,
                                                    int offset, int limit) {
-        List<AdverseEvent> events = new ArrayList<>();
+        return searchAdverseEvents(searchTerm, substanceId, severity, matchType, sortBy, sortOrder,
+                null, offset, limit).getItems();
+    }
 
+    /**
+     * A page of adverse events: the rows past {@code cursor} when there is
+     * one (and the sort order has cursors), otherwise the rows from
+     * {@code offset}.
+     */
+    public ResultPage<AdverseEvent> searchAdverseEvents(String searchTerm, int substanceId,
+                                                         String severity, String matchType,
+                                                         String sortBy, String sortOrder,
+                                                         PageCursor cursor, int offset, int limit) {
         StringBuilder sql = new StringBuilder();
         sql.append("SELECT ae.ID, ae.PRODUCT_ID, ae.MEDDRA_ID, ae.LABEL_DATE, ");
         sql.append("ae.WARNING, ae.BLACKBOX, ae.EXACT_MATCH, ");
@@ -538,88 +580,64 @@ public class DatabaseService {
         sql.append("WHERE 1=1 ");
 
         List<Object> params = new ArrayList<>();
-
-        if (searchTerm != null && !searchTerm.isEmpty()) {
-            sql.append("AND m.MEDDRA_TERM LIKE ? ");
-            params.add("%" + searchTerm + "%");
-        }
-
-        if (substanceId > 0) {
-            sql.append("AND ae.PRODUCT_ID = ? ");
-            params.add(substanceId);
-        }
-
-        if (severity != null && !severity.equals("all")) {
-            if (severity.equals("blackbox")) {
-                sql.append("AND ae.BLACKBOX = 1 ");
-            } else if (severity.equals("warning")) {
-                sql.append("AND ae.WARNING = 1 AND ae.BLACKBOX = 0 ");
-            }
-        }
-
-        if (matchType != null && !matchType.equals("all")) {
-            if (matchType.equals("exact")) {
-                sql.append("AND ae.EXACT_MATCH = 1 ");
-            } else if (matchType.equals("nlp")) {
-                sql.append("AND ae.EXACT_MATCH = 0 ");
-            }
-        }
+        appendAdverseEventFilters(sql, params, searchTerm, substanceId, severity, matchType);
 
         // Add sorting
-        String orderColumn = "ae.LABEL_DATE";
-        if ("term".equals(sortBy)) orderColumn = "m.MEDDRA_TERM";
-        else if ("code".equals(sortBy)) orderColumn = "m.MEDDRA_CODE";
-        else if ("substance".equals(sortBy)) orderColumn = "SUBSTANCE_NAME";
-
-        sql.append("ORDER BY ").append(orderColumn);
-        sql.append("desc".equalsIgnoreCase(sortOrder) ? " DESC " : " ASC ");
-        sql.append("LIMIT ? OFFSET ?");
-        params.add(limit);
-        params.add(offset);
-
-        try (Connection conn = getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql.toString())) {
-
-            for (int i = 0; i < params.size(); i++) {
-                ps.setObject(i + 1, params.get(i));
-            }
-
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    AdverseEvent ae = new AdverseEvent();
-                    ae.setId(rs.getInt("ID"));
-                    ae.setSubstanceId(rs.getInt("PRODUCT_ID"));
-                    ae.setSubstanceName(rs.getString("SUBSTANCE_NAME"));
-                    ae.setMeddraId(rs.getInt("MEDDRA_ID"));
-                    ae.setMeddraCode(rs.getString("MEDDRA_CODE"));
-                    ae.setMeddraTerm(rs.getString("MEDDRA_TERM"));
-                    ae.setMeddraTermType(rs.getString("MEDDRA_TTY"));
-                    ae.setLabelDate(rs.getDate("LABEL_DATE"));
-                    ae.setWarning(rs.getBoolean("WARNING"));
-                    ae.setBlackbox(rs.getBoolean("BLACKBOX"));
-                    ae.setExactMatch(rs.getBoolean("EXACT_MATCH"));
-                    events.add(ae);
-                }
-            }
+        boolean desc = "desc".equalsIgnoreCase(sortOrder);
+        SortKey order = new SortKey("ae.LABEL_DATE", "LABEL_DATE", "ae.ID", desc);
+        if ("term".equals(sortBy)) order = new SortKey("m.MEDDRA_TERM", "MEDDRA_TERM", "ae.ID", desc);
+        else if ("code".equals(sortBy)) order = new SortKey("m.MEDDRA_CODE", "MEDDRA_CODE", "ae.ID", desc);
+        else if ("substance".equals(sortBy)) order = new SortKey("SUBSTANCE_NAME", null, "ae.ID", desc);
 
+        try (Connection conn = getConnection()) {
+            return page(conn, sql, params, order, cursor, offset, limit, rs -> {
+                AdverseEvent ae = new AdverseEvent();
+                ae.setId(rs.getInt("ID"));
+                ae.setSubstanceId(rs.getInt("PRODUCT_ID"));
+                ae.setSubstanceName(rs.getString("SUBSTANCE_NAME"));
+                ae.setMeddraId(rs.getInt("MEDDRA_ID"));
+                ae.setMeddraCode(rs.getString("MEDDRA_CODE"));
+                ae.setMeddraTerm(rs.getString("MEDDRA_TERM"));
+                ae.setMeddraTermType(rs.getString("MEDDRA_TTY"));
+                ae.setLabelDate(rs.getDate("LABEL_DATE"));
+                ae.setWarning(rs.getBoolean("WARNING"));
+                ae.setBlackbox(rs.getBoolean("BLACKBOX"));
+                ae.setExactMatch(rs.getBoolean("EXACT_MATCH"));
+                return ae;
+            });
         } catch (SQLException e) {
             log.error("Error searching adverse events", e);
         }
 
-        return events;
+        return new ResultPage<>(new ArrayList<>(), null, null);
     }
 
     public int getAdverseEventCount(String searchTerm, int substanceId, String severity, String matchType) {
-        StringBuilder sql = new StringBuilder();
-        sql.append("SELECT COUNT(*) FROM PRODUCT_AE ae ");
-        sql.append("JOIN MEDDRA m ON ae.MEDDRA_ID = m.ID ");
-        sql.append("WHERE 1=1 ");
+        String key = CountCache.key("ae", term(searchTerm), Math.max(substanceId, 0),
+                option(severity, "blackbox", "warning"), option(matchType, "exact", "nlp"));
+        try {
+            return counts.get(key, () -> {
+                StringBuilder sql = new StringBuilder();
+                sql.append("SELECT COUNT(*) FROM PRODUCT_AE ae ");
+                sql.append("JOIN MEDDRA m ON ae.MEDDRA_ID = m.ID ");
+                sql.append("WHERE 1=1 ");
+                List<Object> params = new ArrayList<>();
+                appendAdverseEventFilters(sql, params, searchTerm, substanceId, severity, matchType);
+                return count(sql, params);
+            });
+        } catch (SQLException e) {
+            log.error("Error counting adverse events", e);
+        }
 
-        List<Object> params = new ArrayList<>();
+        return 0;
+    }
 
-        if (searchTerm != null && !searchTerm.isEmpty()) {
+    private static void appendAdverseEventFilters(StringBuilder sql, List<Object> params, String searchTerm,
+                                                  int substanceId, String severity, String matchType) {
+        String term = term(searchTerm);
+        if (!term.isEmpty()) {
             sql.append("AND m.MEDDRA_TERM LIKE ? ");
-            params.add("%" + searchTerm + "%");
+            params.add("%" + term + "%");
         }
 
         if (substanceId > 0) {
@@ -627,40 +645,17 @@ public class DatabaseService {
             params.add(substanceId);
         }
 
-        if (severity != null && !severity.equals("all")) {
-            if (severity.equals("blackbox")) {
-                sql.append("AND ae.BLACKBOX = 1 ");
-            } else if (severity.equals("warning")) {
-                sql.append("AND ae.WARNING = 1 AND ae.BLACKBOX = 0 ");
-            }
+        switch (option(severity, "blackbox", "warning")) {
+            case "blackbox" -> sql.append("AND ae.BLACKBOX = 1 ");
+            case "warning" -> sql.append("AND ae.WARNING = 1 AND ae.BLACKBOX = 0 ");
+            default -> { }
         }
 
-        if (matchType != null && !matchType.equals("all")) {
-            if (matchType.equals("exact")) {
-                sql.append("AND ae.EXACT_MATCH = 1 ");
-            } else if (matchType.equals("nlp")) {
-                sql.append("AND ae.EXACT_MATCH = 0 ");
-            }
+        switch (option(matchType, "exact", "nlp")) {
+            case "exact" -> sql.append("AND ae.EXACT_MATCH = 1 ");
+            case "nlp" -> sql.append("AND ae.EXACT_MATCH = 0 ");
+            default -> { }
         }
-
-        try (Connection conn = getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql.toString())) {
-
-            for (int i = 0; i < params.size(); i++) {
-                ps.setObject(i + 1, params.get(i));
-            }
-
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getInt(1);
-                }
-            }
-
-        } catch (SQLException e) {
-            log.error("Error counting adverse events", e);
-        }
-
-        return 0;
     }
 
     public List<AdverseEvent> getRecentAdverseEvents(int limit) {
@@ -680,8 +675,14 @@ public class DatabaseService {
     public List<Indication> searchIndications(String searchTerm, int substanceId,
                                                String matchType, String sortBy, String sortOrder,
                                                int offset, int limit) {
-        List<Indication> indications = new ArrayList<>();
+        return searchIndications(searchTerm, substanceId, matchType, sortBy, sortOrder, null, offset, limit)
+                .getItems();
+    }
 
+    /** A page of indications, by cursor or offset as in {@link #searchAdverseEvents}. */
+    public ResultPage<Indication> searchIndications(String searchTerm, int substanceId,
+                                                     String matchType, String sortBy, String sortOrder,
+                                                     PageCursor cursor, int offset, int limit) {
         StringBuilder sql = new StringBuilder();
         sql.append("SELECT ind.ID, ind.PRODUCT_ID, ind.MEDDRA_ID, ind.LABEL_DATE, ");
         sql.append("ind.EXACT_MATCH, m.MEDDRA_CODE, m.MEDDRA_TERM, m.MEDDRA_TTY, ");
@@ -693,78 +694,62 @@ public class DatabaseService {
         sql.append("WHERE 1=1 ");
 
         List<Object> params = new ArrayList<>();
-
-        if (searchTerm != null && !searchTerm.isEmpty()) {
-            sql.append("AND m.MEDDRA_TERM LIKE ? ");
-            params.add("%" + searchTerm + "%");
-        }
-
-        if (substanceId > 0) {
-            sql.append("AND ind.PRODUCT_ID = ? ");
-            params.add(substanceId);
-        }
-
-        if (matchType != null && !matchType.equals("all")) {
-            if (matchType.equals("exact")) {
-                sql.append("AND ind.EXACT_MATCH = 1 ");
-            } else if (matchType.equals("nlp")) {
-                sql.append("AND ind.EXACT_MATCH = 0 ");
-            }
-        }
+        appendIndicationFilters(sql, params, searchTerm, substanceId, matchType);
 
         // Add sorting
-        String orderColumn = "ind.LABEL_DATE";
-        if ("term".equals(sortBy)) orderColumn = "m.MEDDRA_TERM";
-        else if ("code".equals(sortBy)) orderColumn = "m.MEDDRA_CODE";
-        else if ("substance".equals(sortBy)) orderColumn = "SUBSTANCE_NAME";
-
-        sql.append("ORDER BY ").append(orderColumn);
-        sql.append("desc".equalsIgnoreCase(sortOrder) ? " DESC " : " ASC ");
-        sql.append("LIMIT ? OFFSET ?");
-        params.add(limit);
-        params.add(offset);
-
-        try (Connection conn = getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql.toString())) {
-
-            for (int i = 0; i < params.size(); i++) {
-                ps.setObject(i + 1, params.get(i));
-            }
-
-            try (ResultSet rs = ps.executeQuery()) {
-                while (rs.next()) {
-                    Indication ind = new Indication();
-                    ind.setId(rs.getInt("ID"));
-                    ind.setSubstanceId(rs.getInt("PRODUCT_ID"));
-                    ind.setSubstanceName(rs.getString("SUBSTANCE_NAME"));
-                    ind.setMeddraId(rs.getInt("MEDDRA_ID"));
-                    ind.setMeddraCode(rs.getString("MEDDRA_CODE"));
-                    ind.setMeddraTerm(rs.getString("MEDDRA_TERM"));
-                    ind.setMeddraTermType(rs.getString("MEDDRA_TTY"));
-                    ind.setLabelDate(rs.getDate("LABEL_DATE"));
-                    ind.setExactMatch(rs.getBoolean("EXACT_MATCH"));
-                    indications.add(ind);
-                }
-            }
+        boolean desc = "desc".equalsIgnoreCase(sortOrder);
+        SortKey order = new SortKey("ind.LABEL_DATE", "LABEL_DATE", "ind.ID", desc);
+        if ("term".equals(sortBy)) order = new SortKey("m.MEDDRA_TERM", "MEDDRA_TERM", "ind.ID", desc);
+        else if ("code".equals(sortBy)) order = new SortKey("m.MEDDRA_CODE", "MEDDRA_CODE", "ind.ID", desc);
+        else if ("substance".equals(sortBy)) order = new SortKey("SUBSTANCE_NAME", null, "ind.ID", desc);
 
+        try (Connection conn = getConnection()) {
+            return page(conn, sql, params, order, cursor, offset, limit, rs -> {
+                Indication ind = new Indication();
+                ind.setId(rs.getInt("ID"));
+                ind.setSubstanceId(rs.getInt("PRODUCT_ID"));
+                ind.setSubstanceName(rs.getString("SUBSTANCE_NAME"));
+                ind.setMeddraId(rs.getInt("MEDDRA_ID"));
+                ind.setMeddraCode(rs.getString("MEDDRA_CODE"));
+                ind.setMeddraTerm(rs.getString("MEDDRA_TERM"));
+                ind.setMeddraTermType(rs.getString("MEDDRA_TTY"));
+                ind.setLabelDate(rs.getDate("LABEL_DATE"));
+                ind.setExactMatch(rs.getBoolean("EXACT_MATCH"));
+                return ind;
+            });
         } catch (SQLException e) {
             log.error("Error searching indications", e);
         }
 
-        return indications;
+        return new ResultPage<>(new ArrayList<>(), null, null);
     }
 
     public int getIndicationCount(String searchTerm, int substanceId, String matchType) {
-        StringBuilder sql = new StringBuilder();
-        sql.append("SELECT COUNT(*) FROM PRODUCT_IND ind ");
-        sql.append("JOIN MEDDRA m ON ind.MEDDRA_ID = m.ID ");
-        sql.append("WHERE 1=1 ");
+        String key = CountCache.key("ind", term(searchTerm), Math.max(substanceId, 0),
+                option(matchType, "exact", "nlp"));
+        try {
+            return counts.get(key, () -> {
+                StringBuilder sql = new StringBuilder();
+                sql.append("SELECT COUNT(*) FROM PRODUCT_IND ind ");
+                sql.append("JOIN MEDDRA m ON ind.MEDDRA_ID = m.ID ");
+                sql.append("WHERE 1=1 ");
+                List<Object> params = new ArrayList<>();
+                appendIndicationFilters(sql, params, searchTerm, substanceId, matchType);
+                return count(sql, params);
+            });
+        } catch (SQLException e) {
+            log.error("Error counting indications", e);
+        }
 
-        List<Object> params = new ArrayList<>();
+        return 0;
+    }
 
-        if (searchTerm != null && !searchTerm.isEmpty()) {
+    private static void appendIndicationFilters(StringBuilder sql, List<Object> params, String searchTerm,
+                                                int substanceId, String matchType) {
+        String term = term(searchTerm);
+        if (!term.isEmpty()) {
             sql.append("AND m.MEDDRA_TERM LIKE ? ");
-            params.add("%" + searchTerm + "%");
+            params.add("%" + term + "%");
         }
 
         if (substanceId > 0) {
@@ -772,32 +757,11 @@ public class DatabaseService {
             params.add(substanceId);
         }
 
-        if (matchType != null && !matchType.equals("all")) {
-            if (matchType.equals("exact")) {
-                sql.append("AND ind.EXACT_MATCH = 1 ");
-            } else if (matchType.equals("nlp")) {
-                sql.append("AND ind.EXACT_MATCH = 0 ");
-            }
+        switch (option(matchType, "exact", "nlp")) {
+            case "exact" -> sql.append("AND ind.EXACT_MATCH = 1 ");
+            case "nlp" -> sql.append("AND ind.EXACT_MATCH = 0 ");
+            default -> { }
         }
-
-        try (Connection conn = getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql.toString())) {
-
-            for (int i = 0; i < params.size(); i++) {
-                ps.setObject(i + 1, params.get(i));
-            }
-
-            try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getInt(1);
-                }
-            }
-
-        } catch (SQLException e) {
-            log.error("Error counting indications", e);
-        }
-
-        return 0;
     }
 
     public List<Indication> getIndicationsForSubstance(int substanceId, int limit) {
@@ -812,8 +776,12 @@ public class DatabaseService {
 
     public List<SrlcUpdate> searchSrlcUpdates(String searchTerm, String year,
                                                int offset, int limit) {
-        List<SrlcUpdate> updates = new ArrayList<>();
+        return searchSrlcUpdates(searchTerm, year, null, offset, limit).getItems();
+    }
 
+    /** A page of SRLC updates, newest first, by cursor or offset as in {@link #searchAdverseEvents}. */
+    public ResultPage<SrlcUpdate> searchSrlcUpdates(String searchTerm, String year,
+                                                     PageCursor cursor, int offset, int limit) {
         StringBuilder sql = new StringBuilder();
         sql.append("SELECT ID, DRUG_ID, APPLICATION_NUMBER, DRUG_NAME, ");
         sql.append("ACTIVE_INGREDIENT, SUPPLEMENT_DATE, DATABASE_UPDATED, URL ");
@@ -821,89 +789,168 @@ public class DatabaseService {
         sql.append("WHERE 1=1 ");
 
         List<Object> params = new ArrayList<>();
+        appendSrlcFilters(sql, params, searchTerm, year);
 
-        if (searchTerm != null && !searchTerm.isEmpty()) {
+        SortKey order = new SortKey("SUPPLEMENT_DATE", "SUPPLEMENT_DATE", "ID", true);
+
+        try (Connection conn = getConnection()) {
+            return page(conn, sql, params, order, cursor, offset, limit, rs -> {
+                SrlcUpdate srlc = new SrlcUpdate();
+                srlc.setId(rs.getInt("ID"));
+                srlc.setDrugId(rs.getInt("DRUG_ID"));
+                srlc.setApplicationNumber(rs.getInt("APPLICATION_NUMBER"));
+                srlc.setDrugName(rs.getString("DRUG_NAME"));
+                srlc.setActiveIngredient(rs.getString("ACTIVE_INGREDIENT"));
+                srlc.setSupplementDate(rs.getDate("SUPPLEMENT_DATE"));
+                srlc.setDatabaseUpdated(rs.getDate("DATABASE_UPDATED"));
+                srlc.setUrl(rs.getString("URL"));
+                return srlc;
+            });
+        } catch (SQLException e) {
+            log.error("Error searching SRLC updates", e);
+        }
+
+        return new ResultPage<>(new ArrayList<>(), null, null);
+    }
+
+    public int getSrlcCount(String searchTerm, String year) {
+        String key = CountCache.key("srlc", term(searchTerm), year(year));
+        try {
+            return counts.get(key, () -> {
+                StringBuilder sql = new StringBuilder();
+                sql.append("SELECT COUNT(*) FROM SRLC WHERE 1=1 ");
+                List<Object> params = new ArrayList<>();
+                appendSrlcFilters(sql, params, searchTerm, year);
+                return count(sql, params);
+            });
+        } catch (SQLException e) {
+            log.error("Error counting SRLC updates", e);
+        }
+
+        return 0;
+    }
+
+    private static void appendSrlcFilters(StringBuilder sql, List<Object> params, String searchTerm, String year) {
+        String term = term(searchTerm);
+        if (!term.isEmpty()) {
             sql.append("AND (DRUG_NAME LIKE ? OR ACTIVE_INGREDIENT LIKE ? OR APPLICATION_NUMBER LIKE ?) ");
-            params.add("%" + searchTerm + "%");
-            params.add("%" + searchTerm + "%");
-            params.add("%" + searchTerm + "%");
+            params.add("%" + term + "%");
+            params.add("%" + term + "%");
+            params.add("%" + term + "%");
         }
 
-        if (year != null && !year.isEmpty() && !"all".equals(year)) {
+        String y = year(year);
+        if (!"all".equals(y)) {
             sql.append("AND YEAR(SUPPLEMENT_DATE) = ? ");
-            params.add(Integer.parseInt(year));
+            params.add(Integer.parseInt(y));
         }
+    }
 
-        sql.append("ORDER BY SUPPLEMENT_DATE DESC ");
-        sql.append("LIMIT ? OFFSET ?");
-        params.add(limit);
-        params.add(offset);
+    // ==================== Paging ====================
 
-        try (Connection conn = getConnection();
-             PreparedStatement ps = conn.prepareStatement(sql.toString())) {
+    /** Sort column of a search, its column in the result set (null: no cursors) and the ID tie-breaker. */
+    private record SortKey(String column, String resultColumn, String idColumn, boolean descending) {
+    }
+
+    @FunctionalInterface
+    private interface RowMapper<T> {
+        T map(ResultSet rs) throws SQLException;
+    }
+
+    /**
+     * Run a search (SELECT ... WHERE ..., without ORDER BY) for one page,
+     * ordered by {@code key} and then ID so every row has a fixed place. With
+     * a cursor the page is selected by a keyset predicate, otherwise by
+     * OFFSET; a page before the cursor is read in reverse order and flipped.
+     * One row past the page tells whether the list goes on.
+     */
+    private static <T> ResultPage<T> page(Connection conn, StringBuilder sql, List<Object> params, SortKey key,
+                                          PageCursor cursor, int offset, int limit, RowMapper<T> mapper)
+            throws SQLException {
+        boolean keyset = cursor != null && key.resultColumn() != null;
+        boolean backwards = keyset && cursor.isBefore();
+        boolean desc = key.descending() != backwards;
+        if (keyset) {
+            cursor.appendPredicate(sql, params, key.column(), key.idColumn(), desc);
+        }
+        String dir = desc ? " DESC" : " ASC";
+        sql.append("ORDER BY ").append(key.column()).append(dir)
+           .append(", ").append(key.idColumn()).append(dir).append(' ');
+        sql.append("LIMIT ?");
+        params.add(limit + 1);
+        if (!keyset) {
+            sql.append(" OFFSET ?");
+            params.add(Math.max(offset, 0));
+        }
 
+        List<T> items = new ArrayList<>();
+        List<String> values = new ArrayList<>();
+        List<Integer> ids = new ArrayList<>();
+        try (PreparedStatement ps = conn.prepareStatement(sql.toString())) {
             for (int i = 0; i < params.size(); i++) {
                 ps.setObject(i + 1, params.get(i));
             }
-
             try (ResultSet rs = ps.executeQuery()) {
                 while (rs.next()) {
-                    SrlcUpdate srlc = new SrlcUpdate();
-                    srlc.setId(rs.getInt("ID"));
-                    srlc.setDrugId(rs.getInt("DRUG_ID"));
-                    srlc.setApplicationNumber(rs.getInt("APPLICATION_NUMBER"));
-                    srlc.setDrugName(rs.getString("DRUG_NAME"));
-                    srlc.setActiveIngredient(rs.getString("ACTIVE_INGREDIENT"));
-                    srlc.setSupplementDate(rs.getDate("SUPPLEMENT_DATE"));
-                    srlc.setDatabaseUpdated(rs.getDate("DATABASE_UPDATED"));
-                    srlc.setUrl(rs.getString("URL"));
-                    updates.add(srlc);
+                    items.add(mapper.map(rs));
+                    if (key.resultColumn() != null) {
+                        values.add(rs.getString(key.resultColumn()));
+                        ids.add(rs.getInt("ID"));
+                    }
                 }
             }
-
-        } catch (SQLException e) {
-            log.error("Error searching SRLC updates", e);
         }
 
-        return updates;
-    }
-
-    public int getSrlcCount(String searchTerm, String year) {
-        StringBuilder sql = new StringBuilder();
-        sql.append("SELECT COUNT(*) FROM SRLC WHERE 1=1 ");
-
-        List<Object> params = new ArrayList<>();
-
-        if (searchTerm != null && !searchTerm.isEmpty()) {
-            sql.append("AND (DRUG_NAME LIKE ? OR ACTIVE_INGREDIENT LIKE ? OR APPLICATION_NUMBER LIKE ?) ");
-            params.add("%" + searchTerm + "%");
-            params.add("%" + searchTerm + "%");
-            params.add("%" + searchTerm + "%");
+        boolean more = items.size() > limit;
+        if (more) {
+            items.remove(items.size() - 1);
         }
-
-        if (year != null && !year.isEmpty() && !"all".equals(year)) {
-            sql.append("AND YEAR(SUPPLEMENT_DATE) = ? ");
-            params.add(Integer.parseInt(year));
+        if (key.resultColumn() == null || items.isEmpty()) {
+            return new ResultPage<>(items, null, null);
+        }
+        if (backwards) {
+            Collections.reverse(items);
+            Collections.reverse(values.subList(0, items.size()));
+            Collections.reverse(ids.subList(0, items.size()));
         }
 
+        int last = items.size() - 1;
+        boolean hasNext = backwards || more;
+        boolean hasPrevious = backwards ? more : keyset || offset > 0;
+        return new ResultPage<>(items,
+                hasNext ? PageCursor.after(values.get(last), ids.get(last)).encode() : null,
+                hasPrevious ? PageCursor.before(values.get(0), ids.get(0)).encode() : null);
+    }
+
+    private int count(StringBuilder sql, List<Object> params) throws SQLException {
         try (Connection conn = getConnection();
              PreparedStatement ps = conn.prepareStatement(sql.toString())) {
-
             for (int i = 0; i < params.size(); i++) {
                 ps.setObject(i + 1, params.get(i));
             }
-
             try (ResultSet rs = ps.executeQuery()) {
-                if (rs.next()) {
-                    return rs.getInt(1);
-                }
+                return rs.next() ? rs.getInt(1) : 0;
             }
+        }
+    }
 
-        } catch (SQLException e) {
-            log.error("Error counting SRLC updates", e);
+    /** A search term as the filters use it: trimmed, never null. */
+    private static String term(String searchTerm) {
+        return searchTerm == null ? "" : searchTerm.trim();
+    }
+
+    /** {@code value} when it is one of the filter's {@code options}, otherwise "all" (no filter). */
+    private static String option(String value, String... options) {
+        for (String o : options) {
+            if (o.equals(value)) {
+                return o;
+            }
         }
+        return "all";
+    }
 
-        return 0;
+    private static String year(String year) {
+        return year == null || year.trim().isEmpty() ? "all" : year.trim();
     }
 
     public List<SrlcUpdate> getRecentSrlcUpdates(int limit) {
@@ -1144,6 +1191,10 @@ public class DatabaseService {
 
         // Get synonyms for expanded search (up to 10 synonyms)
         List<String> synonyms = getSynonyms(lowerQuery);
+
+        if (meddraIndex.isReady()) {
+            return loadMeddraTerms(meddraIndex.top(query, synonyms, MeddraSearchIndex.Scoring.AUTOCOMPLETE, false, limit));
+        }
         int maxSynonyms = Math.min(synonyms.size(), 10);
 
         // Build dynamic SQL with synonym support
@@ -1166,7 +1217,7 @@ public class DatabaseService {
 
         sql.append("  ELSE 30 ");
         sql.append("END as relevance, ");
-        sql.append("(SELECT COUNT(*) FROM PRODUCT_AE ae WHERE ae.MEDDRA_ID = m.ID) as usage_count ");
+        sql.append(usageCountSql("AE_COUNT", "PRODUCT_AE")).append(" as usage_count ");
         sql.append("FROM MEDDRA m ");
         sql.append("WHERE (");
         sql.append("  LOWER(m.MEDDRA_TERM) = ? ");             // exact match
@@ -1308,6 +1359,10 @@ public class DatabaseService {
 
         // Get synonyms for expanded search (up to 10 synonyms)
         List<String> synonyms = getSynonyms(lowerQuery);
+
+        if (meddraIndex.isReady()) {
+            return loadMeddraTerms(meddraIndex.top(query, synonyms, MeddraSearchIndex.Scoring.AUTOCOMPLETE, true, limit));
+        }
         int maxSynonyms = Math.min(synonyms.size(), 10);
 
         // Build dynamic SQL with synonym support
@@ -1330,9 +1385,11 @@ public class DatabaseService {
 
         sql.append("  ELSE 30 ");
         sql.append("END as relevance, ");
-        sql.append("(SELECT COUNT(*) FROM PRODUCT_IND ind WHERE ind.MEDDRA_ID = m.ID) as usage_count ");
+        sql.append(usageCountSql("IND_COUNT", "PRODUCT_IND")).append(" as usage_count ");
         sql.append("FROM MEDDRA m ");
-        sql.append("WHERE m.ID IN (SELECT DISTINCT MEDDRA_ID FROM PRODUCT_IND) ");
+        sql.append(hasMeddraUsage()
+                ? "WHERE m.ID IN (SELECT MEDDRA_ID FROM MEDDRA_USAGE WHERE IND_COUNT > 0) "
+                : "WHERE m.ID IN (SELECT DISTINCT MEDDRA_ID FROM PRODUCT_IND) ");
         sql.append("  AND (");
         sql.append("    LOWER(m.MEDDRA_TERM) = ? ");               // exact match
         sql.append("    OR LOWER(m.MEDDRA_TERM) LIKE ? ");         // starts with
@@ -1419,6 +1476,58 @@ public class DatabaseService {
         return results;
     }
 
+    /**
+     * Load the MEDDRA rows of search index hits, keeping the hits' order,
+     * relevance and usage counts.
+     */
+    private List<Map<String, Object>> loadMeddraTerms(List<MeddraSearchIndex.Hit> hits) {
+        List<Map<String, Object>> results = new ArrayList<>();
+        if (hits.isEmpty()) {
+            return results;
+        }
+
+        String sql = "SELECT ID, MEDDRA_CODE, MEDDRA_TERM, MEDDRA_TTY FROM MEDDRA WHERE ID IN (" +
+                     placeholders(hits.size()) + ")";
+
+        try (Connection conn = getConnection();
+             PreparedStatement ps = conn.prepareStatement(sql)) {
+
+            for (int i = 0; i < hits.size(); i++) {
+                ps.setInt(i + 1, hits.get(i).id());
+            }
+
+            Map<Integer, Map<String, Object>> rows = new HashMap<>();
+            try (ResultSet rs = ps.executeQuery()) {
+                while (rs.next()) {
+                    Map<String, Object> result = new HashMap<>();
+                    result.put("id", rs.getInt("ID"));
+                    result.put("code", rs.getString("MEDDRA_CODE"));
+                    result.put("term", rs.getString("MEDDRA_TERM"));
+                    result.put("termType", rs.getString("MEDDRA_TTY"));
+                    rows.put(rs.getInt("ID"), result);
+                }
+            }
+
+            for (MeddraSearchIndex.Hit hit : hits) {
+                Map<String, Object> result = rows.get(hit.id());
+                if (result != null) {   // deleted since the index was built
+                    result.put("score", (double) hit.score());
+                    result.put("usageCount", hit.usage());
+                    results.add(result);
+                }
+            }
+
+        } catch (SQLException e) {
+            log.error("Error loading MedDRA terms", e);
+        }
+
+        return results;
+    }
+
+    private static String placeholders(int count) {
+        return String.join(", ", Collections.nCopies(count, "?"));
+    }
+
     /**
      * Get spelling suggestions using phonetic matching, edit distance, and synonyms.
      * Returns terms that sound similar to the query or are synonyms for spell checking.
@@ -1433,7 +1542,7 @@ public class DatabaseService {
             // Find MedDRA terms that match the synonyms
             StringBuilder synonymSql = new StringBuilder();
             synonymSql.append("SELECT DISTINCT m.MEDDRA_TERM, ");
-            synonymSql.append("(SELECT COUNT(*) FROM PRODUCT_AE ae WHERE ae.MEDDRA_ID = m.ID) as usage_count ");
+            synonymSql.append(usageCountSql("AE_COUNT", "PRODUCT_AE")).append(" as usage_count ");
             synonymSql.append("FROM MEDDRA m WHERE ");
 
             List<String> conditions = new ArrayList<>();
@@ -1472,7 +1581,7 @@ public class DatabaseService {
             String sql = "SELECT DISTINCT m.MEDDRA_TERM, " +
                          "SOUNDEX(m.MEDDRA_TERM) as term_soundex, " +
                          "SOUNDEX(?) as query_soundex, " +
-                         "(SELECT COUNT(*) FROM PRODUCT_AE ae WHERE ae.MEDDRA_ID = m.ID) as usage_count " +
+                         usageCountSql("AE_COUNT", "PRODUCT_AE") + " as usage_count " +
                          "FROM MEDDRA m " +
                          "WHERE SOUNDEX(m.MEDDRA_TERM) = SOUNDEX(?) " +
                          "  AND LOWER(m.MEDDRA_TERM) != LOWER(?) " +
@@ -1524,6 +1633,16 @@ public class DatabaseService {
         // Get synonyms for expanded search
         List<String> synonyms = getSynonyms(lowerSearch);
 
+        // Matching MedDRA terms from the in-memory index; too many (very short
+        // queries) and ID lists cost more than matching in SQL
+        List<MeddraSearchIndex.Hit> hits = meddraIndex.isReady()
+                ? meddraIndex.matches(searchTerm, synonyms, MeddraSearchIndex.Scoring.AE_FUZZY)
+                : null;
+        if (hits != null && hits.isEmpty()) {
+            return events;
+        }
+        boolean byId = hits != null && hits.size() <= MAX_FUZZY_MEDDRA_IDS;
+
         StringBuilder sql = new StringBuilder();
         sql.append("SELECT ae.ID, ae.PRODUCT_ID, ae.MEDDRA_ID, ae.LABEL_DATE, ");
         sql.append("ae.WARNING, ae.BLACKBOX, ae.EXACT_MATCH, ");
@@ -1532,54 +1651,76 @@ public class DatabaseService {
         sql.append(" JOIN PRODUCT_NDC pn ON n.ID = pn.NDC_ID ");
         sql.append(" WHERE pn.PRODUCT_ID = ae.PRODUCT_ID LIMIT 1) AS SUBSTANCE_NAME, ");
         sql.append("CASE ");
-        sql.append("  WHEN LOWER(m.MEDDRA_TERM) = ? THEN 100 ");           // exact match
-        sql.append("  WHEN LOWER(m.MEDDRA_TERM) LIKE ? THEN 95 ");         // starts with
-        sql.append("  WHEN LOWER(m.MEDDRA_TERM) LIKE ? THEN 85 ");         // word boundary
-        sql.append("  WHEN LOWER(m.MEDDRA_TERM) LIKE ? THEN 75 ");         // contains
-        sql.append("  WHEN SOUNDEX(m.MEDDRA_TERM) = SOUNDEX(?) THEN 60 "); // phonetic
 
-        // Add scoring for synonym matches
-        int synonymScore = 50;
-        for (int i = 0; i < synonyms.size() && i < 5; i++) {
-            sql.append("  WHEN LOWER(m.MEDDRA_TERM) LIKE ? THEN ").append(synonymScore - i * 2).append(" ");
-        }
+        List<Object> params = new ArrayList<>();
+        if (byId) {
+            // One ID list per relevance tier, highest first
+            Map<Integer, List<Integer>> idsByScore = new TreeMap<>(Collections.reverseOrder());
+            for (MeddraSearchIndex.Hit hit : hits) {
+                idsByScore.computeIfAbsent(hit.score(), k -> new ArrayList<>()).add(hit.id());
+            }
+            for (Map.Entry<Integer, List<Integer>> tier : idsByScore.entrySet()) {
+                sql.append("  WHEN ae.MEDDRA_ID IN (").append(placeholders(tier.getValue().size()))
+                   .append(") THEN ").append(tier.getKey()).append(" ");
+                params.addAll(tier.getValue());
+            }
+            sql.append("  ELSE 30 ");
+            sql.append("END as relevance ");
+            sql.append("FROM PRODUCT_AE ae ");
+            sql.append("JOIN MEDDRA m ON ae.MEDDRA_ID = m.ID ");
+            sql.append("WHERE ae.MEDDRA_ID IN (").append(placeholders(hits.size())).append(") ");
+            for (MeddraSearchIndex.Hit hit : hits) {
+                params.add(hit.id());
+            }
+        } else {
+            sql.append("  WHEN LOWER(m.MEDDRA_TERM) = ? THEN 100 ");           // exact match
+            sql.append("  WHEN LOWER(m.MEDDRA_TERM) LIKE ? THEN 95 ");         // starts with
+            sql.append("  WHEN LOWER(m.MEDDRA_TERM) LIKE ? THEN 85 ");         // word boundary
+            sql.append("  WHEN LOWER(m.MEDDRA_TERM) LIKE ? THEN 75 ");         // contains
+            sql.append("  WHEN SOUNDEX(m.MEDDRA_TERM) = SOUNDEX(?) THEN 60 "); // phonetic
+
+            // Add scoring for synonym matches
+            int synonymScore = 50;
+            for (int i = 0; i < synonyms.size() && i < 5; i++) {
+                sql.append("  WHEN LOWER(m.MEDDRA_TERM) LIKE ? THEN ").append(synonymScore - i * 2).append(" ");
+            }
 
-        sql.append("  ELSE 30 ");
-        sql.append("END as relevance ");
-        sql.append("FROM PRODUCT_AE ae ");
-        sql.append("JOIN MEDDRA m ON ae.MEDDRA_ID = m.ID ");
-        sql.append("WHERE (");
-        sql.append("  LOWER(m.MEDDRA_TERM) LIKE ? ");           // contains
-        sql.append("  OR LOWER(m.MEDDRA_TERM) LIKE ? ");        // word boundary
-        sql.append("  OR SOUNDEX(m.MEDDRA_TERM) = SOUNDEX(?) ");
+            sql.append("  ELSE 30 ");
+            sql.append("END as relevance ");
+            sql.append("FROM PRODUCT_AE ae ");
+            sql.append("JOIN MEDDRA m ON ae.MEDDRA_ID = m.ID ");
+            sql.append("WHERE (");
+            sql.append("  LOWER(m.MEDDRA_TERM) LIKE ? ");           // contains
+            sql.append("  OR LOWER(m.MEDDRA_TERM) LIKE ? ");        // word boundary
+            sql.append("  OR SOUNDEX(m.MEDDRA_TERM) = SOUNDEX(?) ");
 
-        // Add WHERE clauses for synonyms
-        for (int i = 0; i < synonyms.size() && i < 5; i++) {
-            sql.append("  OR LOWER(m.MEDDRA_TERM) LIKE ? ");
-        }
-        sql.append(") ");
+            // Add WHERE clauses for synonyms
+            for (int i = 0; i < synonyms.size() && i < 5; i++) {
+                sql.append("  OR LOWER(m.MEDDRA_TERM) LIKE ? ");
+            }
+            sql.append(") ");
 
-        List<Object> params = new ArrayList<>();
-        // CASE scoring parameters
-        params.add(lowerSearch);                    // exact
-        params.add(lowerSearch + "%");              // starts with
-        params.add("% " + lowerSearch + "%");       // word boundary
-        params.add("%" + lowerSearch + "%");        // contains
-        params.add(searchTerm);                     // soundex
-
-        // Synonym scoring parameters
-        for (int i = 0; i < synonyms.size() && i < 5; i++) {
-            params.add("%" + synonyms.get(i).toLowerCase() + "%");
-        }
-
-        // WHERE clause parameters
-        params.add("%" + lowerSearch + "%");        // contains
-        params.add("% " + lowerSearch + "%");       // word boundary
-        params.add(searchTerm);                     // soundex
-
-        // Synonym WHERE parameters
-        for (int i = 0; i < synonyms.size() && i < 5; i++) {
-            params.add("%" + synonyms.get(i).toLowerCase() + "%");
+            // CASE scoring parameters
+            params.add(lowerSearch);                    // exact
+            params.add(lowerSearch + "%");              // starts with
+            params.add("% " + lowerSearch + "%");       // word boundary
+            params.add("%" + lowerSearch + "%");        // contains
+            params.add(searchTerm);                     // soundex
+
+            // Synonym scoring parameters
+            for (int i = 0; i < synonyms.size() && i < 5; i++) {
+                params.add("%" + synonyms.get(i).toLowerCase() + "%");
+            }
+
+            // WHERE clause parameters
+            params.add("%" + lowerSearch + "%");        // contains
+            params.add("% " + lowerSearch + "%");       // word boundary
+            params.add(searchTerm);                     // soundex
+
+            // Synonym WHERE parameters
+            for (int i = 0; i < synonyms.size() && i < 5; i++) {
+                params.add("%" + synonyms.get(i).toLowerCase() + "%");
+            }
         }
 
         if (substanceId > 0) {
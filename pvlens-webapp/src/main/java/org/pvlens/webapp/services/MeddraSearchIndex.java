@@ -0,0 +1,462 @@
+package org.pvlens.webapp.services;
+
+import org.apache.lucene.analysis.Analyzer;
+import org.apache.lucene.analysis.TokenStream;
+import org.apache.lucene.analysis.ngram.NGramTokenizer;
+import org.apache.lucene.analysis.tokenattributes.CharTermAttribute;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Connection;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * In-memory search index over the MEDDRA table for term autocomplete and
+ * fuzzy adverse event search.
+ *
+ * The SQL these searches used ("LIKE '%pain%'", SOUNDEX on every row and a
+ * correlated usage COUNT per term) cannot use an index, so each keystroke
+ * scanned MEDDRA. This class keeps a snapshot of what those queries need:
+ * - the lower-cased terms with a character trigram inverted index (built with
+ *   Lucene's NGramTokenizer), which narrows "contains" matches to a handful
+ *   of candidates
+ * - MySQL SOUNDEX codes of the terms
+ * - AE / indication usage counts per MEDDRA ID (from MEDDRA_USAGE)
+ *
+ * Candidates are scored with the same tiers as the SQL (exact, starts with,
+ * ends with, word boundary, contains, phonetic, synonyms) and ranked the
+ * same way, so callers only go to the database to load the rows they show.
+ *
+ * The snapshot is built in the background at startup and rebuilt every
+ * pvlens.meddraIndex.refreshMinutes minutes (system property, default 60;
+ * 0 builds it once). Until the first build finishes {@link #isReady()} is
+ * false and callers keep using SQL.
+ */
+public final class MeddraSearchIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(MeddraSearchIndex.class);
+
+    private static final long REFRESH_MINUTES = Long.getLong("pvlens.meddraIndex.refreshMinutes", 60L);
+
+    private static final int GRAM = 3;
+
+    /** MySQL's SOUNDEX letter codes, A to Z. */
+    private static final String SOUNDEX_CODES = "01230120022455012623010202";
+
+    /** Opens a pooled connection (DatabaseService#getConnection). */
+    @FunctionalInterface
+    public interface ConnectionSource {
+        Connection get() throws SQLException;
+    }
+
+    /** Relevance tiers of the SQL each search replaces. */
+    public enum Scoring {
+        /** searchMeddraTerms / searchIndicationTerms: all tiers, 10 synonyms from 55 down to 35 */
+        AUTOCOMPLETE(true, 10, 55, 35),
+        /** searchAdverseEventsFuzzy: no ends-with / space-after tiers, 5 synonyms from 50 down */
+        AE_FUZZY(false, 5, 50, Integer.MIN_VALUE);
+
+        private final boolean allTiers;
+        private final int maxSynonyms;
+        private final int synonymScore;
+        private final int synonymFloor;
+
+        Scoring(boolean allTiers, int maxSynonyms, int synonymScore, int synonymFloor) {
+            this.allTiers = allTiers;
+            this.maxSynonyms = maxSynonyms;
+            this.synonymScore = synonymScore;
+            this.synonymFloor = synonymFloor;
+        }
+
+        private int synonym(int i) {
+            return Math.max(synonymScore - i * 2, synonymFloor);
+        }
+    }
+
+    /** A matching term: MEDDRA ID, relevance and usage count (AE or indication). */
+    public record Hit(int id, int score, int usage) {
+    }
+
+    private final ConnectionSource connections;
+    private final Analyzer trigrams = new Analyzer() {
+        @Override
+        protected TokenStreamComponents createComponents(String fieldName) {
+            return new TokenStreamComponents(new NGramTokenizer(GRAM, GRAM));
+        }
+    };
+
+    private volatile Snapshot snapshot;
+    private ScheduledExecutorService refresher;
+
+    public MeddraSearchIndex(ConnectionSource connections) {
+        this.connections = connections;
+    }
+
+    /** Start building in the background, then rebuild on the refresh interval. */
+    public synchronized void start() {
+        if (refresher != null) {
+            return;
+        }
+        refresher = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread t = new Thread(r, "meddra-index");
+            t.setDaemon(true);
+            return t;
+        });
+        if (REFRESH_MINUTES > 0) {
+            refresher.scheduleWithFixedDelay(this::refreshQuietly, 0, REFRESH_MINUTES, TimeUnit.MINUTES);
+        } else {
+            refresher.execute(this::refreshQuietly);
+        }
+    }
+
+    /** True once a snapshot has been built. */
+    public boolean isReady() {
+        return snapshot != null;
+    }
+
+    /** Rebuild the snapshot from the database and swap it in. */
+    public void refresh() throws SQLException {
+        long start = System.currentTimeMillis();
+        Snapshot s;
+        try (Connection conn = connections.get()) {
+            s = load(conn);
+        }
+        snapshot = s;
+        log.info("MedDRA search index built: {} terms, {} trigrams in {} ms",
+                s.ids.length, s.postings.size(), System.currentTimeMillis() - start);
+    }
+
+    private void refreshQuietly() {
+        try {
+            refresh();
+        } catch (SQLException | RuntimeException e) {
+            log.error("Error building MedDRA search index", e);
+        }
+    }
+
+    /**
+     * Best matches for autocomplete, ranked like the SQL (relevance, usage,
+     * shorter term, term) with one hit per distinct term.
+     *
+     * @param indications rank by indication usage and keep only terms used as indications
+     */
+    public List<Hit> top(String query, List<String> synonyms, Scoring scoring, boolean indications, int limit) {
+        Snapshot s = snapshot;
+        List<Ranked> ranked = new ArrayList<>();
+        for (Hit h : collect(s, query, synonyms, scoring, indications)) {
+            ranked.add(new Ranked(h, s.lower[s.ordinal(h.id())]));
+        }
+        ranked.sort(RANKING);
+
+        List<Hit> top = new ArrayList<>(Math.min(limit, ranked.size()));
+        Set<String> seenTerms = new HashSet<>();
+        for (Ranked r : ranked) {
+            if (seenTerms.add(r.term())) {
+                top.add(r.hit());
+                if (top.size() >= limit) {
+                    break;
+                }
+            }
+        }
+        return top;
+    }
+
+    private record Ranked(Hit hit, String term) {
+    }
+
+    /** ORDER BY relevance DESC, usage_count DESC, LENGTH(term) ASC, term ASC */
+    private static final Comparator<Ranked> RANKING = Comparator
+            .comparingInt((Ranked r) -> -r.hit().score())
+            .thenComparingInt(r -> -r.hit().usage())
+            .thenComparingInt(r -> r.term().length())
+            .thenComparing(Ranked::term);
+
+    /** Every matching term, unordered, with AE usage counts. */
+    public List<Hit> matches(String query, List<String> synonyms, Scoring scoring) {
+        return collect(snapshot, query, synonyms, scoring, false);
+    }
+
+    private List<Hit> collect(Snapshot s, String query, List<String> synonyms, Scoring scoring, boolean indications) {
+        String q = query.toLowerCase(Locale.ROOT).trim();
+        List<String> syns = new ArrayList<>();
+        for (int i = 0; i < synonyms.size() && i < scoring.maxSynonyms; i++) {
+            syns.add(synonyms.get(i).toLowerCase(Locale.ROOT));
+        }
+        String code = soundex(query);
+
+        // Every match contains the query or a synonym, or sounds like the query
+        BitSet candidates = new BitSet(s.ids.length);
+        boolean scanAll = false;
+        List<String> needles = new ArrayList<>(syns);
+        needles.add(0, q);
+        for (String needle : needles) {
+            int[] containing = containing(s, needle);
+            if (containing == null) {
+                scanAll = true;
+                break;
+            }
+            for (int i : containing) {
+                candidates.set(i);
+            }
+        }
+        if (!scanAll) {
+            for (int i : s.bySoundex.getOrDefault(code, EMPTY)) {
+                candidates.set(i);
+            }
+        }
+
+        String spaceBefore = " " + q;
+        String spaceAfter = q + " ";
+        List<Hit> hits = new ArrayList<>();
+        for (int i = scanAll ? 0 : candidates.nextSetBit(0); i >= 0 && i < s.ids.length;
+                i = scanAll ? i + 1 : candidates.nextSetBit(i + 1)) {
+            int usage = indications ? s.indUsage[i] : s.aeUsage[i];
+            if (indications && usage == 0) {
+                continue;
+            }
+            String t = s.lower[i];
+            int score;
+            if (t.equals(q)) {
+                score = 100;
+            } else if (t.startsWith(q)) {
+                score = 95;
+            } else if (scoring.allTiers && t.endsWith(q)) {
+                score = 90;
+            } else if (t.contains(spaceBefore)) {
+                score = 85;
+            } else if (scoring.allTiers && t.contains(spaceAfter)) {
+                score = 80;
+            } else if (t.contains(q)) {
+                score = 75;
+            } else if (s.soundex[i].equals(code)) {
+                score = 60;
+            } else {
+                score = 0;
+                for (int j = 0; j < syns.size(); j++) {
+                    if (t.contains(syns.get(j))) {
+                        score = scoring.synonym(j);
+                        break;
+                    }
+                }
+                if (score == 0) {
+                    continue;
+                }
+            }
+            hits.add(new Hit(s.ids[i], score, usage));
+        }
+        return hits;
+    }
+
+    private static final int[] EMPTY = new int[0];
+
+    /**
+     * Ordinals of the terms that may contain {@code needle}: those holding all
+     * of its trigrams. Null when the needle is too short to have any.
+     */
+    private int[] containing(Snapshot s, String needle) {
+        if (needle.length() < GRAM) {
+            return null;
+        }
+        List<int[]> lists = new ArrayList<>();
+        for (String gram : grams(needle)) {
+            int[] p = s.postings.get(gram);
+            if (p == null) {
+                return EMPTY;
+            }
+            lists.add(p);
+        }
+        lists.sort(Comparator.comparingInt(p -> p.length));
+        int[] result = lists.get(0);
+        for (int k = 1; k < lists.size() && result.length > 0; k++) {
+            result = intersect(result, lists.get(k));
+        }
+        return result;
+    }
+
+    private static int[] intersect(int[] a, int[] b) {
+        int[] out = new int[Math.min(a.length, b.length)];
+        int n = 0;
+        for (int i = 0, j = 0; i < a.length && j < b.length; ) {
+            if (a[i] < b[j]) {
+                i++;
+            } else if (a[i] > b[j]) {
+                j++;
+            } else {
+                out[n++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        return Arrays.copyOf(out, n);
+    }
+
+    /** Distinct trigrams of a lower-cased string. */
+    private Set<String> grams(String text) {
+        Set<String> grams = new LinkedHashSet<>();
+        try (TokenStream ts = trigrams.tokenStream("term", text)) {
+            CharTermAttribute term = ts.addAttribute(CharTermAttribute.class);
+            ts.reset();
+            while (ts.incrementToken()) {
+                grams.add(term.toString());
+            }
+            ts.end();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return grams;
+    }
+
+    /**
+     * SOUNDEX as MySQL computes it: non-letters are skipped, the first letter
+     * is kept, vowels and repeated codes are dropped, and the code is padded
+     * to at least four characters (but not cut). Empty when there are no
+     * letters.
+     */
+    static String soundex(String text) {
+        StringBuilder sb = new StringBuilder();
+        char last = 0;
+        for (int i = 0; i < text.length(); i++) {
+            char c = text.charAt(i);
+            if (!Character.isLetter(c)) {
+                continue;
+            }
+            char code = soundexCode(c);
+            if (sb.length() == 0) {
+                sb.append(Character.toUpperCase(c));
+            } else if (code != '0' && code != last) {
+                sb.append(code);
+            } else {
+                continue;
+            }
+            last = code;
+        }
+        if (sb.length() > 0) {
+            while (sb.length() < 4) {
+                sb.append('0');
+            }
+        }
+        return sb.toString();
+    }
+
+    private static char soundexCode(char c) {
+        char u = Character.toUpperCase(c);
+        return u >= 'A' && u <= 'Z' ? SOUNDEX_CODES.charAt(u - 'A') : '0';
+    }
+
+    private Snapshot load(Connection conn) throws SQLException {
+        List<Integer> ids = new ArrayList<>();
+        List<String> terms = new ArrayList<>();
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT ID, MEDDRA_TERM FROM MEDDRA ORDER BY ID")) {
+            while (rs.next()) {
+                String term = rs.getString("MEDDRA_TERM");
+                if (term != null) {
+                    ids.add(rs.getInt("ID"));
+                    terms.add(term);
+                }
+            }
+        }
+        Map<Integer, Integer> aeUsage = new HashMap<>();
+        Map<Integer, Integer> indUsage = new HashMap<>();
+        if (DatabaseService.hasMeddraUsage(conn)) {
+            try (Statement st = conn.createStatement();
+                 ResultSet rs = st.executeQuery("SELECT MEDDRA_ID, AE_COUNT, IND_COUNT FROM MEDDRA_USAGE")) {
+                while (rs.next()) {
+                    aeUsage.put(rs.getInt(1), rs.getInt(2));
+                    indUsage.put(rs.getInt(1), rs.getInt(3));
+                }
+            }
+        } else {
+            count(conn, "PRODUCT_AE", aeUsage);
+            count(conn, "PRODUCT_IND", indUsage);
+        }
+
+        int n = ids.size();
+        Snapshot s = new Snapshot(n);
+        Map<String, IntList> postings = new HashMap<>();
+        Map<String, IntList> bySoundex = new HashMap<>();
+        for (int i = 0; i < n; i++) {
+            int id = ids.get(i);
+            s.ids[i] = id;
+            s.lower[i] = terms.get(i).toLowerCase(Locale.ROOT);
+            s.soundex[i] = soundex(terms.get(i));
+            s.aeUsage[i] = aeUsage.getOrDefault(id, 0);
+            s.indUsage[i] = indUsage.getOrDefault(id, 0);
+            for (String gram : grams(s.lower[i])) {
+                postings.computeIfAbsent(gram, k -> new IntList()).add(i);
+            }
+            bySoundex.computeIfAbsent(s.soundex[i], k -> new IntList()).add(i);
+        }
+        postings.forEach((gram, list) -> s.postings.put(gram, list.toArray()));
+        bySoundex.forEach((code, list) -> s.bySoundex.put(code, list.toArray()));
+        return s;
+    }
+
+    /** Usage counts for databases loaded without MEDDRA_USAGE. */
+    private static void count(Connection conn, String table, Map<Integer, Integer> counts) throws SQLException {
+        try (Statement st = conn.createStatement();
+             ResultSet rs = st.executeQuery("SELECT MEDDRA_ID, COUNT(*) FROM " + table + " GROUP BY MEDDRA_ID")) {
+            while (rs.next()) {
+                counts.put(rs.getInt(1), rs.getInt(2));
+            }
+        }
+    }
+
+    /** One immutable build; terms are addressed by ordinal (position in ID order). */
+    private static final class Snapshot {
+        final int[] ids;
+        final String[] lower;
+        final String[] soundex;
+        final int[] aeUsage;
+        final int[] indUsage;
+        final Map<String, int[]> postings = new HashMap<>();
+        final Map<String, int[]> bySoundex = new HashMap<>();
+
+        Snapshot(int n) {
+            ids = new int[n];
+            lower = new String[n];
+            soundex = new String[n];
+            aeUsage = new int[n];
+            indUsage = new int[n];
+        }
+
+        int ordinal(int id) {
+            return Arrays.binarySearch(ids, id);
+        }
+    }
+
+    /** Growable ascending int list for building postings. */
+    private static final class IntList {
+        private int[] values = new int[4];
+        private int size;
+
+        void add(int v) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = v;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(values, size);
+        }
+    }
+}
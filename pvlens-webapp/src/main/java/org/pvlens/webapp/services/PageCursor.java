@@ -0,0 +1,98 @@
+package org.pvlens.webapp.services;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Base64;
+import java.util.List;
+
+/**
+ * Position in a result list sorted by (sort key, ID): the rows after, or
+ * before, a given row. Pages reached with a cursor are read with a keyset
+ * predicate ("sort key, ID past the row's") instead of OFFSET, so a page deep
+ * in the list costs the same as the first one.
+ *
+ * Encoded as an opaque URL-safe token for links and the JSON API. The sort
+ * key is kept as the text JDBC returns for it (dates as yyyy-MM-dd), which
+ * MySQL compares with the column as it would the column's own values.
+ */
+public final class PageCursor {
+
+    private final boolean before;
+    private final int id;
+    private final String value; // null: the row's sort key is NULL
+
+    private PageCursor(boolean before, String value, int id) {
+        this.before = before;
+        this.value = value;
+        this.id = id;
+    }
+
+    /** Rows after the one with sort key {@code value} and ID {@code id}. */
+    public static PageCursor after(String value, int id) {
+        return new PageCursor(false, value, id);
+    }
+
+    /** Rows before the one with sort key {@code value} and ID {@code id}. */
+    public static PageCursor before(String value, int id) {
+        return new PageCursor(true, value, id);
+    }
+
+    /** The cursor of a token from {@link #encode()}; null for a missing or malformed token. */
+    public static PageCursor parse(String token) {
+        if (token == null || token.isEmpty()) {
+            return null;
+        }
+        try {
+            String s = new String(Base64.getUrlDecoder().decode(token), StandardCharsets.UTF_8);
+            // <a|b>:<id>:<-|=value>
+            int c1 = s.indexOf(':');
+            int c2 = s.indexOf(':', c1 + 1);
+            if (c1 != 1 || c2 < 0 || c2 + 1 >= s.length()) {
+                return null;
+            }
+            char dir = s.charAt(0);
+            if (dir != 'a' && dir != 'b') {
+                return null;
+            }
+            int id = Integer.parseInt(s.substring(c1 + 1, c2));
+            char kind = s.charAt(c2 + 1);
+            if (kind != '-' && kind != '=') {
+                return null;
+            }
+            String value = kind == '-' ? null : s.substring(c2 + 2);
+            return new PageCursor(dir == 'b', value, id);
+        } catch (IllegalArgumentException e) {
+            return null;
+        }
+    }
+
+    public String encode() {
+        String s = (before ? "b" : "a") + ":" + id + ":" + (value == null ? "-" : "=" + value);
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(s.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public boolean isBefore() {
+        return before;
+    }
+
+    /**
+     * Append the predicate selecting the rows that follow this cursor's row
+     * when sorted by {@code column}, then {@code idColumn}, both ascending or
+     * both descending. MySQL sorts NULL first ascending and last descending.
+     */
+    void appendPredicate(StringBuilder sql, List<Object> params, String column, String idColumn,
+                         boolean descending) {
+        String op = descending ? "<" : ">";
+        if (value == null) {
+            sql.append("AND ((").append(column).append(" IS NULL AND ").append(idColumn).append(' ').append(op)
+               .append(" ?)").append(descending ? "" : " OR " + column + " IS NOT NULL").append(") ");
+            params.add(id);
+        } else {
+            sql.append("AND (").append(column).append(' ').append(op).append(" ? OR (")
+               .append(column).append(" = ? AND ").append(idColumn).append(' ').append(op).append(" ?)")
+               .append(descending ? " OR " + column + " IS NULL" : "").append(") ");
+            params.add(value);
+            params.add(value);
+            params.add(id);
+        }
+    }
+}
@@ -10,6 +10,7 @@ import org.apache.velocity.app.VelocityEngine;
 import org.apache.velocity.runtime.RuntimeConstants;
 import org.pvlens.webapp.om.*;
 import org.pvlens.webapp.services.DatabaseService;
+import org.pvlens.webapp.services.PageCursor;
 import org.pvlens.webapp.util.RecentLookups;
 
 import java.io.IOException;
@@ -161,20 +162,22 @@ public class PVLensServlet extends HttpServlet {
         int pageSize = 50;
         int offset = (page - 1) * pageSize;
 
-        List<AdverseEvent> adverseEvents;
+        ResultPage<AdverseEvent> results;
         int totalCount;
 
         // Use fuzzy search when search term is provided for better symptom matching
         if (searchTerm != null && !searchTerm.isEmpty()) {
-            adverseEvents = dbService.searchAdverseEventsFuzzy(
-                searchTerm, substanceId, severity, matchType, sortBy, sortOrder, offset, pageSize);
+            // Ranked by relevance, so paged by number only
+            results = new ResultPage<>(dbService.searchAdverseEventsFuzzy(
+                searchTerm, substanceId, severity, matchType, sortBy, sortOrder, offset, pageSize), null, null);
             // For fuzzy search, we estimate count (actual fuzzy count would be expensive)
             totalCount = dbService.getAdverseEventCount(searchTerm, substanceId, severity, matchType);
         } else {
-            adverseEvents = dbService.searchAdverseEvents(
-                searchTerm, substanceId, severity, matchType, sortBy, sortOrder, offset, pageSize);
+            results = dbService.searchAdverseEvents(searchTerm, substanceId, severity, matchType, sortBy, sortOrder,
+                PageCursor.parse(request.getParameter("cursor")), offset, pageSize);
             totalCount = dbService.getAdverseEventCount(searchTerm, substanceId, severity, matchType);
         }
+        List<AdverseEvent> adverseEvents = results.getItems();
 
         int totalPages = (int) Math.ceil((double) totalCount / pageSize);
 
@@ -188,6 +191,8 @@ public class PVLensServlet extends HttpServlet {
         context.put("currentPage", page);
         context.put("totalCount", totalCount);
         context.put("totalPages", totalPages);
+        context.put("nextCursor", results.getNextCursor());
+        context.put("previousCursor", results.getPreviousCursor());
         context.put("substanceList", dbService.getAllSubstancesForDropdown());
     }
 
@@ -201,8 +206,9 @@ public class PVLensServlet extends HttpServlet {
         int pageSize = 50;
         int offset = (page - 1) * pageSize;
 
-        List<Indication> indications = dbService.searchIndications(
-            searchTerm, substanceId, matchType, sortBy, sortOrder, offset, pageSize);
+        ResultPage<Indication> results = dbService.searchIndications(searchTerm, substanceId, matchType,
+            sortBy, sortOrder, PageCursor.parse(request.getParameter("cursor")), offset, pageSize);
+        List<Indication> indications = results.getItems();
         int totalCount = dbService.getIndicationCount(searchTerm, substanceId, matchType);
         int totalPages = (int) Math.ceil((double) totalCount / pageSize);
 
@@ -215,6 +221,8 @@ public class PVLensServlet extends HttpServlet {
         context.put("currentPage", page);
         context.put("totalCount", totalCount);
         context.put("totalPages", totalPages);
+        context.put("nextCursor", results.getNextCursor());
+        context.put("previousCursor", results.getPreviousCursor());
         context.put("substanceList", dbService.getAllSubstancesForDropdown());
     }
 
@@ -225,7 +233,9 @@ public class PVLensServlet extends HttpServlet {
         int pageSize = 25;
         int offset = (page - 1) * pageSize;
 
-        List<SrlcUpdate> srlcUpdates = dbService.searchSrlcUpdates(searchTerm, year, offset, pageSize);
+        ResultPage<SrlcUpdate> results = dbService.searchSrlcUpdates(searchTerm, year,
+            PageCursor.parse(request.getParameter("cursor")), offset, pageSize);
+        List<SrlcUpdate> srlcUpdates = results.getItems();
         int totalCount = dbService.getSrlcCount(searchTerm, year);
         int totalPages = (int) Math.ceil((double) totalCount / pageSize);
 
@@ -235,6 +245,8 @@ public class PVLensServlet extends HttpServlet {
         context.put("currentPage", page);
         context.put("totalCount", totalCount);
         context.put("totalPages", totalPages);
+        context.put("nextCursor", results.getNextCursor());
+        context.put("previousCursor", results.getPreviousCursor());
 
         // Generate year list
         List<Integer> yearList = new ArrayList<>();
@@ -5,7 +5,9 @@ import jakarta.servlet.http.HttpServlet;
 import jakarta.servlet.http.HttpServletRequest;
 import jakarta.servlet.http.HttpServletResponse;
 import com.fasterxml.jackson.databind.ObjectMapper;
+import org.pvlens.webapp.om.ResultPage;
 import org.pvlens.webapp.services.DatabaseService;
+import org.pvlens.webapp.services.PageCursor;
 
 import java.io.IOException;
 import java.io.PrintWriter;
@@ -16,6 +18,9 @@ import java.util.*;
  * Provides endpoints for:
  * - /api/search/suggest - Get autocomplete suggestions
  * - /api/search/spellcheck - Get spelling corrections
+ * - /api/search/adverse_events, /indications, /srlc - Pages of search results
+ *   (filters as on the screens; page with "cursor" from the previous
+ *   response's nextCursor / previousCursor, or with "offset")
  */
 public class SearchApiServlet extends HttpServlet {
 
@@ -46,6 +51,16 @@ public class SearchApiServlet extends HttpServlet {
                 return;
             }
 
+            switch (pathInfo) {
+                case "/adverse_events":
+                case "/indications":
+                case "/srlc":
+                    handleResults(pathInfo, request, out);
+                    return;
+                default:
+                    break;
+            }
+
             String query = request.getParameter("q");
             String type = request.getParameter("type"); // substances, adverse_events, indications, all
             int limit = getIntParam(request, "limit", 10);
@@ -131,6 +146,46 @@ public class SearchApiServlet extends HttpServlet {
         out.print(objectMapper.writeValueAsString(suggestions));
     }
 
+    private void handleResults(String endpoint, HttpServletRequest request, PrintWriter out) throws IOException {
+        String search = getParam(request, "search", "");
+        int substanceId = getIntParam(request, "substanceId", 0);
+        String matchType = getParam(request, "matchType", "all");
+        String sortBy = getParam(request, "sortBy", "date");
+        String sortOrder = getParam(request, "sortOrder", "desc");
+        PageCursor cursor = PageCursor.parse(request.getParameter("cursor"));
+        int offset = Math.max(getIntParam(request, "offset", 0), 0);
+        int limit = Math.min(Math.max(getIntParam(request, "limit", 50), 1), 500);
+
+        ResultPage<?> page;
+        int totalCount;
+        switch (endpoint) {
+            case "/adverse_events": {
+                String severity = getParam(request, "severity", "all");
+                page = dbService.searchAdverseEvents(search, substanceId, severity, matchType, sortBy, sortOrder,
+                    cursor, offset, limit);
+                totalCount = dbService.getAdverseEventCount(search, substanceId, severity, matchType);
+                break;
+            }
+            case "/indications":
+                page = dbService.searchIndications(search, substanceId, matchType, sortBy, sortOrder,
+                    cursor, offset, limit);
+                totalCount = dbService.getIndicationCount(search, substanceId, matchType);
+                break;
+            default: {
+                String year = getParam(request, "year", "all");
+                page = dbService.searchSrlcUpdates(search, year, cursor, offset, limit);
+                totalCount = dbService.getSrlcCount(search, year);
+            }
+        }
+
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("items", page.getItems());
+        result.put("nextCursor", page.getNextCursor());
+        result.put("previousCursor", page.getPreviousCursor());
+        result.put("totalCount", totalCount);
+        out.print(objectMapper.writeValueAsString(result));
+    }
+
     private void handleSpellcheck(String query, PrintWriter out) throws IOException {
         // Get spelling suggestions using fuzzy matching
         List<Map<String, Object>> corrections = dbService.getSpellingSuggestions(query, 5);
@@ -144,6 +199,11 @@ public class SearchApiServlet extends HttpServlet {
         response.getWriter().print(objectMapper.writeValueAsString(error));
     }
 
+    private String getParam(HttpServletRequest request, String name, String defaultValue) {
+        String value = request.getParameter(name);
+        return (value != null && !value.isEmpty()) ? value : defaultValue;
+    }
+
     private int getIntParam(HttpServletRequest request, String name, int defaultValue) {
         String value = request.getParameter(name);
         if (value != null && !value.isEmpty()) {